@@ -2,15 +2,38 @@ package com.estore.api.estoreapi;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.estore.api.estoreapi.controller.LoadingInterceptor;
+import com.estore.api.estoreapi.controller.ReadOnlyInterceptor;
+import com.estore.api.estoreapi.persistence.PersistenceProperties;
+import com.estore.api.estoreapi.persistence.StoreLoader;
+
 @Configuration
 @EnableWebMvc
 public class WebConfig implements WebMvcConfigurer {
+    private PersistenceProperties properties;
+    private StoreLoader loader;
+
+    public WebConfig(PersistenceProperties properties, StoreLoader loader) {
+        this.properties = properties;
+        this.loader = loader;
+    }
 
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/**")
                 .allowedMethods("HEAD", "GET", "PUT", "POST", "DELETE", "PATCH");
     }
-}
\ No newline at end of file
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // A follower only changes through replication from its leader
+        if ("follower".equals(properties.getReplicationRole())) {
+            registry.addInterceptor(new ReadOnlyInterceptor());
+        }
+        // Stores loading in the background are not served until they are loaded
+        registry.addInterceptor(new LoadingInterceptor(loader));
+    }
+}
@@ -0,0 +1,64 @@
+package com.estore.api.estoreapi.controller;
+
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.persistence.CheckoutJournal;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Controls the REST requests and responses for checking out a cart
+ */
+@RestController
+@RequestMapping("checkout")
+public class CheckoutController {
+    private static final Logger LOG = Logger.getLogger(CheckoutController.class.getName());
+    private CheckoutJournal checkoutJournal;
+
+    /**
+     * Construct a REST API controller for checking out
+     * 
+     * @param checkoutJournal Applies a checkout to every store at once
+     */
+    public CheckoutController(CheckoutJournal checkoutJournal) {
+        this.checkoutJournal = checkoutJournal;
+    }
+
+    /**
+     * Responds to the POST request to check out the cart of a customer
+     * 
+     * @param customerId The id of the customer checking out
+     * 
+     * @return ResponseEntity with the new {@link Order order} and HTTP status of CREATED<br>
+     * ResponseEntity with HTTP status of NOT_FOUND if the customer or their cart does not exist<br>
+     * ResponseEntity with HTTP status of CONFLICT if the cart is empty or a product is short of stock<br>
+     * ResponseEntity with HTTP status of INTERNAL_SERVER_ERROR otherwise
+     */
+    @PostMapping("/{customerId}")
+    public ResponseEntity<Order> checkout(@PathVariable int customerId) {
+        LOG.info("POST /checkout/" + customerId);
+        try {
+            Order order = checkoutJournal.checkout(customerId);
+            if (order != null)
+                return new ResponseEntity<Order>(order, HttpStatus.CREATED);
+            else
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        catch(IllegalStateException e) {
+            LOG.info(e.getLocalizedMessage());
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+        catch(IOException e) {
+            LOG.log(Level.SEVERE,e.getLocalizedMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.estore.api.estoreapi.controller;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.estore.api.estoreapi.persistence.StoreLoader;
+
+/**
+ * Answers requests for a store still loading in the background with SERVICE_UNAVAILABLE
+ *
+ * Every other store is served meanwhile, a checkout needs all of them so it
+ * waits until every store is loaded
+ */
+public class LoadingInterceptor implements HandlerInterceptor {
+    /** Seconds a client should wait before trying again */
+    private static final String RETRY_AFTER = "1";
+
+    /** Loads the stores */
+    private StoreLoader loader;
+
+    /**
+     * Create the interceptor
+     *
+     * @param loader Loads the stores
+     */
+    public LoadingInterceptor(StoreLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Lets a request through once the store it is for is loaded
+     *
+     * @param request The request, its first path segment names the store
+     * @param response The response, sent here when the request is rejected
+     * @param handler Handler of the request
+     * @return True if the request may be handled
+     * @throws Exception If the rejection cannot be sent
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String[] segments = path.split("/");
+        String store = segments.length > 1 ? segments[1] : "";
+        boolean loaded = "checkout".equals(store) ? loader.isAllLoaded() : loader.isLoaded(store);
+        if (loaded) {
+            return true;
+        }
+
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER);
+        response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "The " + store + " are still loading");
+        return false;
+    }
+}
@@ -4,6 +4,9 @@ import com.estore.api.estoreapi.model.Order;
 import com.estore.api.estoreapi.persistence.OrderDAO;
 
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -14,6 +17,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -65,25 +69,42 @@ public class OrderController {
     }
 
     /**
-     * Responds to the GET request for a {@linkplain Order order} for all ids in the array
+     * Responds to the GET request for all {@linkplain Order orders}, or those placed within a time range
      * 
-     * @param id The id used to locate the {@link Order order}
+     * @param from Start of the range, an ISO date or date and time, inclusive
+     * @param to End of the range, an ISO date or date and time, exclusive, a date includes that whole day
      * 
-     * @return ResponseEntity with {@link Order order} object and the HTTP status of OK if found<br>
-     * ResponseEntity with HTTP status of NOT_FOUND if not found<br>
+     * @return ResponseEntity with array of {@link Order order} objects and the HTTP status of OK<br>
+     * ResponseEntity with HTTP status of BAD_REQUEST if the range cannot be read<br>
      * ResponseEntity with HTTP status of INTERNAL_SERVER_ERROR otherwise
      */
      @GetMapping("")
-     public ResponseEntity<Order[]> getOrders() {
+     public ResponseEntity<Order[]> getOrders(@RequestParam(required = false) String from,
+                                              @RequestParam(required = false) String to) {
  
-         LOG.info("GET /orders");
+         LOG.info("GET /orders" + (from == null && to == null ? "" : "?from=" + from + "&to=" + to));
          try {
-             Order[] orders = orderDAO.getOrders();
+             Order[] orders;
+             if (from == null && to == null) {
+                 orders = orderDAO.getOrders();
+             }
+             else {
+                 LocalDateTime start = parseTime(from, false);
+                 LocalDateTime end = parseTime(to, true);
+                 if (start != null && end != null && start.isAfter(end)) {
+                     return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+                 }
+                 orders = orderDAO.getOrders(start, end);
+             }
              if(orders != null)
                  return new ResponseEntity<Order[]>(orders, HttpStatus.OK);
              else
                  return new ResponseEntity<>(HttpStatus.NOT_FOUND); 
          }
+         catch(DateTimeParseException e) {
+             LOG.log(Level.WARNING, e.getLocalizedMessage());
+             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+         }
          catch(IOException e) {
              LOG.log(Level.SEVERE,e.getLocalizedMessage());
              return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR); 
@@ -91,6 +112,25 @@ public class OrderController {
          
      }
 
+    /**
+     * Read one end of a time range
+     * 
+     * @param text ISO date or date and time, or null for no bound
+     * @param end True for the exclusive end, a date then stands for the start of the next day
+     * @return Time of the bound, or null for no bound
+     * @throws DateTimeParseException If the text is neither a date nor a date and time
+     */
+     private static LocalDateTime parseTime(String text, boolean end) {
+         if (text == null || text.isBlank()) {
+             return null;
+         }
+         if (text.contains("T")) {
+             return LocalDateTime.parse(text);
+         }
+         LocalDate date = LocalDate.parse(text);
+         return (end ? date.plusDays(1) : date).atStartOfDay();
+     }
+
      /**
      * Creates a {@linkplain Order order} with order object
      * 
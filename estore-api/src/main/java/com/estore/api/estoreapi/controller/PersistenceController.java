@@ -0,0 +1,147 @@
+package com.estore.api.estoreapi.controller;
+
+import com.estore.api.estoreapi.persistence.BackupManifest;
+import com.estore.api.estoreapi.persistence.ManagedStore;
+import com.estore.api.estoreapi.persistence.ReplicationNode;
+import com.estore.api.estoreapi.persistence.ReplicationStatus;
+import com.estore.api.estoreapi.persistence.StoreBackup;
+import com.estore.api.estoreapi.persistence.StoreStatus;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Controls the REST requests and responses for inspecting the data stores
+ */
+@RestController
+@RequestMapping("persistence")
+public class PersistenceController {
+    private static final Logger LOG = Logger.getLogger(PersistenceController.class.getName());
+    private List<ManagedStore> stores;
+    private List<ReplicationNode> replication;
+    private StoreBackup backup;
+
+    /**
+     * Construct a REST API controller for the data stores of an instance without replication
+     * 
+     * @param stores Every {@link ManagedStore managed store} in the application
+     */
+    public PersistenceController(List<ManagedStore> stores) {
+        this(stores, List.of(), null);
+    }
+
+    /**
+     * Construct a REST API controller for the data stores
+     * 
+     * @param stores Every {@link ManagedStore managed store} in the application
+     * @param replication The {@link ReplicationNode replication leader or follower}, empty without replication
+     * @param backup Backs up every data store, null if backups are not available
+     */
+    @Autowired
+    public PersistenceController(List<ManagedStore> stores, List<ReplicationNode> replication, StoreBackup backup) {
+        this.stores = stores;
+        this.replication = replication;
+        this.backup = backup;
+    }
+
+    /**
+     * Responds to the GET request for the {@linkplain StoreStatus status} of every data store
+     * 
+     * @return ResponseEntity with array of {@link StoreStatus status} objects and HTTP status of OK
+     */
+    @GetMapping("/status")
+    public ResponseEntity<StoreStatus[]> getStatus() {
+        LOG.info("GET /persistence/status");
+        StoreStatus[] statuses = new StoreStatus[stores.size()];
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = stores.get(i).getStatus();
+        }
+        return new ResponseEntity<StoreStatus[]>(statuses, HttpStatus.OK);
+    }
+
+    /**
+     * Responds to the GET request for the {@linkplain ReplicationStatus replication status} of this instance
+     * 
+     * @return ResponseEntity with the {@link ReplicationStatus status} and HTTP status of OK<br>
+     * ResponseEntity with HTTP status of NOT_FOUND if the instance is neither a leader nor a follower
+     */
+    @GetMapping("/replication")
+    public ResponseEntity<ReplicationStatus> getReplicationStatus() {
+        LOG.info("GET /persistence/replication");
+        if (replication.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<ReplicationStatus>(replication.get(0).getReplicationStatus(), HttpStatus.OK);
+    }
+
+    /**
+     * Flushes every data store to disk
+     * 
+     * @return ResponseEntity HTTP status of OK if flushed<br>
+     * ResponseEntity with HTTP status of INTERNAL_SERVER_ERROR otherwise
+     */
+    @PostMapping("/flush")
+    public ResponseEntity<Void> flush() {
+        LOG.info("POST /persistence/flush");
+        try {
+            for (ManagedStore store : stores) {
+                store.flush();
+            }
+            return new ResponseEntity<>(HttpStatus.OK);
+        }
+        catch (IOException e) {
+            LOG.log(Level.SEVERE, e.getLocalizedMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Backs up every data store into a directory under the backup directory while the application keeps running
+     * 
+     * @param name Name of the backup directory, a timestamp if not given
+     * 
+     * @return ResponseEntity with the {@link BackupManifest manifest} of the backup and HTTP status of CREATED,
+     * the manifest lists the stores that could not be backed up<br>
+     * ResponseEntity with HTTP status of BAD_REQUEST if the name is not allowed<br>
+     * ResponseEntity with HTTP status of CONFLICT if a backup of that name exists<br>
+     * ResponseEntity with HTTP status of NOT_FOUND if backups are not available<br>
+     * ResponseEntity with HTTP status of INTERNAL_SERVER_ERROR otherwise
+     */
+    @PostMapping("/backup")
+    public ResponseEntity<BackupManifest> backup(@RequestParam(required = false) String name) {
+        LOG.info("POST /persistence/backup?name=" + name);
+        if (backup == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        if (name == null) {
+            name = "backup-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        }
+        try {
+            return new ResponseEntity<BackupManifest>(backup.backup(name), HttpStatus.CREATED);
+        }
+        catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        catch (FileAlreadyExistsException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+        catch (IOException e) {
+            LOG.log(Level.SEVERE, e.getLocalizedMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
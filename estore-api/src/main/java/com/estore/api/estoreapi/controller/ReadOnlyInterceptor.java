@@ -0,0 +1,47 @@
+package com.estore.api.estoreapi.controller;
+
+import java.util.logging.Logger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Rejects every request that could change data, on a read-only follower instance
+ *
+ * The records of a follower only change through its replication leader, so
+ * clients have to send their changes to the leader
+ */
+public class ReadOnlyInterceptor implements HandlerInterceptor {
+    private static final Logger LOG = Logger.getLogger(ReadOnlyInterceptor.class.getName());
+
+    /** Methods a follower serves */
+    private static final String ALLOWED = "GET, HEAD, OPTIONS";
+
+    /**
+     * Lets reads through and answers anything else with METHOD_NOT_ALLOWED
+     *
+     * @param request The request
+     * @param response The response, sent here when the request is rejected
+     * @param handler Handler of the request
+     * @return True if the request may be handled
+     * @throws Exception If the rejection cannot be sent
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method)) {
+            return true;
+        }
+
+        LOG.info(method + " " + request.getRequestURI() + " rejected, this instance is a read-only follower");
+        response.setHeader(HttpHeaders.ALLOW, ALLOWED);
+        response.sendError(HttpStatus.METHOD_NOT_ALLOWED.value(),
+                           "This instance is a read-only follower, send changes to the leader");
+        return false;
+    }
+}
@@ -1,7 +1,7 @@
 package com.estore.api.estoreapi.model;
 
-import java.util.HashMap;
 import java.util.logging.Logger;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
@@ -15,41 +15,50 @@ public class Cart {
     // All cart parameters
     @JsonProperty("id") private int id;
     // Maps product id to quantity
-    @JsonProperty("inventory") private HashMap<Integer, ProductReference> inventory;
+    @JsonProperty("inventory") private Inventory inventory;
+    // Time of the last change to the items in milliseconds, 0 if unknown and then left out of the json
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    @JsonProperty("lastTouched") private long lastTouched;
 
     /**
      * Constructor for the cart, creates an empty cart
      */
     public Cart(@JsonProperty("id") int id) {
         this.id = id;
-        this.inventory = new HashMap<>();
+        this.inventory = new Inventory();
+    }
+
+    /**
+     * Copy the cart, so one copy can change without touching the other
+     * 
+     * @return New {@link Cart} with the same items
+     */
+    public Cart copy() {
+        Cart copy = new Cart(id);
+        copy.inventory.copyFrom(inventory);
+        copy.lastTouched = lastTouched;
+        return copy;
     }
 
     /**
      * Get the inventory of the cart
      * 
-     * @return Inventory of the cart
+     * @return Inventory of the cart, changes to it change the cart
      */
-    public HashMap<Integer, ProductReference> getInventory() {
+    public Inventory getInventory() {
         return inventory;
     }
 
     /**
-     * Adds a product to the cart by calling the ProductReference add method
+     * Adds a product to the cart
      * 
-     * Checks to see if it already exists and if we should just add on to the quantity
+     * If it is already in the cart the quantity is added on to it
      * 
      * @param productId Id of the product to add
      * @param quantity Quantity of the product to add
      */
     public void addItem(int productId, int quantity) {
-        if (inventory.containsKey(productId)) {
-            int currentQuantity = inventory.get(productId).getQuantity();
-            inventory.get(productId).setQuantity(currentQuantity + quantity);
-        }
-        else {
-            inventory.put(productId, new ProductReference(productId, quantity));
-        }
+        inventory.add(productId, quantity);
     }
 
     /**
@@ -59,14 +68,7 @@ public class Cart {
      * @param quantity Quantity to set the product to, 0 will remove it
      */
     public void editQuantity(int productId, int quantity) {
-        if (inventory.containsKey(productId)) {
-            if (quantity == 0) {
-                inventory.remove(productId);
-            }
-            else {
-                inventory.get(productId).setQuantity(quantity);
-            }
-        }
+        inventory.set(productId, quantity);
     }
 
     /**
@@ -85,6 +87,24 @@ public class Cart {
         inventory.clear();
     }
 
+    /**
+     * Get the time the items last changed
+     * 
+     * @return Time in milliseconds since the epoch, 0 if unknown
+     */
+    public long getLastTouched() {
+        return lastTouched;
+    }
+
+    /**
+     * Record that the items changed
+     * 
+     * @param time Time of the change in milliseconds since the epoch
+     */
+    public void touch(long time) {
+        this.lastTouched = time;
+    }
+
     /**
      * Get the id of the cart
      * 
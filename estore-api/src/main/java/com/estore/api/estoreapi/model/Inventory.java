@@ -0,0 +1,627 @@
+package com.estore.api.estoreapi.model;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Items of a cart, the quantity of each product in it
+ *
+ * The items are kept as product id and quantity pairs in one int array
+ * sorted by product id, instead of a boxed key, map entry and
+ * {@link ProductReference} per item. Changing the quantity of an item
+ * writes the array in place and never allocates. Adding or removing an
+ * item replaces the array with a new one, so a reader that is not holding
+ * the lock of the cart always sees a whole set of items.
+ *
+ * It is still the {@link HashMap} from product id to {@link ProductReference}
+ * the cart always exposed, and every change made through the map is written
+ * through to the array: put and remove change the items, and the references
+ * it hands out read and set the quantity of their item. It is written as
+ * that map: {"1":{"id":1,"quantity":1}}
+ */
+@JsonSerialize(using = Inventory.Serializer.class)
+@JsonDeserialize(using = Inventory.Deserializer.class)
+public class Inventory extends HashMap<Integer, ProductReference> {
+    private static final long serialVersionUID = 1L;
+
+    /** Items of every empty inventory */
+    private static final int[] NO_ITEMS = new int[0];
+
+    /** Product id at even indices followed by its quantity, sorted by product id, exactly as long as needed */
+    private volatile int[] items = NO_ITEMS;
+
+    /**
+     * Find the index of a product among some items
+     *
+     * @param items Items to search
+     * @param productId Id of the product
+     * @return Index of the product, or -(insertion index) - 1 if it is not among the items
+     */
+    private static int indexOf(int[] items, int productId) {
+        int low = 0;
+        int high = items.length / 2 - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = items[middle * 2];
+            if (id < productId) {
+                low = middle + 1;
+            }
+            else if (id > productId) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Get the quantity of a product
+     *
+     * @param productId Id of the product
+     * @return Quantity, 0 if the product is not in the inventory
+     */
+    public int getQuantity(int productId) {
+        int[] items = this.items;
+        int index = indexOf(items, productId);
+        return index < 0 ? 0 : items[index * 2 + 1];
+    }
+
+    /**
+     * Get the product id of an item
+     *
+     * @param index Index of the item, in product id order
+     * @return Id of the product
+     */
+    public int productIdAt(int index) {
+        return items[index * 2];
+    }
+
+    /**
+     * Get the quantity of an item
+     *
+     * @param index Index of the item, in product id order
+     * @return Quantity of the product
+     */
+    public int quantityAt(int index) {
+        return items[index * 2 + 1];
+    }
+
+    /**
+     * Set the quantity of a product, adding the product if it is not in the inventory
+     *
+     * @param productId Id of the product
+     * @param quantity Quantity to set, kept even when it is 0
+     * @param add Whether the quantity is added to the one already in the inventory
+     */
+    private void store(int productId, int quantity, boolean add) {
+        int[] items = this.items;
+        int index = indexOf(items, productId);
+        if (index >= 0) {
+            items[index * 2 + 1] = add ? items[index * 2 + 1] + quantity : quantity;
+            return;
+        }
+
+        index = -index - 1;
+        int[] grown = new int[items.length + 2];
+        System.arraycopy(items, 0, grown, 0, index * 2);
+        grown[index * 2] = productId;
+        grown[index * 2 + 1] = quantity;
+        System.arraycopy(items, index * 2, grown, index * 2 + 2, items.length - index * 2);
+        this.items = grown;
+    }
+
+    /**
+     * Remove a product from the inventory
+     *
+     * @param productId Id of the product
+     * @return What the item was before, or null if the product was not in the inventory
+     */
+    private ProductReference delete(int productId) {
+        int[] items = this.items;
+        int index = indexOf(items, productId);
+        if (index < 0) {
+            return null;
+        }
+
+        ProductReference previous = new ProductReference(productId, items[index * 2 + 1]);
+        if (items.length == 2) {
+            this.items = NO_ITEMS;
+            return previous;
+        }
+        int[] shrunk = new int[items.length - 2];
+        System.arraycopy(items, 0, shrunk, 0, index * 2);
+        System.arraycopy(items, index * 2 + 2, shrunk, index * 2, items.length - index * 2 - 2);
+        this.items = shrunk;
+        return previous;
+    }
+
+    /**
+     * Add to the quantity of a product, adding the product if it is not in the inventory
+     *
+     * @param productId Id of the product
+     * @param quantity Quantity to add
+     */
+    void add(int productId, int quantity) {
+        store(productId, quantity, true);
+    }
+
+    /**
+     * Set the quantity of a product already in the inventory
+     *
+     * @param productId Id of the product
+     * @param quantity Quantity to set, 0 removes the product
+     */
+    void set(int productId, int quantity) {
+        int[] items = this.items;
+        int index = indexOf(items, productId);
+        if (index < 0) {
+            return;
+        }
+        if (quantity != 0) {
+            items[index * 2 + 1] = quantity;
+            return;
+        }
+        delete(productId);
+    }
+
+    /**
+     * Copy the items of another inventory into this one
+     *
+     * @param other Inventory to copy
+     */
+    void copyFrom(Inventory other) {
+        int[] items = other.items;
+        this.items = items.length == 0 ? NO_ITEMS : items.clone();
+    }
+
+    /**
+     * Reference to an item that reads and sets the quantity in the inventory
+     *
+     * Once its product is removed from the inventory it keeps the quantity it last had
+     */
+    private class Item extends ProductReference {
+        /** Product the reference was handed out for */
+        private final int productId;
+
+        /**
+         * Create a reference to an item
+         *
+         * @param productId Id of the product
+         * @param quantity Quantity the item has now
+         */
+        Item(int productId, int quantity) {
+            super(productId, quantity);
+            this.productId = productId;
+        }
+
+        @Override
+        public int getQuantity() {
+            int[] items = Inventory.this.items;
+            int index = indexOf(items, productId);
+            return index < 0 ? super.getQuantity() : items[index * 2 + 1];
+        }
+
+        @Override
+        public void setQuantity(int quantity) {
+            super.setQuantity(quantity);
+            int[] items = Inventory.this.items;
+            int index = indexOf(items, productId);
+            if (index >= 0) {
+                items[index * 2 + 1] = quantity;
+            }
+        }
+    }
+
+    /**
+     * Entry of the inventory, setting its value writes the quantity through
+     */
+    private class ItemEntry extends AbstractMap.SimpleEntry<Integer, ProductReference> {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Create an entry for an item
+         *
+         * @param productId Id of the product
+         * @param quantity Quantity the item has now
+         */
+        ItemEntry(int productId, int quantity) {
+            super(productId, new Item(productId, quantity));
+        }
+
+        @Override
+        public ProductReference setValue(ProductReference value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * Iterates over the items as they were when it started, removing through the inventory
+     *
+     * @param <E> Type of element returned
+     */
+    private abstract class ItemIterator<E> implements Iterator<E> {
+        /** Items when the iteration started, adding or removing an item replaces the array */
+        private final int[] items = Inventory.this.items;
+
+        /** Index of the next item */
+        private int index;
+
+        /** Product of the last item returned */
+        private int last;
+
+        /** Whether the last item returned can still be removed */
+        private boolean removable;
+
+        /**
+         * Make the element for an item
+         *
+         * @param productId Id of the product
+         * @param quantity Quantity of the product
+         * @return Element to return
+         */
+        abstract E element(int productId, int quantity);
+
+        @Override
+        public boolean hasNext() {
+            return index * 2 < items.length;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = items[index * 2];
+            removable = true;
+            int quantity = items[index * 2 + 1];
+            index++;
+            return element(last, quantity);
+        }
+
+        @Override
+        public void remove() {
+            if (!removable) {
+                throw new IllegalStateException();
+            }
+            delete(last);
+            removable = false;
+        }
+    }
+
+    @Override
+    public void clear() {
+        items = NO_ITEMS;
+    }
+
+    @Override
+    public int size() {
+        return items.length / 2;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return items.length == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer && indexOf(items, (Integer) key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return values().contains(value);
+    }
+
+    @Override
+    public ProductReference get(Object key) {
+        if (!(key instanceof Integer)) {
+            return null;
+        }
+        int productId = (Integer) key;
+        int[] items = this.items;
+        int index = indexOf(items, productId);
+        return index < 0 ? null : new Item(productId, items[index * 2 + 1]);
+    }
+
+    @Override
+    public ProductReference getOrDefault(Object key, ProductReference defaultValue) {
+        ProductReference item = get(key);
+        return item == null ? defaultValue : item;
+    }
+
+    /**
+     * Set the quantity of a product to the quantity of a reference
+     *
+     * @param productId Id of the product
+     * @param item Reference holding the quantity
+     * @return Reference to what the item was before, or null if it was not in the inventory
+     */
+    @Override
+    public ProductReference put(Integer productId, ProductReference item) {
+        int[] items = this.items;
+        int index = indexOf(items, productId);
+        ProductReference previous = index < 0 ? null : new ProductReference(productId, items[index * 2 + 1]);
+        store(productId, item.getQuantity(), false);
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<? extends Integer, ? extends ProductReference> items) {
+        items.forEach(this::put);
+    }
+
+    @Override
+    public ProductReference putIfAbsent(Integer productId, ProductReference item) {
+        ProductReference current = get(productId);
+        return current == null ? put(productId, item) : current;
+    }
+
+    @Override
+    public ProductReference remove(Object key) {
+        if (!(key instanceof Integer)) {
+            return null;
+        }
+        return delete((Integer) key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (!Objects.equals(get(key), value)) {
+            return false;
+        }
+        remove(key);
+        return true;
+    }
+
+    @Override
+    public boolean replace(Integer productId, ProductReference oldItem, ProductReference newItem) {
+        if (!Objects.equals(get(productId), oldItem)) {
+            return false;
+        }
+        put(productId, newItem);
+        return true;
+    }
+
+    @Override
+    public ProductReference replace(Integer productId, ProductReference item) {
+        return containsKey(productId) ? put(productId, item) : null;
+    }
+
+    @Override
+    public ProductReference computeIfAbsent(Integer productId,
+                                            Function<? super Integer, ? extends ProductReference> function) {
+        ProductReference current = get(productId);
+        if (current != null) {
+            return current;
+        }
+        ProductReference item = function.apply(productId);
+        if (item != null) {
+            put(productId, item);
+        }
+        return item;
+    }
+
+    @Override
+    public ProductReference computeIfPresent(Integer productId,
+            BiFunction<? super Integer, ? super ProductReference, ? extends ProductReference> function) {
+        ProductReference current = get(productId);
+        return current == null ? null : compute(productId, function);
+    }
+
+    @Override
+    public ProductReference compute(Integer productId,
+            BiFunction<? super Integer, ? super ProductReference, ? extends ProductReference> function) {
+        ProductReference item = function.apply(productId, get(productId));
+        if (item == null) {
+            remove(productId);
+        }
+        else {
+            put(productId, item);
+        }
+        return item;
+    }
+
+    @Override
+    public ProductReference merge(Integer productId, ProductReference item,
+            BiFunction<? super ProductReference, ? super ProductReference, ? extends ProductReference> function) {
+        ProductReference current = get(productId);
+        ProductReference merged = current == null ? item : function.apply(current, item);
+        if (merged == null) {
+            remove(productId);
+        }
+        else {
+            put(productId, merged);
+        }
+        return merged;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super Integer, ? super ProductReference> action) {
+        for (Map.Entry<Integer, ProductReference> entry : entrySet()) {
+            action.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void replaceAll(
+            BiFunction<? super Integer, ? super ProductReference, ? extends ProductReference> function) {
+        for (Map.Entry<Integer, ProductReference> entry : entrySet()) {
+            entry.setValue(function.apply(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    @Override
+    public Object clone() {
+        Inventory copy = new Inventory();
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    @Override
+    public Set<Integer> keySet() {
+        return new AbstractSet<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new ItemIterator<Integer>() {
+                    @Override
+                    Integer element(int productId, int quantity) {
+                        return productId;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return Inventory.this.size();
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+
+            @Override
+            public boolean remove(Object key) {
+                return Inventory.this.remove(key) != null;
+            }
+        };
+    }
+
+    @Override
+    public Collection<ProductReference> values() {
+        return new AbstractCollection<ProductReference>() {
+            @Override
+            public Iterator<ProductReference> iterator() {
+                return new ItemIterator<ProductReference>() {
+                    @Override
+                    ProductReference element(int productId, int quantity) {
+                        return new Item(productId, quantity);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return Inventory.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<Integer, ProductReference>> entrySet() {
+        return new AbstractSet<Map.Entry<Integer, ProductReference>>() {
+            @Override
+            public Iterator<Map.Entry<Integer, ProductReference>> iterator() {
+                return new ItemIterator<Map.Entry<Integer, ProductReference>>() {
+                    @Override
+                    Map.Entry<Integer, ProductReference> element(int productId, int quantity) {
+                        return new ItemEntry(productId, quantity);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return Inventory.this.size();
+            }
+        };
+    }
+
+    /**
+     * Writes an inventory as a map from product id to {@link ProductReference}
+     */
+    public static class Serializer extends JsonSerializer<Inventory> {
+        @Override
+        public void serialize(Inventory inventory, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            int[] items = inventory.items;
+            generator.writeStartObject();
+            for (int index = 0; index < items.length; index += 2) {
+                int productId = items[index];
+                generator.writeFieldName(Integer.toString(productId));
+                generator.writeStartObject();
+                generator.writeNumberField("id", productId);
+                generator.writeNumberField("quantity", items[index + 1]);
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Reads an inventory written as a map from product id to {@link ProductReference}
+     *
+     * The product id comes from the id of the reference, or from its key if the reference has none
+     */
+    public static class Deserializer extends JsonDeserializer<Inventory> {
+        @Override
+        public Inventory deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+                parser.nextToken();
+            }
+
+            Inventory inventory = new Inventory();
+            for (JsonToken token = parser.currentToken(); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                int productId;
+                try {
+                    productId = Integer.parseInt(parser.getCurrentName());
+                }
+                catch (NumberFormatException e) {
+                    return (Inventory) context.handleWeirdKey(Integer.class, parser.getCurrentName(),
+                                                              "not a product id");
+                }
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return (Inventory) context.handleUnexpectedToken(ProductReference.class, parser);
+                }
+
+                int quantity = 0;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("id".equals(field)) {
+                        productId = parser.getValueAsInt();
+                    }
+                    else if ("quantity".equals(field)) {
+                        quantity = parser.getValueAsInt();
+                    }
+                    else {
+                        parser.skipChildren();
+                    }
+                }
+                inventory.add(productId, quantity);
+            }
+            return inventory;
+        }
+
+        @Override
+        public Inventory getNullValue(DeserializationContext context) {
+            return new Inventory();
+        }
+    }
+}
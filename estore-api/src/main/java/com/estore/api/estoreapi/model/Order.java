@@ -125,6 +125,20 @@ public class Order {
         return dateTime;
     }
 
+    /**
+     * Check if the order was placed within a time range
+     * 
+     * @param from Start of the range, inclusive, null for no start
+     * @param to End of the range, exclusive, null for no end
+     * @return True if the time of the order falls in the range
+     */
+    public boolean placedWithin(LocalDateTime from, LocalDateTime to) {
+        if (dateTime == null) {
+            return from == null && to == null;
+        }
+        return (from == null || !dateTime.isBefore(from)) && (to == null || dateTime.isBefore(to));
+    }
+
     /**
      * {@inheritDoc}
      */
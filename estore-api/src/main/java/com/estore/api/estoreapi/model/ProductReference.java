@@ -60,4 +60,24 @@ public class ProductReference {
     public void setQuantity(int quantity) {
         this.quantity = quantity;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof ProductReference) {
+            ProductReference other = (ProductReference) obj;
+            return getId() == other.getId() && getQuantity() == other.getQuantity();
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return 31 * getId() + getQuantity();
+    }
 }
@@ -0,0 +1,143 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Describes a {@link StoreBackup backup}, written next to its files as manifest.json
+ */
+public class BackupManifest {
+    /**
+     * One store in a backup
+     */
+    public static class StoreFile {
+        @JsonProperty("name") private String name;
+        @JsonProperty("file") private String file;
+        @JsonProperty("records") private int records;
+        @JsonProperty("bytes") private long bytes;
+        @JsonProperty("sha256") private String sha256;
+
+        /**
+         * Describe one store in a backup
+         *
+         * @param name Name of the store
+         * @param file File holding the records, relative to the backup directory
+         * @param records Number of records
+         * @param bytes Size of the file
+         * @param sha256 SHA-256 checksum of the file in hex
+         */
+        public StoreFile(@JsonProperty("name") String name, @JsonProperty("file") String file,
+                         @JsonProperty("records") int records, @JsonProperty("bytes") long bytes,
+                         @JsonProperty("sha256") String sha256) {
+            this.name = name;
+            this.file = file;
+            this.records = records;
+            this.bytes = bytes;
+            this.sha256 = sha256;
+        }
+
+        /**
+         * Get the name of the store
+         *
+         * @return Name of the store
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the file holding the records
+         *
+         * @return Filename relative to the backup directory
+         */
+        public String getFile() {
+            return file;
+        }
+
+        /**
+         * Get the number of records
+         *
+         * @return Records in the file
+         */
+        public int getRecords() {
+            return records;
+        }
+
+        /**
+         * Get the size of the file
+         *
+         * @return Size in bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Get the checksum of the file
+         *
+         * @return SHA-256 in hex
+         */
+        public String getSha256() {
+            return sha256;
+        }
+    }
+
+    @JsonProperty("generation") private long generation;
+    @JsonProperty("createdAt") private String createdAt;
+    @JsonProperty("stores") private List<StoreFile> stores;
+    @JsonProperty("skipped") private List<String> skipped;
+
+    /**
+     * Create a manifest
+     *
+     * @param generation Number of the backup since the application started
+     * @param createdAt Time the records were captured
+     * @param stores Stores in the backup
+     * @param skipped Stores left out because they cannot be captured, null for none
+     */
+    public BackupManifest(@JsonProperty("generation") long generation, @JsonProperty("createdAt") String createdAt,
+                          @JsonProperty("stores") List<StoreFile> stores,
+                          @JsonProperty("skipped") List<String> skipped) {
+        this.generation = generation;
+        this.createdAt = createdAt;
+        this.stores = stores;
+        this.skipped = skipped != null ? skipped : List.of();
+    }
+
+    /**
+     * Get the number of the backup since the application started
+     *
+     * @return Generation, starting from 1
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Get the time the records were captured
+     *
+     * @return ISO-8601 date and time
+     */
+    public String getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Get the stores in the backup
+     *
+     * @return One entry per store
+     */
+    public List<StoreFile> getStores() {
+        return stores;
+    }
+
+    /**
+     * Get the stores left out of the backup, their records must be copied another way
+     *
+     * @return Names of the DAOs that cannot be captured, empty if the backup is complete
+     */
+    public List<String> getSkipped() {
+        return skipped;
+    }
+}
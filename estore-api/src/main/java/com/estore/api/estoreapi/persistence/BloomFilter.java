@@ -0,0 +1,119 @@
+package com.estore.api.estoreapi.persistence;
+
+/**
+ * Bloom filter over int keys, answers "definitely absent" or "maybe present"
+ *
+ * Sized for about a 1% false positive rate at the expected number of keys
+ */
+public class BloomFilter {
+    /** Bits per expected key for a 1% false positive rate */
+    private static final int BITS_PER_KEY = 10;
+
+    /** Hash functions per key for that size */
+    private static final int DEFAULT_HASHES = 7;
+
+    /** Bit set of the filter */
+    private long[] bits;
+
+    /** Number of hash functions applied per key */
+    private int hashes;
+
+    /**
+     * Create an empty filter
+     *
+     * @param expectedKeys Number of keys the filter is sized for
+     */
+    public BloomFilter(int expectedKeys) {
+        this(new long[Math.max(1, (expectedKeys * BITS_PER_KEY + 63) / 64)], DEFAULT_HASHES);
+    }
+
+    /**
+     * Create a filter from stored bits
+     *
+     * @param bits Bit set of the filter
+     * @param hashes Number of hash functions applied per key
+     */
+    public BloomFilter(long[] bits, int hashes) {
+        this.bits = bits;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Mix the bits of a key so nearby keys land far apart
+     *
+     * @param key Key to hash
+     * @param seed Seed of the mix
+     * @return Hash of the key
+     */
+    private static int mix(int key, int seed) {
+        int h = key * 0x9E3779B9 + seed;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Get the bit a hash function maps a key to
+     *
+     * @param h1 First hash of the key
+     * @param h2 Second hash of the key
+     * @param i Index of the hash function
+     * @return Bit index
+     */
+    private int bit(int h1, int h2, int i) {
+        return (int) (Integer.toUnsignedLong(h1 + i * h2) % ((long) bits.length * 64));
+    }
+
+    /**
+     * Add a key to the filter
+     *
+     * @param key Key to add
+     */
+    public void add(int key) {
+        int h1 = mix(key, 0);
+        int h2 = mix(key, h1);
+        for (int i = 0; i < hashes; i++) {
+            int bit = bit(h1, h2, i);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Check if a key may have been added
+     *
+     * @param key Key to check
+     * @return False if the key was definitely never added
+     */
+    public boolean mightContain(int key) {
+        int h1 = mix(key, 0);
+        int h2 = mix(key, h1);
+        for (int i = 0; i < hashes; i++) {
+            int bit = bit(h1, h2, i);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the bit set of the filter
+     *
+     * @return Bits to store
+     */
+    public long[] getBits() {
+        return bits;
+    }
+
+    /**
+     * Get the number of hash functions applied per key
+     *
+     * @return Hash count
+     */
+    public int getHashes() {
+        return hashes;
+    }
+}
@@ -0,0 +1,78 @@
+package com.estore.api.estoreapi.persistence;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Snapshot of the counters of a {@link LruCache cache}
+ */
+public class CacheStats {
+    @JsonProperty("size") private int size;
+    @JsonProperty("capacity") private int capacity;
+    @JsonProperty("hits") private long hits;
+    @JsonProperty("misses") private long misses;
+    @JsonProperty("evictions") private long evictions;
+
+    /**
+     * Create the counters
+     *
+     * @param size Entries currently cached
+     * @param capacity Most entries the cache holds
+     * @param hits Lookups answered from the cache
+     * @param misses Lookups that had to load the value
+     * @param evictions Entries dropped to stay within capacity
+     */
+    public CacheStats(@JsonProperty("size") int size, @JsonProperty("capacity") int capacity,
+                      @JsonProperty("hits") long hits, @JsonProperty("misses") long misses,
+                      @JsonProperty("evictions") long evictions) {
+        this.size = size;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    /**
+     * Get the number of entries currently cached
+     *
+     * @return Cache size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the most entries the cache holds
+     *
+     * @return Cache capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of lookups answered from the cache
+     *
+     * @return Hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of lookups that had to load the value
+     *
+     * @return Misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of entries dropped to stay within capacity
+     *
+     * @return Evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+}
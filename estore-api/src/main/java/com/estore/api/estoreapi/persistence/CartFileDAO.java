@@ -1,107 +1,387 @@
 package com.estore.api.estoreapi.persistence;
 
-import java.util.Map;
 import java.util.logging.Logger;
 import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import java.io.File;
-import java.util.TreeMap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.stream.IntStream;
+
+import javax.annotation.PreDestroy;
 
 import com.estore.api.estoreapi.model.Cart;
 
 /**
  * Implementation of CartFileDAO which will save to a file as a data store
  * 
+ * With more than one cart shard configured the carts are split by id across
+ * segment files (carts-0.json, carts-1.json, ...) so a change only rewrites
+ * the segment holding that cart
+ * 
+ * Changes to a cart are serialized by one of a set of striped locks picked by
+ * cart id, so changes to different carts run in parallel. A change to the
+ * items is made to the cart in place, the {@link com.estore.api.estoreapi.model.Inventory
+ * inventory} only ever swaps in whole sets of items, so the carts can be read
+ * and written to disk without holding any of the locks
+ * 
+ * With a cart idle time configured every change to the items stamps the
+ * cart, and a {@link TimerWheel} holds the time each cart expires. Every tick
+ * the carts due are emptied, or dropped, and each shard writes them with a
+ * single flush
+ * 
  * @author Matt London
  */
 @Component
-public class CartFileDAO  implements CartDAO {
+@ConditionalOnProperty(name = {"persistence.backend", "persistence.cart-store"}, havingValue = "file", matchIfMissing = true)
+public class CartFileDAO  implements CartDAO, Stageable<Cart>, Replicable, Snapshottable {
     private static final Logger LOG = Logger.getLogger(CartFileDAO.class.getName());
 
+    /**
+     * One segment of the carts with its own map, lock and data file
+     */
+    private static class Shard {
+        /** Maps ids to their corresponding {@link Cart}, also the lock the file store captures under */
+        IntObjectMap<Cart> cartMap = new IntObjectMap<>();
+
+        /** Keeps the segment file in sync with cartMap */
+        FileStore<Cart> fileStore;
+
+        /** Shares one flush between concurrent item changes, null when disabled */
+        GroupCommit groupCommit;
+
+        /**
+         * Gets array of {@link Cart carts} in this shard
+         * 
+         * @return Array of stored {@link Cart carts}, or empty array if none
+         */
+        Cart[] getCartsArray() {
+            // Sized by the copy, the map may change while it is taken
+            return cartMap.values().toArray(new Cart[0]);
+        }
+    }
+
+    /** Segments of the carts, indexed by cart id modulo the shard count */
+    private Shard[] shards;
+
+    /** Locks serializing the changes to a cart, indexed by cart id modulo their count */
+    private Object[] stripes;
+
+    /** Hands out the ids of new carts */
+    private IdAllocator ids;
+
+    /** Filename of the unsharded data file */
+    private String filename;
+
     /** JSON serializer/deserializer */
     private ObjectMapper objectMapper;
 
-    /** Maps ids to their corresponding {@link Product} */
-    Map<Integer, Cart> cartMap;
+    /** Idle time after which a cart expires, 0 if carts never expire */
+    private long ttlMillis;
 
-    /** Next id to assign */
-    private static int nextId;
+    /** True to delete an expired cart, false to only empty it */
+    private boolean dropExpired;
 
-    private String filename;
+    /** Time each cart that can expire is due, null if carts never expire */
+    private TimerWheel expiry;
+
+    /** Background thread expiring idle carts, null until the carts are loaded or if they never expire */
+    private volatile ScheduledExecutorService expirer;
+
+    /**
+     * Build the {@link CartFileDAO} with the default persistence settings,
+     * ids are kept in memory
+     * 
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public CartFileDAO(String filename, ObjectMapper objectMapper) throws IOException {
+        this(filename, objectMapper, new PersistenceProperties(), new IdAllocator());
+    }
 
     /**
      * Build the {@link CartFileDAO}
      * 
      * @param filename Filename to store the data in
      * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
      * 
      * @throws IOException If there is an error reading the file
      */
-    public CartFileDAO(@Value("${carts.file}") String filename, ObjectMapper objectMapper) throws IOException {
-        this.cartMap = new TreeMap<>();
+    public CartFileDAO(@Value("${carts.file}") String filename, ObjectMapper objectMapper,
+                       PersistenceProperties properties) throws IOException {
+        this(filename, objectMapper, properties, IdAllocator.forFile(filename, properties));
+    }
+
+    /**
+     * Build the {@link CartFileDAO} loaded on the {@link StoreLoader} alongside the other stores
+     * 
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param loader Loads the data file alongside the other stores
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    @Autowired
+    public CartFileDAO(@Value("${carts.file}") String filename, ObjectMapper objectMapper,
+                       PersistenceProperties properties, StoreLoader loader) throws IOException {
+        this(filename, objectMapper, properties, IdAllocator.forFile(filename, properties), loader);
+    }
+
+    /**
+     * Build the {@link CartFileDAO} with its own id allocator
+     * 
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param ids Hands out the ids of new carts
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public CartFileDAO(String filename, ObjectMapper objectMapper, PersistenceProperties properties,
+                       IdAllocator ids) throws IOException {
+        this(filename, objectMapper, properties, ids, null);
+    }
+
+    /**
+     * Build the {@link CartFileDAO} with its own id allocator, loaded on a {@link StoreLoader}
+     * 
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param ids Hands out the ids of new carts
+     * @param loader Loads the data file alongside the other stores, null to load it now
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public CartFileDAO(String filename, ObjectMapper objectMapper, PersistenceProperties properties,
+                       IdAllocator ids, StoreLoader loader) throws IOException {
+        this.ids = ids;
         this.filename = filename;
         this.objectMapper = objectMapper;
-        load();
+        this.shards = new Shard[Math.max(1, properties.getCartShards())];
+        this.stripes = new Object[Math.max(1, properties.getCartLockStripes())];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = new Shard();
+            shard.fileStore = new FileStore<>(getSegmentFilename(i), objectMapper, Cart[].class, Cart::getId,
+                                              shard::getCartsArray, shard.cartMap, properties);
+            if (properties.isCartGroupCommit()) {
+                shard.groupCommit = new GroupCommit(shard.fileStore::flush,
+                                                    properties.getGroupCommitWindowMillis(),
+                                                    properties.getGroupCommitMaxBatch());
+            }
+            shards[i] = shard;
+        }
+
+        // A follower only changes through its leader, which expires the carts
+        this.ttlMillis = properties.getCartTtlMillis();
+        this.dropExpired = "drop".equalsIgnoreCase(properties.getCartTtlAction());
+        if (ttlMillis > 0 && !"follower".equals(properties.getReplicationRole())) {
+            this.expiry = new TimerWheel(properties.getCartTtlWheelSlots(), properties.getCartTtlTickMillis(),
+                                         System.currentTimeMillis());
+        }
+
+        if (loader == null) {
+            load();
+            watchShards();
+            startExpiry(properties.getCartTtlTickMillis());
+        }
+        else {
+            StoreLoader.Load load = loader.submit("carts", false, () -> {
+                load();
+                watchShards();
+                startExpiry(properties.getCartTtlTickMillis());
+            });
+            for (Shard shard : shards) {
+                shard.fileStore.awaitBeforeUse(load);
+            }
+        }
     }
 
     /**
-     * Gets next id and increments it
+     * Apply changes other programs make to the segment files
      * 
-     * Syncronized to prevent multiple threads from accessing nextId concurrently
+     * @throws IOException If a segment file cannot be watched
+     */
+    private void watchShards() throws IOException {
+        for (Shard shard : shards) {
+            shard.fileStore.watch((changed, removed) -> reloaded(shard, changed, removed));
+        }
+    }
+
+    /**
+     * Start expiring idle carts in the background
      * 
-     * @return The next id to assign
+     * @param tick Time between two looks for expired carts in milliseconds
      */
-    private synchronized static int getNextId() {
-        return nextId++;
+    private void startExpiry(long tick) {
+        if (expiry == null) {
+            return;
+        }
+        this.expirer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, tick);
+        this.expirer.scheduleWithFixedDelay(this::expireInBackground, interval, interval, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Gets array of {@link Cart carts} from the file
+     * Gets the name of the segment file for a shard
      * 
-     * @return Array of stored {@link Cart carts}, or empty array if none
+     * @param index Index of the shard
+     * @return Segment filename, or the plain filename when unsharded
      */
-    private Cart[] getCartsArray() {
-        Cart[] cartArray = new Cart[cartMap.size()];
-        cartMap.values().toArray(cartArray);
+    private String getSegmentFilename(int index) {
+        if (shards.length == 1) {
+            return filename;
+        }
 
-        return cartArray;
+        int dot = filename.lastIndexOf('.');
+        if (dot <= filename.lastIndexOf(File.separatorChar)) {
+            return filename + "-" + index;
+        }
+        return filename.substring(0, dot) + "-" + index + filename.substring(dot);
     }
 
     /**
-     * Saves {@link Cart} to the DAO file
+     * Gets the shard that holds a cart
      * 
-     * @throws IOException If there is an error writing to the file
+     * @param id Id of the cart
+     * @return {@link Shard} for the id
      */
-    private void save() throws IOException{
-        Cart[] allCarts = getCartsArray();
+    private Shard shardFor(int id) {
+        return shards[Math.floorMod(id, shards.length)];
+    }
+
+    /**
+     * Gets the lock serializing the changes to a cart
+     * 
+     * @param id Id of the cart
+     * @return Lock for the id
+     */
+    private Object stripeFor(int id) {
+        return stripes[Math.floorMod(id, stripes.length)];
+    }
+
+    /**
+     * Split the unsharded data file into segment files the first time sharding is enabled
+     * 
+     * @throws IOException If the segments are incomplete or cannot be written
+     */
+    private void createSegments() throws IOException {
+        int existing = 0;
+        for (int i = 0; i < shards.length; i++) {
+            if (new File(getSegmentFilename(i)).exists()) {
+                existing++;
+            }
+        }
+        if (existing == shards.length) {
+            return;
+        }
+        if (existing > 0) {
+            throw new IOException("Only " + existing + " of " + shards.length + " cart segments exist for "
+                                  + filename + ", was the shard count changed?");
+        }
+
+        List<List<Cart>> segments = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            segments.add(new ArrayList<>());
+        }
+        File unsharded = new File(filename);
+        if (unsharded.exists()) {
+            ObjectMapper reader = DataFormat.detect(unsharded).mapper(objectMapper);
+            for (Cart cart : reader.readValue(unsharded, Cart[].class)) {
+                segments.get(Math.floorMod(cart.getId(), shards.length)).add(cart);
+            }
+        }
 
-        // Uses object mapper to convert to json and write to file
-        objectMapper.writeValue(new File(filename), allCarts);
+        for (int i = 0; i < shards.length; i++) {
+            objectMapper.writeValue(new File(getSegmentFilename(i)), segments.get(i).toArray(new Cart[0]));
+        }
+        LOG.info("Split " + filename + " into " + shards.length + " segments");
     }
 
     /**
-     * Load all {@link Cart} from the DAO file and store in the map
+     * Load all {@link Cart} from the DAO files and store in the shards, reading segments in parallel
      * 
      * @throws IOException If there is an error reading the file
      */
     private void load() throws IOException {
-        cartMap.clear();
-        nextId = 0;
+        if (shards.length > 1) {
+            createSegments();
+        }
 
-        Cart[] serializedCarts = objectMapper.readValue(new File(filename), Cart[].class);
+        try {
+            IntStream.range(0, shards.length).parallel().forEach(i -> {
+                Shard shard = shards[i];
+                synchronized (shard.cartMap) {
+                    shard.cartMap.clear();
+                    try {
+                        shard.fileStore.load(shard.cartMap);
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
 
-        // Add all carts and keep track of the greatest id
-        for (Cart cart: serializedCarts) {
-            cartMap.put(cart.getId(), cart);
-            if (cart.getId() > nextId) {
-                nextId = cart.getId();
+        // Never hand out an id already stored
+        for (Shard shard : shards) {
+            synchronized (shard.cartMap) {
+                for (int id : shard.cartMap.keySet()) {
+                    ids.skipPast(id);
+                }
+                for (Cart cart : shard.cartMap.values()) {
+                    scheduleExpiry(cart);
+                }
             }
         }
+    }
 
-        // Incremement id again so it is ready to return the next id
-        getNextId();
+    /**
+     * Apply the {@link Cart carts} another program changed in a segment file
+     * 
+     * A cart changed through the DAO at the same time keeps whichever change lands last
+     * 
+     * @param shard Shard of the segment file
+     * @param changed {@link Cart Carts} added or changed
+     * @param removed Ids of the {@link Cart carts} removed
+     */
+    private void reloaded(Shard shard, List<Cart> changed, List<Integer> removed) {
+        for (Cart cart : changed) {
+            shard.cartMap.put(cart.getId(), cart);
+            ids.skipPast(cart.getId());
+            scheduleExpiry(cart);
+        }
+        for (int id : removed) {
+            shard.cartMap.remove(id);
+            cancelExpiry(id);
+        }
     }
 
     /**
@@ -109,9 +389,17 @@ public class CartFileDAO  implements CartDAO {
      */
     @Override
     public Cart[] getCarts() {
-        synchronized(cartMap) {
-            return getCartsArray();
+        if (shards.length == 1) {
+            return shards[0].getCartsArray();
+        }
+
+        List<Cart> carts = new ArrayList<>();
+        for (Shard shard : shards) {
+            carts.addAll(shard.cartMap.values());
         }
+        carts.sort(Comparator.comparingInt(Cart::getId));
+
+        return carts.toArray(new Cart[0]);
     }
 
     /**
@@ -119,9 +407,7 @@ public class CartFileDAO  implements CartDAO {
      */
     @Override
     public Cart getCart(int id) {
-        synchronized(cartMap) {
-            return cartMap.get(id);
-        }
+        return shardFor(id).cartMap.get(id);
     }
 
     /**
@@ -129,12 +415,14 @@ public class CartFileDAO  implements CartDAO {
      */
     @Override
     public Cart createCart(Cart cart) throws IOException {
-        synchronized(cartMap) {
-            Cart tmpCart = new Cart(getNextId());
-            
+        Cart tmpCart = new Cart(ids.next());
+        tmpCart.touch(System.currentTimeMillis());
+        Shard shard = shardFor(tmpCart.getId());
+        synchronized (stripeFor(tmpCart.getId())) {
             // Add to map and save to DAO
-            cartMap.put(tmpCart.getId(), tmpCart);
-            save();
+            shard.cartMap.put(tmpCart.getId(), tmpCart);
+            shard.fileStore.put(tmpCart);
+            scheduleExpiry(tmpCart);
 
             return tmpCart;
         }
@@ -145,13 +433,15 @@ public class CartFileDAO  implements CartDAO {
      */
     @Override
     public boolean deleteCart(int id) throws IOException {
-        synchronized (cartMap) {
-            if (!cartMap.containsKey(id)) {
+        Shard shard = shardFor(id);
+        synchronized (stripeFor(id)) {
+            if (!shard.cartMap.containsKey(id)) {
                 return false;
             }
             else {
-                cartMap.remove(id);
-                save();
+                shard.cartMap.remove(id);
+                shard.fileStore.delete(id);
+                cancelExpiry(id);
                 return true;
             }
         }
@@ -162,13 +452,16 @@ public class CartFileDAO  implements CartDAO {
      */
     @Override
     public Cart updateCart(Cart cart) throws IOException {
-        synchronized (cartMap) {
-            if (!cartMap.containsKey(cart.getId())) {
+        Shard shard = shardFor(cart.getId());
+        synchronized (stripeFor(cart.getId())) {
+            if (!shard.cartMap.containsKey(cart.getId())) {
                 return null;
             }
             else {
-                cartMap.put(cart.getId(), cart);
-                save();
+                cart.touch(System.currentTimeMillis());
+                shard.cartMap.put(cart.getId(), cart);
+                shard.fileStore.put(cart);
+                scheduleExpiry(cart);
                 return cart;
             }
         }
@@ -179,30 +472,254 @@ public class CartFileDAO  implements CartDAO {
      */
     @Override
     public boolean addItem(int cartId, int productId, int quantity) throws IOException {
-        synchronized (cartMap) {
-            Cart cart = cartMap.get(cartId);
+        return changeItems(cartId, cart -> cart.addItem(productId, quantity));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeItem(int cartId, int productId) throws IOException {
+        return changeItems(cartId, cart -> cart.removeItem(productId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean editQuantity(int cartId, int productId, int quantity) throws IOException {
+        return changeItems(cartId, cart -> cart.editQuantity(productId, quantity));
+    }
+
+    /**
+     * Apply a change to the items of a {@link Cart cart} and persist it
+     * 
+     * The change is made to the cart in place under the cart's stripe lock, its
+     * inventory swaps in a new array when items come or go so readers outside
+     * of the lock never see half a change. With group commit enabled the caller
+     * waits for the shared flush outside of the lock
+     * 
+     * @param cartId Id of the cart
+     * @param change Change to apply to the cart
+     * @return True if the cart was changed, false if it was not found
+     * @throws IOException If the change cannot be persisted
+     */
+    private boolean changeItems(int cartId, Consumer<Cart> change) throws IOException {
+        Shard shard = shardFor(cartId);
+        long ticket;
+        synchronized (stripeFor(cartId)) {
+            Cart cart = shard.cartMap.get(cartId);
             if (cart == null) {
                 return false;
             }
-            cart.addItem(productId, quantity);
-            save();
-            return true;
+            // Visible before it is logged, so a checkpoint capturing the carts either sees it or keeps its entry
+            change.accept(cart);
+            cart.touch(System.currentTimeMillis());
+            scheduleExpiry(cart);
+
+            if (shard.groupCommit == null) {
+                shard.fileStore.put(cart);
+                return true;
+            }
+            shard.fileStore.stage(cart);
+            ticket = shard.groupCommit.submit();
+        }
+
+        shard.groupCommit.awaitDurable(ticket);
+        return true;
+    }
+
+    /**
+     * Set the time a {@link Cart cart} expires, unless it already has one or cannot expire
+     * 
+     * A cart touched again keeps its earlier deadline, when it comes the cart
+     * is scheduled again for the deadline of its last change
+     * 
+     * @param cart Cart as it is now
+     */
+    private void scheduleExpiry(Cart cart) {
+        if (expiry == null || (!dropExpired && cart.getInventory().isEmpty())) {
+            return;
+        }
+        // A cart stored before carts were stamped gets a full idle time from now
+        long touched = cart.getLastTouched() > 0 ? cart.getLastTouched() : System.currentTimeMillis();
+        expiry.schedule(cart.getId(), touched + ttlMillis);
+    }
+
+    /**
+     * Forget the time a deleted {@link Cart cart} expires
+     * 
+     * @param id Id of the cart
+     */
+    private void cancelExpiry(int id) {
+        if (expiry != null) {
+            expiry.cancel(id);
+        }
+    }
+
+    /**
+     * Empty or drop the {@link Cart carts} whose items did not change for the idle time
+     * 
+     * The carts due are changed in memory under their stripe locks, then each
+     * shard writes all of its expired carts with one flush
+     * 
+     * @param now Current time in milliseconds
+     * @return Number of carts expired
+     * @throws IOException If the expired carts cannot be written
+     */
+    public int expireIdleCarts(long now) throws IOException {
+        if (expiry == null) {
+            return 0;
+        }
+
+        List<List<Integer>> dropped = new ArrayList<>();
+        boolean[] emptied = new boolean[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            dropped.add(new ArrayList<>());
+        }
+        int expired = 0;
+        for (int id : expiry.advance(now)) {
+            int index = Math.floorMod(id, shards.length);
+            Shard shard = shards[index];
+            synchronized (stripeFor(id)) {
+                Cart cart = shard.cartMap.get(id);
+                if (cart == null) {
+                    continue;
+                }
+                long deadline = cart.getLastTouched() + ttlMillis;
+                if (deadline > now) {
+                    // Touched since it was scheduled
+                    expiry.schedule(id, deadline);
+                    continue;
+                }
+                if (dropExpired) {
+                    shard.cartMap.remove(id);
+                    dropped.get(index).add(id);
+                }
+                else if (!cart.getInventory().isEmpty()) {
+                    cart.clear();
+                    shard.fileStore.stage(cart);
+                    emptied[index] = true;
+                }
+                else {
+                    continue;
+                }
+                expired++;
+            }
+        }
+
+        for (int i = 0; i < shards.length; i++) {
+            if (!dropped.get(i).isEmpty()) {
+                shards[i].fileStore.deleteAll(dropped.get(i));
+            }
+            if (emptied[i]) {
+                shards[i].fileStore.flush();
+            }
+        }
+        if (expired > 0) {
+            LOG.info((dropExpired ? "Dropped " : "Emptied ") + expired + " carts idle for " + ttlMillis + " ms");
+        }
+        return expired;
+    }
+
+    /**
+     * Scheduled expiry task, a failure is logged and the carts already expired are written with the next flush
+     */
+    private void expireInBackground() {
+        try {
+            expireIdleCarts(System.currentTimeMillis());
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Expiring idle carts failed", e);
         }
     }
 
+    /**
+     * Get the number of carts waiting to expire
+     * 
+     * @return Carts with an expiry time, 0 if carts never expire
+     */
+    public int getExpiringCarts() {
+        return expiry != null ? expiry.size() : 0;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public boolean removeItem(int cartId, int productId) throws IOException {
-        synchronized (cartMap) {
-            Cart cart = cartMap.get(cartId);
-            if (cart == null) {
-                return false;
+    public int reserveId() {
+        return ids.next();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stage(Cart cart) throws IOException {
+        Shard shard = shardFor(cart.getId());
+        synchronized (stripeFor(cart.getId())) {
+            shard.cartMap.put(cart.getId(), cart);
+            shard.fileStore.stage(cart);
+            ids.skipPast(cart.getId());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object lockFor(int id) {
+        return stripeFor(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getReplicaName() {
+        return "carts";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void replicateTo(Consumer<MutationLog.Entry> feed) {
+        for (Shard shard : shards) {
+            shard.fileStore.feed(feed);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<JsonNode> getReplicaSnapshot() {
+        List<JsonNode> carts = new ArrayList<>();
+        for (Shard shard : shards) {
+            carts.addAll(shard.fileStore.serializedRecords());
+        }
+        return carts;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The carts are routed by id, so the leader may split its carts into a different number of shards
+     */
+    @Override
+    public void applyReplica(List<MutationLog.Entry> entries, boolean replaceAll) throws IOException {
+        List<List<MutationLog.Entry>> byShard = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (MutationLog.Entry entry : entries) {
+            byShard.get(Math.floorMod(entry.getId(), shards.length)).add(entry);
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (replaceAll || !byShard.get(i).isEmpty()) {
+                shards[i].fileStore.applyReplicated(byShard.get(i), replaceAll);
             }
-            cart.removeItem(productId);
-            save();
-            return true;
         }
     }
 
@@ -210,16 +727,59 @@ public class CartFileDAO  implements CartDAO {
      * {@inheritDoc}
      */
     @Override
-    public boolean editQuantity(int cartId, int productId, int quantity) throws IOException {
-        synchronized (cartMap) {
-            Cart cart = cartMap.get(cartId);
-            if (cart == null) {
-                return false;
+    public String getSnapshotName() {
+        return "carts";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecordSnapshot snapshot() {
+        return new RecordSnapshot(getCarts());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StoreStatus getStatus() {
+        StoreStatus[] statuses = new StoreStatus[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            statuses[i] = shards[i].fileStore.getStatus();
+        }
+        return StoreStatus.combine(filename, statuses);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        for (Shard shard : shards) {
+            shard.fileStore.flush();
+        }
+    }
+
+    /**
+     * Flush any outstanding changes to the data file on shutdown
+     * 
+     * @throws IOException If there is an error writing to the file
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        if (expirer != null) {
+            expirer.shutdown();
+            try {
+                expirer.awaitTermination(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-        
-            cart.editQuantity(productId, quantity);
-            save();
-            return true;
         }
+        for (Shard shard : shards) {
+            shard.fileStore.close();
+        }
+        ids.close();
     }
 }
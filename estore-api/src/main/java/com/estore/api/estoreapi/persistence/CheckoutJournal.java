@@ -0,0 +1,482 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.estore.api.estoreapi.model.Cart;
+import com.estore.api.estoreapi.model.Customer;
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.model.Product;
+import com.estore.api.estoreapi.model.ProductReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Checks out a cart across the product, order, cart and customer stores as one unit
+ *
+ * Every change of a checkout goes into a single journal entry which is forced
+ * to disk before any store sees it, that one write is the commit. The changes
+ * are then staged in the stores, which only write them at the next journal
+ * checkpoint. On startup the journal is replayed, a change is reapplied
+ * only if its record still looks the way it did before the checkout, so
+ * replaying a checkout the stores already hold is harmless
+ */
+@Component
+public class CheckoutJournal {
+    private static final Logger LOG = Logger.getLogger(CheckoutJournal.class.getName());
+
+    /**
+     * Applies a change through a DAO that cannot stage it
+     *
+     * @param <T> Type of record changed
+     */
+    private interface Update<T> {
+        void apply(T record) throws IOException;
+    }
+
+    /**
+     * Runs part of a checkout while its records are locked
+     *
+     * @param <R> Type of result
+     */
+    private interface Locked<R> {
+        R run() throws IOException;
+    }
+
+    /** Holds the stock of the products */
+    private ProductDAO productDAO;
+
+    /** Holds the new orders */
+    private OrderDAO orderDAO;
+
+    /** Holds the carts emptied by a checkout */
+    private CartDAO cartDAO;
+
+    /** Holds the customers a checkout is recorded on */
+    private CustomerDAO customerDAO;
+
+    /** JSON serializer/deserializer */
+    private ObjectMapper objectMapper;
+
+    /** Log of the checkouts since the last checkpoint */
+    private MutationLog journal;
+
+    /** Checkouts to journal before checkpointing */
+    private int checkpointInterval;
+
+    /** Loads the stores at startup, null if they were loaded when built */
+    private StoreLoader loader;
+
+    /** True on a replication follower, which takes its checkouts from the leader */
+    private boolean readOnly;
+
+    /** Stores holding changes staged since the last checkpoint */
+    private final Set<ManagedStore> staged = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Open the journal and replay the checkouts it holds
+     *
+     * @param filename Filename of the journal
+     * @param productDAO Holds the stock of the products
+     * @param orderDAO Holds the orders, must implement {@link Stageable}
+     * @param cartDAO Holds the carts
+     * @param customerDAO Holds the customers
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     *
+     * @throws IOException If the journal cannot be replayed
+     */
+    public CheckoutJournal(@Value("${checkout.journal}") String filename, ProductDAO productDAO, OrderDAO orderDAO,
+                           CartDAO cartDAO, CustomerDAO customerDAO, ObjectMapper objectMapper,
+                           PersistenceProperties properties) throws IOException {
+        this(filename, productDAO, orderDAO, cartDAO, customerDAO, objectMapper, properties, null);
+    }
+
+    /**
+     * Open the journal and replay the checkouts it holds once the stores are loaded
+     *
+     * @param filename Filename of the journal
+     * @param productDAO Holds the stock of the products
+     * @param orderDAO Holds the orders, must implement {@link Stageable}
+     * @param cartDAO Holds the carts
+     * @param customerDAO Holds the customers
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param loader Loads the stores at startup, null if they are loaded already
+     *
+     * @throws IOException If the journal cannot be replayed
+     */
+    @Autowired
+    public CheckoutJournal(@Value("${checkout.journal}") String filename, ProductDAO productDAO, OrderDAO orderDAO,
+                           CartDAO cartDAO, CustomerDAO customerDAO, ObjectMapper objectMapper,
+                           PersistenceProperties properties, StoreLoader loader) throws IOException {
+        if (!(orderDAO instanceof Stageable)) {
+            throw new IllegalArgumentException(orderDAO.getClass().getSimpleName() + " cannot stage orders");
+        }
+        this.productDAO = productDAO;
+        this.orderDAO = orderDAO;
+        this.cartDAO = cartDAO;
+        this.customerDAO = customerDAO;
+        this.objectMapper = objectMapper;
+        this.checkpointInterval = Math.max(1, properties.getCheckoutCheckpointInterval());
+        this.loader = loader;
+        this.readOnly = "follower".equals(properties.getReplicationRole());
+        this.journal = new MutationLog(Paths.get(filename), objectMapper, true);
+        replay();
+    }
+
+    /**
+     * Get the order store as a {@link Stageable}
+     *
+     * @return Order store
+     */
+    @SuppressWarnings("unchecked")
+    private Stageable<Order> orderStore() {
+        return (Stageable<Order>) orderDAO;
+    }
+
+    /**
+     * Check out the cart of a customer
+     *
+     * Every product in the cart must be in stock in the quantity ordered. The
+     * stock is taken, an order is placed, the cart is emptied and the order
+     * and products are recorded on the customer, or none of it happens
+     *
+     * The cart, the customer and then the products are locked in their stores
+     * from the time they are read until their changes are staged, so an item
+     * added to the cart or a product updated meanwhile is not overwritten
+     *
+     * @param customerId Id of the customer checking out
+     * @return The new {@link Order order}, or null if the customer or their cart does not exist
+     * @throws IOException If the checkout cannot be journaled
+     * @throws IllegalStateException If the cart is empty or a product is short of stock
+     */
+    public synchronized Order checkout(int customerId) throws IOException {
+        // A checkout touches every store, including orders still loading in the background
+        awaitStores();
+        Customer customer = customerDAO.getCustomer(customerId);
+        if (customer == null) {
+            return null;
+        }
+        int cartId = customer.getCartId();
+        Order order = holding(List.of(lockFor(cartDAO, cartId), lockFor(customerDAO, customerId)), 0,
+                              () -> checkoutLocked(customerId, cartId));
+
+        if (journal.size() >= checkpointInterval) {
+            checkpoint();
+        }
+        return order;
+    }
+
+    /**
+     * Check out the cart of a customer while the cart and customer are locked
+     *
+     * @param customerId Id of the customer checking out
+     * @param cartId Id of the locked cart
+     * @return The new {@link Order order}, or null if the customer or their cart does not exist
+     * @throws IOException If the checkout cannot be journaled
+     */
+    private Order checkoutLocked(int customerId, int cartId) throws IOException {
+        Customer customer = customerDAO.getCustomer(customerId);
+        if (customer == null) {
+            return null;
+        }
+        if (customer.getCartId() != cartId) {
+            throw new IllegalStateException("Cart of customer " + customerId + " changed during checkout");
+        }
+        Cart cart = cartDAO.getCart(cartId);
+        if (cart == null) {
+            return null;
+        }
+        if (cart.getInventory().isEmpty()) {
+            throw new IllegalStateException("Cart " + cart.getId() + " is empty");
+        }
+
+        // Locked in id order, so two checkouts sharing products cannot deadlock
+        List<Object> productLocks = new ArrayList<>();
+        new TreeSet<>(cart.getInventory().keySet()).forEach(id -> {
+            Object lock = lockFor(productDAO, id);
+            if (productLocks.stream().noneMatch(held -> held == lock)) {
+                productLocks.add(lock);
+            }
+        });
+        return holding(productLocks, 0, () -> checkoutLocked(customer, cart));
+    }
+
+    /**
+     * Check out a cart while it, its customer and its products are locked
+     *
+     * @param customer {@link Customer} checking out
+     * @param cart {@link Cart} of the customer
+     * @return The new {@link Order order}
+     * @throws IOException If the checkout cannot be journaled
+     */
+    private Order checkoutLocked(Customer customer, Cart cart) throws IOException {
+        ArrayNode productsBefore = objectMapper.createArrayNode();
+        ArrayNode products = objectMapper.createArrayNode();
+        List<Product> ordered = new ArrayList<>();
+        double totalPrice = 0;
+        for (ProductReference item : cart.getInventory().values()) {
+            Product product = productDAO.getProduct(item.getId());
+            if (product == null || product.getQuantity() < item.getQuantity()) {
+                throw new IllegalStateException("Only " + (product == null ? 0 : product.getQuantity()) + " of product "
+                                                + item.getId() + " are available");
+            }
+            productsBefore.add(objectMapper.valueToTree(product));
+            products.add(objectMapper.valueToTree(withQuantity(product, product.getQuantity() - item.getQuantity())));
+            ordered.add(withQuantity(product, item.getQuantity()));
+            totalPrice += product.getPrice() * item.getQuantity();
+        }
+
+        Order order = new Order(orderStore().reserveId(), totalPrice, ordered.toArray(new Product[0]), false,
+                                LocalDateTime.now());
+        Customer updated = readCustomer(objectMapper.valueToTree(customer));
+        updated.addOrder(order.getId());
+        for (Product product : ordered) {
+            if (!updated.getPurchasedProducts().contains(product.getId())) {
+                updated.addPurchasedProduct(product.getId());
+            }
+        }
+
+        ObjectNode record = objectMapper.createObjectNode();
+        record.set("productsBefore", productsBefore);
+        record.set("products", products);
+        record.set("order", objectMapper.valueToTree(order));
+        record.set("cartBefore", objectMapper.valueToTree(cart));
+        record.set("cart", objectMapper.valueToTree(new Cart(cart.getId())));
+        record.set("customerBefore", objectMapper.valueToTree(customer));
+        record.set("customer", objectMapper.valueToTree(updated));
+
+        // The commit point, nothing is visible in the stores before this is on disk
+        journal.append(new MutationLog.Entry(MutationLog.Operation.PUT, order.getId(), record));
+        apply(record, false);
+        return order;
+    }
+
+    /**
+     * Get the monitor guarding a record in a store
+     *
+     * A DAO that cannot stage writes its changes through its own calls, its
+     * monitor only keeps other checkouts out
+     *
+     * @param dao DAO of the store
+     * @param id Id of the record
+     * @return Monitor to hold while the record is read and changed
+     */
+    private static Object lockFor(Object dao, int id) {
+        return dao instanceof Stageable ? ((Stageable<?>) dao).lockFor(id) : dao;
+    }
+
+    /**
+     * Run an action holding monitors, taken in the order given
+     *
+     * @param <R> Type of result
+     * @param locks Monitors to hold
+     * @param from Index of the first monitor not held yet
+     * @param action Action to run with every monitor held
+     * @return Result of the action
+     * @throws IOException If the action fails
+     */
+    private static <R> R holding(List<Object> locks, int from, Locked<R> action) throws IOException {
+        if (from == locks.size()) {
+            return action.run();
+        }
+        synchronized (locks.get(from)) {
+            return holding(locks, from + 1, action);
+        }
+    }
+
+    /**
+     * Copy a product with another quantity
+     *
+     * @param product {@link Product} to copy
+     * @param quantity Quantity of the copy
+     * @return New {@link Product}
+     */
+    private static Product withQuantity(Product product, int quantity) {
+        return new Product(product.getId(), product.getName(), product.getPrice(), quantity,
+                           product.getDescription(), product.getCategory(), product.isOwnerRecommended());
+    }
+
+    /**
+     * Read a customer from its JSON tree
+     *
+     * purchasedProducts repeats purchasedIds and would be read into the same
+     * list, adding every id twice, so only purchasedIds is read
+     *
+     * @param tree Serialized {@link Customer customer}
+     * @return New {@link Customer}
+     * @throws IOException If the tree is not a customer
+     */
+    private Customer readCustomer(JsonNode tree) throws IOException {
+        ObjectNode fields = ((ObjectNode) tree).deepCopy();
+        fields.remove("purchasedProducts");
+        return objectMapper.treeToValue(fields, Customer.class);
+    }
+
+    /**
+     * Stage the changes of a journaled checkout in the stores
+     *
+     * @param record Journal entry of the checkout
+     * @param replaying True to skip changes whose record no longer matches its before image
+     * @throws IOException If a change cannot be applied
+     */
+    private void apply(JsonNode record, boolean replaying) throws IOException {
+        JsonNode productsBefore = record.get("productsBefore");
+        JsonNode products = record.get("products");
+        for (int i = 0; i < products.size(); i++) {
+            Product product = objectMapper.treeToValue(products.get(i), Product.class);
+            if (!replaying || unchanged(productDAO.getProduct(product.getId()), productsBefore.get(i))) {
+                stage(productDAO, product, productDAO::updateProduct);
+            }
+        }
+
+        Order order = objectMapper.treeToValue(record.get("order"), Order.class);
+        if (!replaying || orderDAO.getOrder(order.getId()) == null) {
+            stage(orderDAO, order, null);
+        }
+
+        Cart cart = objectMapper.treeToValue(record.get("cart"), Cart.class);
+        if (!replaying || unchanged(cartDAO.getCart(cart.getId()), record.get("cartBefore"))) {
+            stage(cartDAO, cart, cartDAO::updateCart);
+        }
+
+        Customer customer = readCustomer(record.get("customer"));
+        if (!replaying || unchanged(customerDAO.getCustomer(customer.getId()), record.get("customerBefore"))) {
+            stage(customerDAO, customer, customerDAO::updateCustomer);
+        }
+    }
+
+    /**
+     * Check if a record is still the way it was before a checkout
+     *
+     * @param current Record as it is now, null if it is gone
+     * @param before Record before the checkout
+     * @return True if the checkout has not reached the record yet
+     */
+    private boolean unchanged(Object current, JsonNode before) {
+        return current != null && objectMapper.valueToTree(current).equals(before);
+    }
+
+    /**
+     * Stage a change in a store, or write it through the DAO if the store cannot stage
+     *
+     * @param <T> Type of record changed
+     * @param dao DAO of the store
+     * @param record Record as it is now
+     * @param update Writes the record through the DAO, null if the DAO always stages
+     * @throws IOException If the change cannot be applied
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void stage(Object dao, T record, Update<T> update) throws IOException {
+        if (dao instanceof Stageable) {
+            ((Stageable<T>) dao).stage(record);
+            staged.add((Stageable<T>) dao);
+        }
+        else {
+            update.apply(record);
+        }
+    }
+
+    /**
+     * Wait until every store the journal covers is loaded
+     *
+     * @throws IOException If a store failed to load
+     */
+    private void awaitStores() throws IOException {
+        if (loader != null) {
+            loader.await(true);
+        }
+    }
+
+    /**
+     * Reapply every journaled checkout the stores may not hold yet, unless this is a replication follower
+     *
+     * @throws IOException If the journal cannot be read or a change applied
+     */
+    private void replay() throws IOException {
+        if (readOnly) {
+            return;
+        }
+        List<JsonNode> records = new ArrayList<>();
+        journal.replay(entry -> records.add(entry.getValue()));
+        if (records.isEmpty()) {
+            return;
+        }
+
+        awaitStores();
+        for (JsonNode record : records) {
+            apply(record, true);
+        }
+        LOG.info("Replayed " + records.size() + " journaled checkouts");
+        checkpoint();
+    }
+
+    /**
+     * Flush the stores the journal staged changes into and empty the journal
+     *
+     * Does nothing if no checkout was journaled or staged since the last
+     * checkpoint, so an idle shutdown leaves the data files alone, or on a
+     * replication follower
+     *
+     * @throws IOException If a store cannot be flushed
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (readOnly || journal.size() == 0 && staged.isEmpty()) {
+            return;
+        }
+        for (ManagedStore store : staged) {
+            store.flush();
+        }
+        staged.clear();
+        journal.reset();
+    }
+
+    /**
+     * Run an action while no checkout is in progress, so it sees all or none of the changes of every checkout
+     *
+     * @param <R> Type of result
+     * @param action Action to run, it should only take moments
+     * @return Result of the action
+     */
+    public synchronized <R> R betweenCheckouts(Supplier<R> action) {
+        return action.get();
+    }
+
+    /**
+     * Get the number of checkouts journaled since the last checkpoint
+     *
+     * @return Journal entries
+     */
+    public int size() {
+        return journal.size();
+    }
+
+    /**
+     * Checkpoint and close the journal on shutdown, before the stores close
+     *
+     * @throws IOException If a store cannot be flushed
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        checkpoint();
+        journal.close();
+    }
+}
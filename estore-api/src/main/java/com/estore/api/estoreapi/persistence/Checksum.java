@@ -0,0 +1,62 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 checksums of the files the stores write
+ */
+final class Checksum {
+    private Checksum() {
+    }
+
+    /**
+     * Create a SHA-256 digest
+     *
+     * @return New digest
+     */
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checksum the contents of a file
+     *
+     * @param file File to read
+     * @return SHA-256 of the file in hex
+     * @throws IOException If the file cannot be read
+     */
+    static String sha256(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * Format bytes as lowercase hex
+     *
+     * @param bytes Bytes to format
+     * @return Two hex digits per byte
+     */
+    static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
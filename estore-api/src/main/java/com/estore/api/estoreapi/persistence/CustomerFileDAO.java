@@ -1,15 +1,18 @@
 package com.estore.api.estoreapi.persistence;
 
-import java.util.Map;
 import java.util.logging.Logger;
 import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.io.IOException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import java.io.File;
-import java.util.TreeMap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+
+import javax.annotation.PreDestroy;
 
 import com.estore.api.estoreapi.model.Customer;
 
@@ -19,44 +22,104 @@ import com.estore.api.estoreapi.model.Customer;
  * @author Matt London
  */
 @Component
-public class CustomerFileDAO  implements CustomerDAO {
+@ConditionalOnProperty(name = "persistence.backend", havingValue = "file", matchIfMissing = true)
+public class CustomerFileDAO  implements CustomerDAO, Stageable<Customer>, Replicable, Snapshottable {
     private static final Logger LOG = Logger.getLogger(CustomerFileDAO.class.getName());
     
     /** Maps ids to their corresponding {@link Customer} */
-    Map<Integer, Customer> customerMap;
+    IntObjectMap<Customer> customerMap;
 
-    /** JSON serializer/deserializer */
-    private ObjectMapper objectMapper;
+    /** Hands out the ids of new customers */
+    private IdAllocator ids;
 
-    /** Next id to assign */
-    private static int nextId;
+    /** Keeps the data file in sync with customerMap */
+    private FileStore<Customer> fileStore;
 
-    /** Filename of the json to store the info in */
-    private String filename;
+    /**
+     * Build the {@link CustomerFileDAO} with the given filename and the default persistence settings,
+     * ids are kept in memory
+     * 
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public CustomerFileDAO(String filename, ObjectMapper objectMapper) throws IOException {
+        this(filename, objectMapper, new PersistenceProperties(), new IdAllocator());
+    }
 
     /**
      * Build the {@link CustomerFileDAO} with the given filename
      * 
      * @param filename Filename to store the data in
      * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
      * 
      * @throws IOException If there is an error reading the file
      */
-    public CustomerFileDAO(@Value("${customers.file}") String filename, ObjectMapper objectMapper) throws IOException {
-        this.filename = filename;
-        this.objectMapper = objectMapper;
-        load();
+    public CustomerFileDAO(@Value("${customers.file}") String filename, ObjectMapper objectMapper,
+                           PersistenceProperties properties) throws IOException {
+        this(filename, objectMapper, properties, IdAllocator.forFile(filename, properties));
     }
 
     /**
-     * Gets next id and increments it
+     * Build the {@link CustomerFileDAO} loaded on the {@link StoreLoader} alongside the other stores
      * 
-     * Syncronized to prevent multiple threads from accessing nextId concurrently
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param loader Loads the data file alongside the other stores
      * 
-     * @return The next id to assign
+     * @throws IOException If there is an error reading the file
      */
-    private synchronized static int getNextId() {
-        return nextId++;
+    @Autowired
+    public CustomerFileDAO(@Value("${customers.file}") String filename, ObjectMapper objectMapper,
+                           PersistenceProperties properties, StoreLoader loader) throws IOException {
+        this(filename, objectMapper, properties, IdAllocator.forFile(filename, properties), loader);
+    }
+
+    /**
+     * Build the {@link CustomerFileDAO} with its own id allocator
+     * 
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param ids Hands out the ids of new customers
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public CustomerFileDAO(String filename, ObjectMapper objectMapper, PersistenceProperties properties,
+                           IdAllocator ids) throws IOException {
+        this(filename, objectMapper, properties, ids, null);
+    }
+
+    /**
+     * Build the {@link CustomerFileDAO} with its own id allocator, loaded on a {@link StoreLoader}
+     * 
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param ids Hands out the ids of new customers
+     * @param loader Loads the data file alongside the other stores, null to load it now
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public CustomerFileDAO(String filename, ObjectMapper objectMapper, PersistenceProperties properties,
+                           IdAllocator ids, StoreLoader loader) throws IOException {
+        this.ids = ids;
+        this.customerMap = new IntObjectMap<>();
+        this.fileStore = new FileStore<>(filename, objectMapper, Customer[].class, Customer::getId,
+                                         this::getCustomersArray, customerMap, properties);
+        if (loader == null) {
+            load();
+            fileStore.watch(this::reloaded);
+        }
+        else {
+            fileStore.awaitBeforeUse(loader.submit("customers", false, () -> {
+                load();
+                fileStore.watch(this::reloaded);
+            }));
+        }
     }
 
     /**
@@ -95,37 +158,37 @@ public class CustomerFileDAO  implements CustomerDAO {
     }
 
     /**
-     * Saves {@link Customer} to the DAO file
+     * Load all {@link Customer}s from file and set into map
      * 
-     * @throws IOException If there is an error writing to the file
+     * @throws IOException If there is an error reading the file
      */
-    private void save() throws IOException{
-        Customer[] allCustomers = getCustomersArray();
+    private void load() throws IOException {
+        customerMap.clear();
+
+        fileStore.load(customerMap);
 
-        objectMapper.writeValue(new File(filename), allCustomers);
+        // Never hand out an id already stored
+        for (int id : customerMap.keySet()) {
+            ids.skipPast(id);
+        }
     }
 
     /**
-     * Load all {@link Customer}s from file and set into map
+     * Apply the {@link Customer customers} another program changed in the data file
      * 
-     * @throws IOException If there is an error reading the file
+     * @param changed {@link Customer Customers} added or changed
+     * @param removed Ids of the {@link Customer customers} removed
      */
-    private void load() throws IOException {
-        customerMap = new TreeMap<>();
-        nextId = 0;
-
-        Customer[] customersSerialized = objectMapper.readValue(new File(filename), Customer[].class);
-
-        // Save all customers into map and find next id
-        for (Customer customer: customersSerialized) {
-            customerMap.put(customer.getId(), customer);
-            if (customer.getId() > nextId) {
-                nextId = customer.getId();
+    private void reloaded(List<Customer> changed, List<Integer> removed) {
+        synchronized(customerMap) {
+            for (Customer customer : changed) {
+                customerMap.put(customer.getId(), customer);
+                ids.skipPast(customer.getId());
+            }
+            for (int id : removed) {
+                customerMap.remove(id);
             }
         }
-
-        // Increment ID
-        getNextId();
     }
 
     /**
@@ -165,12 +228,12 @@ public class CustomerFileDAO  implements CustomerDAO {
     @Override
     public Customer createCustomer(Customer customer) throws IOException {
         synchronized(customerMap) {
-            Customer customerTmp = new Customer(getNextId(), customer.getUsername(), customer.getName(),
+            Customer customerTmp = new Customer(ids.next(), customer.getUsername(), customer.getName(),
                                                 customer.getCartId(), customer.isAdmin(), customer.getPassword());
             
             // Add to map and save to DAO
             customerMap.put(customerTmp.getId(), customerTmp);
-            save();
+            fileStore.put(customerTmp);
 
             return customerTmp;
         }
@@ -188,7 +251,7 @@ public class CustomerFileDAO  implements CustomerDAO {
             }
 
             customerMap.put(customer.getId(), customer);
-            save();
+            fileStore.put(customer);
 
             return customer;
         }
@@ -208,10 +271,113 @@ public class CustomerFileDAO  implements CustomerDAO {
             // Otherwise remove it and save
             else {
                 customerMap.remove(id);
-                save();
+                fileStore.delete(id);
                 return true;
 
             }
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int reserveId() {
+        return ids.next();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stage(Customer customer) throws IOException {
+        synchronized(customerMap) {
+            customerMap.put(customer.getId(), customer);
+            fileStore.stage(customer);
+            ids.skipPast(customer.getId());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object lockFor(int id) {
+        return customerMap;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getReplicaName() {
+        return "customers";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void replicateTo(Consumer<MutationLog.Entry> feed) {
+        fileStore.feed(feed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<JsonNode> getReplicaSnapshot() {
+        return fileStore.serializedRecords();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void applyReplica(List<MutationLog.Entry> entries, boolean replaceAll) throws IOException {
+        fileStore.applyReplicated(entries, replaceAll);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSnapshotName() {
+        return "customers";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecordSnapshot snapshot() {
+        return fileStore.snapshot();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StoreStatus getStatus() {
+        return fileStore.getStatus();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        fileStore.flush();
+    }
+
+    /**
+     * Flush any outstanding changes to the data file on shutdown
+     * 
+     * @throws IOException If there is an error writing to the file
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        fileStore.close();
+        ids.close();
+    }
 }
@@ -0,0 +1,138 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches one data file and runs a task once it has changed and settled
+ *
+ * The directory of the file is registered with a {@link WatchService} and a
+ * daemon thread waits for events on the file. An editor or copy usually
+ * writes a file in several steps, so after an event the thread waits until
+ * no further event arrives for the settle time before running the task once
+ */
+public class DataFileWatcher {
+    private static final Logger LOG = Logger.getLogger(DataFileWatcher.class.getName());
+
+    /**
+     * Runs when the file changed
+     */
+    public interface Task {
+        void run() throws IOException;
+    }
+
+    /** Name of the watched file within its directory */
+    private Path fileName;
+
+    /** Receives the events of the directory */
+    private WatchService watchService;
+
+    /** Waits for events and runs the task */
+    private Thread thread;
+
+    /** Quiet time after an event before the task runs */
+    private long settleMillis;
+
+    /** Runs when the file changed */
+    private Task task;
+
+    /**
+     * Start watching a file
+     *
+     * @param file File to watch, its directory must exist
+     * @param settleMillis Quiet time after a change before the task runs
+     * @param task Runs when the file changed
+     * @throws IOException If the directory cannot be watched
+     */
+    public DataFileWatcher(Path file, long settleMillis, Task task) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        this.fileName = absolute.getFileName();
+        this.settleMillis = settleMillis;
+        this.task = task;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        absolute.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                      StandardWatchEventKinds.ENTRY_MODIFY);
+
+        this.thread = new Thread(this::watch, "watch " + absolute);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Check if a key holds an event on the watched file, and reset it
+     *
+     * @param key Key of the directory
+     * @return True if the file was created or modified
+     */
+    private boolean touchesFile(WatchKey key) {
+        boolean touched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // An overflow may have dropped an event on the file
+            touched |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+        }
+        key.reset();
+        return touched;
+    }
+
+    /**
+     * Wait for changes to the file until closed
+     */
+    private void watch() {
+        try {
+            while (true) {
+                if (!touchesFile(watchService.take())) {
+                    continue;
+                }
+
+                // Wait until the file has been left alone for the settle time, other files may keep changing
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settleMillis);
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    WatchKey more = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (more == null) {
+                        break;
+                    }
+                    if (touchesFile(more)) {
+                        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settleMillis);
+                    }
+                }
+
+                try {
+                    task.run();
+                }
+                catch (IOException | RuntimeException e) {
+                    LOG.log(Level.WARNING, "Reloading " + fileName + " failed, waiting for the next change", e);
+                }
+            }
+        }
+        catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed
+        }
+    }
+
+    /**
+     * Stop watching and wait for a running task to finish
+     *
+     * @throws IOException If the watch service cannot be closed
+     */
+    public void close() throws IOException {
+        watchService.close();
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+/**
+ * Encoding of a data file
+ *
+ * JSON is the original text format. Smile is Jackson's binary equivalent of
+ * JSON, it writes each property name once and refers back to it afterwards
+ * and stores numbers in binary, so files are smaller and faster to parse
+ */
+public enum DataFormat {
+    JSON,
+    SMILE;
+
+    /** First bytes of every Smile document */
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+    /**
+     * Get the format a data file should be written in
+     *
+     * A .smile or .sml extension always selects Smile, otherwise the format
+     * comes from the persistence.format setting
+     *
+     * @param filename Filename of the data file
+     * @param properties Persistence settings
+     * @return Format to write the file in
+     */
+    public static DataFormat of(String filename, PersistenceProperties properties) {
+        if (filename.endsWith(".smile") || filename.endsWith(".sml")) {
+            return SMILE;
+        }
+        return "smile".equalsIgnoreCase(properties.getFormat()) ? SMILE : JSON;
+    }
+
+    /**
+     * Find the format an existing data file is written in from its first bytes
+     *
+     * @param file Data file
+     * @return Format of the file, JSON if it is missing or not Smile
+     * @throws IOException If the file cannot be read
+     */
+    public static DataFormat detect(File file) throws IOException {
+        if (!file.isFile()) {
+            return JSON;
+        }
+
+        byte[] header = new byte[SMILE_HEADER.length];
+        try (InputStream in = new FileInputStream(file)) {
+            int read = in.readNBytes(header, 0, header.length);
+            return read == header.length && Arrays.equals(header, SMILE_HEADER) ? SMILE : JSON;
+        }
+    }
+
+    /**
+     * Find the format of the contents of a data file from their first bytes
+     *
+     * @param contents Contents of the data file
+     * @return Format of the contents, JSON if they are not Smile
+     */
+    public static DataFormat detect(byte[] contents) {
+        return contents.length >= SMILE_HEADER.length
+               && Arrays.equals(contents, 0, SMILE_HEADER.length, SMILE_HEADER, 0, SMILE_HEADER.length) ? SMILE : JSON;
+    }
+
+    /**
+     * Get a mapper that reads and writes this format with the settings of the JSON mapper
+     *
+     * @param json Mapper configured for the application
+     * @return The JSON mapper itself for JSON, a Smile mapper sharing its configuration otherwise
+     */
+    public ObjectMapper mapper(ObjectMapper json) {
+        if (this == JSON) {
+            return json;
+        }
+
+        SmileMapper smile = new SmileMapper();
+        smile.findAndRegisterModules();
+        smile.setConfig(json.getSerializationConfig());
+        smile.setConfig(json.getDeserializationConfig());
+        return smile;
+    }
+}
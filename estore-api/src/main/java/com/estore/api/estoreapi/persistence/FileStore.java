@@ -0,0 +1,1182 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Keeps the data file of a FileDAO in sync with its in-memory map
+ *
+ * By default every change rewrites the whole data file. With the mutation log
+ * enabled a change only appends one record to filename.log, and the log is
+ * folded back into the data file every checkpoint interval and on shutdown.
+ * In write-behind mode a change only marks the store dirty and a background
+ * thread rewrites the data file every write-behind interval
+ *
+ * The data file is written in the configured {@link DataFormat}, a file found
+ * in the other format on load is rewritten in the configured one
+ *
+ * With hot reload enabled a {@link DataFileWatcher} notices when another
+ * program changes the data file. The file is compared with the records this
+ * store last read or wrote, and only the records changed, added or removed
+ * are handed to the DAO, so its own unflushed changes to other records stay
+ *
+ * A store can also feed every change to a {@link ReplicationLeader}, and a
+ * store on a follower instance applies the changes of its leader through the
+ * same listener as a reload, without writing them to its own files
+ *
+ * With warm start enabled the records the data file holds are written to
+ * filename.image in Smile on shutdown, together with the size and SHA-256
+ * checksum of the data file. The next load reads the image instead of
+ * parsing the data file as long as the data file still matches them,
+ * otherwise the image is ignored and the data file parsed as usual
+ *
+ * @param <T> Type of record held in the store
+ */
+public class FileStore<T> {
+    private static final Logger LOG = Logger.getLogger(FileStore.class.getName());
+
+    /** Layout of the warm-start image, an image of another version is ignored */
+    private static final int IMAGE_VERSION = 1;
+
+    /**
+     * Applies the records another program or the replication leader changed
+     *
+     * @param <T> Type of record held in the store
+     */
+    public interface ReloadListener<T> {
+        /**
+         * Apply the changes, called while the DAO lock is held
+         *
+         * @param changed Records added or changed
+         * @param removed Ids of the records removed
+         */
+        void reloaded(List<T> changed, List<Integer> removed);
+    }
+
+    /**
+     * Size, modification time and identity of the data file, to recognize the
+     * file as this store wrote it
+     */
+    private static final class FileStamp {
+        final long size;
+        final FileTime modified;
+        final Object key;
+
+        FileStamp(BasicFileAttributes attributes) {
+            this.size = attributes.size();
+            this.modified = attributes.lastModifiedTime();
+            this.key = attributes.fileKey();
+        }
+
+        /**
+         * Read the stamp of a file
+         *
+         * @param path File to read
+         * @return Stamp, or null if the file does not exist
+         * @throws IOException If the attributes cannot be read
+         */
+        static FileStamp of(Path path) throws IOException {
+            try {
+                return new FileStamp(Files.readAttributes(path, BasicFileAttributes.class));
+            }
+            catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FileStamp)) {
+                return false;
+            }
+            FileStamp other = (FileStamp) obj;
+            return size == other.size && modified.equals(other.modified) && Objects.equals(key, other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, modified, key);
+        }
+    }
+
+    /** Filename of the json the records are stored in */
+    private String filename;
+
+    /** JSON serializer/deserializer */
+    private ObjectMapper objectMapper;
+
+    /** Format the data file is written in */
+    private DataFormat format;
+
+    /** Serializer/deserializer of the data file format */
+    private ObjectMapper dataMapper;
+
+    /** Array type the data file is read as */
+    private Class<T[]> arrayType;
+
+    /** Gets the id of a record */
+    private ToIntFunction<T> idOf;
+
+    /** Gets every record currently held by the DAO */
+    private Supplier<T[]> snapshot;
+
+    /** Monitor the DAO holds while changing its records */
+    private Object lock;
+
+    /** Log of changes since the last checkpoint, null when disabled */
+    private MutationLog mutationLog;
+
+    /** Mutations to log before checkpointing */
+    private int checkpointInterval;
+
+    /** Size of the data file above which it is streamed on load */
+    private long streamThreshold;
+
+    /** How often progress is logged while the data file is streamed */
+    private long progressInterval;
+
+    /** Background thread of the write-behind mode, null when disabled */
+    private ScheduledExecutorService flusher;
+
+    /** Whether the flusher was created for this store, a shared one is left running on close */
+    private boolean ownsFlusher;
+
+    /** Scheduled write-behind flush of this store, null when disabled */
+    private ScheduledFuture<?> flushTask;
+
+    /** Serializes write-behind flushes so only one writes the file at a time */
+    private final Object flushLock = new Object();
+
+    /** Number of changes made since the store was loaded */
+    private final AtomicLong changes = new AtomicLong();
+
+    /** Value of changes covered by the last write-behind flush */
+    private volatile long flushedChanges;
+
+    /** Time of the oldest change not yet flushed, 0 when clean */
+    private volatile long oldestUnflushed;
+
+    /** True on a replication follower, whose records come from the leader and are never written to its files */
+    private boolean readOnly;
+
+    /** True to reload the data file when another program changes it */
+    private boolean hotReload;
+
+    /** Quiet time after a change to the data file before it is reloaded */
+    private long hotReloadSettleMillis;
+
+    /** Watches the data file, null until {@link #watch} is called with hot reload enabled */
+    private DataFileWatcher watcher;
+
+    /** Applies the records changed by another program or the replication leader */
+    private volatile ReloadListener<T> reloadListener;
+
+    /** Receives every change made through this store, null unless it is replicated */
+    private volatile Consumer<MutationLog.Entry> changeFeed;
+
+    /** Load of the DAO running on the {@link StoreLoader}, null once it is done or if the DAO loaded itself */
+    private volatile StoreLoader.Load pendingLoad;
+
+    /** Held while the data file is replaced or compared with what was last written, after the DAO lock */
+    private final Object fileLock = new Object();
+
+    /** Records the data file held when this store last read or wrote it, only kept with hot reload or warm start */
+    private T[] written;
+
+    /** Stamp of the data file when this store last read or wrote it */
+    private FileStamp writtenStamp;
+
+    /** Warm-start image of the data file, null when disabled */
+    private Path image;
+
+    /** Serializer/deserializer of the warm-start image */
+    private ObjectMapper imageMapper;
+
+    /**
+     * Create the store for a data file
+     *
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param arrayType Array type the data file is read as
+     * @param idOf Gets the id of a record
+     * @param snapshot Gets every record currently held by the DAO
+     * @param lock Monitor the DAO holds while changing its records
+     * @param properties Persistence settings
+     */
+    public FileStore(String filename, ObjectMapper objectMapper, Class<T[]> arrayType, ToIntFunction<T> idOf,
+                     Supplier<T[]> snapshot, Object lock, PersistenceProperties properties) {
+        this(filename, objectMapper, arrayType, idOf, snapshot, lock, properties, null);
+    }
+
+    /**
+     * Create the store for a data file, running its write-behind flushes on a shared executor
+     *
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param arrayType Array type the data file is read as
+     * @param idOf Gets the id of a record
+     * @param snapshot Gets every record currently held by the DAO
+     * @param lock Monitor the DAO holds while changing its records
+     * @param properties Persistence settings
+     * @param sharedFlusher Executor the write-behind flushes run on, null to give the store a thread of its own
+     */
+    public FileStore(String filename, ObjectMapper objectMapper, Class<T[]> arrayType, ToIntFunction<T> idOf,
+                     Supplier<T[]> snapshot, Object lock, PersistenceProperties properties,
+                     ScheduledExecutorService sharedFlusher) {
+        this.filename = filename;
+        this.objectMapper = objectMapper;
+        this.arrayType = arrayType;
+        this.idOf = idOf;
+        this.snapshot = snapshot;
+        this.lock = lock;
+        this.checkpointInterval = properties.getCheckpointInterval();
+        this.streamThreshold = properties.getStreamThresholdBytes();
+        this.progressInterval = properties.getLoadProgressIntervalMillis();
+        this.format = DataFormat.of(filename, properties);
+        this.dataMapper = format.mapper(objectMapper);
+        this.readOnly = "follower".equals(properties.getReplicationRole());
+        this.hotReload = properties.isHotReload();
+        this.hotReloadSettleMillis = properties.getHotReloadSettleMillis();
+        if (properties.isWarmStart()) {
+            this.image = Paths.get(filename + ".image");
+            this.imageMapper = DataFormat.SMILE.mapper(objectMapper);
+        }
+
+        // A follower neither logs nor flushes, every change ends at save() which writes nothing
+        if (properties.isLogEnabled() && !readOnly) {
+            this.mutationLog = new MutationLog(Paths.get(filename + ".log"), objectMapper, properties.isLogSync());
+        }
+
+        if (properties.isWriteBehind() && !readOnly) {
+            long interval = properties.getWriteBehindIntervalMillis();
+            this.ownsFlusher = sharedFlusher == null;
+            this.flusher = ownsFlusher ? newFlusher("write-behind " + filename) : sharedFlusher;
+            this.flushTask = flusher.scheduleWithFixedDelay(this::flushInBackground, interval, interval,
+                                                            TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Create the executor write-behind flushes run on
+     *
+     * @param name Name of its thread
+     * @return Executor with a single daemon thread
+     */
+    public static ScheduledExecutorService newFlusher(String name) {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the name of the data file
+     *
+     * @return Filename of the store
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Get the type of the records in the store
+     *
+     * @return Record class
+     */
+    @SuppressWarnings("unchecked")
+    private Class<T> getRecordType() {
+        return (Class<T>) arrayType.getComponentType();
+    }
+
+    /**
+     * Copy records into an array of the record type
+     *
+     * @param records Records to copy
+     * @return New array
+     */
+    @SuppressWarnings("unchecked")
+    private T[] toArray(Collection<T> records) {
+        return records.toArray((T[]) Array.newInstance(getRecordType(), records.size()));
+    }
+
+    /**
+     * Load the data file into the map, then replay any logged changes on top of it
+     *
+     * A data file above the stream threshold is parsed one record at a time so
+     * the whole array is never held next to the map. A data file in another
+     * format than the configured one is upgraded in place, the original is
+     * kept as filename.bak
+     *
+     * @param map Map to fill with the records keyed by id
+     * @throws IOException If the data file or log cannot be read
+     */
+    public void load(Map<Integer, T> map) throws IOException {
+        File file = new File(filename);
+        DataFormat found = file.length() > 0 ? DataFormat.detect(file) : format;
+        ObjectMapper reader = found == format ? dataMapper : found.mapper(objectMapper);
+
+        long start = System.nanoTime();
+        int loaded;
+        T[] warm = readImage(file);
+        if (warm != null) {
+            for (T record : warm) {
+                map.put(loadedId(record, image.toString()), record);
+            }
+            loaded = warm.length;
+        }
+        else if (file.length() > streamThreshold) {
+            loaded = stream(file, reader, map);
+        }
+        else {
+            T[] serialized = reader.readValue(file, arrayType);
+            for (T record : serialized) {
+                map.put(loadedId(record, filename), record);
+            }
+            loaded = serialized.length;
+        }
+        logRate(warm != null ? "Loaded the image of" : "Loaded", loaded, start);
+        remember(toArray(map.values()), FileStamp.of(file.toPath()));
+
+        if (found != format && !readOnly) {
+            upgrade(file, found, map);
+        }
+
+        if (mutationLog != null) {
+            Class<T> type = getRecordType();
+            mutationLog.replay(entry -> {
+                if (entry.getOperation() == MutationLog.Operation.DELETE) {
+                    map.remove(entry.getId());
+                    return;
+                }
+                if (entry.getId() < 0) {
+                    LOG.warning("Skipping logged record of " + filename + " with the negative id " + entry.getId());
+                    return;
+                }
+                try {
+                    map.put(entry.getId(), objectMapper.treeToValue(entry.getValue(), type));
+                }
+                catch (JsonProcessingException e) {
+                    LOG.log(Level.WARNING, "Skipping unreadable record " + entry.getId(), e);
+                }
+            });
+
+            if (mutationLog.size() > 0) {
+                LOG.info("Replayed " + mutationLog.size() + " logged changes onto " + filename);
+            }
+        }
+    }
+
+    /**
+     * Get the id of a record read from a file
+     *
+     * The DAOs keep their records in arrays indexed by id, so an id must not
+     * be negative. The file is rejected as a whole rather than losing the record
+     *
+     * @param record Record read
+     * @param source File the record was read from
+     * @return Id of the record
+     * @throws IOException If the id is negative
+     */
+    private int loadedId(T record, String source) throws IOException {
+        int id = idOf.applyAsInt(record);
+        if (id < 0) {
+            throw new IOException(source + " holds a " + getRecordType().getSimpleName() + " with the negative id "
+                                  + id + ", ids must be 0 or more");
+        }
+        return id;
+    }
+
+    /**
+     * Parse the data file record by record into the map, logging progress as it goes
+     *
+     * @param file Data file holding an array of records
+     * @param reader Deserializer of the format of the file
+     * @param map Map to fill with the records keyed by id
+     * @return Number of records read
+     * @throws IOException If the data file cannot be read
+     */
+    private int stream(File file, ObjectMapper reader, Map<Integer, T> map) throws IOException {
+        long total = file.length();
+        long start = System.nanoTime();
+        long nextReport = System.currentTimeMillis() + progressInterval;
+        int loaded = 0;
+
+        try (MappingIterator<T> records = reader.readerFor(getRecordType()).readValues(file)) {
+            while (records.hasNextValue()) {
+                T record = records.nextValue();
+                map.put(loadedId(record, filename), record);
+                loaded++;
+
+                if (System.currentTimeMillis() >= nextReport) {
+                    long read = records.getParser().getCurrentLocation().getByteOffset();
+                    logRate("Streamed " + (read * 100 / total) + "% of", loaded, start);
+                    nextReport += progressInterval;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Read the records from the warm-start image if it still matches the data file
+     *
+     * The header is checked before any record is read, a stale or unreadable
+     * image only costs the checksum of the data file
+     *
+     * @param file Data file the image was taken of
+     * @return Records of the data file, or null if there is no usable image
+     */
+    private T[] readImage(File file) {
+        if (image == null || !Files.isRegularFile(image)) {
+            return null;
+        }
+
+        try (JsonParser parser = imageMapper.getFactory().createParser(image.toFile())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Not an image");
+            }
+            int version = 0;
+            String type = null;
+            long dataBytes = -1;
+            String dataSha256 = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "version":
+                        version = parser.getIntValue();
+                        break;
+                    case "type":
+                        type = parser.getText();
+                        break;
+                    case "dataBytes":
+                        dataBytes = parser.getLongValue();
+                        break;
+                    case "dataSha256":
+                        dataSha256 = parser.getText();
+                        break;
+                    case "records":
+                        String stale = version != IMAGE_VERSION ? "version " + version
+                                     : !getRecordType().getName().equals(type) ? "records of type " + type
+                                     : dataBytes != file.length() ? "data file size changed"
+                                     : !Checksum.sha256(file.toPath()).equals(dataSha256) ? "data file checksum changed"
+                                     : null;
+                        if (stale != null) {
+                            LOG.info("Ignoring the image of " + filename + ", " + stale);
+                            return null;
+                        }
+                        return imageMapper.readValue(parser, arrayType);
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            throw new IOException("No records");
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Ignoring unreadable image " + image, e);
+            return null;
+        }
+    }
+
+    /**
+     * Write the records the data file holds to the warm-start image
+     *
+     * No image is left when the data file changed since this store last read
+     * or wrote it, its records would not match the file
+     *
+     * @throws IOException If the image cannot be written
+     */
+    private void writeImage() throws IOException {
+        long start = System.nanoTime();
+        Path data = Paths.get(filename);
+        Path part = Paths.get(image + ".part");
+        T[] records;
+        synchronized (fileLock) {
+            records = written;
+            if (records == null) {
+                // Never loaded, an image already there still describes the data file
+                return;
+            }
+            if (writtenStamp == null || !writtenStamp.equals(FileStamp.of(data))) {
+                Files.deleteIfExists(image);
+                return;
+            }
+
+            try (JsonGenerator generator = imageMapper.getFactory().createGenerator(part.toFile(),
+                                                                                    JsonEncoding.UTF8)) {
+                generator.writeStartObject();
+                generator.writeNumberField("version", IMAGE_VERSION);
+                generator.writeStringField("type", getRecordType().getName());
+                generator.writeNumberField("dataBytes", writtenStamp.size);
+                generator.writeStringField("dataSha256", Checksum.sha256(data));
+                generator.writeFieldName("records");
+                imageMapper.writeValue(generator, records);
+                generator.writeEndObject();
+            }
+        }
+        Files.move(part, image, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logRate("Wrote the image of", records.length, start);
+    }
+
+    /**
+     * Rewrite a data file loaded in another format in the configured format
+     *
+     * The original file is copied to filename.bak first, the data file itself
+     * is replaced atomically
+     *
+     * @param file Data file that was loaded
+     * @param found Format the file was written in
+     * @param map Records read from the file keyed by id
+     * @throws IOException If the file cannot be rewritten
+     */
+    private void upgrade(File file, DataFormat found, Map<Integer, T> map) throws IOException {
+        long before = file.length();
+        Files.copy(file.toPath(), Paths.get(filename + ".bak"), StandardCopyOption.REPLACE_EXISTING);
+        T[] records = toArray(map.values());
+        replaceDataFile(dataMapper.writeValueAsBytes(records), records);
+        LOG.info("Converted " + filename + " from " + found + " to " + format + ": " + before + " bytes to "
+                 + file.length() + " bytes, original kept as " + filename + ".bak");
+    }
+
+    /**
+     * Log how many records were read and at what rate
+     *
+     * @param action What was done with the records
+     * @param records Number of records read
+     * @param start {@link System#nanoTime()} when reading started
+     */
+    private void logRate(String action, int records, long start) {
+        long elapsed = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        LOG.info(action + " " + filename + ": " + records + " records in " + elapsed + " ms ("
+                 + (records * 1000L / elapsed) + " records/sec)");
+    }
+
+    /**
+     * Hold back changes and copies of the records until a load running on the {@link StoreLoader} is done
+     *
+     * @param load Load of the DAO
+     */
+    public void awaitBeforeUse(StoreLoader.Load load) {
+        this.pendingLoad = load;
+    }
+
+    /**
+     * Wait until the DAO has loaded, so a write never replaces the data file with a partly loaded store
+     *
+     * @throws IOException If the load failed
+     */
+    public void awaitLoad() throws IOException {
+        StoreLoader.Load load = pendingLoad;
+        if (load != null) {
+            load.await();
+            if (load.isDone()) {
+                pendingLoad = null;
+            }
+        }
+    }
+
+    /**
+     * Wait until the DAO has loaded, for callers that cannot throw an IOException
+     */
+    private void awaitLoadUnchecked() {
+        try {
+            awaitLoad();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Record that a record was created or updated
+     *
+     * @param record Record as it is now
+     * @throws IOException If the change cannot be persisted
+     */
+    public void put(T record) throws IOException {
+        awaitLoad();
+        MutationLog.Entry entry = mutationLog != null || changeFeed != null ? putEntry(record) : null;
+        if (flusher != null) {
+            markDirty();
+        }
+        else if (mutationLog == null) {
+            save();
+        }
+        else {
+            mutationLog.append(entry);
+            checkpointIfDue();
+        }
+        publish(entry);
+    }
+
+    /**
+     * Record that a record was deleted
+     *
+     * @param id Id of the deleted record
+     * @throws IOException If the change cannot be persisted
+     */
+    public void delete(int id) throws IOException {
+        awaitLoad();
+        if (flusher != null) {
+            markDirty();
+        }
+        else if (mutationLog == null) {
+            save();
+        }
+        else {
+            mutationLog.append(new MutationLog.Entry(MutationLog.Operation.DELETE, id, null));
+            checkpointIfDue();
+        }
+        if (changeFeed != null) {
+            publish(new MutationLog.Entry(MutationLog.Operation.DELETE, id, null));
+        }
+    }
+
+    /**
+     * Record that several records were deleted with one save or one forced log write
+     *
+     * @param ids Ids of the deleted records
+     * @throws IOException If the change cannot be persisted
+     */
+    public void deleteAll(Collection<Integer> ids) throws IOException {
+        deleteAll(ids, true);
+    }
+
+    /**
+     * Record that several records were deleted with one save or one forced log write
+     *
+     * @param ids Ids of the deleted records
+     * @param replicate False to keep the deletes from the change feed, for records moved out of the
+     *                  data file that the DAO still serves
+     * @throws IOException If the change cannot be persisted
+     */
+    public void deleteAll(Collection<Integer> ids, boolean replicate) throws IOException {
+        awaitLoad();
+        if (flusher != null) {
+            markDirty();
+        }
+        else if (mutationLog == null) {
+            save();
+        }
+        else {
+            for (int id : ids) {
+                mutationLog.write(new MutationLog.Entry(MutationLog.Operation.DELETE, id, null));
+            }
+            mutationLog.force();
+            checkpointIfDue();
+        }
+        if (changeFeed != null && replicate) {
+            for (int id : ids) {
+                publish(new MutationLog.Entry(MutationLog.Operation.DELETE, id, null));
+            }
+        }
+    }
+
+    /**
+     * Record that a record was created or updated without making it durable yet,
+     * a later {@link #flush()} covers it
+     *
+     * @param record Record as it is now
+     * @throws IOException If the change cannot be persisted
+     */
+    public void stage(T record) throws IOException {
+        awaitLoad();
+        MutationLog.Entry entry = mutationLog != null || changeFeed != null ? putEntry(record) : null;
+        if (flusher != null) {
+            markDirty();
+        }
+        else if (mutationLog != null) {
+            mutationLog.write(entry);
+        }
+        publish(entry);
+    }
+
+    /**
+     * Make the log entry of a created or updated record
+     *
+     * @param record Record as it is now
+     * @return Entry putting the record
+     */
+    private MutationLog.Entry putEntry(T record) {
+        return new MutationLog.Entry(MutationLog.Operation.PUT, idOf.applyAsInt(record),
+                                     objectMapper.valueToTree(record));
+    }
+
+    /**
+     * Pass a change to the change feed, if the store is replicated
+     *
+     * @param entry Change to pass, ignored if null
+     */
+    private void publish(MutationLog.Entry entry) {
+        Consumer<MutationLog.Entry> feed = changeFeed;
+        if (feed != null && entry != null) {
+            feed.accept(entry);
+        }
+    }
+
+    /**
+     * Make every change so far durable, by forcing the log or rewriting the data file
+     *
+     * @throws IOException If the changes cannot be persisted
+     */
+    public void flush() throws IOException {
+        awaitLoad();
+        if (flusher != null) {
+            flushDirty();
+        }
+        else if (mutationLog == null) {
+            save();
+        }
+        else {
+            mutationLog.force();
+            synchronized (lock) {
+                checkpointIfDue();
+            }
+        }
+    }
+
+    /**
+     * Write every record to the data file, nothing is written on a replication follower
+     *
+     * @throws IOException If there is an error writing to the file
+     */
+    public void save() throws IOException {
+        awaitLoad();
+        if (readOnly) {
+            return;
+        }
+        synchronized (lock) {
+            // Uses the data file mapper to convert to json or smile and write to file
+            T[] records = snapshot.get();
+            synchronized (fileLock) {
+                File file = new File(filename);
+                dataMapper.writeValue(file, records);
+                remember(records, FileStamp.of(file.toPath()));
+            }
+        }
+    }
+
+    /**
+     * Fold the log into the data file once it holds enough changes
+     *
+     * @throws IOException If the checkpoint cannot be written
+     */
+    private void checkpointIfDue() throws IOException {
+        if (mutationLog.size() >= checkpointInterval) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Write every record to the data file and empty the log
+     *
+     * The data file is replaced atomically so a crash leaves either the old file
+     * and the full log or the new file, and replaying the log on either is safe.
+     * Only the entries logged before the records were captured are dropped, a
+     * DAO that logs without holding its lock may add entries in the meantime
+     *
+     * @throws IOException If the checkpoint cannot be written
+     */
+    public void checkpoint() throws IOException {
+        awaitLoad();
+        if (mutationLog == null) {
+            return;
+        }
+
+        synchronized (lock) {
+            int mark = mutationLog.size();
+            T[] records = snapshot.get();
+            replaceDataFile(dataMapper.writeValueAsBytes(records), records);
+            mutationLog.discard(mark);
+        }
+    }
+
+    /**
+     * Atomically replace the data file with new contents
+     *
+     * @param contents Serialized records
+     * @param records Records serialized in contents
+     * @throws IOException If the file cannot be written
+     */
+    private void replaceDataFile(byte[] contents, T[] records) throws IOException {
+        Path target = Paths.get(filename);
+        Path temp = Paths.get(filename + ".tmp");
+        synchronized (fileLock) {
+            Files.write(temp, contents);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            remember(records, FileStamp.of(target));
+        }
+    }
+
+    /**
+     * Remember what the data file holds, so the watcher can tell a change by
+     * another program from a write of this store
+     *
+     * @param records Records in the data file
+     * @param stamp Stamp of the data file
+     */
+    private void remember(T[] records, FileStamp stamp) {
+        synchronized (fileLock) {
+            written = hotReload || image != null ? records : null;
+            writtenStamp = stamp;
+        }
+    }
+
+    /**
+     * Set how changes made outside this store are applied, and start reloading
+     * the data file whenever another program changes it if hot reload is enabled,
+     * a follower takes its changes from the leader only
+     *
+     * @param listener Applies the records changed by another program or the replication leader
+     * @throws IOException If the data file cannot be watched
+     */
+    public void watch(ReloadListener<T> listener) throws IOException {
+        this.reloadListener = listener;
+        if (hotReload && !readOnly && watcher == null) {
+            this.watcher = new DataFileWatcher(Paths.get(filename), hotReloadSettleMillis, this::reload);
+        }
+    }
+
+    /**
+     * Pass every later change made through this store to a feed, called while the DAO lock is held
+     *
+     * @param feed Receives the changes in the order they are made, null to stop
+     */
+    public void feed(Consumer<MutationLog.Entry> feed) {
+        this.changeFeed = feed;
+    }
+
+    /**
+     * Get every record the DAO holds now, as serialized
+     *
+     * @return Records in id order
+     */
+    public List<JsonNode> serializedRecords() {
+        awaitLoadUnchecked();
+        T[] records;
+        synchronized (lock) {
+            records = snapshot.get();
+        }
+        List<JsonNode> serialized = new ArrayList<>(records.length);
+        for (T record : records) {
+            serialized.add(objectMapper.valueToTree(record));
+        }
+        return serialized;
+    }
+
+    /**
+     * Capture every record the DAO holds now, the lock is only held while the references are copied
+     *
+     * @return Records as of now
+     */
+    public RecordSnapshot snapshot() {
+        awaitLoadUnchecked();
+        synchronized (lock) {
+            return new RecordSnapshot(snapshot.get());
+        }
+    }
+
+    /**
+     * Apply changes received from the replication leader to the DAO,
+     * without writing them to the files of this store
+     *
+     * @param entries Changes in the order the leader made them
+     * @param replaceAll True if the entries put every record the leader holds,
+     *                   the records missing from them are removed
+     * @throws IOException If a record cannot be read
+     */
+    public void applyReplicated(List<MutationLog.Entry> entries, boolean replaceAll) throws IOException {
+        awaitLoad();
+        // Only the last change of each record matters
+        Class<T> type = getRecordType();
+        Map<Integer, T> put = new LinkedHashMap<>();
+        Set<Integer> deleted = new LinkedHashSet<>();
+        for (MutationLog.Entry entry : entries) {
+            if (entry.getOperation() == MutationLog.Operation.DELETE) {
+                put.remove(entry.getId());
+                deleted.add(entry.getId());
+            }
+            else if (entry.getId() < 0) {
+                throw new IOException("Replicated change to " + filename + " has the negative id " + entry.getId());
+            }
+            else {
+                deleted.remove(entry.getId());
+                put.put(entry.getId(), objectMapper.treeToValue(entry.getValue(), type));
+            }
+        }
+
+        ReloadListener<T> listener = reloadListener;
+        if (listener == null) {
+            throw new IllegalStateException(filename + " has no listener to apply changes with");
+        }
+        synchronized (lock) {
+            if (replaceAll) {
+                for (T record : snapshot.get()) {
+                    int id = idOf.applyAsInt(record);
+                    if (!put.containsKey(id)) {
+                        deleted.add(id);
+                    }
+                }
+            }
+            listener.reloaded(new ArrayList<>(put.values()), new ArrayList<>(deleted));
+        }
+    }
+
+    /**
+     * Apply the changes another program made to the data file
+     *
+     * The file is parsed without holding the DAO lock, then compared record by
+     * record with what this store last read or wrote. Only the DAO lock is
+     * held while the listener applies the difference. Nothing happens if the
+     * file is still as this store wrote it
+     *
+     * @throws IOException If the data file cannot be read or the changes persisted
+     */
+    public void reload() throws IOException {
+        if (reloadListener == null) {
+            return;
+        }
+
+        Path path = Paths.get(filename);
+        FileStamp stamp;
+        byte[] contents;
+        T[] base;
+        synchronized (fileLock) {
+            stamp = FileStamp.of(path);
+            if (stamp == null || stamp.equals(writtenStamp) || written == null) {
+                return;
+            }
+            contents = Files.readAllBytes(path);
+            base = written;
+        }
+
+        // Records are compared as serialized, so a field read back differently never looks like a change
+        JsonNode file = DataFormat.detect(contents).mapper(objectMapper).readTree(contents);
+        if (!file.isArray()) {
+            throw new IOException(filename + " does not hold an array of records");
+        }
+        Map<Integer, JsonNode> before = new HashMap<>();
+        for (T record : base) {
+            before.put(idOf.applyAsInt(record), objectMapper.valueToTree(record));
+        }
+        Class<T> type = getRecordType();
+        List<T> records = new ArrayList<>();
+        List<T> changed = new ArrayList<>();
+        Set<Integer> present = new HashSet<>();
+        for (JsonNode serialized : file) {
+            T record = objectMapper.treeToValue(serialized, type);
+            int id = loadedId(record, filename);
+            records.add(record);
+            present.add(id);
+            if (!serialized.equals(before.get(id))) {
+                changed.add(record);
+            }
+        }
+        List<Integer> removed = new ArrayList<>();
+        for (int id : before.keySet()) {
+            if (!present.contains(id)) {
+                removed.add(id);
+            }
+        }
+
+        synchronized (lock) {
+            boolean overwritten;
+            synchronized (fileLock) {
+                FileStamp current = FileStamp.of(path);
+                overwritten = current != null && current.equals(writtenStamp);
+                if (!overwritten && !stamp.equals(current)) {
+                    // Changed again while it was parsed, the next event reloads it
+                    return;
+                }
+                if (!overwritten) {
+                    remember(toArray(records), stamp);
+                }
+            }
+            if (changed.isEmpty() && removed.isEmpty()) {
+                return;
+            }
+
+            reloadListener.reloaded(changed, removed);
+            if (changeFeed != null) {
+                for (T record : changed) {
+                    publish(putEntry(record));
+                }
+                for (int id : removed) {
+                    publish(new MutationLog.Entry(MutationLog.Operation.DELETE, id, null));
+                }
+            }
+            LOG.info("Reloaded " + filename + " changed by another program: " + changed.size() + " records changed, "
+                     + removed.size() + " removed");
+
+            // The file must end up holding the changes even if this store wrote over them meanwhile,
+            // and a log written before them must not undo them on replay
+            if (mutationLog != null) {
+                checkpoint();
+            }
+            else if (overwritten) {
+                if (flusher != null) {
+                    markDirty();
+                }
+                else {
+                    save();
+                }
+            }
+        }
+    }
+
+    /**
+     * Count a change that the write-behind thread still has to flush
+     */
+    private void markDirty() {
+        // Only the first change after a flush takes the lock, to start the lag clock
+        if (changes.getAndIncrement() == flushedChanges) {
+            synchronized (lock) {
+                if (oldestUnflushed == 0) {
+                    oldestUnflushed = System.currentTimeMillis();
+                }
+            }
+        }
+    }
+
+    /**
+     * Rewrite the data file if there are changes since the last write-behind flush
+     *
+     * The records are serialized under the DAO lock, the file is written outside of it
+     *
+     * @throws IOException If the data file cannot be written
+     */
+    private void flushDirty() throws IOException {
+        synchronized (flushLock) {
+            long covered;
+            long capturedAt;
+            T[] records;
+            byte[] contents;
+            synchronized (lock) {
+                covered = changes.get();
+                if (covered == flushedChanges) {
+                    return;
+                }
+                capturedAt = System.currentTimeMillis();
+                records = snapshot.get();
+                contents = dataMapper.writeValueAsBytes(records);
+            }
+
+            replaceDataFile(contents, records);
+            if (mutationLog != null) {
+                mutationLog.reset();
+            }
+
+            synchronized (lock) {
+                flushedChanges = covered;
+                // Anything changed since the capture is at most this old
+                oldestUnflushed = changes.get() == covered ? 0 : capturedAt;
+            }
+        }
+    }
+
+    /**
+     * Scheduled write-behind task, a failure is logged and retried on the next run
+     */
+    private void flushInBackground() {
+        try {
+            flushDirty();
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Write-behind flush of " + filename + " failed", e);
+        }
+    }
+
+    /**
+     * Describe the persistence state of the store
+     *
+     * @return Current {@link StoreStatus status}
+     */
+    public StoreStatus getStatus() {
+        String mode = readOnly ? "follower"
+                      : flusher != null ? "write-behind" : mutationLog != null ? "log" : "snapshot";
+        long unflushed = flusher != null ? changes.get() - flushedChanges : 0;
+        long oldest = oldestUnflushed;
+        long lag = unflushed > 0 && oldest > 0 ? System.currentTimeMillis() - oldest : 0;
+        int logged = mutationLog != null ? mutationLog.size() : 0;
+
+        return new StoreStatus(filename, mode, unflushed, lag, logged);
+    }
+
+    /**
+     * Flush any outstanding changes, write the warm-start image and release the log and background thread
+     *
+     * @throws IOException If the final flush cannot be written
+     */
+    public void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+        }
+
+        if (flusher != null) {
+            if (ownsFlusher) {
+                flusher.shutdown();
+                try {
+                    flusher.awaitTermination(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            else {
+                // A flush already running holds the flush lock, so the last one below waits for it
+                flushTask.cancel(false);
+            }
+            flushDirty();
+        }
+
+        if (mutationLog != null) {
+            if (mutationLog.size() > 0) {
+                checkpoint();
+            }
+            mutationLog.close();
+        }
+
+        if (image != null && !readOnly) {
+            writeImage();
+        }
+    }
+}
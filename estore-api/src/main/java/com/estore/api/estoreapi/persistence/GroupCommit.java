@@ -0,0 +1,154 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces the flushes of concurrent changes into one write
+ *
+ * A caller applies its change in memory, takes a ticket with {@link #submit()}
+ * and then blocks in {@link #awaitDurable(long)}. The first waiter becomes the
+ * leader, holds the batch open for the commit window (or until it is full),
+ * then runs a single flush that covers every ticket submitted so far
+ */
+public class GroupCommit {
+    private static final Logger LOG = Logger.getLogger(GroupCommit.class.getName());
+
+    /**
+     * Writes every change applied so far to the data store
+     */
+    public interface Flush {
+        /**
+         * Run the flush
+         *
+         * @throws IOException If the data store cannot be written
+         */
+        void run() throws IOException;
+    }
+
+    /** Writes the batch */
+    private Flush flush;
+
+    /** How long the leader waits for more changes to join its batch */
+    private long windowMillis;
+
+    /** Number of changes that closes a batch early */
+    private int maxBatch;
+
+    /** Last ticket handed out */
+    private long submitted;
+
+    /** Every ticket up to this one is on disk */
+    private long durable;
+
+    /** Whether a leader currently owns a batch */
+    private boolean flushing;
+
+    /** Highest ticket of the last failed batch */
+    private long failedThrough;
+
+    /** Why the last batch failed */
+    private Exception failure;
+
+    /**
+     * Create a group commit around a flush
+     *
+     * @param flush Writes every change applied so far
+     * @param windowMillis How long a batch stays open
+     * @param maxBatch Number of changes that closes a batch early
+     */
+    public GroupCommit(Flush flush, long windowMillis, int maxBatch) {
+        this.flush = flush;
+        this.windowMillis = windowMillis;
+        this.maxBatch = Math.max(1, maxBatch);
+    }
+
+    /**
+     * Take a ticket for a change that has already been applied in memory
+     *
+     * @return Ticket to wait on
+     */
+    public synchronized long submit() {
+        submitted++;
+        if (submitted - durable >= maxBatch) {
+            // Wake the leader so it can close a full batch
+            notifyAll();
+        }
+        return submitted;
+    }
+
+    /**
+     * Block until the change with the given ticket is on disk
+     *
+     * @param ticket Ticket from {@link #submit()}
+     * @throws IOException If the batch holding the change failed to flush
+     */
+    public void awaitDurable(long ticket) throws IOException {
+        long target;
+        synchronized (this) {
+            while (true) {
+                if (durable >= ticket) {
+                    return;
+                }
+                if (failure != null && ticket <= failedThrough) {
+                    throw new IOException("Group commit failed", failure);
+                }
+                if (!flushing) {
+                    break;
+                }
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for group commit");
+                }
+            }
+
+            // This caller leads the next batch, give others the window to join it
+            flushing = true;
+            long deadline = System.currentTimeMillis() + windowMillis;
+            long remaining = windowMillis;
+            while (remaining > 0 && submitted - durable < maxBatch) {
+                try {
+                    wait(remaining);
+                }
+                catch (InterruptedException e) {
+                    // The leader must still flush for the callers waiting on it
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+            target = submitted;
+        }
+
+        Exception error = null;
+        boolean flushed = false;
+        try {
+            flush.run();
+            flushed = true;
+        }
+        catch (Exception e) {
+            LOG.log(Level.SEVERE, "Group commit of " + (target - durable) + " changes failed", e);
+            error = e;
+            throw e;
+        }
+        finally {
+            // Whatever the flush threw, hand the batch back so the waiters never hang on it
+            synchronized (this) {
+                if (flushed) {
+                    durable = Math.max(durable, target);
+                }
+                else if (error != null) {
+                    failure = error;
+                    failedThrough = target;
+                }
+                flushing = false;
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Hands out ids from blocks reserved in a small sequence file
+ *
+ * The sequence file holds the first id no one has reserved yet. A block of
+ * ids is reserved by advancing it under a file lock, so every allocator on
+ * the same data directory, in this process or another, gets its own ids.
+ * Within a block ids come from an {@link AtomicLong} without locking. An
+ * allocator closed cleanly gives its unused ids back if no one reserved a
+ * block after it
+ */
+public class IdAllocator {
+    /** Digits the sequence is padded to, so it is always rewritten in place */
+    private static final int WIDTH = 19;
+
+    /** Monitors of the sequence files, file locks do not exclude threads of one process */
+    private static final Map<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    /**
+     * Ids reserved by this allocator
+     */
+    private static class Block {
+        /** Next id to hand out, beyond end once the block is used up */
+        final AtomicLong next;
+
+        /** First id past the block */
+        final long end;
+
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+
+    /** Sequence file, null to keep the sequence in memory */
+    private Path sequenceFile;
+
+    /** Ids reserved at a time */
+    private int blockSize;
+
+    /** Block ids are handed out from */
+    private volatile Block block = new Block(0, 0);
+
+    /** No id below this is handed out, raised by ids already in use */
+    private AtomicLong floor = new AtomicLong(1);
+
+    /**
+     * Create an allocator reserving blocks from a sequence file
+     *
+     * @param sequenceFile Sequence file, created on the first reservation
+     * @param blockSize Ids reserved at a time
+     */
+    public IdAllocator(Path sequenceFile, int blockSize) {
+        this.sequenceFile = sequenceFile == null ? null : sequenceFile.toAbsolutePath().normalize();
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    /**
+     * Create an allocator that keeps its sequence in memory, for a store no
+     * other instance shares
+     */
+    public IdAllocator() {
+        this(null, 1);
+    }
+
+    /**
+     * Create the allocator of a data file, its sequence file is the data file with .seq appended
+     *
+     * @param filename Filename of the data file
+     * @param properties Persistence settings
+     * @return New {@link IdAllocator}
+     */
+    public static IdAllocator forFile(String filename, PersistenceProperties properties) {
+        return new IdAllocator(Path.of(filename + ".seq"), properties.getIdBlockSize());
+    }
+
+    /**
+     * Get the next id
+     *
+     * @return Id no allocator on the sequence has handed out
+     * @throws UncheckedIOException If a new block cannot be reserved
+     */
+    public int next() {
+        while (true) {
+            Block current = block;
+            long id = current.next.getAndIncrement();
+            if (id < current.end) {
+                return Math.toIntExact(id);
+            }
+            synchronized (this) {
+                // Another thread may have reserved a block while this one waited
+                if (block == current) {
+                    block = reserve();
+                }
+            }
+        }
+    }
+
+    /**
+     * Make sure an id already in use is never handed out
+     *
+     * @param id Id in use
+     */
+    public synchronized void skipPast(int id) {
+        floor.accumulateAndGet(id + 1L, Math::max);
+        block.next.accumulateAndGet(id + 1L, Math::max);
+    }
+
+    /**
+     * Reserve the next block of ids from the sequence
+     *
+     * @return New {@link Block block}
+     */
+    private Block reserve() {
+        long[] start = new long[1];
+        update(sequence -> {
+            start[0] = Math.max(sequence, floor.get());
+            return start[0] + blockSize;
+        });
+        return new Block(start[0], start[0] + blockSize);
+    }
+
+    /**
+     * Give the unused ids of the current block back, if no block was reserved
+     * after it, and stop handing out ids from it
+     *
+     * @throws IOException If the sequence file cannot be written
+     */
+    public synchronized void close() throws IOException {
+        Block current = block;
+        long unused = current.next.get();
+        block = new Block(0, 0);
+        floor.accumulateAndGet(unused, Math::max);
+        if (unused >= current.end) {
+            return;
+        }
+        try {
+            update(sequence -> sequence == current.end ? unused : sequence);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Read, change and write the sequence while holding its locks
+     *
+     * @param change Maps the sequence to its new value
+     * @throws UncheckedIOException If the sequence file cannot be read or written
+     */
+    private void update(LongUnaryOperator change) {
+        if (sequenceFile == null) {
+            // The floor doubles as the sequence of an allocator kept in memory
+            floor.set(change.applyAsLong(floor.get()));
+            return;
+        }
+
+        synchronized (MONITORS.computeIfAbsent(sequenceFile, file -> new Object())) {
+            try (FileChannel channel = FileChannel.open(sequenceFile, StandardOpenOption.CREATE,
+                                                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock lock = channel.lock()) {
+                ByteBuffer buffer = ByteBuffer.allocate(WIDTH + 1);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Keep reading until the whole value is in
+                }
+                String text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII).trim();
+                long sequence = text.isEmpty() ? 0 : Long.parseLong(text);
+
+                long updated = change.applyAsLong(sequence);
+                if (updated != sequence) {
+                    String padded = String.format("%0" + WIDTH + "d", updated) + "\n";
+                    ByteBuffer out = ByteBuffer.wrap(padded.getBytes(StandardCharsets.US_ASCII));
+                    long position = 0;
+                    while (out.hasRemaining()) {
+                        position += channel.write(out, position);
+                    }
+                    channel.force(false);
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Cannot update id sequence " + sequenceFile, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Map from non-negative int ids to records, held in an array indexed by id
+ *
+ * Ids are handed out densely, so the id itself is the slot: a lookup is one
+ * array read with no boxed key, tree node or hashing, and a record costs a
+ * single reference. The array is split into pages allocated as ids reach
+ * them. Iteration runs in id order, like the TreeMap it replaces, so data
+ * files are written the same way.
+ *
+ * Reads and writes are safe from any number of threads without locking,
+ * only allocating a page locks. Iteration is weakly consistent, like a
+ * concurrent map. The int overloads avoid boxing, the {@link java.util.Map}
+ * methods are there for code that loads or walks the records
+ *
+ * @param <V> Type of the records
+ */
+public class IntObjectMap<V> extends AbstractMap<Integer, V> {
+    /** Bits of an id that select the slot within a page */
+    private static final int PAGE_BITS = 10;
+
+    /** Slots per page */
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /** Pages indexed by id divided by the page size, republished whenever a page is added */
+    private volatile AtomicReferenceArray<Object>[] pages = newDirectory(0);
+
+    /** Number of records */
+    private final AtomicInteger size = new AtomicInteger();
+
+    @SuppressWarnings("unchecked")
+    private static AtomicReferenceArray<Object>[] newDirectory(int length) {
+        return new AtomicReferenceArray[length];
+    }
+
+    /**
+     * Get the page holding an id, if it has been allocated
+     *
+     * @param id Id of the record
+     * @return Page, or null if no record with a nearby id was ever stored
+     */
+    private AtomicReferenceArray<Object> pageOf(int id) {
+        AtomicReferenceArray<Object>[] directory = pages;
+        int index = id >>> PAGE_BITS;
+        return index < directory.length ? directory[index] : null;
+    }
+
+    /**
+     * Get the page holding an id, allocating it if needed
+     *
+     * @param id Id of the record
+     * @return Page
+     */
+    private AtomicReferenceArray<Object> allocatePage(int id) {
+        AtomicReferenceArray<Object> page = pageOf(id);
+        if (page != null) {
+            return page;
+        }
+
+        synchronized (this) {
+            AtomicReferenceArray<Object>[] directory = pages;
+            int index = id >>> PAGE_BITS;
+            if (index >= directory.length) {
+                directory = Arrays.copyOf(directory, Math.max(index + 1, directory.length * 2));
+            }
+            if (directory[index] == null) {
+                directory[index] = new AtomicReferenceArray<>(PAGE_SIZE);
+            }
+            // Written again even when not grown, so readers see the new page
+            pages = directory;
+            return directory[index];
+        }
+    }
+
+    /**
+     * Get the record with an id
+     *
+     * @param id Id of the record
+     * @return Record, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int id) {
+        if (id < 0) {
+            return null;
+        }
+        AtomicReferenceArray<Object> page = pageOf(id);
+        return page == null ? null : (V) page.get(id & (PAGE_SIZE - 1));
+    }
+
+    /**
+     * Check if there is a record with an id
+     *
+     * @param id Id of the record
+     * @return True if the map holds the id
+     */
+    public boolean containsKey(int id) {
+        return get(id) != null;
+    }
+
+    /**
+     * Store a record under an id
+     *
+     * @param id Id of the record, not negative
+     * @param value Record, not null
+     * @return Record previously stored under the id, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int id, V value) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative id " + id);
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        V previous = (V) allocatePage(id).getAndSet(id & (PAGE_SIZE - 1), value);
+        if (previous == null) {
+            size.incrementAndGet();
+        }
+        return previous;
+    }
+
+    /**
+     * Remove the record with an id
+     *
+     * @param id Id of the record
+     * @return Record that was removed, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int id) {
+        if (id < 0) {
+            return null;
+        }
+        AtomicReferenceArray<Object> page = pageOf(id);
+        if (page == null) {
+            return null;
+        }
+        V previous = (V) page.getAndSet(id & (PAGE_SIZE - 1), null);
+        if (previous != null) {
+            size.decrementAndGet();
+        }
+        return previous;
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer ? get(((Integer) key).intValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        return put(key.intValue(), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Integer ? remove(((Integer) key).intValue()) : null;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public synchronized void clear() {
+        pages = newDirectory(0);
+        size.set(0);
+    }
+
+    /**
+     * Walks the occupied slots in id order
+     */
+    private class Cursor {
+        /** Directory being walked, pages added later are not visited */
+        private final AtomicReferenceArray<Object>[] directory = pages;
+
+        /** Id of the next occupied slot, or -1 past the end */
+        private int nextId = -1;
+
+        /** Record in the next occupied slot */
+        private Object nextValue;
+
+        /** Id of the slot returned last */
+        int currentId = -1;
+
+        Cursor() {
+            advance(0);
+        }
+
+        /**
+         * Move to the first occupied slot at or after an id
+         *
+         * @param from Id to start at
+         */
+        private void advance(int from) {
+            for (int index = from >>> PAGE_BITS; index < directory.length; index++) {
+                AtomicReferenceArray<Object> page = directory[index];
+                if (page == null) {
+                    continue;
+                }
+                int start = index == from >>> PAGE_BITS ? from & (PAGE_SIZE - 1) : 0;
+                for (int slot = start; slot < PAGE_SIZE; slot++) {
+                    Object value = page.get(slot);
+                    if (value != null) {
+                        nextId = (index << PAGE_BITS) | slot;
+                        nextValue = value;
+                        return;
+                    }
+                }
+            }
+            nextId = -1;
+            nextValue = null;
+        }
+
+        boolean hasNext() {
+            return nextId >= 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        V next() {
+            if (nextId < 0) {
+                throw new NoSuchElementException();
+            }
+            currentId = nextId;
+            V value = (V) nextValue;
+            if (currentId == Integer.MAX_VALUE) {
+                nextId = -1;
+            }
+            else {
+                advance(currentId + 1);
+            }
+            return value;
+        }
+
+        void remove() {
+            if (currentId < 0) {
+                throw new IllegalStateException();
+            }
+            IntObjectMap.this.remove(currentId);
+            currentId = -1;
+        }
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                Cursor cursor = new Cursor();
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext() {
+                        return cursor.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return cursor.next();
+                    }
+
+                    @Override
+                    public void remove() {
+                        cursor.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return IntObjectMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<Entry<Integer, V>>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                Cursor cursor = new Cursor();
+                return new Iterator<Entry<Integer, V>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return cursor.hasNext();
+                    }
+
+                    @Override
+                    public Entry<Integer, V> next() {
+                        V value = cursor.next();
+                        return new SimpleImmutableEntry<>(cursor.currentId, value);
+                    }
+
+                    @Override
+                    public void remove() {
+                        cursor.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return IntObjectMap.this.size();
+            }
+        };
+    }
+}
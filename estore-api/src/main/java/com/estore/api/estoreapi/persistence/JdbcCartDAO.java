@@ -0,0 +1,286 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.estore.api.estoreapi.model.Cart;
+import com.estore.api.estoreapi.model.ProductReference;
+
+/**
+ * Implementation of CartDAO which stores the carts in the cart and cart_item tables
+ *
+ * Every line of a cart is its own row, so an item change touches one row
+ */
+@Component
+@ConditionalOnProperty(name = "persistence.backend", havingValue = "jdbc")
+public class JdbcCartDAO implements CartDAO, ManagedStore {
+    /** Database holding the carts */
+    private JdbcStore store;
+
+    /** Next id to assign */
+    private AtomicInteger nextId;
+
+    /**
+     * Build the {@link JdbcCartDAO}
+     *
+     * @param store Database holding the carts
+     *
+     * @throws IOException If the database cannot be read
+     */
+    public JdbcCartDAO(JdbcStore store) throws IOException {
+        this.store = store;
+        this.nextId = new AtomicInteger(store.nextId("cart"));
+    }
+
+    /**
+     * Insert a cart and its items as new rows
+     *
+     * @param connection Connection to insert with
+     * @param cart {@link Cart} to insert
+     * @throws SQLException If the rows cannot be inserted
+     */
+    static void insert(Connection connection, Cart cart) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO cart (id) VALUES (?)")) {
+            statement.setInt(1, cart.getId());
+            statement.executeUpdate();
+        }
+        insertItems(connection, cart);
+    }
+
+    /**
+     * Insert every item of a cart
+     *
+     * @param connection Connection to insert with
+     * @param cart {@link Cart} whose items are inserted
+     * @throws SQLException If the rows cannot be inserted
+     */
+    private static void insertItems(Connection connection, Cart cart) throws SQLException {
+        if (cart.getInventory().isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO cart_item (cart_id, product_id, quantity) VALUES (?, ?, ?)")) {
+            for (ProductReference item : cart.getInventory().values()) {
+                statement.setInt(1, cart.getId());
+                statement.setInt(2, item.getId());
+                statement.setInt(3, item.getQuantity());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Lock the row of a cart for the rest of the transaction
+     *
+     * @param connection Connection of the transaction
+     * @param id Id of the cart
+     * @return True if the cart exists
+     * @throws SQLException If the row cannot be locked
+     */
+    private static boolean lockCart(Connection connection, int id) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT id FROM cart WHERE id = ? FOR UPDATE")) {
+            statement.setInt(1, id);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next();
+            }
+        }
+    }
+
+    /**
+     * Run an update on one item of a cart with its cart id and product id bound last
+     *
+     * @param connection Connection to update with
+     * @param sql Update whose last two parameters are the cart id and product id
+     * @param cartId Id of the cart
+     * @param productId Id of the product
+     * @param values Values of the leading parameters
+     * @return Number of rows changed
+     * @throws SQLException If the update fails
+     */
+    private static int updateItem(Connection connection, String sql, int cartId, int productId, int... values)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < values.length; i++) {
+                statement.setInt(i + 1, values[i]);
+            }
+            statement.setInt(values.length + 1, cartId);
+            statement.setInt(values.length + 2, productId);
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cart[] getCarts() throws IOException {
+        return store.execute(connection -> {
+            Map<Integer, Cart> carts = new TreeMap<>();
+            try (PreparedStatement statement = connection.prepareStatement("SELECT id FROM cart");
+                 ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    carts.put(result.getInt("id"), new Cart(result.getInt("id")));
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT cart_id, product_id, quantity FROM cart_item");
+                 ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    Cart cart = carts.get(result.getInt("cart_id"));
+                    if (cart != null) {
+                        cart.addItem(result.getInt("product_id"), result.getInt("quantity"));
+                    }
+                }
+            }
+            return carts.values().toArray(new Cart[0]);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cart getCart(int id) throws IOException {
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT c.id, i.product_id, i.quantity FROM cart c "
+                    + "LEFT JOIN cart_item i ON i.cart_id = c.id WHERE c.id = ?")) {
+                statement.setInt(1, id);
+                Cart cart = null;
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        if (cart == null) {
+                            cart = new Cart(id);
+                        }
+                        int productId = result.getInt("product_id");
+                        if (!result.wasNull()) {
+                            cart.addItem(productId, result.getInt("quantity"));
+                        }
+                    }
+                }
+                return cart;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cart updateCart(Cart cart) throws IOException {
+        boolean found = store.transaction(connection -> {
+            if (!lockCart(connection, cart.getId())) {
+                return false;
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM cart_item WHERE cart_id = ?")) {
+                statement.setInt(1, cart.getId());
+                statement.executeUpdate();
+            }
+            insertItems(connection, cart);
+            return true;
+        });
+        return found ? cart : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addItem(int id, int productId, int quantity) throws IOException {
+        return store.transaction(connection -> {
+            if (!lockCart(connection, id)) {
+                return false;
+            }
+            if (updateItem(connection, "UPDATE cart_item SET quantity = quantity + ? "
+                           + "WHERE cart_id = ? AND product_id = ?", id, productId, quantity) == 0) {
+                updateItem(connection, "INSERT INTO cart_item (quantity, cart_id, product_id) VALUES (?, ?, ?)",
+                           id, productId, quantity);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeItem(int id, int productId) throws IOException {
+        return editQuantity(id, productId, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean editQuantity(int id, int productId, int quantity) throws IOException {
+        return store.transaction(connection -> {
+            if (!lockCart(connection, id)) {
+                return false;
+            }
+            if (quantity == 0) {
+                updateItem(connection, "DELETE FROM cart_item WHERE cart_id = ? AND product_id = ?", id, productId);
+            }
+            else {
+                updateItem(connection, "UPDATE cart_item SET quantity = ? WHERE cart_id = ? AND product_id = ?",
+                           id, productId, quantity);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cart createCart(Cart cart) throws IOException {
+        Cart tmpCart = new Cart(nextId.getAndIncrement());
+
+        store.execute(connection -> {
+            insert(connection, tmpCart);
+            return null;
+        });
+        return tmpCart;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean deleteCart(int id) throws IOException {
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM cart WHERE id = ?")) {
+                statement.setInt(1, id);
+                return statement.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StoreStatus getStatus() {
+        return store.getStatus("cart");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Every change is committed when it is made, so there is nothing to flush
+     */
+    @Override
+    public void flush() {
+    }
+}
@@ -0,0 +1,218 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.estore.api.estoreapi.model.Customer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Implementation of CustomerDAO which stores the customers in the customer table
+ *
+ * The searched name and username have their own indexed columns, the rest of
+ * the customer with its order and starred lists is kept as JSON in the body
+ */
+@Component
+@ConditionalOnProperty(name = "persistence.backend", havingValue = "jdbc")
+public class JdbcCustomerDAO implements CustomerDAO, ManagedStore {
+    /** Database holding the customers */
+    private JdbcStore store;
+
+    /** JSON serializer/deserializer for the body column */
+    private ObjectMapper objectMapper;
+
+    /** Next id to assign */
+    private AtomicInteger nextId;
+
+    /**
+     * Build the {@link JdbcCustomerDAO}
+     *
+     * @param store Database holding the customers
+     * @param objectMapper JSON serializer/deserializer
+     *
+     * @throws IOException If the database cannot be read
+     */
+    public JdbcCustomerDAO(JdbcStore store, ObjectMapper objectMapper) throws IOException {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.nextId = new AtomicInteger(store.nextId("customer"));
+    }
+
+    /**
+     * Insert a customer as a new row
+     *
+     * @param connection Connection to insert with
+     * @param objectMapper JSON serializer for the body
+     * @param customer {@link Customer} to insert
+     * @throws SQLException If the row cannot be inserted
+     */
+    static void insert(Connection connection, ObjectMapper objectMapper, Customer customer) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO customer (username, name, body, id) VALUES (?, ?, ?, ?)")) {
+            bind(statement, objectMapper, customer);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Bind the username, name, body and id parameters in that order
+     *
+     * @param statement Statement to bind
+     * @param objectMapper JSON serializer for the body
+     * @param customer {@link Customer} to bind
+     * @throws SQLException If a parameter cannot be bound
+     */
+    private static void bind(PreparedStatement statement, ObjectMapper objectMapper, Customer customer)
+            throws SQLException {
+        statement.setString(1, customer.getUsername());
+        statement.setString(2, customer.getName());
+        try {
+            statement.setString(3, objectMapper.writeValueAsString(customer));
+        }
+        catch (JsonProcessingException e) {
+            throw new SQLException("Cannot serialize customer " + customer.getId(), e);
+        }
+        statement.setInt(4, customer.getId());
+    }
+
+    /**
+     * Read every customer a query returns
+     *
+     * @param statement Query with its parameters bound
+     * @return Array of {@link Customer customers}, or empty array if none
+     * @throws SQLException If the query fails
+     */
+    private Customer[] read(PreparedStatement statement) throws SQLException {
+        List<Customer> customers = new ArrayList<>();
+        try (ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                try {
+                    customers.add(objectMapper.readValue(result.getString("body"), Customer.class));
+                }
+                catch (JsonProcessingException e) {
+                    throw new SQLException("Cannot read customer " + result.getInt("id"), e);
+                }
+            }
+        }
+        return customers.toArray(new Customer[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Customer[] getCustomers() throws IOException {
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT id, body FROM customer ORDER BY id")) {
+                return read(statement);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Customer[] findCustomers(String name) throws IOException {
+        if (name == null) {
+            return getCustomers();
+        }
+
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT id, body FROM customer WHERE LOWER(name) LIKE ? ESCAPE '\\' "
+                    + "OR LOWER(username) LIKE ? ESCAPE '\\' ORDER BY id")) {
+                String pattern = JdbcStore.containsPattern(name);
+                statement.setString(1, pattern);
+                statement.setString(2, pattern);
+                return read(statement);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Customer getCustomer(int id) throws IOException {
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT id, body FROM customer WHERE id = ?")) {
+                statement.setInt(1, id);
+                Customer[] customers = read(statement);
+                return customers.length == 0 ? null : customers[0];
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Customer createCustomer(Customer customer) throws IOException {
+        Customer customerTmp = new Customer(nextId.getAndIncrement(), customer.getUsername(), customer.getName(),
+                                            customer.getCartId(), customer.isAdmin(), customer.getPassword());
+
+        store.execute(connection -> {
+            insert(connection, objectMapper, customerTmp);
+            return null;
+        });
+        return customerTmp;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Customer updateCustomer(Customer customer) throws IOException {
+        int updated = store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE customer SET username = ?, name = ?, body = ? WHERE id = ?")) {
+                bind(statement, objectMapper, customer);
+                return statement.executeUpdate();
+            }
+        });
+        return updated == 0 ? null : customer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean deleteCustomer(int id) throws IOException {
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM customer WHERE id = ?")) {
+                statement.setInt(1, id);
+                return statement.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StoreStatus getStatus() {
+        return store.getStatus("customer");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Every change is committed when it is made, so there is nothing to flush
+     */
+    @Override
+    public void flush() {
+    }
+}
@@ -0,0 +1,261 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.estore.api.estoreapi.model.Order;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Implementation of OrderDAO which stores the orders in the orders table
+ *
+ * The completion flag and time have their own indexed columns, the order with
+ * its product snapshot is kept as JSON in the body
+ */
+@Component
+@ConditionalOnProperty(name = "persistence.backend", havingValue = "jdbc")
+public class JdbcOrderDAO implements OrderDAO, Stageable<Order> {
+    /** Database holding the orders */
+    private JdbcStore store;
+
+    /** JSON serializer/deserializer for the body column */
+    private ObjectMapper objectMapper;
+
+    /** Next id to assign */
+    private AtomicInteger nextId;
+
+    /**
+     * Build the {@link JdbcOrderDAO}
+     *
+     * @param store Database holding the orders
+     * @param objectMapper JSON serializer/deserializer
+     *
+     * @throws IOException If the database cannot be read
+     */
+    public JdbcOrderDAO(JdbcStore store, ObjectMapper objectMapper) throws IOException {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.nextId = new AtomicInteger(store.nextId("orders"));
+    }
+
+    /**
+     * Insert an order as a new row
+     *
+     * @param connection Connection to insert with
+     * @param objectMapper JSON serializer for the body
+     * @param order {@link Order} to insert
+     * @throws SQLException If the row cannot be inserted
+     */
+    static void insert(Connection connection, ObjectMapper objectMapper, Order order) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO orders (complete, order_time, body, id) VALUES (?, ?, ?, ?)")) {
+            bind(statement, objectMapper, order);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Bind the complete, time, body and id parameters in that order
+     *
+     * @param statement Statement to bind
+     * @param objectMapper JSON serializer for the body
+     * @param order {@link Order} to bind
+     * @throws SQLException If a parameter cannot be bound
+     */
+    private static void bind(PreparedStatement statement, ObjectMapper objectMapper, Order order)
+            throws SQLException {
+        statement.setBoolean(1, order.isComplete());
+        statement.setTimestamp(2, order.getDateTime() == null ? null : Timestamp.valueOf(order.getDateTime()));
+        try {
+            statement.setString(3, objectMapper.writeValueAsString(order));
+        }
+        catch (JsonProcessingException e) {
+            throw new SQLException("Cannot serialize order " + order.getId(), e);
+        }
+        statement.setInt(4, order.getId());
+    }
+
+    /**
+     * Read every order a query returns
+     *
+     * @param statement Query with its parameters bound
+     * @return Array of {@link Order orders}, or empty array if none
+     * @throws SQLException If the query fails
+     */
+    private Order[] read(PreparedStatement statement) throws SQLException {
+        List<Order> orders = new ArrayList<>();
+        try (ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                try {
+                    orders.add(objectMapper.readValue(result.getString("body"), Order.class));
+                }
+                catch (JsonProcessingException e) {
+                    throw new SQLException("Cannot read order " + result.getInt("id"), e);
+                }
+            }
+        }
+        return orders.toArray(new Order[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Order[] getOrders() throws IOException {
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT id, body FROM orders ORDER BY id")) {
+                return read(statement);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The range is matched on the indexed order_time column
+     */
+    @Override
+    public Order[] getOrders(LocalDateTime from, LocalDateTime to) throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT id, body FROM orders WHERE 1 = 1");
+        if (from != null) {
+            sql.append(" AND order_time >= ?");
+        }
+        if (to != null) {
+            sql.append(" AND order_time < ?");
+        }
+        sql.append(" ORDER BY id");
+
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+                int parameter = 1;
+                if (from != null) {
+                    statement.setTimestamp(parameter++, Timestamp.valueOf(from));
+                }
+                if (to != null) {
+                    statement.setTimestamp(parameter, Timestamp.valueOf(to));
+                }
+                return read(statement);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Order getOrder(int id) throws IOException {
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT id, body FROM orders WHERE id = ?")) {
+                statement.setInt(1, id);
+                Order[] orders = read(statement);
+                return orders.length == 0 ? null : orders[0];
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Order createOrder(Order order) throws IOException {
+        Order tmpOrd = new Order(nextId.getAndIncrement(), order.getTotalPrice(), order.getProducts(),
+                        order.isComplete(), order.getDateTime());
+
+        store.execute(connection -> {
+            insert(connection, objectMapper, tmpOrd);
+            return null;
+        });
+        return tmpOrd;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean deleteOrder(int id) throws IOException {
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM orders WHERE id = ?")) {
+                statement.setInt(1, id);
+                return statement.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Order updateOrder(Order order) throws IOException {
+        int updated = store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE orders SET complete = ?, order_time = ?, body = ? WHERE id = ?")) {
+                bind(statement, objectMapper, order);
+                return statement.executeUpdate();
+            }
+        });
+        return updated == 0 ? null : order;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int reserveId() {
+        return nextId.getAndIncrement();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The order is committed right away
+     */
+    @Override
+    public void stage(Order order) throws IOException {
+        if (updateOrder(order) == null) {
+            store.execute(connection -> {
+                insert(connection, objectMapper, order);
+                return null;
+            });
+        }
+        nextId.accumulateAndGet(order.getId() + 1, Math::max);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object lockFor(int id) {
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StoreStatus getStatus() {
+        return store.getStatus("orders");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Every change is committed when it is made, so there is nothing to flush
+     */
+    @Override
+    public void flush() {
+    }
+}
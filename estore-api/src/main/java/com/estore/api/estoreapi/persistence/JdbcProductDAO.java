@@ -0,0 +1,206 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.estore.api.estoreapi.model.Product;
+
+/**
+ * Implementation of ProductDAO which stores the products in the product table
+ */
+@Component
+@ConditionalOnProperty(name = "persistence.backend", havingValue = "jdbc")
+public class JdbcProductDAO implements ProductDAO, ManagedStore {
+    private static final String COLUMNS = "id, name, price, quantity, description, category, owner_recommended";
+
+    /** Database holding the products */
+    private JdbcStore store;
+
+    /** Next id to assign */
+    private AtomicInteger nextId;
+
+    /**
+     * Build the {@link JdbcProductDAO}
+     *
+     * @param store Database holding the products
+     *
+     * @throws IOException If the database cannot be read
+     */
+    public JdbcProductDAO(JdbcStore store) throws IOException {
+        this.store = store;
+        this.nextId = new AtomicInteger(store.nextId("product"));
+    }
+
+    /**
+     * Insert a product as a new row
+     *
+     * @param connection Connection to insert with
+     * @param product {@link Product} to insert
+     * @throws SQLException If the row cannot be inserted
+     */
+    static void insert(Connection connection, Product product) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO product (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            statement.setInt(1, product.getId());
+            bind(statement, 2, product);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Bind every column but the id, starting at a parameter index
+     *
+     * @param statement Statement to bind
+     * @param index Index of the name parameter
+     * @param product {@link Product} to bind
+     * @throws SQLException If a parameter cannot be bound
+     */
+    private static void bind(PreparedStatement statement, int index, Product product) throws SQLException {
+        statement.setString(index, product.getName());
+        statement.setDouble(index + 1, product.getPrice());
+        statement.setInt(index + 2, product.getQuantity());
+        statement.setString(index + 3, product.getDescription());
+        statement.setString(index + 4, product.getCategory());
+        statement.setBoolean(index + 5, product.isOwnerRecommended());
+    }
+
+    /**
+     * Read every product a query returns
+     *
+     * @param statement Query with its parameters bound
+     * @return Array of {@link Product products}, or empty array if none
+     * @throws SQLException If the query fails
+     */
+    private static Product[] read(PreparedStatement statement) throws SQLException {
+        List<Product> products = new ArrayList<>();
+        try (ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                products.add(new Product(result.getInt("id"), result.getString("name"), result.getDouble("price"),
+                                         result.getInt("quantity"), result.getString("description"),
+                                         result.getString("category"), result.getBoolean("owner_recommended")));
+            }
+        }
+        return products.toArray(new Product[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Product[] getProducts() throws IOException {
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + COLUMNS + " FROM product ORDER BY id")) {
+                return read(statement);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Product[] findProducts(String text) throws IOException {
+        if (text == null) {
+            return getProducts();
+        }
+
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + COLUMNS + " FROM product WHERE LOWER(name) LIKE ? ESCAPE '\\' "
+                    + "OR LOWER(description) LIKE ? ESCAPE '\\' ORDER BY id")) {
+                String pattern = JdbcStore.containsPattern(text);
+                statement.setString(1, pattern);
+                statement.setString(2, pattern);
+                return read(statement);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Product getProduct(int id) throws IOException {
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + COLUMNS + " FROM product WHERE id = ?")) {
+                statement.setInt(1, id);
+                Product[] products = read(statement);
+                return products.length == 0 ? null : products[0];
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Product createProduct(Product product) throws IOException {
+        Product tmpProd = new Product(nextId.getAndIncrement(), product.getName(), product.getPrice(),
+                                      product.getQuantity(), product.getDescription(), product.getCategory(),
+                                      product.isOwnerRecommended());
+
+        store.execute(connection -> {
+            insert(connection, tmpProd);
+            return null;
+        });
+        return tmpProd;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Product updateProduct(Product product) throws IOException {
+        int updated = store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE product SET name = ?, price = ?, quantity = ?, description = ?, category = ?, "
+                    + "owner_recommended = ? WHERE id = ?")) {
+                bind(statement, 1, product);
+                statement.setInt(7, product.getId());
+                return statement.executeUpdate();
+            }
+        });
+        return updated == 0 ? null : product;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean deleteProduct(int id) throws IOException {
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM product WHERE id = ?")) {
+                statement.setInt(1, id);
+                return statement.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StoreStatus getStatus() {
+        return store.getStatus("product");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Every change is committed when it is made, so there is nothing to flush
+     */
+    @Override
+    public void flush() {
+    }
+}
@@ -0,0 +1,183 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.estore.api.estoreapi.model.Review;
+
+/**
+ * Implementation of ReviewDAO which stores the reviews in the review table
+ */
+@Component
+@ConditionalOnProperty(name = "persistence.backend", havingValue = "jdbc")
+public class JdbcReviewDAO implements ReviewDAO, ManagedStore {
+    private static final String COLUMNS = "id, product_id, customer_id, stars, review_content, owner_response";
+
+    /** Database holding the reviews */
+    private JdbcStore store;
+
+    /** Next id to assign */
+    private AtomicInteger nextId;
+
+    /**
+     * Build the {@link JdbcReviewDAO}
+     *
+     * @param store Database holding the reviews
+     *
+     * @throws IOException If the database cannot be read
+     */
+    public JdbcReviewDAO(JdbcStore store) throws IOException {
+        this.store = store;
+        this.nextId = new AtomicInteger(store.nextId("review"));
+    }
+
+    /**
+     * Insert a review as a new row
+     *
+     * @param connection Connection to insert with
+     * @param review {@link Review} to insert
+     * @throws SQLException If the row cannot be inserted
+     */
+    static void insert(Connection connection, Review review) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO review (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?)")) {
+            statement.setInt(1, review.getId());
+            bind(statement, 2, review);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Bind every column but the id, starting at a parameter index
+     *
+     * @param statement Statement to bind
+     * @param index Index of the product id parameter
+     * @param review {@link Review} to bind
+     * @throws SQLException If a parameter cannot be bound
+     */
+    private static void bind(PreparedStatement statement, int index, Review review) throws SQLException {
+        statement.setInt(index, review.getProductId());
+        statement.setInt(index + 1, review.getCustomerId());
+        statement.setFloat(index + 2, review.getStars());
+        statement.setString(index + 3, review.getReviewContent());
+        statement.setString(index + 4, review.getOwnerResponse());
+    }
+
+    /**
+     * Read every review a query returns
+     *
+     * @param statement Query with its parameters bound
+     * @return Array of {@link Review reviews}, or empty array if none
+     * @throws SQLException If the query fails
+     */
+    private static Review[] read(PreparedStatement statement) throws SQLException {
+        List<Review> reviews = new ArrayList<>();
+        try (ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                reviews.add(new Review(result.getInt("id"), result.getInt("product_id"), result.getInt("customer_id"),
+                                       result.getFloat("stars"), result.getString("review_content"),
+                                       result.getString("owner_response")));
+            }
+        }
+        return reviews.toArray(new Review[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Review[] getReviews() throws IOException {
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + COLUMNS + " FROM review ORDER BY id")) {
+                return read(statement);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Review getReview(int id) throws IOException {
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + COLUMNS + " FROM review WHERE id = ?")) {
+                statement.setInt(1, id);
+                Review[] reviews = read(statement);
+                return reviews.length == 0 ? null : reviews[0];
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Review createReview(Review review) throws IOException {
+        Review tmpRev = new Review(nextId.getAndIncrement(), review.getProductId(), review.getCustomerId(),
+                                   review.getStars(), review.getReviewContent(), review.getOwnerResponse());
+
+        store.execute(connection -> {
+            insert(connection, tmpRev);
+            return null;
+        });
+        return tmpRev;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean deleteReview(int id) throws IOException {
+        return store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM review WHERE id = ?")) {
+                statement.setInt(1, id);
+                return statement.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Review updateReview(Review review) throws IOException {
+        int updated = store.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE review SET product_id = ?, customer_id = ?, stars = ?, review_content = ?, "
+                    + "owner_response = ? WHERE id = ?")) {
+                bind(statement, 1, review);
+                statement.setInt(6, review.getId());
+                return statement.executeUpdate();
+            }
+        });
+        return updated == 0 ? null : review;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StoreStatus getStatus() {
+        return store.getStatus("review");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Every change is committed when it is made, so there is nothing to flush
+     */
+    @Override
+    public void flush() {
+    }
+}
@@ -0,0 +1,212 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Connection pool and schema of the embedded database used by the JDBC DAOs
+ *
+ * Selected with persistence.backend=jdbc. The tables are created on first
+ * start and filled from the JSON data files by {@link JsonImporter}
+ */
+@Component
+@ConditionalOnProperty(name = "persistence.backend", havingValue = "jdbc")
+public class JdbcStore {
+    private static final Logger LOG = Logger.getLogger(JdbcStore.class.getName());
+
+    /** Statements creating every table and index, safe to run on an existing database */
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS product (id INT PRIMARY KEY, name VARCHAR(255), price DOUBLE NOT NULL, "
+            + "quantity INT NOT NULL, description VARCHAR(4096), category VARCHAR(255), "
+            + "owner_recommended BOOLEAN NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS product_name ON product(name)",
+        "CREATE TABLE IF NOT EXISTS cart (id INT PRIMARY KEY)",
+        "CREATE TABLE IF NOT EXISTS cart_item (cart_id INT NOT NULL, product_id INT NOT NULL, "
+            + "quantity INT NOT NULL, PRIMARY KEY (cart_id, product_id), "
+            + "FOREIGN KEY (cart_id) REFERENCES cart(id) ON DELETE CASCADE)",
+        "CREATE TABLE IF NOT EXISTS customer (id INT PRIMARY KEY, username VARCHAR(255), name VARCHAR(255), "
+            + "body CLOB NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS customer_username ON customer(username)",
+        "CREATE TABLE IF NOT EXISTS orders (id INT PRIMARY KEY, complete BOOLEAN NOT NULL, "
+            + "order_time TIMESTAMP, body CLOB NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS orders_time ON orders(order_time)",
+        "CREATE TABLE IF NOT EXISTS review (id INT PRIMARY KEY, product_id INT NOT NULL, customer_id INT NOT NULL, "
+            + "stars REAL NOT NULL, review_content VARCHAR(4096), owner_response VARCHAR(4096))",
+        "CREATE INDEX IF NOT EXISTS review_product ON review(product_id)",
+        "CREATE TABLE IF NOT EXISTS migration (name VARCHAR(64) PRIMARY KEY, applied TIMESTAMP NOT NULL)"
+    };
+
+    /**
+     * Work done with a connection from the pool
+     *
+     * @param <R> Type of the result
+     */
+    @FunctionalInterface
+    public interface Work<R> {
+        /**
+         * Run the work
+         *
+         * @param connection Connection to use
+         * @return Result of the work
+         * @throws SQLException If a statement fails
+         */
+        R run(Connection connection) throws SQLException;
+    }
+
+    /** Pool of connections to the database */
+    private HikariDataSource dataSource;
+
+    /** JDBC url of the database */
+    private String url;
+
+    /**
+     * Open the pool and create the schema
+     *
+     * @param url JDBC url of the database
+     * @param username User to connect as
+     * @param password Password of the user
+     * @param importer Fills the tables from the JSON data files the first time
+     * @param properties Persistence settings
+     *
+     * @throws IOException If the database cannot be opened or imported into
+     */
+    public JdbcStore(@Value("${database.url}") String url, @Value("${database.username}") String username,
+                     @Value("${database.password}") String password, JsonImporter importer,
+                     PersistenceProperties properties) throws IOException {
+        this.url = url;
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(properties.getJdbcPoolSize());
+        config.setPoolName("estore");
+        this.dataSource = new HikariDataSource(config);
+
+        transaction(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+            }
+            return null;
+        });
+        LOG.info("Opened " + url);
+
+        if (importer != null) {
+            importer.importOnce(this);
+        }
+    }
+
+    /**
+     * Get the JDBC url of the database
+     *
+     * @return Database url
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Run work on a pooled connection in auto-commit mode
+     *
+     * @param <R> Type of the result
+     * @param work Work to run
+     * @return Result of the work
+     * @throws IOException If the work fails
+     */
+    public <R> R execute(Work<R> work) throws IOException {
+        try (Connection connection = dataSource.getConnection()) {
+            return work.run(connection);
+        }
+        catch (SQLException e) {
+            throw new IOException("Database error on " + url, e);
+        }
+    }
+
+    /**
+     * Run work on a pooled connection as one transaction, rolled back if it fails
+     *
+     * @param <R> Type of the result
+     * @param work Work to run
+     * @return Result of the work
+     * @throws IOException If the work fails
+     */
+    public <R> R transaction(Work<R> work) throws IOException {
+        return execute(connection -> {
+            connection.setAutoCommit(false);
+            try {
+                R result = work.run(connection);
+                connection.commit();
+                return result;
+            }
+            catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+            finally {
+                connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    /**
+     * Get the next id to assign in a table
+     *
+     * @param table Name of the table
+     * @return One more than the greatest id, or 1 if the table is empty
+     * @throws IOException If the table cannot be read
+     */
+    public int nextId(String table) throws IOException {
+        return execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT MAX(id) FROM " + table);
+                 ResultSet result = statement.executeQuery()) {
+                result.next();
+                return result.getInt(1) + 1;
+            }
+        });
+    }
+
+    /**
+     * Turn text into a LIKE pattern matching any value containing it, ignoring case
+     *
+     * @param text Text to look for
+     * @return Pattern for use with ESCAPE '\'
+     */
+    public static String containsPattern(String text) {
+        String escaped = text.toLowerCase().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+
+    /**
+     * Describe a table of the database for the persistence status
+     *
+     * @param table Name of the table
+     * @return Status of the table
+     */
+    public StoreStatus getStatus(String table) {
+        return new StoreStatus(url + "#" + table, "jdbc", 0, 0, 0);
+    }
+
+    /**
+     * Close every pooled connection on shutdown
+     */
+    @PreDestroy
+    public void close() {
+        dataSource.close();
+    }
+}
@@ -0,0 +1,163 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.estore.api.estoreapi.model.Cart;
+import com.estore.api.estoreapi.model.Customer;
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.model.Product;
+import com.estore.api.estoreapi.model.Review;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Copies the JSON data files into the database the first time the JDBC backend starts
+ *
+ * The import runs in one transaction and is recorded in the migration table,
+ * so it never runs twice against the same database
+ */
+@Component
+@ConditionalOnProperty(name = "persistence.backend", havingValue = "jdbc")
+public class JsonImporter {
+    private static final Logger LOG = Logger.getLogger(JsonImporter.class.getName());
+
+    /** Name the import is recorded under in the migration table */
+    static final String MIGRATION = "json-import";
+
+    /**
+     * Inserts one record
+     *
+     * @param <T> Type of the record
+     */
+    @FunctionalInterface
+    private interface Insert<T> {
+        void run(Connection connection, T record) throws SQLException;
+    }
+
+    /** Filename of the products */
+    private String productsFile;
+
+    /** Filename of the carts */
+    private String cartsFile;
+
+    /** Filename of the customers */
+    private String customersFile;
+
+    /** Filename of the orders */
+    private String ordersFile;
+
+    /** Filename of the reviews */
+    private String reviewsFile;
+
+    /** JSON serializer/deserializer */
+    private ObjectMapper objectMapper;
+
+    /**
+     * Create the importer for the configured data files
+     *
+     * @param productsFile Filename of the products
+     * @param cartsFile Filename of the carts
+     * @param customersFile Filename of the customers
+     * @param ordersFile Filename of the orders
+     * @param reviewsFile Filename of the reviews
+     * @param objectMapper JSON serializer/deserializer
+     */
+    public JsonImporter(@Value("${products.file}") String productsFile, @Value("${carts.file}") String cartsFile,
+                        @Value("${customers.file}") String customersFile, @Value("${order.file}") String ordersFile,
+                        @Value("${review.file}") String reviewsFile, ObjectMapper objectMapper) {
+        this.productsFile = productsFile;
+        this.cartsFile = cartsFile;
+        this.customersFile = customersFile;
+        this.ordersFile = ordersFile;
+        this.reviewsFile = reviewsFile;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Import every data file unless the database already holds the import
+     *
+     * @param store Database to import into
+     * @throws IOException If a data file cannot be read or inserted
+     */
+    public void importOnce(JdbcStore store) throws IOException {
+        try {
+            store.transaction(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT applied FROM migration WHERE name = ?")) {
+                    statement.setString(1, MIGRATION);
+                    try (ResultSet result = statement.executeQuery()) {
+                        if (result.next()) {
+                            return null;
+                        }
+                    }
+                }
+
+                int products = copy(connection, productsFile, Product.class, JdbcProductDAO::insert);
+                int carts = copy(connection, cartsFile, Cart.class, JdbcCartDAO::insert);
+                int customers = copy(connection, customersFile, Customer.class,
+                                     (c, customer) -> JdbcCustomerDAO.insert(c, objectMapper, customer));
+                int orders = copy(connection, ordersFile, Order.class,
+                                  (c, order) -> JdbcOrderDAO.insert(c, objectMapper, order));
+                int reviews = copy(connection, reviewsFile, Review.class, JdbcReviewDAO::insert);
+
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "INSERT INTO migration (name, applied) VALUES (?, ?)")) {
+                    statement.setString(1, MIGRATION);
+                    statement.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+                    statement.executeUpdate();
+                }
+                LOG.info("Imported " + products + " products, " + carts + " carts, " + customers + " customers, "
+                         + orders + " orders and " + reviews + " reviews into " + store.getUrl());
+                return null;
+            });
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Stream the records of one data file into a table
+     *
+     * @param <T> Type of the records
+     * @param connection Connection of the import transaction
+     * @param filename Data file to read, skipped if missing
+     * @param type Type of the records
+     * @param insert Inserts one record
+     * @return Number of records imported
+     * @throws SQLException If a record cannot be inserted
+     */
+    private <T> int copy(Connection connection, String filename, Class<T> type, Insert<T> insert)
+            throws SQLException {
+        File file = new File(filename);
+        if (!file.exists()) {
+            return 0;
+        }
+
+        int copied = 0;
+        try (MappingIterator<T> records = DataFormat.detect(file).mapper(objectMapper).readerFor(type)
+                                                    .readValues(file)) {
+            while (records.hasNextValue()) {
+                insert.run(connection, records.nextValue());
+                copied++;
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return copied;
+    }
+}
@@ -0,0 +1,389 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import com.estore.api.estoreapi.model.Order;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Implementation of OrderDAO which reads orders from the JSON data file on demand
+ *
+ * At startup only the byte range of every order in the file is indexed. An
+ * order is decoded the first time it is read and kept in a bounded LRU cache.
+ * A change rewrites the file by copying the bytes of the unchanged orders
+ * and serializing only the changed one
+ *
+ * Selected with persistence.order-store=lazy
+ */
+@Component
+@ConditionalOnExpression("'${persistence.backend:file}' == 'file' and '${persistence.order-store:file}' == 'lazy'")
+public class LazyOrderFileDAO implements OrderDAO, Stageable<Order> {
+    private static final Logger LOG = Logger.getLogger(LazyOrderFileDAO.class.getName());
+
+    private static final byte[] ARRAY_START = "[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SEPARATOR = ",".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ARRAY_END = "]".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Byte range of one order in the data file
+     */
+    private static class Extent {
+        /** Offset of the opening brace */
+        final long offset;
+
+        /** Length up to and including the closing brace */
+        final int length;
+
+        Extent(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /** Maps ids to where their {@link Order} is in the data file */
+    private Map<Integer, Extent> index;
+
+    /** Recently read orders */
+    private LruCache<Integer, Order> cache;
+
+    /** JSON serializer/deserializer */
+    private ObjectMapper objectMapper;
+
+    /** Filename of the data file */
+    private String filename;
+
+    /** Open handle to the data file */
+    private FileChannel channel;
+
+    /** Next id to assign */
+    private int nextId;
+
+    /**
+     * Build the {@link LazyOrderFileDAO}
+     *
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     *
+     * @throws IOException If there is an error reading the file
+     */
+    public LazyOrderFileDAO(@Value("${order.file}") String filename, ObjectMapper objectMapper,
+                            PersistenceProperties properties) throws IOException {
+        this.filename = filename;
+        this.objectMapper = objectMapper;
+        this.cache = new LruCache<>(properties.getOrderCacheSize());
+        load();
+    }
+
+    /**
+     * Index every order in the data file by scanning its tokens without binding them
+     *
+     * @throws IOException If there is an error reading the file
+     */
+    private void load() throws IOException {
+        // Smile refers back to names written earlier in the file, so one order cannot be decoded on its own
+        if (DataFormat.detect(new File(filename)) != DataFormat.JSON) {
+            throw new IOException(filename + " is not JSON, the lazy order store needs a JSON data file");
+        }
+
+        long start = System.nanoTime();
+        Map<Integer, Extent> scanned = new TreeMap<>();
+        int greatest = 0;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(new File(filename))) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException(filename + " does not hold an array of orders");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                long offset = parser.getTokenLocation().getByteOffset();
+                Integer id = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("id".equals(field)) {
+                        id = parser.getIntValue();
+                    }
+                    else {
+                        parser.skipChildren();
+                    }
+                }
+                if (id == null) {
+                    throw new IOException("Order without an id at byte " + offset + " of " + filename);
+                }
+
+                long end = parser.getCurrentLocation().getByteOffset();
+                scanned.put(id, new Extent(offset, (int) (end - offset)));
+                greatest = Math.max(greatest, id);
+            }
+        }
+
+        index = scanned;
+        nextId = greatest + 1;
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        LOG.info("Indexed " + index.size() + " orders in " + filename + " in "
+                 + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * Read and decode the order at a byte range of the data file
+     *
+     * @param extent Where the order is
+     * @return Decoded {@link Order}
+     * @throws IOException If the order cannot be read
+     */
+    private Order decode(Extent extent) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(extent.length);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, extent.offset + bytes.position()) < 0) {
+                throw new IOException(filename + " ended inside the order at byte " + extent.offset);
+            }
+        }
+        return objectMapper.readValue(bytes.array(), Order.class);
+    }
+
+    /**
+     * Rewrite the data file with one order replaced, added or removed, then re-index it
+     *
+     * Every other order is copied over byte for byte
+     *
+     * @param id Id of the changed order
+     * @param order The order as it is now, or null to remove it
+     * @throws IOException If the file cannot be written
+     */
+    private void rewrite(int id, Order order) throws IOException {
+        Map<Integer, Extent> changed = new TreeMap<>(index);
+        changed.remove(id);
+        if (order != null) {
+            // Placeholder so the changed order is written in id order
+            changed.put(id, null);
+        }
+
+        Path target = Paths.get(filename);
+        Path temp = Paths.get(filename + ".tmp");
+        Map<Integer, Extent> rewritten = new TreeMap<>();
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, ARRAY_START);
+            boolean first = true;
+            for (Map.Entry<Integer, Extent> entry : changed.entrySet()) {
+                if (!first) {
+                    writeFully(out, SEPARATOR);
+                }
+                first = false;
+
+                long offset = out.position();
+                Extent extent = entry.getValue();
+                if (extent == null) {
+                    writeFully(out, objectMapper.writeValueAsBytes(order));
+                }
+                else {
+                    long copied = 0;
+                    while (copied < extent.length) {
+                        copied += channel.transferTo(extent.offset + copied, extent.length - copied, out);
+                    }
+                }
+                rewritten.put(entry.getKey(), new Extent(offset, (int) (out.position() - offset)));
+            }
+            writeFully(out, ARRAY_END);
+        }
+
+        channel.close();
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(target, StandardOpenOption.READ);
+        index = rewritten;
+    }
+
+    /**
+     * Write every byte of an array to a channel
+     *
+     * @param out Channel to write to
+     * @param bytes Bytes to write
+     * @throws IOException If the bytes cannot be written
+     */
+    private static void writeFully(FileChannel out, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Streams the data file rather than going through the cache so a full
+     * listing does not evict the recently read orders
+     */
+    @Override
+    public synchronized Order[] getOrders() throws IOException {
+        List<Order> orders = new ArrayList<>(index.size());
+        try (MappingIterator<Order> iterator = objectMapper.readerFor(Order.class).readValues(new File(filename))) {
+            while (iterator.hasNextValue()) {
+                orders.add(iterator.nextValue());
+            }
+        }
+        return orders.toArray(new Order[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Streams the data file like a full listing
+     */
+    @Override
+    public synchronized Order[] getOrders(LocalDateTime from, LocalDateTime to) throws IOException {
+        List<Order> placed = new ArrayList<>();
+        for (Order order : getOrders()) {
+            if (order.placedWithin(from, to)) {
+                placed.add(order);
+            }
+        }
+        return placed.toArray(new Order[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Order getOrder(int id) throws IOException {
+        Order order = cache.get(id);
+        if (order != null) {
+            return order;
+        }
+
+        Extent extent = index.get(id);
+        if (extent == null) {
+            return null;
+        }
+        order = decode(extent);
+        cache.put(id, order);
+        return order;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Order createOrder(Order order) throws IOException {
+        Order tmpOrd = new Order(nextId, order.getTotalPrice(), order.getProducts(),
+                        order.isComplete(), order.getDateTime());
+
+        rewrite(tmpOrd.getId(), tmpOrd);
+        nextId++;
+        cache.put(tmpOrd.getId(), tmpOrd);
+        return tmpOrd;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean deleteOrder(int id) throws IOException {
+        if (!index.containsKey(id)) {
+            return false;
+        }
+
+        rewrite(id, null);
+        cache.remove(id);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Order updateOrder(Order order) throws IOException {
+        if (!index.containsKey(order.getId())) {
+            return null;
+        }
+
+        rewrite(order.getId(), order);
+        cache.put(order.getId(), order);
+        return order;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int reserveId() {
+        return nextId++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void stage(Order order) throws IOException {
+        rewrite(order.getId(), order);
+        nextId = Math.max(nextId, order.getId() + 1);
+        cache.put(order.getId(), order);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object lockFor(int id) {
+        return this;
+    }
+
+    /**
+     * Get the counters of the order cache
+     *
+     * @return Current {@link CacheStats stats}
+     */
+    public CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StoreStatus getStatus() {
+        return new StoreStatus(filename, "lazy", 0, 0, 0, cache.getStats());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Every change is written when it is made, so there is nothing to flush
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Release the data file on shutdown
+     *
+     * @throws IOException If the file cannot be closed
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
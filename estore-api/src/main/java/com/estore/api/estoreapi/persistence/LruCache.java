@@ -0,0 +1,101 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded cache that drops the least recently used entry when full
+ *
+ * Counts hits, misses and evictions so the cache can be sized from the
+ * persistence status. Every method is synchronized
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the cached values
+ */
+public class LruCache<K, V> {
+    /** Entries in least to most recently used order */
+    private Map<K, V> entries;
+
+    /** Most entries held */
+    private int capacity;
+
+    /** Lookups answered from the cache */
+    private long hits;
+
+    /** Lookups that found nothing */
+    private long misses;
+
+    /** Entries dropped to stay within capacity */
+    private long evictions;
+
+    /**
+     * Create an empty cache
+     *
+     * @param capacity Most entries held, 0 disables caching
+     */
+    public LruCache(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > LruCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Look up a value and mark it as recently used
+     *
+     * @param key Key of the value
+     * @return Cached value, or null on a miss
+     */
+    public synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value == null) {
+            misses++;
+        }
+        else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Cache a value, evicting the least recently used entry if full
+     *
+     * @param key Key of the value
+     * @param value Value to cache
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    /**
+     * Drop a value from the cache
+     *
+     * @param key Key of the value
+     */
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Drop every value from the cache
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Get the counters of the cache
+     *
+     * @return Current {@link CacheStats stats}
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(entries.size(), capacity, hits, misses, evictions);
+    }
+}
@@ -0,0 +1,225 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import com.estore.api.estoreapi.model.Cart;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Implementation of CartDAO which keeps the carts in a log-structured {@link LsmStore}
+ *
+ * Every cart change is one sequential append to the store's log instead of a
+ * rewrite of every cart. The store is created from the JSON cart file the
+ * first time it is used
+ *
+ * Selected with persistence.cart-store=lsm
+ */
+@Component
+@ConditionalOnExpression("'${persistence.backend:file}' == 'file' and '${persistence.cart-store:file}' == 'lsm'")
+public class LsmCartDAO implements CartDAO, ManagedStore {
+    private static final Logger LOG = Logger.getLogger(LsmCartDAO.class.getName());
+
+    /** Holds the carts */
+    private LsmStore<Cart> store;
+
+    /** Next id to assign */
+    private int nextId;
+
+    /**
+     * Build the {@link LsmCartDAO}
+     *
+     * @param directory Directory of the store
+     * @param jsonFilename Filename of the JSON cart file to import
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     *
+     * @throws IOException If the store cannot be opened
+     */
+    public LsmCartDAO(@Value("${carts.lsm.dir}") String directory, @Value("${carts.file}") String jsonFilename,
+                      ObjectMapper objectMapper, PersistenceProperties properties) throws IOException {
+        Path path = Paths.get(directory);
+        boolean exists = Files.exists(path);
+        this.store = new LsmStore<>(path, objectMapper, Cart.class, properties);
+
+        if (!exists) {
+            importCarts(jsonFilename, objectMapper);
+        }
+
+        // Keep track of the greatest id
+        List<Integer> ids = new ArrayList<>();
+        store.forEach(cart -> ids.add(cart.getId()));
+        nextId = ids.isEmpty() ? 1 : ids.get(ids.size() - 1) + 1;
+    }
+
+    /**
+     * Copy every cart of the cart data file into the new store
+     *
+     * @param jsonFilename Filename of the cart data file, JSON or Smile
+     * @param objectMapper JSON deserializer
+     * @throws IOException If the carts cannot be imported
+     */
+    private void importCarts(String jsonFilename, ObjectMapper objectMapper) throws IOException {
+        File json = new File(jsonFilename);
+        if (!json.exists()) {
+            return;
+        }
+
+        int imported = 0;
+        ObjectMapper reader = DataFormat.detect(json).mapper(objectMapper);
+        try (MappingIterator<Cart> carts = reader.readerFor(Cart.class).readValues(json)) {
+            while (carts.hasNextValue()) {
+                Cart cart = carts.nextValue();
+                store.put(cart.getId(), cart);
+                imported++;
+            }
+        }
+        store.flushMemtable();
+        LOG.info("Imported " + imported + " carts from " + jsonFilename);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cart[] getCarts() throws IOException {
+        List<Cart> carts = new ArrayList<>();
+        store.forEach(carts::add);
+        return carts.toArray(new Cart[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cart getCart(int id) throws IOException {
+        return store.get(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Cart createCart(Cart cart) throws IOException {
+        Cart tmpCart = new Cart(nextId++);
+        store.put(tmpCart.getId(), tmpCart);
+        return tmpCart;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean deleteCart(int id) throws IOException {
+        if (!store.contains(id)) {
+            return false;
+        }
+        store.delete(id);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Cart updateCart(Cart cart) throws IOException {
+        if (!store.contains(cart.getId())) {
+            return null;
+        }
+        store.put(cart.getId(), cart);
+        return cart;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addItem(int cartId, int productId, int quantity) throws IOException {
+        return changeItems(cartId, cart -> cart.addItem(productId, quantity));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeItem(int cartId, int productId) throws IOException {
+        return changeItems(cartId, cart -> cart.removeItem(productId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean editQuantity(int cartId, int productId, int quantity) throws IOException {
+        return changeItems(cartId, cart -> cart.editQuantity(productId, quantity));
+    }
+
+    /**
+     * Apply a change to the items of a {@link Cart cart} and append it to the store
+     *
+     * @param cartId Id of the cart
+     * @param change Change to apply to the cart
+     * @return True if the cart was changed, false if it was not found
+     * @throws IOException If the change cannot be persisted
+     */
+    private synchronized boolean changeItems(int cartId, Consumer<Cart> change) throws IOException {
+        Cart cart = store.get(cartId);
+        if (cart == null) {
+            return false;
+        }
+        change.accept(cart);
+        store.put(cartId, cart);
+        return true;
+    }
+
+    /**
+     * Get the number of segments the store is spread over
+     *
+     * @return Segment count
+     */
+    public int getSegmentCount() {
+        return store.getSegmentCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StoreStatus getStatus() {
+        return store.getStatus();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Writes the memtable out as a segment
+     */
+    @Override
+    public void flush() throws IOException {
+        store.flushMemtable();
+    }
+
+    /**
+     * Write out the memtable and release the store on shutdown
+     *
+     * @throws IOException If the memtable cannot be written
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        store.close();
+    }
+}
@@ -0,0 +1,333 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Immutable file of id-sorted records written by the {@link LsmStore}
+ *
+ * Layout: the records as [int id][int length, -1 for a tombstone][bytes],
+ * then the bloom filter, then a sparse index of every INDEX_INTERVAL-th
+ * record, then a fixed footer locating the filter and index. The filter and
+ * index are held in memory, a lookup reads at most one index interval
+ */
+class LsmSegment implements Closeable {
+    /** Identifies a segment file */
+    private static final int MAGIC = 0x4C534D31;
+
+    /** Records between two sparse index entries */
+    static final int INDEX_INTERVAL = 16;
+
+    /** Size of the footer: filter offset, index offset, record count and magic */
+    private static final int FOOTER_SIZE = 24;
+
+    /** Length stored for a deleted record */
+    private static final int TOMBSTONE_LENGTH = -1;
+
+    /** Value returned for a record deleted in this segment */
+    static final byte[] TOMBSTONE = new byte[0];
+
+    /** Path of the segment file */
+    private Path path;
+
+    /** Open handle for lookups */
+    private FileChannel channel;
+
+    /** Filters out ids not in the segment */
+    private BloomFilter filter;
+
+    /** Ids of every INDEX_INTERVAL-th record */
+    private int[] indexIds;
+
+    /** Offsets of every INDEX_INTERVAL-th record */
+    private long[] indexOffsets;
+
+    /** End of the records */
+    private long dataEnd;
+
+    /** Number of records, tombstones included */
+    private int count;
+
+    /**
+     * Open an existing segment file
+     *
+     * @param path Path of the segment
+     * @throws IOException If the file is not a complete segment
+     */
+    LsmSegment(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer footer = read(size - FOOTER_SIZE, FOOTER_SIZE);
+            long filterOffset = footer.getLong();
+            long indexOffset = footer.getLong();
+            this.count = footer.getInt();
+            if (footer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a segment file");
+            }
+            this.dataEnd = filterOffset;
+
+            ByteBuffer filterBytes = read(filterOffset, (int) (indexOffset - filterOffset));
+            int hashes = filterBytes.getInt();
+            long[] bits = new long[filterBytes.getInt()];
+            filterBytes.asLongBuffer().get(bits);
+            this.filter = new BloomFilter(bits, hashes);
+
+            ByteBuffer indexBytes = read(indexOffset, (int) (size - FOOTER_SIZE - indexOffset));
+            int entries = indexBytes.getInt();
+            this.indexIds = new int[entries];
+            this.indexOffsets = new long[entries];
+            for (int i = 0; i < entries; i++) {
+                indexIds[i] = indexBytes.getInt();
+                indexOffsets[i] = indexBytes.getLong();
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException(path + " is corrupt", e);
+        }
+    }
+
+    /**
+     * Write a new segment file and force it to disk
+     *
+     * @param path Path of the new segment
+     * @param records Records in ascending id order, {@link #TOMBSTONE} for a deletion
+     * @param expected Number of records, used to size the bloom filter
+     * @throws IOException If the file cannot be written
+     */
+    static void write(Path path, Iterator<Map.Entry<Integer, byte[]>> records, int expected) throws IOException {
+        BloomFilter filter = new BloomFilter(expected);
+        int[] indexIds = new int[expected / INDEX_INTERVAL + 1];
+        long[] indexOffsets = new long[indexIds.length];
+        int indexed = 0;
+        int written = 0;
+        long offset = 0;
+
+        try (FileOutputStream file = new FileOutputStream(path.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            while (records.hasNext()) {
+                Map.Entry<Integer, byte[]> record = records.next();
+                int id = record.getKey();
+                byte[] value = record.getValue();
+
+                if (written % INDEX_INTERVAL == 0) {
+                    if (indexed == indexIds.length) {
+                        indexIds = Arrays.copyOf(indexIds, indexed * 2);
+                        indexOffsets = Arrays.copyOf(indexOffsets, indexed * 2);
+                    }
+                    indexIds[indexed] = id;
+                    indexOffsets[indexed] = offset;
+                    indexed++;
+                }
+                filter.add(id);
+
+                out.writeInt(id);
+                if (value == TOMBSTONE) {
+                    out.writeInt(TOMBSTONE_LENGTH);
+                    offset += 8;
+                }
+                else {
+                    out.writeInt(value.length);
+                    out.write(value);
+                    offset += 8 + value.length;
+                }
+                written++;
+            }
+
+            long filterOffset = offset;
+            long[] bits = filter.getBits();
+            out.writeInt(filter.getHashes());
+            out.writeInt(bits.length);
+            for (long word : bits) {
+                out.writeLong(word);
+            }
+
+            long indexOffset = filterOffset + 8 + 8L * bits.length;
+            out.writeInt(indexed);
+            for (int i = 0; i < indexed; i++) {
+                out.writeInt(indexIds[i]);
+                out.writeLong(indexOffsets[i]);
+            }
+
+            out.writeLong(filterOffset);
+            out.writeLong(indexOffset);
+            out.writeInt(written);
+            out.writeInt(MAGIC);
+            out.flush();
+            file.getChannel().force(true);
+        }
+    }
+
+    /**
+     * Read a range of the file
+     *
+     * @param position Offset to read from
+     * @param length Number of bytes to read
+     * @return Buffer holding the bytes, ready to read
+     * @throws IOException If the range is past the end of the file
+     */
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException(path + " ended at " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Look up a record
+     *
+     * @param id Id of the record
+     * @return Value of the record, {@link #TOMBSTONE} if deleted here, or null if the segment does not hold it
+     * @throws IOException If the file cannot be read
+     */
+    byte[] get(int id) throws IOException {
+        if (!filter.mightContain(id)) {
+            return null;
+        }
+
+        int slot = Arrays.binarySearch(indexIds, id);
+        if (slot < 0) {
+            // Start from the last indexed record before the id
+            slot = -slot - 2;
+            if (slot < 0) {
+                return null;
+            }
+        }
+
+        long offset = indexOffsets[slot];
+        for (int i = 0; i < INDEX_INTERVAL && offset < dataEnd; i++) {
+            ByteBuffer header = read(offset, 8);
+            int recordId = header.getInt();
+            int length = header.getInt();
+            if (recordId == id) {
+                return length == TOMBSTONE_LENGTH ? TOMBSTONE : read(offset + 8, length).array();
+            }
+            if (recordId > id) {
+                return null;
+            }
+            offset += 8 + Math.max(0, length);
+        }
+        return null;
+    }
+
+    /**
+     * Open a cursor over every record in id order
+     *
+     * @return New {@link Cursor} positioned before the first record
+     * @throws IOException If the file cannot be opened
+     */
+    Cursor cursor() throws IOException {
+        return new Cursor();
+    }
+
+    /**
+     * Get the number of records in the segment, tombstones included
+     *
+     * @return Record count
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the path of the segment file
+     *
+     * @return Segment path
+     */
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Close the file handle
+     *
+     * @throws IOException If the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Sequential reader over the records of the segment
+     */
+    class Cursor implements Closeable {
+        /** Buffered stream over the records */
+        private DataInputStream in;
+
+        /** Bytes of records read so far */
+        private long position;
+
+        /** Id of the current record */
+        int id;
+
+        /** Value of the current record, {@link #TOMBSTONE} for a deletion */
+        byte[] value;
+
+        /**
+         * Open the segment for reading from the start
+         *
+         * @throws IOException If the file cannot be opened
+         */
+        private Cursor() throws IOException {
+            InputStream stream = Files.newInputStream(path);
+            this.in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+        }
+
+        /**
+         * Move to the next record
+         *
+         * @return False once every record has been read
+         * @throws IOException If the file cannot be read
+         */
+        boolean next() throws IOException {
+            if (position >= dataEnd) {
+                return false;
+            }
+
+            id = in.readInt();
+            int length = in.readInt();
+            if (length == TOMBSTONE_LENGTH) {
+                value = TOMBSTONE;
+                position += 8;
+            }
+            else {
+                value = new byte[length];
+                in.readFully(value);
+                position += 8 + length;
+            }
+            return true;
+        }
+
+        /**
+         * Close the stream
+         *
+         * @throws IOException If the stream cannot be closed
+         */
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
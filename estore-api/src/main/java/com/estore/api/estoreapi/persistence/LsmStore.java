@@ -0,0 +1,571 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Log-structured store of records keyed by int id
+ *
+ * A change is appended to a write-ahead {@link MutationLog} and applied to an
+ * in-memory sorted memtable. A full memtable is written out as an immutable
+ * {@link LsmSegment} and the log is reset. A lookup checks the memtable and
+ * then the segments from newest to oldest, skipping any whose bloom filter
+ * rules the id out. Once enough segments pile up a background thread merges
+ * them into one, keeping only the newest version of each live record, so the
+ * size on disk follows the live records rather than the history of changes.
+ * The MANIFEST file lists the live segments in order and is replaced atomically
+ *
+ * @param <T> Type of record held in the store
+ */
+public class LsmStore<T> {
+    private static final Logger LOG = Logger.getLogger(LsmStore.class.getName());
+
+    /** Name of the file listing the live segments */
+    private static final String MANIFEST = "MANIFEST";
+
+    /** Extension of the segment files */
+    private static final String SEGMENT_EXTENSION = ".seg";
+
+    /**
+     * Head of one sorted input of a merge
+     */
+    private static class Source {
+        /** Rank of the input, a higher rank is newer and wins on equal ids */
+        final int rank;
+
+        /** Segment being read, null for the memtable */
+        final LsmSegment.Cursor cursor;
+
+        /** Memtable being read, null for a segment */
+        final Iterator<Map.Entry<Integer, byte[]>> entries;
+
+        /** Id of the current record */
+        int id;
+
+        /** Value of the current record */
+        byte[] value;
+
+        Source(int rank, LsmSegment.Cursor cursor, Iterator<Map.Entry<Integer, byte[]>> entries) {
+            this.rank = rank;
+            this.cursor = cursor;
+            this.entries = entries;
+        }
+
+        /**
+         * Move to the next record of the input
+         *
+         * @return False once the input is exhausted
+         * @throws IOException If the segment cannot be read
+         */
+        boolean advance() throws IOException {
+            if (cursor != null) {
+                if (!cursor.next()) {
+                    return false;
+                }
+                id = cursor.id;
+                value = cursor.value;
+                return true;
+            }
+            if (!entries.hasNext()) {
+                return false;
+            }
+            Map.Entry<Integer, byte[]> entry = entries.next();
+            id = entry.getKey();
+            value = entry.getValue();
+            return true;
+        }
+    }
+
+    /**
+     * Merges sorted inputs into one sorted sequence with the newest version of each id
+     */
+    private static class Merge implements Iterator<Map.Entry<Integer, byte[]>> {
+        /** Inputs ordered by their current id, newest first on equal ids */
+        private PriorityQueue<Source> heads = new PriorityQueue<>(
+            Comparator.<Source>comparingInt(source -> source.id).thenComparing(source -> -source.rank));
+
+        /** Whether deleted records are left out */
+        private boolean dropTombstones;
+
+        /** Next record to return, null once the inputs are exhausted */
+        private Map.Entry<Integer, byte[]> next;
+
+        Merge(List<Source> sources, boolean dropTombstones) throws IOException {
+            this.dropTombstones = dropTombstones;
+            for (Source source : sources) {
+                if (source.advance()) {
+                    heads.add(source);
+                }
+            }
+            next = fetch();
+        }
+
+        /**
+         * Find the next record that should be returned
+         *
+         * @return Next record, or null once the inputs are exhausted
+         * @throws IOException If a segment cannot be read
+         */
+        private Map.Entry<Integer, byte[]> fetch() throws IOException {
+            while (!heads.isEmpty()) {
+                Source newest = heads.poll();
+                Map.Entry<Integer, byte[]> record = new AbstractMap.SimpleImmutableEntry<>(newest.id, newest.value);
+
+                // Older versions of the same id are skipped
+                while (!heads.isEmpty() && heads.peek().id == newest.id) {
+                    Source older = heads.poll();
+                    if (older.advance()) {
+                        heads.add(older);
+                    }
+                }
+                if (newest.advance()) {
+                    heads.add(newest);
+                }
+
+                if (!dropTombstones || record.getValue() != LsmSegment.TOMBSTONE) {
+                    return record;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<Integer, byte[]> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<Integer, byte[]> record = next;
+            try {
+                next = fetch();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return record;
+        }
+    }
+
+    /** Directory holding the segments, manifest and log */
+    private Path directory;
+
+    /** JSON serializer/deserializer */
+    private ObjectMapper objectMapper;
+
+    /** Type of the records */
+    private Class<T> type;
+
+    /** Records changed since the last segment was written, {@link LsmSegment#TOMBSTONE} for a deletion */
+    private TreeMap<Integer, byte[]> memtable = new TreeMap<>();
+
+    /** Live segments, oldest first */
+    private List<LsmSegment> segments = new ArrayList<>();
+
+    /** Write-ahead log of the memtable */
+    private MutationLog log;
+
+    /** Number of changes that fills the memtable */
+    private int memtableLimit;
+
+    /** Number of segments that triggers a compaction */
+    private int compactionThreshold;
+
+    /** Sequence number of the next segment file */
+    private int nextSegment;
+
+    /** Runs compactions in the background */
+    private ExecutorService compactor;
+
+    /** Serializes compactions */
+    private final Object compactionLock = new Object();
+
+    /** Whether a background compaction is queued or running */
+    private boolean compactionScheduled;
+
+    /** Number of compactions finished since the store was opened */
+    private long compactions;
+
+    /**
+     * Open the store in a directory, creating it if needed
+     *
+     * @param directory Directory holding the store
+     * @param objectMapper JSON serializer/deserializer
+     * @param type Type of the records
+     * @param properties Persistence settings
+     * @throws IOException If the store cannot be opened
+     */
+    public LsmStore(Path directory, ObjectMapper objectMapper, Class<T> type, PersistenceProperties properties)
+            throws IOException {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.type = type;
+        this.memtableLimit = Math.max(1, properties.getLsmMemtableSize());
+        this.compactionThreshold = Math.max(2, properties.getLsmCompactionThreshold());
+
+        Files.createDirectories(directory);
+        openSegments();
+
+        this.log = new MutationLog(directory.resolve("wal.log"), objectMapper, properties.isLogSync());
+        log.replay(entry -> {
+            if (entry.getOperation() == MutationLog.Operation.DELETE) {
+                memtable.put(entry.getId(), LsmSegment.TOMBSTONE);
+                return;
+            }
+            try {
+                memtable.put(entry.getId(), objectMapper.writeValueAsBytes(entry.getValue()));
+            }
+            catch (IOException e) {
+                LOG.log(Level.WARNING, "Skipping unreadable record " + entry.getId(), e);
+            }
+        });
+
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "compaction " + directory);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Open the segments listed in the manifest and delete any left over by an interrupted flush or compaction
+     *
+     * @throws IOException If a listed segment cannot be opened
+     */
+    private void openSegments() throws IOException {
+        Path manifest = directory.resolve(MANIFEST);
+        List<String> names = new ArrayList<>();
+        if (Files.exists(manifest)) {
+            names.addAll(Arrays.asList(objectMapper.readValue(manifest.toFile(), String[].class)));
+        }
+        for (String name : names) {
+            segments.add(new LsmSegment(directory.resolve(name)));
+            nextSegment = Math.max(nextSegment, sequenceOf(name) + 1);
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!names.contains(name)) {
+                    LOG.info("Deleting unlisted segment " + file);
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the sequence number of a segment file
+     *
+     * @param name Name of the segment file
+     * @return Sequence number
+     */
+    private static int sequenceOf(String name) {
+        return Integer.parseInt(name.substring(0, name.length() - SEGMENT_EXTENSION.length()));
+    }
+
+    /**
+     * Atomically replace the manifest with the current segment list
+     *
+     * @throws IOException If the manifest cannot be written
+     */
+    private void writeManifest() throws IOException {
+        String[] names = new String[segments.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = segments.get(i).getPath().getFileName().toString();
+        }
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        Files.write(temp, objectMapper.writeValueAsBytes(names));
+        Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Decode a stored record
+     *
+     * @param bytes Serialized record
+     * @return Record
+     * @throws IOException If the record cannot be decoded
+     */
+    private T decode(byte[] bytes) throws IOException {
+        return objectMapper.readValue(bytes, type);
+    }
+
+    /**
+     * Look up a record
+     *
+     * @param id Id of the record
+     * @return Record, or null if there is none
+     * @throws IOException If a segment cannot be read
+     */
+    public synchronized T get(int id) throws IOException {
+        byte[] value = memtable.get(id);
+        for (int i = segments.size() - 1; value == null && i >= 0; i--) {
+            value = segments.get(i).get(id);
+        }
+        return value == null || value == LsmSegment.TOMBSTONE ? null : decode(value);
+    }
+
+    /**
+     * Check if a record exists
+     *
+     * @param id Id of the record
+     * @return True if the store holds a live record for the id
+     * @throws IOException If a segment cannot be read
+     */
+    public synchronized boolean contains(int id) throws IOException {
+        return get(id) != null;
+    }
+
+    /**
+     * Create or replace a record
+     *
+     * @param id Id of the record
+     * @param record Record as it is now
+     * @throws IOException If the change cannot be logged
+     */
+    public synchronized void put(int id, T record) throws IOException {
+        JsonNode tree = objectMapper.valueToTree(record);
+        log.append(new MutationLog.Entry(MutationLog.Operation.PUT, id, tree));
+        memtable.put(id, objectMapper.writeValueAsBytes(tree));
+        flushIfFull();
+    }
+
+    /**
+     * Delete a record
+     *
+     * @param id Id of the record
+     * @throws IOException If the change cannot be logged
+     */
+    public synchronized void delete(int id) throws IOException {
+        log.append(new MutationLog.Entry(MutationLog.Operation.DELETE, id, null));
+        memtable.put(id, LsmSegment.TOMBSTONE);
+        flushIfFull();
+    }
+
+    /**
+     * Pass every live record to a consumer in id order
+     *
+     * @param consumer Receives the records
+     * @throws IOException If a segment cannot be read
+     */
+    public synchronized void forEach(Consumer<T> consumer) throws IOException {
+        List<Source> sources = new ArrayList<>();
+        try {
+            for (int i = 0; i < segments.size(); i++) {
+                sources.add(new Source(i, segments.get(i).cursor(), null));
+            }
+            sources.add(new Source(segments.size(), null, memtable.entrySet().iterator()));
+
+            Merge merge = new Merge(sources, true);
+            while (merge.hasNext()) {
+                consumer.accept(decode(merge.next().getValue()));
+            }
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        finally {
+            closeCursors(sources);
+        }
+    }
+
+    /**
+     * Close the segment cursors of merge inputs
+     *
+     * @param sources Inputs of the merge
+     * @throws IOException If a cursor cannot be closed
+     */
+    private static void closeCursors(List<Source> sources) throws IOException {
+        for (Source source : sources) {
+            if (source.cursor != null) {
+                source.cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Write the memtable out once it is full
+     *
+     * @throws IOException If the segment cannot be written
+     */
+    private void flushIfFull() throws IOException {
+        if (memtable.size() >= memtableLimit) {
+            flushMemtable();
+        }
+    }
+
+    /**
+     * Write the memtable out as a new segment and reset the log
+     *
+     * The log is reset only once the manifest lists the new segment, replaying
+     * it again after a crash in between is harmless
+     *
+     * @throws IOException If the segment cannot be written
+     */
+    public synchronized void flushMemtable() throws IOException {
+        if (memtable.isEmpty()) {
+            return;
+        }
+
+        Path path = directory.resolve(nextSegment++ + SEGMENT_EXTENSION);
+        LsmSegment.write(path, memtable.entrySet().iterator(), memtable.size());
+        segments.add(new LsmSegment(path));
+        writeManifest();
+        log.reset();
+        memtable = new TreeMap<>();
+
+        if (segments.size() >= compactionThreshold && !compactionScheduled && !compactor.isShutdown()) {
+            compactionScheduled = true;
+            compactor.execute(this::compactInBackground);
+        }
+    }
+
+    /**
+     * Scheduled compaction task, a failure is logged and retried after the next flush
+     */
+    private void compactInBackground() {
+        try {
+            compact();
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Compaction of " + directory + " failed", e);
+        }
+        finally {
+            synchronized (this) {
+                compactionScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Merge every current segment into one, dropping old versions and deletions
+     *
+     * The merge reads the immutable segments without holding the store lock,
+     * only swapping in the result blocks readers and writers
+     *
+     * @throws IOException If the merged segment cannot be written
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            List<LsmSegment> inputs;
+            Path path;
+            synchronized (this) {
+                if (segments.size() < 2) {
+                    return;
+                }
+                inputs = new ArrayList<>(segments);
+                path = directory.resolve(nextSegment++ + SEGMENT_EXTENSION);
+            }
+
+            int expected = 0;
+            List<Source> sources = new ArrayList<>();
+            try {
+                for (int i = 0; i < inputs.size(); i++) {
+                    sources.add(new Source(i, inputs.get(i).cursor(), null));
+                    expected += inputs.get(i).getCount();
+                }
+                // Every older segment is part of the merge, so deletions have nothing left to hide
+                LsmSegment.write(path, new Merge(sources, true), expected);
+            }
+            catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            finally {
+                closeCursors(sources);
+            }
+            LsmSegment merged = new LsmSegment(path);
+
+            synchronized (this) {
+                // Segments flushed during the merge are newer and stay after it
+                segments.subList(0, inputs.size()).clear();
+                segments.add(0, merged);
+                writeManifest();
+                compactions++;
+            }
+
+            for (LsmSegment input : inputs) {
+                input.close();
+                Files.delete(input.getPath());
+            }
+            LOG.info("Compacted " + inputs.size() + " segments of " + directory + " into " + merged.getCount()
+                     + " records");
+        }
+    }
+
+    /**
+     * Get the number of live segments
+     *
+     * @return Segment count
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Get the number of compactions finished since the store was opened
+     *
+     * @return Compaction count
+     */
+    public synchronized long getCompactions() {
+        return compactions;
+    }
+
+    /**
+     * Describe the persistence state of the store
+     *
+     * @return Current {@link StoreStatus status}
+     */
+    public synchronized StoreStatus getStatus() {
+        return new StoreStatus(directory.toString(), "lsm", memtable.size(), 0, log.size());
+    }
+
+    /**
+     * Stop compacting, write out the memtable and release every file
+     *
+     * @throws IOException If the memtable cannot be written
+     */
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            flushMemtable();
+            log.close();
+            for (LsmSegment segment : segments) {
+                segment.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+
+/**
+ * Implemented by DAOs whose persistence can be inspected and flushed on demand
+ */
+public interface ManagedStore {
+    /**
+     * Describe the persistence state of the data store
+     * 
+     * @return Current {@link StoreStatus status}
+     */
+    StoreStatus getStatus();
+
+    /**
+     * Make every change so far durable
+     * 
+     * @throws IOException If the data store cannot be written
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,425 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import com.estore.api.estoreapi.model.Order;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Implementation of OrderDAO which keeps the orders in a memory-mapped record file
+ *
+ * The file starts with a fixed header followed by one slot per order. Only an id
+ * to offset index is kept on the heap, orders are decoded from the mapping when
+ * they are read. New and updated orders are appended to the end of the file and
+ * committed by moving the end offset in the header, a delete or a superseded
+ * slot only flips the status byte of the slot
+ *
+ * Selected with persistence.order-store=mapped
+ */
+@Component
+@ConditionalOnExpression("'${persistence.backend:file}' == 'file' and '${persistence.order-store:file}' == 'mapped'")
+public class MappedOrderDAO implements OrderDAO, Stageable<Order> {
+    private static final Logger LOG = Logger.getLogger(MappedOrderDAO.class.getName());
+
+    /** Identifies an order record file */
+    private static final int MAGIC = 0x4F524453;
+
+    /** Version of the record layout */
+    private static final int VERSION = 1;
+
+    /** Size of the file header: magic, version, end offset and next id */
+    static final int HEADER_SIZE = 64;
+
+    /** Offset of the end of the last committed slot within the header */
+    private static final int END_OFFSET = 8;
+
+    /** Offset of the next id within the header */
+    private static final int NEXT_ID_OFFSET = 16;
+
+    /** Size of a slot header: length, id and status */
+    static final int SLOT_HEADER_SIZE = 9;
+
+    /** Offset of the status byte within a slot */
+    private static final int STATUS_OFFSET = 8;
+
+    /** Status byte of a slot holding a live order */
+    private static final byte LIVE = 1;
+
+    /** Status byte of a slot whose order was deleted or moved */
+    private static final byte DEAD = 0;
+
+    /** Size the file is first mapped with */
+    private static final int INITIAL_SIZE = 1 << 20;
+
+    /** Maps ids to the offset of their slot */
+    Map<Integer, Integer> index;
+
+    /** JSON serializer/deserializer for the order payloads */
+    private ObjectMapper objectMapper;
+
+    /** Filename of the record file */
+    private String filename;
+
+    /** Open handle to the record file */
+    private FileChannel channel;
+
+    /** Mapping of the record file */
+    private MappedByteBuffer buffer;
+
+    /** End of the last committed slot */
+    private int end;
+
+    /** Next id to assign */
+    private int nextId;
+
+    /** Whether every write is forced to disk */
+    private boolean sync;
+
+    /**
+     * Build the {@link MappedOrderDAO}
+     *
+     * The record file is created from the JSON order file the first time it is
+     * used. The import is written to filename.tmp and moved into place once it
+     * is complete, so a crash during it never leaves a record file behind
+     *
+     * @param filename Filename of the record file
+     * @param jsonFilename Filename of the JSON order file to import
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     *
+     * @throws IOException If there is an error reading the file
+     */
+    public MappedOrderDAO(@Value("${order.mapped.file}") String filename, @Value("${order.file}") String jsonFilename,
+                          ObjectMapper objectMapper, PersistenceProperties properties) throws IOException {
+        this.filename = filename;
+        this.objectMapper = objectMapper;
+        this.sync = properties.isLogSync();
+        this.index = new TreeMap<>();
+
+        Path path = Paths.get(filename);
+        if (!Files.exists(path)) {
+            Path temp = Paths.get(filename + ".tmp");
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                            StandardOpenOption.READ, StandardOpenOption.WRITE);
+            map(INITIAL_SIZE);
+            initialize(jsonFilename);
+            buffer.force();
+            channel.close();
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map((int) Math.max(INITIAL_SIZE, channel.size()));
+        load();
+    }
+
+    /**
+     * Map the record file with the given size, growing the file if needed
+     *
+     * @param size Size of the mapping in bytes
+     * @throws IOException If the file cannot be mapped
+     */
+    private void map(int size) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Make sure the mapping can hold the given number of bytes past the end
+     *
+     * @param needed Bytes about to be written at the end
+     * @throws IOException If the file cannot grow
+     */
+    private void ensureCapacity(int needed) throws IOException {
+        long required = (long) end + needed;
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException(filename + " cannot grow past 2GB");
+        }
+
+        long size = buffer.capacity();
+        while (size < required) {
+            size *= 2;
+        }
+        map((int) Math.min(size, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Write a fresh header and stream every order from the JSON order file into slots
+     *
+     * @param jsonFilename Filename of the JSON order file
+     * @throws IOException If the orders cannot be imported
+     */
+    private void initialize(String jsonFilename) throws IOException {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        end = HEADER_SIZE;
+        nextId = 1;
+
+        File json = new File(jsonFilename);
+        if (json.exists()) {
+            int imported = 0;
+            ObjectMapper reader = DataFormat.detect(json).mapper(objectMapper);
+            try (MappingIterator<Order> orders = reader.readerFor(Order.class).readValues(json)) {
+                while (orders.hasNextValue()) {
+                    Order order = orders.nextValue();
+                    append(order);
+                    nextId = Math.max(nextId, order.getId() + 1);
+                    imported++;
+                }
+            }
+            LOG.info("Imported " + imported + " orders from " + jsonFilename + " into " + filename);
+        }
+        commitHeader();
+    }
+
+    /**
+     * Rebuild the index by scanning the slots up to the committed end
+     *
+     * @throws IOException If the file is not an order record file or its header or slots are damaged
+     */
+    private void load() throws IOException {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException(filename + " is not an order record file");
+        }
+        long committed = buffer.getLong(END_OFFSET);
+        if (committed < HEADER_SIZE || committed > buffer.capacity()) {
+            // Appending from a bad end would write over the header or past the file
+            throw new IOException(filename + " has a damaged header, end offset " + committed);
+        }
+        end = (int) committed;
+        nextId = buffer.getInt(NEXT_ID_OFFSET);
+
+        index.clear();
+        int offset = HEADER_SIZE;
+        while (offset < end) {
+            int length = buffer.getInt(offset);
+            if (length < 0 || (long) offset + SLOT_HEADER_SIZE + length > end) {
+                throw new IOException(filename + " has a damaged slot at offset " + offset);
+            }
+            // A later slot for the same id supersedes an earlier one
+            if (buffer.get(offset + STATUS_OFFSET) == LIVE) {
+                index.put(buffer.getInt(offset + 4), offset);
+            }
+            offset += SLOT_HEADER_SIZE + length;
+        }
+    }
+
+    /**
+     * Store the end offset and next id in the header, this commits appended slots
+     */
+    private void commitHeader() {
+        buffer.putLong(END_OFFSET, end);
+        buffer.putInt(NEXT_ID_OFFSET, nextId);
+        if (sync) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Write an order into a new slot at the end of the file and index it
+     *
+     * @param order {@link Order} to write
+     * @throws IOException If the order cannot be written
+     */
+    private void append(Order order) throws IOException {
+        byte[] payload = objectMapper.writeValueAsBytes(order);
+        ensureCapacity(SLOT_HEADER_SIZE + payload.length);
+
+        int offset = end;
+        buffer.putInt(offset, payload.length);
+        buffer.putInt(offset + 4, order.getId());
+        buffer.put(offset + STATUS_OFFSET, LIVE);
+        ByteBuffer slot = buffer.duplicate();
+        slot.position(offset + SLOT_HEADER_SIZE);
+        slot.put(payload);
+
+        end += SLOT_HEADER_SIZE + payload.length;
+        index.put(order.getId(), offset);
+    }
+
+    /**
+     * Decode the order held in a slot
+     *
+     * @param offset Offset of the slot
+     * @return Decoded {@link Order}
+     * @throws IOException If the payload cannot be decoded
+     */
+    private Order decode(int offset) throws IOException {
+        byte[] payload = new byte[buffer.getInt(offset)];
+        ByteBuffer slot = buffer.duplicate();
+        slot.position(offset + SLOT_HEADER_SIZE);
+        slot.get(payload);
+        return objectMapper.readValue(payload, Order.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Order[] getOrders() throws IOException {
+        List<Order> orders = new ArrayList<>(index.size());
+        for (int offset : index.values()) {
+            orders.add(decode(offset));
+        }
+        return orders.toArray(new Order[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Decodes every order, the index only knows the ids
+     */
+    @Override
+    public synchronized Order[] getOrders(LocalDateTime from, LocalDateTime to) throws IOException {
+        List<Order> placed = new ArrayList<>();
+        for (Order order : getOrders()) {
+            if (order.placedWithin(from, to)) {
+                placed.add(order);
+            }
+        }
+        return placed.toArray(new Order[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Order getOrder(int id) throws IOException {
+        Integer offset = index.get(id);
+        if (offset == null) {
+            return null;
+        }
+        return decode(offset);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Order createOrder(Order order) throws IOException {
+        Order tmpOrd = new Order(nextId++, order.getTotalPrice(), order.getProducts(),
+                        order.isComplete(), order.getDateTime());
+
+        append(tmpOrd);
+        commitHeader();
+        return tmpOrd;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean deleteOrder(int id) throws IOException {
+        Integer offset = index.remove(id);
+        if (offset == null) {
+            return false;
+        }
+
+        buffer.put(offset + STATUS_OFFSET, DEAD);
+        if (sync) {
+            buffer.force();
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Order updateOrder(Order order) throws IOException {
+        Integer offset = index.get(order.getId());
+        if (offset == null) {
+            return null;
+        }
+
+        // Commit the new slot before retiring the old one so a crash never loses the order
+        append(order);
+        commitHeader();
+        buffer.put(offset + STATUS_OFFSET, DEAD);
+
+        return order;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int reserveId() {
+        int id = nextId++;
+        commitHeader();
+        return id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void stage(Order order) throws IOException {
+        Integer offset = index.get(order.getId());
+        append(order);
+        nextId = Math.max(nextId, order.getId() + 1);
+        commitHeader();
+        if (offset != null) {
+            buffer.put(offset + STATUS_OFFSET, DEAD);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object lockFor(int id) {
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized StoreStatus getStatus() {
+        return new StoreStatus(filename, "mapped", 0, 0, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Force the mapping to disk and release the file on shutdown
+     *
+     * @throws IOException If the file cannot be closed
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
@@ -0,0 +1,293 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Append-only log of the mutations made to a data store since its last checkpoint
+ *
+ * Each {@link Entry entry} is written as a single line of JSON so that a torn
+ * write at the end of the file can be detected and dropped on replay
+ */
+public class MutationLog {
+    private static final Logger LOG = Logger.getLogger(MutationLog.class.getName());
+
+    /** Kind of change an {@link Entry entry} records */
+    public enum Operation {
+        PUT,
+        DELETE
+    }
+
+    /**
+     * A single logged mutation
+     */
+    public static class Entry {
+        @JsonProperty("op") private Operation operation;
+        @JsonProperty("id") private int id;
+        @JsonProperty("value") private JsonNode value;
+
+        /**
+         * Create a log entry
+         *
+         * @param operation Kind of change
+         * @param id Id of the record that changed
+         * @param value New contents of the record, null for a delete
+         */
+        public Entry(@JsonProperty("op") Operation operation, @JsonProperty("id") int id,
+                     @JsonProperty("value") JsonNode value) {
+            this.operation = operation;
+            this.id = id;
+            this.value = value;
+        }
+
+        /**
+         * Get the kind of change
+         *
+         * @return Operation of the entry
+         */
+        public Operation getOperation() {
+            return operation;
+        }
+
+        /**
+         * Get the id of the record that changed
+         *
+         * @return Id of the record
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Get the new contents of the record
+         *
+         * @return Contents of the record, null for a delete
+         */
+        public JsonNode getValue() {
+            return value;
+        }
+    }
+
+    /** Location of the log file */
+    private Path path;
+
+    /** JSON serializer/deserializer */
+    private ObjectMapper objectMapper;
+
+    /** Whether every append is forced to disk */
+    private boolean sync;
+
+    /** Open handle to the log, created on the first append */
+    private FileChannel channel;
+
+    /** Number of entries currently in the log */
+    private int size;
+
+    /**
+     * Create a mutation log backed by the given file
+     *
+     * @param path Location of the log file
+     * @param objectMapper JSON serializer/deserializer
+     * @param sync True to force every append to disk
+     */
+    public MutationLog(Path path, ObjectMapper objectMapper, boolean sync) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+        this.sync = sync;
+    }
+
+    /**
+     * Get the location of the log file
+     *
+     * @return Path of the log
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Get the number of entries in the log
+     *
+     * @return Entries written since the last reset
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Append an entry to the end of the log
+     *
+     * @param entry Mutation to record
+     * @throws IOException If the log cannot be written
+     */
+    public synchronized void append(Entry entry) throws IOException {
+        write(entry);
+        if (sync) {
+            force();
+        }
+    }
+
+    /**
+     * Append an entry without forcing it to disk, a later {@link #force()} makes it durable
+     *
+     * @param entry Mutation to record
+     * @throws IOException If the log cannot be written
+     */
+    public synchronized void write(Entry entry) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                       StandardOpenOption.APPEND);
+        }
+
+        byte[] line = objectMapper.writeValueAsBytes(entry);
+        ByteBuffer buffer = ByteBuffer.allocate(line.length + 1);
+        buffer.put(line).put((byte) '\n').flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        size++;
+    }
+
+    /**
+     * Force every entry written so far to the storage device
+     *
+     * @throws IOException If the log cannot be synced
+     */
+    public synchronized void force() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Read every complete entry in the log in the order they were written
+     *
+     * An incomplete or unreadable tail is cut off the file so later appends
+     * start on a clean line
+     *
+     * @param consumer Receives each entry
+     * @throws IOException If the log cannot be read
+     */
+    public synchronized void replay(Consumer<Entry> consumer) throws IOException {
+        size = 0;
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        byte[] contents = Files.readAllBytes(path);
+        int start = 0;
+        for (int end = 0; end < contents.length; end++) {
+            if (contents[end] != '\n') {
+                continue;
+            }
+
+            Entry entry;
+            try {
+                entry = objectMapper.readValue(contents, start, end - start, Entry.class);
+            }
+            catch (IOException e) {
+                LOG.log(Level.WARNING, "Unreadable entry in " + path + ", discarding the rest of the log", e);
+                break;
+            }
+            consumer.accept(entry);
+            size++;
+            start = end + 1;
+        }
+
+        if (start < contents.length) {
+            LOG.warning("Truncating " + (contents.length - start) + " trailing bytes of " + path);
+            try (FileChannel truncate = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                truncate.truncate(start);
+            }
+        }
+    }
+
+    /**
+     * Empty the log, called once its entries are part of the data file
+     *
+     * The handle is released too, a store that stops changing holds none
+     * after its next checkpoint and the next append opens the log again
+     *
+     * @throws IOException If the log cannot be truncated
+     */
+    public synchronized void reset() throws IOException {
+        if (channel != null) {
+            channel.truncate(0);
+            channel.close();
+            channel = null;
+        }
+        else if (Files.exists(path)) {
+            try (FileChannel truncate = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                truncate.truncate(0);
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * Drop the entries written before a mark and keep any written since,
+     * called once the entries before the mark are part of the data file
+     *
+     * @param mark Entry count returned by {@link #size()} before the data file was captured
+     * @throws IOException If the log cannot be rewritten
+     */
+    public synchronized void discard(int mark) throws IOException {
+        if (mark >= size) {
+            reset();
+            return;
+        }
+        if (mark <= 0) {
+            return;
+        }
+
+        byte[] contents = Files.readAllBytes(path);
+        int start = 0;
+        for (int skipped = 0; skipped < mark; start++) {
+            if (contents[start] == '\n') {
+                skipped++;
+            }
+        }
+
+        // Written aside and moved over the log so a crash leaves one or the other
+        Path temp = Paths.get(path + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(contents, start, contents.length - start);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(false);
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        size -= mark;
+    }
+
+    /**
+     * Release the handle on the log file
+     *
+     * @throws IOException If the file cannot be closed
+     */
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,687 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import com.estore.api.estoreapi.model.Order;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+/**
+ * Implementation of OrderDAO which keeps the serialized orders outside the Java heap
+ *
+ * Every order is held as its JSON bytes in direct buffers, called arenas,
+ * allocated a fixed size at a time. The heap only holds an id to location
+ * index, a paged array of longs indexed by id like the {@link IntObjectMap},
+ * so the garbage collector never sees the orders and their product
+ * snapshots. An order is decoded each time it is read. The data file and
+ * {@link #writeOrders(OutputStream) full listings} are written by copying the
+ * bytes out of the arenas without decoding them
+ *
+ * A changed order is appended and its old bytes left behind, the arenas are
+ * compacted into fresh ones once more of them is dead than live. Changes are
+ * written like a {@link FileStore}: the data file is rewritten on every
+ * change, or with the mutation log enabled the change is logged and the data
+ * file rewritten at each checkpoint
+ *
+ * Selected with persistence.order-store=offheap
+ */
+@Component
+@ConditionalOnExpression("'${persistence.backend:file}' == 'file' and '${persistence.order-store:file}' == 'offheap'")
+public class OffHeapOrderDAO implements OrderDAO, Stageable<Order> {
+    private static final Logger LOG = Logger.getLogger(OffHeapOrderDAO.class.getName());
+
+    private static final byte[] ARRAY_START = "[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SEPARATOR = ",".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ARRAY_END = "]".getBytes(StandardCharsets.UTF_8);
+
+    /** Size of a slot header: id and length */
+    static final int SLOT_HEADER_SIZE = 8;
+
+    /** Bits of an id that select the entry within an index page */
+    private static final int PAGE_BITS = 10;
+
+    /** Entries per index page */
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /** Direct buffers holding the slots, only the last one is appended to */
+    private List<ByteBuffer> arenas = new ArrayList<>();
+
+    /** Size of a new arena, an order larger than that gets an arena of its own */
+    private int arenaBytes;
+
+    /** Index pages by id divided by the page size, an entry is a location or 0 for no order */
+    private long[][] pages = new long[0][];
+
+    /** Number of orders */
+    private int count;
+
+    /** Bytes of the arenas taken by slots, live or dead */
+    private long usedBytes;
+
+    /** Bytes of the arenas taken by the slots of current orders */
+    private long liveBytes;
+
+    /** JSON serializer/deserializer */
+    private ObjectMapper objectMapper;
+
+    /** Filename of the data file */
+    private String filename;
+
+    /** Hands out the ids of new orders */
+    private IdAllocator ids;
+
+    /** Log of the changes since the last checkpoint, null to rewrite the data file on every change */
+    private MutationLog mutationLog;
+
+    /** Logged changes after which the log is folded into the data file */
+    private int checkpointInterval;
+
+    /** True if a staged change is not yet in the data file, without a log */
+    private boolean staged;
+
+    /** Load running on the {@link StoreLoader}, null once the orders are loaded */
+    private volatile StoreLoader.Load pendingLoad;
+
+    /**
+     * Build the {@link OffHeapOrderDAO} loaded on the {@link StoreLoader} alongside the other stores
+     *
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param loader Loads the data file alongside the other stores
+     *
+     * @throws IOException If there is an error reading the file
+     */
+    @Autowired
+    public OffHeapOrderDAO(@Value("${order.file}") String filename, ObjectMapper objectMapper,
+                           PersistenceProperties properties, StoreLoader loader) throws IOException {
+        this(filename, objectMapper, properties, IdAllocator.forFile(filename, properties), loader);
+    }
+
+    /**
+     * Build the {@link OffHeapOrderDAO} with its own id allocator, loaded on a {@link StoreLoader}
+     *
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param ids Hands out the ids of new orders
+     * @param loader Loads the data file alongside the other stores, null to load it now
+     *
+     * @throws IOException If there is an error reading the file
+     */
+    public OffHeapOrderDAO(String filename, ObjectMapper objectMapper, PersistenceProperties properties,
+                           IdAllocator ids, StoreLoader loader) throws IOException {
+        this.filename = filename;
+        this.objectMapper = objectMapper;
+        this.ids = ids;
+        this.arenaBytes = Math.max(SLOT_HEADER_SIZE, properties.getOffHeapArenaBytes());
+        this.checkpointInterval = properties.getCheckpointInterval();
+        if (properties.isLogEnabled()) {
+            this.mutationLog = new MutationLog(Paths.get(filename + ".log"), objectMapper, properties.isLogSync());
+        }
+
+        if (loader == null) {
+            load();
+        }
+        else {
+            this.pendingLoad = loader.submit("orders", properties.isBackgroundOrderLoad(), this::load);
+        }
+    }
+
+    /**
+     * Copy every order in the data file into the arenas, then replay any logged changes on top of them
+     *
+     * @throws IOException If the data file or log cannot be read
+     */
+    private synchronized void load() throws IOException {
+        long start = System.nanoTime();
+        File file = new File(filename);
+        if (file.length() > 0) {
+            ObjectMapper reader = DataFormat.detect(file).mapper(objectMapper);
+            // One order is decoded at a time, only to re-encode it into an arena
+            try (MappingIterator<Order> orders = reader.readerFor(Order.class).readValues(file)) {
+                while (orders.hasNextValue()) {
+                    Order order = orders.nextValue();
+                    put(order.getId(), ByteBuffer.wrap(objectMapper.writeValueAsBytes(order)));
+                    ids.skipPast(order.getId());
+                }
+            }
+        }
+
+        if (mutationLog != null) {
+            mutationLog.replay(entry -> {
+                if (entry.getOperation() == MutationLog.Operation.DELETE) {
+                    remove(entry.getId());
+                    return;
+                }
+                try {
+                    put(entry.getId(), ByteBuffer.wrap(objectMapper.writeValueAsBytes(entry.getValue())));
+                    ids.skipPast(entry.getId());
+                }
+                catch (JsonProcessingException e) {
+                    LOG.log(Level.WARNING, "Skipping unreadable order " + entry.getId(), e);
+                }
+            });
+        }
+        LOG.info("Loaded " + count + " orders from " + filename + " into " + arenas.size() + " off-heap arenas ("
+                 + liveBytes / 1024 + " KB) in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * Wait until the orders have loaded, before taking the lock the load holds
+     *
+     * @throws IOException If the load failed
+     */
+    private void awaitLoad() throws IOException {
+        StoreLoader.Load load = pendingLoad;
+        if (load != null) {
+            load.await();
+            if (load.isDone()) {
+                pendingLoad = null;
+            }
+        }
+    }
+
+    /**
+     * Get where the slot of an order is
+     *
+     * @param id Id of the order
+     * @return Location of the slot, or 0 if there is no such order
+     */
+    private long locate(int id) {
+        int page = id >>> PAGE_BITS;
+        if (id < 0 || page >= pages.length || pages[page] == null) {
+            return 0;
+        }
+        return pages[page][id & (PAGE_SIZE - 1)];
+    }
+
+    /**
+     * Set where the slot of an order is, allocating its index page if needed
+     *
+     * @param id Id of the order
+     * @param location Location of the slot, or 0 to remove the order
+     * @return Location the order had before, or 0 if it had none
+     */
+    private long relocate(int id, long location) {
+        int page = id >>> PAGE_BITS;
+        if (page >= pages.length) {
+            if (location == 0) {
+                return 0;
+            }
+            pages = Arrays.copyOf(pages, Math.max(page + 1, pages.length * 2));
+        }
+        if (pages[page] == null) {
+            if (location == 0) {
+                return 0;
+            }
+            pages[page] = new long[PAGE_SIZE];
+        }
+        long previous = pages[page][id & (PAGE_SIZE - 1)];
+        pages[page][id & (PAGE_SIZE - 1)] = location;
+        return previous;
+    }
+
+    /**
+     * Get the arena a location points into
+     *
+     * @param location Location of a slot
+     * @return Arena holding the slot
+     */
+    private ByteBuffer arenaOf(long location) {
+        return arenas.get((int) (location >>> 32) - 1);
+    }
+
+    /**
+     * Get the payload of a slot without copying it
+     *
+     * @param location Location of the slot
+     * @return Buffer positioned on the JSON bytes of the order
+     */
+    private ByteBuffer payloadOf(long location) {
+        return payloadOf(arenas, location);
+    }
+
+    /**
+     * Get the size of a slot
+     *
+     * @param location Location of the slot
+     * @return Bytes taken by its header and payload
+     */
+    private int slotSize(long location) {
+        return SLOT_HEADER_SIZE + arenaOf(location).getInt((int) location + 4);
+    }
+
+    /**
+     * Write an order into a new slot and point the index at it, its old slot becomes dead
+     *
+     * @param id Id of the order
+     * @param payload JSON bytes of the order, consumed
+     */
+    private void put(int id, ByteBuffer payload) {
+        int length = payload.remaining();
+        int size = SLOT_HEADER_SIZE + length;
+        ByteBuffer arena = arenas.isEmpty() ? null : arenas.get(arenas.size() - 1);
+        if (arena == null || arena.remaining() < size) {
+            arena = ByteBuffer.allocateDirect(Math.max(arenaBytes, size));
+            arenas.add(arena);
+        }
+
+        int offset = arena.position();
+        arena.putInt(id);
+        arena.putInt(length);
+        arena.put(payload);
+        usedBytes += size;
+        liveBytes += size;
+
+        long previous = relocate(id, ((long) arenas.size() << 32) | offset);
+        if (previous != 0) {
+            liveBytes -= slotSize(previous);
+        }
+        else {
+            count++;
+        }
+    }
+
+    /**
+     * Drop an order from the index, its slot becomes dead
+     *
+     * @param id Id of the order
+     * @return True if there was such an order
+     */
+    private boolean remove(int id) {
+        long previous = relocate(id, 0);
+        if (previous == 0) {
+            return false;
+        }
+        liveBytes -= slotSize(previous);
+        count--;
+        return true;
+    }
+
+    /**
+     * Copy the live slots into fresh arenas once more of the arenas is dead than live
+     *
+     * The old arenas are only referenced by this store, their memory is
+     * released once the garbage collector drops them
+     */
+    private void compactIfDue() {
+        long dead = usedBytes - liveBytes;
+        if (dead <= liveBytes || dead < arenaBytes) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<ByteBuffer> old = arenas;
+        long[][] oldPages = pages;
+        arenas = new ArrayList<>();
+        pages = new long[oldPages.length][];
+        count = 0;
+        usedBytes = 0;
+        liveBytes = 0;
+        for (int page = 0; page < oldPages.length; page++) {
+            if (oldPages[page] == null) {
+                continue;
+            }
+            for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                long location = oldPages[page][slot];
+                if (location != 0) {
+                    put((page << PAGE_BITS) | slot, payloadOf(old, location));
+                }
+            }
+        }
+        LOG.info("Compacted " + old.size() + " off-heap order arenas into " + arenas.size() + ", freeing "
+                 + dead / 1024 + " KB, in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * Get the payload of a slot in a given set of arenas
+     *
+     * @param from Arenas the location points into
+     * @param location Location of the slot
+     * @return Buffer positioned on the JSON bytes of the order
+     */
+    private static ByteBuffer payloadOf(List<ByteBuffer> from, long location) {
+        ByteBuffer arena = from.get((int) (location >>> 32) - 1);
+        int offset = (int) location;
+        ByteBuffer payload = arena.duplicate();
+        payload.limit(offset + SLOT_HEADER_SIZE + arena.getInt(offset + 4));
+        payload.position(offset + SLOT_HEADER_SIZE);
+        return payload;
+    }
+
+    /**
+     * Get the locations of every order in id order
+     *
+     * @return Locations of the slots
+     */
+    private long[] locations() {
+        long[] locations = new long[count];
+        int found = 0;
+        for (long[] page : pages) {
+            if (page == null) {
+                continue;
+            }
+            for (long location : page) {
+                if (location != 0) {
+                    locations[found++] = location;
+                }
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Decode the order in a slot
+     *
+     * @param location Location of the slot
+     * @return Decoded {@link Order}
+     * @throws IOException If the payload cannot be decoded
+     */
+    private Order decode(long location) throws IOException {
+        return objectMapper.readValue(new ByteBufferBackedInputStream(payloadOf(location)), Order.class);
+    }
+
+    /**
+     * Write every order as a JSON array by copying its bytes out of the arenas, without decoding it
+     *
+     * @param out Stream to write to, left open
+     * @throws IOException If the orders cannot be written
+     */
+    public synchronized void writeOrders(OutputStream out) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+        out.write(ARRAY_START);
+        boolean first = true;
+        for (long location : locations()) {
+            if (!first) {
+                out.write(SEPARATOR);
+            }
+            first = false;
+            ByteBuffer payload = payloadOf(location);
+            while (payload.hasRemaining()) {
+                channel.write(payload);
+            }
+        }
+        out.write(ARRAY_END);
+        out.flush();
+    }
+
+    /**
+     * Replace the data file with every order, the file is swapped in atomically
+     *
+     * @throws IOException If the file cannot be written
+     */
+    private void save() throws IOException {
+        Path target = Paths.get(filename);
+        Path temp = Paths.get(filename + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            writeOrders(out);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        staged = false;
+    }
+
+    /**
+     * Fold the log into the data file and empty it
+     *
+     * @throws IOException If the checkpoint cannot be written
+     */
+    private void checkpoint() throws IOException {
+        int mark = mutationLog.size();
+        save();
+        mutationLog.discard(mark);
+    }
+
+    /**
+     * Make a change durable, by logging it or rewriting the data file
+     *
+     * @param entry The change
+     * @throws IOException If the change cannot be persisted
+     */
+    private void persist(MutationLog.Entry entry) throws IOException {
+        if (mutationLog == null) {
+            save();
+            return;
+        }
+        mutationLog.append(entry);
+        if (mutationLog.size() >= checkpointInterval) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Store an order, encoding it once for the arena and once for the log
+     *
+     * @param order {@link Order} as it is now
+     * @return Log entry of the change, or null without a log
+     * @throws IOException If the order cannot be encoded
+     */
+    private MutationLog.Entry store(Order order) throws IOException {
+        put(order.getId(), ByteBuffer.wrap(objectMapper.writeValueAsBytes(order)));
+        compactIfDue();
+        return mutationLog == null ? null : new MutationLog.Entry(MutationLog.Operation.PUT, order.getId(),
+                                                                  objectMapper.valueToTree(order));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Order[] getOrders() throws IOException {
+        long[] locations = locations();
+        Order[] orders = new Order[locations.length];
+        for (int i = 0; i < locations.length; i++) {
+            orders[i] = decode(locations[i]);
+        }
+        return orders;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Decodes every order, the index only knows the ids
+     */
+    @Override
+    public synchronized Order[] getOrders(LocalDateTime from, LocalDateTime to) throws IOException {
+        List<Order> placed = new ArrayList<>();
+        for (long location : locations()) {
+            Order order = decode(location);
+            if (order.placedWithin(from, to)) {
+                placed.add(order);
+            }
+        }
+        return placed.toArray(new Order[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Order getOrder(int id) throws IOException {
+        long location = locate(id);
+        return location == 0 ? null : decode(location);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Order createOrder(Order order) throws IOException {
+        // A change waits for the orders to load, before taking the lock the load holds
+        awaitLoad();
+        synchronized (this) {
+            Order tmpOrd = new Order(ids.next(), order.getTotalPrice(), order.getProducts(),
+                            order.isComplete(), order.getDateTime());
+
+            persist(store(tmpOrd));
+            return tmpOrd;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean deleteOrder(int id) throws IOException {
+        awaitLoad();
+        synchronized (this) {
+            if (!remove(id)) {
+                return false;
+            }
+            compactIfDue();
+            persist(new MutationLog.Entry(MutationLog.Operation.DELETE, id, null));
+            return true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Order updateOrder(Order order) throws IOException {
+        awaitLoad();
+        synchronized (this) {
+            if (locate(order.getId()) == 0) {
+                return null;
+            }
+
+            persist(store(order));
+            return order;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int reserveId() {
+        return ids.next();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stage(Order order) throws IOException {
+        awaitLoad();
+        synchronized (this) {
+            MutationLog.Entry entry = store(order);
+            ids.skipPast(order.getId());
+            if (mutationLog != null) {
+                mutationLog.write(entry);
+            }
+            else {
+                staged = true;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object lockFor(int id) {
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        awaitLoad();
+        synchronized (this) {
+            if (mutationLog != null) {
+                mutationLog.force();
+                if (mutationLog.size() >= checkpointInterval) {
+                    checkpoint();
+                }
+            }
+            else if (staged) {
+                save();
+            }
+        }
+    }
+
+    /**
+     * Get the bytes of direct memory held by the arenas
+     *
+     * @return Capacity of every arena
+     */
+    public synchronized long getOffHeapBytes() {
+        long bytes = 0;
+        for (ByteBuffer arena : arenas) {
+            bytes += arena.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the bytes of the arenas holding current orders
+     *
+     * @return Bytes of the live slots
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized StoreStatus getStatus() {
+        String mode = mutationLog != null ? "off-heap log" : "off-heap snapshot";
+        return new StoreStatus(filename, mode, 0, 0, mutationLog != null ? mutationLog.size() : 0);
+    }
+
+    /**
+     * Write any outstanding changes to the data file and release the arenas on shutdown
+     *
+     * @throws IOException If there is an error writing to the file
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        awaitLoad();
+        synchronized (this) {
+            if (mutationLog != null) {
+                if (mutationLog.size() > 0) {
+                    checkpoint();
+                }
+                mutationLog.close();
+            }
+            else if (staged) {
+                save();
+            }
+            arenas = new ArrayList<>();
+            pages = new long[0][];
+            count = 0;
+        }
+        ids.close();
+    }
+}
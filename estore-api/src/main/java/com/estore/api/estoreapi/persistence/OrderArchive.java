@@ -0,0 +1,363 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.estore.api.estoreapi.model.Order;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compressed, immutable archive of old orders bucketed by the month they were placed
+ *
+ * Every archive run writes one gzipped segment per month it touches, named
+ * sequence-yyyy-MM.json.gz, holding the ids of its orders followed by the
+ * orders themselves. Only the ids are read on startup, a segment is
+ * decompressed when one of its orders is looked up and the most recently
+ * used segments stay in memory. A segment is never changed, removing an
+ * order writes a replacement segment without it
+ */
+public class OrderArchive {
+    private static final Logger LOG = Logger.getLogger(OrderArchive.class.getName());
+
+    /** Extension of the segment files */
+    private static final String SEGMENT_EXTENSION = ".json.gz";
+
+    /** Directory holding the segments */
+    private Path directory;
+
+    /** JSON serializer/deserializer */
+    private ObjectMapper objectMapper;
+
+    /** Segment holding the newest archived copy of each order */
+    private Map<Integer, String> segmentOf = new HashMap<>();
+
+    /** Live segments in the order they were written */
+    private TreeMap<Integer, String> segments = new TreeMap<>();
+
+    /** Recently decompressed segments by name */
+    private LruCache<String, Map<Integer, Order>> cache;
+
+    /** Sequence number of the next segment */
+    private int nextSequence;
+
+    /**
+     * Open the archive in a directory, creating it if needed
+     *
+     * @param directory Directory holding the segments
+     * @param objectMapper JSON serializer/deserializer
+     * @param cacheSegments Number of decompressed segments kept in memory
+     * @throws IOException If a segment cannot be read
+     */
+    public OrderArchive(Path directory, ObjectMapper objectMapper, int cacheSegments) throws IOException {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.cache = new LruCache<>(cacheSegments);
+
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SEGMENT_EXTENSION)) {
+                    segments.put(sequenceOf(name), name);
+                }
+                else if (name.endsWith(".tmp")) {
+                    // Left over by an interrupted write, the orders are still in the hot store
+                    Files.delete(file);
+                }
+            }
+        }
+
+        // Later segments hold newer copies
+        for (String name : segments.values()) {
+            for (int id : readIds(name)) {
+                segmentOf.put(id, name);
+            }
+        }
+        nextSequence = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        LOG.info("Opened order archive " + directory + ": " + segmentOf.size() + " orders in " + segments.size()
+                 + " segments");
+    }
+
+    /**
+     * Get the sequence number of a segment file
+     *
+     * @param name Name of the segment file
+     * @return Sequence number
+     */
+    private static int sequenceOf(String name) {
+        return Integer.parseInt(name.substring(0, name.indexOf('-')));
+    }
+
+    /**
+     * Open a parser over a compressed segment
+     *
+     * @param name Name of the segment
+     * @return Parser positioned before the segment object
+     * @throws IOException If the segment cannot be opened
+     */
+    private JsonParser open(String name) throws IOException {
+        InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(name))));
+        JsonParser parser = objectMapper.getFactory().createParser(in);
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            parser.close();
+            throw new IOException(name + " is not an archive segment");
+        }
+        return parser;
+    }
+
+    /**
+     * Read the ids of a segment without decompressing its orders
+     *
+     * @param name Name of the segment
+     * @return Ids of the orders in the segment
+     * @throws IOException If the segment cannot be read
+     */
+    private int[] readIds(String name) throws IOException {
+        try (JsonParser parser = open(name)) {
+            parser.nextToken();
+            if (!"ids".equals(parser.getCurrentName()) || parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException(name + " does not start with its ids");
+            }
+            return objectMapper.readValue(parser, int[].class);
+        }
+    }
+
+    /**
+     * Decompress every order of a segment
+     *
+     * @param name Name of the segment
+     * @return Orders of the segment keyed by id
+     * @throws IOException If the segment cannot be read
+     */
+    private Map<Integer, Order> readOrders(String name) throws IOException {
+        Map<Integer, Order> orders = cache.get(name);
+        if (orders != null) {
+            return orders;
+        }
+
+        orders = new HashMap<>();
+        try (JsonParser parser = open(name)) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("orders".equals(field)) {
+                    for (Order order : objectMapper.readValue(parser, Order[].class)) {
+                        orders.put(order.getId(), order);
+                    }
+                }
+                else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        cache.put(name, orders);
+        return orders;
+    }
+
+    /**
+     * Write orders to a new segment and force it to disk
+     *
+     * @param month Month the orders were placed in
+     * @param orders Orders of the segment
+     * @return Name of the segment
+     * @throws IOException If the segment cannot be written
+     */
+    private String writeSegment(YearMonth month, Collection<Order> orders) throws IOException {
+        String name = nextSequence++ + "-" + month + SEGMENT_EXTENSION;
+        Path temp = directory.resolve(name + ".tmp");
+
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             GZIPOutputStream out = new GZIPOutputStream(file, 1 << 16)) {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                // The stream is finished and forced below, not closed with the generator
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("ids");
+                for (Order order : orders) {
+                    generator.writeNumber(order.getId());
+                }
+                generator.writeEndArray();
+                generator.writeFieldName("orders");
+                objectMapper.writeValue(generator, orders);
+                generator.writeEndObject();
+            }
+            out.finish();
+            file.getChannel().force(true);
+        }
+        Files.move(temp, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        segments.put(sequenceOf(name), name);
+        return name;
+    }
+
+    /**
+     * Archive orders, grouping them into one new segment per month they were placed in
+     *
+     * Every segment is on disk before this returns, so the orders can then
+     * be dropped from the hot store
+     *
+     * @param orders Orders to archive
+     * @throws IOException If a segment cannot be written
+     */
+    public synchronized void add(Collection<Order> orders) throws IOException {
+        Map<YearMonth, List<Order>> months = new TreeMap<>();
+        for (Order order : orders) {
+            months.computeIfAbsent(YearMonth.from(order.getDateTime()), month -> new ArrayList<>()).add(order);
+        }
+
+        Set<String> superseded = new TreeSet<>();
+        for (Map.Entry<YearMonth, List<Order>> month : months.entrySet()) {
+            String name = writeSegment(month.getKey(), month.getValue());
+            for (Order order : month.getValue()) {
+                String previous = segmentOf.put(order.getId(), name);
+                if (previous != null) {
+                    superseded.add(previous);
+                }
+            }
+        }
+
+        // Orders archived again, by a run interrupted before it cleared the hot store
+        for (String name : superseded) {
+            rewrite(name);
+        }
+    }
+
+    /**
+     * Look up an archived order
+     *
+     * @param id Id of the order
+     * @return Archived {@link Order order}, or null if it is not archived
+     * @throws IOException If the segment cannot be read
+     */
+    public synchronized Order get(int id) throws IOException {
+        String name = segmentOf.get(id);
+        return name == null ? null : readOrders(name).get(id);
+    }
+
+    /**
+     * Check if an order is archived
+     *
+     * @param id Id of the order
+     * @return True if the archive holds the order
+     */
+    public synchronized boolean contains(int id) {
+        return segmentOf.containsKey(id);
+    }
+
+    /**
+     * Remove an order from the archive by replacing its segment with one without it
+     *
+     * @param id Id of the order
+     * @return True if the order was archived
+     * @throws IOException If the segment cannot be rewritten
+     */
+    public synchronized boolean remove(int id) throws IOException {
+        String name = segmentOf.remove(id);
+        if (name == null) {
+            return false;
+        }
+        rewrite(name);
+        return true;
+    }
+
+    /**
+     * Replace a segment with one holding only the orders still indexed to it,
+     * or delete it if there are none
+     *
+     * @param name Name of the segment
+     * @throws IOException If the segment cannot be rewritten
+     */
+    private void rewrite(String name) throws IOException {
+        Map<Integer, Order> orders = new TreeMap<>(readOrders(name));
+        orders.keySet().removeIf(id -> !name.equals(segmentOf.get(id)));
+
+        if (!orders.isEmpty()) {
+            YearMonth month = YearMonth.parse(name.substring(name.indexOf('-') + 1,
+                                                             name.length() - SEGMENT_EXTENSION.length()));
+            String replacement = writeSegment(month, orders.values());
+            for (int other : orders.keySet()) {
+                segmentOf.put(other, replacement);
+            }
+        }
+        segments.remove(sequenceOf(name));
+        cache.remove(name);
+        Files.delete(directory.resolve(name));
+    }
+
+    /**
+     * Pass every archived order to a consumer, one segment at a time
+     *
+     * @param consumer Receives the orders
+     * @throws IOException If a segment cannot be read
+     */
+    public synchronized void forEach(Consumer<Order> consumer) throws IOException {
+        for (String name : segments.values()) {
+            for (Order order : readOrders(name).values()) {
+                if (name.equals(segmentOf.get(order.getId()))) {
+                    consumer.accept(order);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the greatest archived order id
+     *
+     * @return Greatest id, 0 if the archive is empty
+     */
+    public synchronized int getMaxId() {
+        int max = 0;
+        for (int id : segmentOf.keySet()) {
+            max = Math.max(max, id);
+        }
+        return max;
+    }
+
+    /**
+     * Get the number of archived orders
+     *
+     * @return Order count
+     */
+    public synchronized int size() {
+        return segmentOf.size();
+    }
+
+    /**
+     * Get the number of segment files
+     *
+     * @return Segment count
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Get the hit rate and size of the decompressed segment cache
+     *
+     * @return Current {@link CacheStats cache statistics}
+     */
+    public CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+}
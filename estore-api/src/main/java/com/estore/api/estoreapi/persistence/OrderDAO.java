@@ -1,6 +1,7 @@
 package com.estore.api.estoreapi.persistence;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
 
 import com.estore.api.estoreapi.model.Order;
 
@@ -20,6 +21,17 @@ public interface OrderDAO {
 
     Order[] getOrders() throws IOException;
 
+    /**
+     * Retrieves the {@link Order orders} placed within a time range
+     * 
+     * @param from Start of the range, inclusive, null for no start
+     * @param to End of the range, exclusive, null for no end
+     * @return Array of {@link Order order} objects, array may be empty
+     * @throws IOException If the data store cannot be accessed
+     */
+
+    Order[] getOrders(LocalDateTime from, LocalDateTime to) throws IOException;
+
     /**
      * Retrieves {@link Order order} from the data store
      * 
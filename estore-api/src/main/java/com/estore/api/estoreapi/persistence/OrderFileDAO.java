@@ -1,56 +1,190 @@
 package com.estore.api.estoreapi.persistence;
 
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import java.io.File;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+
+import javax.annotation.PreDestroy;
 
 import com.estore.api.estoreapi.model.Order;
 
+/**
+ * Implementation of OrderDAO which will save to a file as a data store
+ * 
+ * With the archive enabled, completed orders older than the archive age are
+ * moved by a background thread into a compressed {@link OrderArchive} and no
+ * longer rewritten with the data file. Lookups fall through to the archive
+ */
 @Component
-public class OrderFileDAO implements OrderDAO {
+@ConditionalOnProperty(name = {"persistence.backend", "persistence.order-store"}, havingValue = "file",
+                       matchIfMissing = true)
+public class OrderFileDAO implements OrderDAO, Stageable<Order>, Replicable, Snapshottable {
     private static final Logger LOG = Logger.getLogger(OrderFileDAO.class.getName());
     
     /** Maps ids to their corresponding {@link Order} */
-    Map<Integer, Order> orderMap;
+    IntObjectMap<Order> orderMap;
+
+    /** Hands out the ids of new orders */
+    private IdAllocator ids;
 
-    /** JSON serializer/deserializer */
+    /** Keeps the data file in sync with orderMap */
+    private FileStore<Order> fileStore;
+
+    /** JSON serializer of the archived orders sent to followers */
     private ObjectMapper objectMapper;
 
-    /** Next id to assign */
-    private static int nextId;
+    /** Holds old completed orders, null without an archive */
+    private OrderArchive archive;
+
+    /** Age in days after which a completed order is archived */
+    private int archiveAfterDays;
 
-    private String filename;
+    /** Background thread moving old orders to the archive, null when disabled */
+    private volatile ScheduledExecutorService archiver;
+
+    /**
+     * Build the {@link OrderFileDAO} and the default persistence settings,
+     * ids are kept in memory
+     * 
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public OrderFileDAO(String filename, ObjectMapper objectMapper) throws IOException {
+        this(filename, null, objectMapper, new PersistenceProperties(), new IdAllocator());
+    }
 
     /**
      * Build the {@link OrderFileDAO}
      * 
      * @param filename Filename to store the data in
+     * @param archiveDirectory Directory of the order archive, null for none
      * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
      * 
      * @throws IOException If there is an error reading the file
      */
-    public OrderFileDAO(@Value("${order.file}") String filename, ObjectMapper objectMapper) throws IOException {
-        this.filename = filename;
-        this.objectMapper = objectMapper;
-        load();
+    public OrderFileDAO(@Value("${order.file}") String filename,
+                        @Value("${order.archive.dir}") String archiveDirectory, ObjectMapper objectMapper,
+                        PersistenceProperties properties) throws IOException {
+        this(filename, archiveDirectory, objectMapper, properties, IdAllocator.forFile(filename, properties));
     }
 
     /**
-     * Gets next id and increments it
+     * Build the {@link OrderFileDAO} loaded on the {@link StoreLoader} alongside the other stores
      * 
-     * Syncronized to prevent multiple threads from accessing nextId concurrently
+     * @param filename Filename to store the data in
+     * @param archiveDirectory Directory of the order archive, null for none
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param loader Loads the data file alongside the other stores
      * 
-     * @return The next id to assign
+     * @throws IOException If there is an error reading the file
      */
-    private synchronized static int getNextId() {
-        return nextId++;
+    @Autowired
+    public OrderFileDAO(@Value("${order.file}") String filename,
+                        @Value("${order.archive.dir}") String archiveDirectory, ObjectMapper objectMapper,
+                        PersistenceProperties properties, StoreLoader loader) throws IOException {
+        this(filename, archiveDirectory, objectMapper, properties, IdAllocator.forFile(filename, properties), loader);
+    }
+
+    /**
+     * Build the {@link OrderFileDAO} with its own id allocator
+     * 
+     * @param filename Filename to store the data in
+     * @param archiveDirectory Directory of the order archive, null for none
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param ids Hands out the ids of new orders
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public OrderFileDAO(String filename, String archiveDirectory, ObjectMapper objectMapper,
+                        PersistenceProperties properties, IdAllocator ids) throws IOException {
+        this(filename, archiveDirectory, objectMapper, properties, ids, null);
+    }
+
+    /**
+     * Build the {@link OrderFileDAO} with its own id allocator, loaded on a {@link StoreLoader}
+     * 
+     * @param filename Filename to store the data in
+     * @param archiveDirectory Directory of the order archive, null for none
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param ids Hands out the ids of new orders
+     * @param loader Loads the data file alongside the other stores, null to load it now
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public OrderFileDAO(String filename, String archiveDirectory, ObjectMapper objectMapper,
+                        PersistenceProperties properties, IdAllocator ids, StoreLoader loader) throws IOException {
+        this.ids = ids;
+        this.objectMapper = objectMapper;
+        this.orderMap = new IntObjectMap<>();
+        this.fileStore = new FileStore<>(filename, objectMapper, Order[].class, Order::getId,
+                                         this::getOrdersArray, orderMap, properties);
+        this.archiveAfterDays = properties.getArchiveAfterDays();
+
+        // An archive left by an earlier run is still read after archiving is switched off
+        if (archiveDirectory != null) {
+            Path directory = Paths.get(archiveDirectory);
+            if (properties.isArchiveEnabled() || Files.isDirectory(directory)) {
+                this.archive = new OrderArchive(directory, objectMapper, properties.getArchiveCacheSegments());
+            }
+        }
+        // The archiver only starts once the orders are loaded
+        boolean archiving = archive != null && properties.isArchiveEnabled();
+        if (loader == null) {
+            load();
+            fileStore.watch(this::reloaded);
+            if (archiving) {
+                startArchiver(properties.getArchiveIntervalMillis());
+            }
+        }
+        else {
+            fileStore.awaitBeforeUse(loader.submit("orders", properties.isBackgroundOrderLoad(), () -> {
+                load();
+                fileStore.watch(this::reloaded);
+                if (archiving) {
+                    startArchiver(properties.getArchiveIntervalMillis());
+                }
+            }));
+        }
+    }
+
+    /**
+     * Start moving old orders to the archive in the background
+     * 
+     * @param interval Time between two runs in milliseconds
+     */
+    private void startArchiver(long interval) {
+        this.archiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // The first run waits an interval so it does not hold up startup or race the first requests
+        this.archiver.scheduleWithFixedDelay(this::archiveInBackground, interval, interval, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -69,59 +203,94 @@ public class OrderFileDAO implements OrderDAO {
     }
 
     /**
-     * Saves {@link Order} to the DAO file
+     * Load all {@link Order} from the DAO file and store in the map
      * 
-     * @throws IOException If there is an error writing to the file
+     * @throws IOException If there is an error reading the file
      */
-    private void save() throws IOException{
-        Order[] allOrders = getOrdersArray();
+    private void load() throws IOException {
+        // Readers wait rather than see part of the orders while they load in the background
+        synchronized(orderMap) {
+            orderMap.clear();
+
+            fileStore.load(orderMap);
 
-        // Uses object mapper to convert to json and write to file
-        objectMapper.writeValue(new File(filename), allOrders);
+            // Never hand out an id already stored
+            for (int id : orderMap.keySet()) {
+                ids.skipPast(id);
+            }
+            if (archive != null) {
+                ids.skipPast(archive.getMaxId());
+            }
+        }
     }
 
     /**
-     * Load all {@link Order} from the DAO file and store in the map
+     * Apply the {@link Order orders} another program changed in the data file
      * 
-     * @throws IOException If there is an error reading the file
+     * @param changed {@link Order Orders} added or changed
+     * @param removed Ids of the {@link Order orders} removed
      */
-    private void load() throws IOException {
-        orderMap = new TreeMap<>();
-        nextId = 0;
-
-        Order[] serializedOrders = objectMapper.readValue(new File(filename), Order[].class);
+    private void reloaded(List<Order> changed, List<Integer> removed) {
+        synchronized(orderMap) {
+            for (Order order : changed) {
+                orderMap.put(order.getId(), order);
+                ids.skipPast(order.getId());
+            }
+            for (int id : removed) {
+                orderMap.remove(id);
+            }
+        }
+    }
 
-        // Add all orders and keep track of the greatest id
-        for (Order order: serializedOrders) {
-            orderMap.put(order.getId(), order);
-            if (order.getId() > nextId) {
-                nextId = order.getId();
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Order[] getOrders() throws IOException {
+        if (archive == null) {
+            // Synchronize on OrderMap so that it can't be modified while being read
+            synchronized(orderMap) {
+                return getOrdersArray();
             }
         }
 
-        // Incremement id again so it is ready to return the next id
-        getNextId();
+        // A hot copy of an order replaces an archived one
+        Map<Integer, Order> orders = new TreeMap<>();
+        archive.forEach(order -> orders.put(order.getId(), order));
+        synchronized(orderMap) {
+            orders.putAll(orderMap);
+        }
+        return orders.values().toArray(new Order[0]);
     }
 
     /**
      * {@inheritDoc}
+     *
+     * Scans every order, the archived ones included
      */
     @Override
-    public Order[] getOrders() {
-        // Synchronize on OrderMap so that it can't be modified while being read
-        synchronized(orderMap) {
-            return getOrdersArray();
+    public Order[] getOrders(LocalDateTime from, LocalDateTime to) throws IOException {
+        List<Order> placed = new ArrayList<>();
+        for (Order order : getOrders()) {
+            if (order.placedWithin(from, to)) {
+                placed.add(order);
+            }
         }
+        return placed.toArray(new Order[0]);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Order getOrder(int id) {
+    public Order getOrder(int id) throws IOException {
         synchronized(orderMap) {
-            return orderMap.get(id);
+            Order order = orderMap.get(id);
+            if (order != null || archive == null) {
+                return order;
+            }
         }
+        return archive.get(id);
     }
 
     /**
@@ -129,13 +298,15 @@ public class OrderFileDAO implements OrderDAO {
      */
     @Override
     public Order createOrder(Order order) throws IOException {
+        // A change waits for the orders to load, before taking the lock the load needs
+        fileStore.awaitLoad();
         synchronized(orderMap) {
-            Order tmpOrd = new Order(getNextId(), order.getTotalPrice(), order.getProducts(), 
+            Order tmpOrd = new Order(ids.next(), order.getTotalPrice(), order.getProducts(), 
                             order.isComplete(), order.getDateTime());
             
             // Add to map and save to DAO
             orderMap.put(tmpOrd.getId(), tmpOrd);
-            save();
+            fileStore.put(tmpOrd);
 
             return tmpOrd;
         }
@@ -146,13 +317,17 @@ public class OrderFileDAO implements OrderDAO {
      */
     @Override
     public boolean deleteOrder(int id) throws IOException {
+        // A change waits for the orders to load, before taking the lock the load needs
+        fileStore.awaitLoad();
         synchronized (orderMap) {
+            // An order replaced while it was being archived can be in both
+            boolean archived = archive != null && archive.remove(id);
             if (!orderMap.containsKey(id)) {
-                return false;
+                return archived;
             }
             else {
                 orderMap.remove(id);
-                save();
+                fileStore.delete(id);
                 return true;
             }
         }
@@ -163,15 +338,248 @@ public class OrderFileDAO implements OrderDAO {
      */
     @Override
     public Order updateOrder(Order order) throws IOException {
+        // A change waits for the orders to load, before taking the lock the load needs
+        fileStore.awaitLoad();
         synchronized(orderMap){
-            if(!orderMap.containsKey(order.getId())){
+            boolean archived = archive != null && archive.contains(order.getId());
+            if(!orderMap.containsKey(order.getId()) && !archived){
                 return null;
             }
 
+            // An archived order becomes hot again once it changes
             orderMap.put(order.getId(), order);
-            save();
+            fileStore.put(order);
+            if (archived) {
+                archive.remove(order.getId());
+            }
 
             return order;
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int reserveId() {
+        return ids.next();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stage(Order order) throws IOException {
+        // A change waits for the orders to load, before taking the lock the load needs
+        fileStore.awaitLoad();
+        synchronized(orderMap) {
+            orderMap.put(order.getId(), order);
+            fileStore.stage(order);
+            ids.skipPast(order.getId());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object lockFor(int id) {
+        return orderMap;
+    }
+
+    /**
+     * Move completed orders older than the archive age to the archive
+     * 
+     * The orders are compressed and written without holding the map lock, an
+     * order replaced in the meantime stays in the data file
+     * 
+     * @return Number of orders moved
+     * @throws IOException If the archive or data file cannot be written
+     */
+    public int archiveOldOrders() throws IOException {
+        if (archive == null) {
+            return 0;
+        }
+        fileStore.awaitLoad();
+
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(archiveAfterDays);
+        List<Order> due = new ArrayList<>();
+        synchronized(orderMap) {
+            for (Order order : orderMap.values()) {
+                if (order.isComplete() && order.getDateTime().isBefore(cutoff)) {
+                    due.add(order);
+                }
+            }
+        }
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        archive.add(due);
+
+        List<Integer> moved = new ArrayList<>();
+        synchronized(orderMap) {
+            for (Order order : due) {
+                if (orderMap.get(order.getId()) == order) {
+                    orderMap.remove(order.getId());
+                    moved.add(order.getId());
+                }
+            }
+            if (!moved.isEmpty()) {
+                // Followers keep the archived orders, they only left the data file
+                fileStore.deleteAll(moved, false);
+            }
+        }
+        LOG.info("Archived " + moved.size() + " orders completed before " + cutoff);
+        return moved.size();
+    }
+
+    /**
+     * Scheduled archive task, a failure is logged and retried on the next run
+     */
+    private void archiveInBackground() {
+        try {
+            archiveOldOrders();
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Archiving old orders failed", e);
+        }
+    }
+
+    /**
+     * Get the archive of old orders
+     * 
+     * @return {@link OrderArchive Archive}, or null without one
+     */
+    public OrderArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getReplicaName() {
+        return "orders";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void replicateTo(Consumer<MutationLog.Entry> feed) {
+        fileStore.feed(feed);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Archived orders are sent along with the data file
+     */
+    @Override
+    public List<JsonNode> getReplicaSnapshot() {
+        if (archive == null) {
+            return fileStore.serializedRecords();
+        }
+        List<JsonNode> serialized = new ArrayList<>();
+        for (Order order : ordersWithArchive()) {
+            serialized.add(objectMapper.valueToTree(order));
+        }
+        return serialized;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void applyReplica(List<MutationLog.Entry> entries, boolean replaceAll) throws IOException {
+        fileStore.applyReplicated(entries, replaceAll);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSnapshotName() {
+        return "orders";
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Archived orders are captured along with the ones in the data file
+     */
+    @Override
+    public RecordSnapshot snapshot() {
+        if (archive == null) {
+            return fileStore.snapshot();
+        }
+        return new RecordSnapshot(ordersWithArchive());
+    }
+
+    /**
+     * Capture the hot orders, then add the archived orders they do not replace
+     *
+     * The hot orders are captured first, an order archived meanwhile is in the
+     * archive before it leaves the data file so it is not missed
+     *
+     * @return Every order in id order
+     * @throws UncheckedIOException If the archive cannot be read
+     */
+    private Order[] ordersWithArchive() {
+        Map<Integer, Order> orders = new TreeMap<>();
+        try {
+            fileStore.awaitLoad();
+            synchronized(orderMap) {
+                orders.putAll(orderMap);
+            }
+            archive.forEach(order -> orders.putIfAbsent(order.getId(), order));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return orders.values().toArray(new Order[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StoreStatus getStatus() {
+        StoreStatus status = fileStore.getStatus();
+        if (archive == null) {
+            return status;
+        }
+        // Report how often archive lookups find their segment already decompressed
+        return new StoreStatus(status.getFile(), status.getMode(), status.getUnflushedChanges(),
+                               status.getFlushLagMillis(), status.getLoggedChanges(), archive.getCacheStats());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        fileStore.flush();
+    }
+
+    /**
+     * Flush any outstanding changes to the data file on shutdown
+     * 
+     * @throws IOException If there is an error writing to the file
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        if (archiver != null) {
+            archiver.shutdown();
+            try {
+                archiver.awaitTermination(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        fileStore.close();
+        ids.close();
+    }
 }
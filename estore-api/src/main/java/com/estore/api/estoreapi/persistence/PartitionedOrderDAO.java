@@ -0,0 +1,639 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import com.estore.api.estoreapi.model.Order;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Implementation of OrderDAO which keeps the orders of each calendar month in their own data file
+ *
+ * The orders are split by the month they were placed in across partition
+ * files (orders-2024-01.json, orders-2024-02.json, ...). New orders only
+ * rewrite the file of the current month, and a query for a time range only
+ * looks at the months it overlaps. The first time the store is used the
+ * orders in the unpartitioned data file are split into partitions. They are
+ * all written to a split directory first and only moved into place once the
+ * last one is written, so a crash during the split never leaves some of the
+ * months looking complete
+ *
+ * With write-behind enabled the partitions share one flusher thread instead
+ * of starting one each, so the threads do not grow with the number of months
+ *
+ * Selected with persistence.order-store=partitioned
+ */
+@Component
+@ConditionalOnExpression("'${persistence.backend:file}' == 'file' and '${persistence.order-store:file}' == 'partitioned'")
+public class PartitionedOrderDAO implements OrderDAO, Stageable<Order>, Snapshottable {
+    private static final Logger LOG = Logger.getLogger(PartitionedOrderDAO.class.getName());
+
+    /** Names of the partition files, the month is captured */
+    private static final Pattern PARTITION_FILE = Pattern.compile("orders-(\\d{4}-\\d{2})\\.json");
+
+    /** Directory under the partition directory the unpartitioned data file is split into */
+    private static final String SPLIT_DIRECTORY = "split.tmp";
+
+    /** Written in the split directory once every partition of the split is in it */
+    private static final String SPLIT_COMPLETE = "complete";
+
+    /**
+     * The orders of one month with their own map and data file
+     */
+    private class Partition {
+        /** Maps ids to their corresponding {@link Order} */
+        IntObjectMap<Order> orderMap = new IntObjectMap<>();
+
+        /** Keeps the partition file in sync with orderMap */
+        FileStore<Order> fileStore;
+
+        Partition(YearMonth month) {
+            this.fileStore = new FileStore<>(getPartitionFilename(month), objectMapper, Order[].class, Order::getId,
+                                             this::getOrdersArray, PartitionedOrderDAO.this, properties, flusher);
+        }
+
+        /**
+         * Gets array of {@link Order orders} in this partition
+         *
+         * @return Array of stored {@link Order orders}, or empty array if none
+         */
+        Order[] getOrdersArray() {
+            return orderMap.values().toArray(new Order[0]);
+        }
+    }
+
+    /** Partitions by the month their orders were placed in */
+    private NavigableMap<YearMonth, Partition> partitions = new TreeMap<>();
+
+    /** Maps ids to the month of the partition holding their {@link Order} */
+    private IntObjectMap<YearMonth> months = new IntObjectMap<>();
+
+    /** Months of the partitions with staged changes not yet flushed */
+    private Set<YearMonth> staged = new HashSet<>();
+
+    /** Hands out the ids of new orders */
+    private IdAllocator ids;
+
+    /** Directory holding the partition files */
+    private Path directory;
+
+    /** Filename of the unpartitioned data file */
+    private String filename;
+
+    /** JSON serializer/deserializer */
+    private ObjectMapper objectMapper;
+
+    /** Serializer of the partition files in the configured format */
+    private ObjectMapper dataMapper;
+
+    /** Persistence settings, passed on to the partition files */
+    private PersistenceProperties properties;
+
+    /** Runs the write-behind flushes of every partition, null when write-behind is disabled */
+    private ScheduledExecutorService flusher;
+
+    /** Load running on the {@link StoreLoader}, null once the partitions are loaded */
+    private volatile StoreLoader.Load pendingLoad;
+
+    /**
+     * Build the {@link PartitionedOrderDAO} loaded on the {@link StoreLoader} alongside the other stores
+     *
+     * @param directory Directory holding the partition files
+     * @param filename Filename of the unpartitioned data file
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param loader Loads the partition files alongside the other stores
+     *
+     * @throws IOException If there is an error reading the files
+     */
+    @Autowired
+    public PartitionedOrderDAO(@Value("${order.partition.dir}") String directory,
+                               @Value("${order.file}") String filename, ObjectMapper objectMapper,
+                               PersistenceProperties properties, StoreLoader loader) throws IOException {
+        this(directory, filename, objectMapper, properties,
+             IdAllocator.forFile(Paths.get(directory, "orders").toString(), properties), loader);
+    }
+
+    /**
+     * Build the {@link PartitionedOrderDAO} with its own id allocator, loaded on a {@link StoreLoader}
+     *
+     * @param directory Directory holding the partition files
+     * @param filename Filename of the unpartitioned data file
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param ids Hands out the ids of new orders
+     * @param loader Loads the partition files alongside the other stores, null to load them now
+     *
+     * @throws IOException If there is an error reading the files
+     */
+    public PartitionedOrderDAO(String directory, String filename, ObjectMapper objectMapper,
+                               PersistenceProperties properties, IdAllocator ids, StoreLoader loader)
+            throws IOException {
+        this.directory = Paths.get(directory);
+        this.filename = filename;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.dataMapper = DataFormat.of(getPartitionFilename(YearMonth.now()), properties).mapper(objectMapper);
+        this.ids = ids;
+        if (properties.isWriteBehind()) {
+            this.flusher = FileStore.newFlusher("write-behind " + directory);
+        }
+        Files.createDirectories(this.directory);
+
+        if (loader == null) {
+            load();
+        }
+        else {
+            this.pendingLoad = loader.submit("orders", properties.isBackgroundOrderLoad(), this::load);
+        }
+    }
+
+    /**
+     * Gets the name of the partition file for a month
+     *
+     * @param month Month of the partition
+     * @return Partition filename
+     */
+    private String getPartitionFilename(YearMonth month) {
+        return directory.resolve(getPartitionName(month)).toString();
+    }
+
+    /**
+     * Gets the name of the partition file for a month within its directory
+     *
+     * @param month Month of the partition
+     * @return Partition file name
+     */
+    private static String getPartitionName(YearMonth month) {
+        return "orders-" + month + ".json";
+    }
+
+    /**
+     * Write a partition file and force it to the storage device
+     *
+     * @param file File to write, replaced if it exists
+     * @param orders {@link Order Orders} of the partition
+     * @throws IOException If the file cannot be written
+     */
+    private void writePartition(Path file, Order[] orders) throws IOException {
+        ByteBuffer contents = ByteBuffer.wrap(dataMapper.writeValueAsBytes(orders));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Gets the month an order is kept under
+     *
+     * @param order {@link Order} to place
+     * @return Month it was placed in
+     */
+    private static YearMonth monthOf(Order order) {
+        return YearMonth.from(order.getDateTime());
+    }
+
+    /**
+     * Split the unpartitioned data file into partition files the first time the store is used
+     *
+     * Every partition is written to the split directory, then a completion
+     * marker, then the partitions are moved into place one at a time. A split
+     * the marker was never written for is started over, one with the marker
+     * only has its remaining moves finished
+     *
+     * @throws IOException If the partitions cannot be written
+     */
+    private void createPartitions() throws IOException {
+        Path split = directory.resolve(SPLIT_DIRECTORY);
+        Path complete = split.resolve(SPLIT_COMPLETE);
+        if (!Files.exists(complete)) {
+            deleteSplit(split);
+            Files.createDirectories(split);
+
+            Map<YearMonth, List<Order>> byMonth = new TreeMap<>();
+            File unpartitioned = new File(filename);
+            if (unpartitioned.exists()) {
+                ObjectMapper reader = DataFormat.detect(unpartitioned).mapper(objectMapper);
+                for (Order order : reader.readValue(unpartitioned, Order[].class)) {
+                    byMonth.computeIfAbsent(monthOf(order), month -> new ArrayList<>()).add(order);
+                }
+            }
+            for (Map.Entry<YearMonth, List<Order>> entry : byMonth.entrySet()) {
+                writePartition(split.resolve(getPartitionName(entry.getKey())),
+                               entry.getValue().toArray(new Order[0]));
+            }
+            Files.createFile(complete);
+            if (unpartitioned.exists()) {
+                LOG.info("Split " + filename + " into " + byMonth.size() + " monthly partitions in " + directory);
+            }
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(split, "orders-*.json")) {
+            for (Path file : files) {
+                Files.move(file, directory.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        deleteSplit(split);
+    }
+
+    /**
+     * Delete the split directory and whatever an unfinished split left in it
+     *
+     * @param split Split directory
+     * @throws IOException If it cannot be deleted
+     */
+    private static void deleteSplit(Path split) throws IOException {
+        if (!Files.exists(split)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(split)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(split);
+    }
+
+    /**
+     * Find the months of the partition files in the directory
+     *
+     * @return Months with a partition file
+     * @throws IOException If the directory cannot be listed
+     */
+    private Set<YearMonth> findPartitions() throws IOException {
+        Set<YearMonth> found = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "orders-*.json")) {
+            for (Path file : files) {
+                Matcher matcher = PARTITION_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    found.add(YearMonth.parse(matcher.group(1)));
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Load every partition file, splitting the unpartitioned data file first if there are none
+     *
+     * @throws IOException If there is an error reading the files
+     */
+    private synchronized void load() throws IOException {
+        long start = System.nanoTime();
+        Set<YearMonth> found = findPartitions();
+        if (found.isEmpty() || Files.exists(directory.resolve(SPLIT_DIRECTORY).resolve(SPLIT_COMPLETE))) {
+            createPartitions();
+            found = findPartitions();
+        }
+
+        partitions.clear();
+        months.clear();
+        for (YearMonth month : found) {
+            Partition partition = new Partition(month);
+            partition.fileStore.load(partition.orderMap);
+            partitions.put(month, partition);
+            for (int id : partition.orderMap.keySet()) {
+                months.put(id, month);
+                ids.skipPast(id);
+            }
+        }
+        LOG.info("Loaded " + months.size() + " orders from " + partitions.size() + " partitions in "
+                 + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * Wait until the partitions have loaded, before taking the lock the load holds
+     *
+     * @throws IOException If the load failed
+     */
+    private void awaitLoad() throws IOException {
+        StoreLoader.Load load = pendingLoad;
+        if (load != null) {
+            load.await();
+            if (load.isDone()) {
+                pendingLoad = null;
+            }
+        }
+    }
+
+    /**
+     * Gets the partition of a month, starting an empty one if there is none yet
+     *
+     * The file of a new partition is written right away, so it is found on
+     * the next start even while its changes are only in the log
+     *
+     * @param month Month of the partition
+     * @return {@link Partition} for the month
+     * @throws IOException If the partition file cannot be written
+     */
+    private Partition partitionFor(YearMonth month) throws IOException {
+        Partition partition = partitions.get(month);
+        if (partition == null) {
+            partition = new Partition(month);
+            Path file = Paths.get(partition.fileStore.getFilename());
+            Path temp = Paths.get(file + ".tmp");
+            writePartition(temp, new Order[0]);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            partition.fileStore.load(partition.orderMap);
+            partitions.put(month, partition);
+        }
+        return partition;
+    }
+
+    /**
+     * Gets the partitions that can hold orders placed within a time range
+     *
+     * @param from Start of the range, inclusive, null for no start
+     * @param to End of the range, exclusive, null for no end
+     * @return Partitions overlapping the range, in month order
+     */
+    private Iterable<Partition> partitionsWithin(LocalDateTime from, LocalDateTime to) {
+        NavigableMap<YearMonth, Partition> overlapping = partitions;
+        if (from != null) {
+            overlapping = overlapping.tailMap(YearMonth.from(from), true);
+        }
+        if (to != null) {
+            // The end is exclusive, a range ending on the first of a month leaves that month out
+            overlapping = overlapping.headMap(YearMonth.from(to.minusNanos(1)), true);
+        }
+        return overlapping.values();
+    }
+
+    /**
+     * Sort orders by id, the order a listing of the unpartitioned file has
+     *
+     * @param orders {@link Order Orders} collected from the partitions
+     * @return Array of the orders in id order
+     */
+    private static Order[] byId(List<Order> orders) {
+        orders.sort(Comparator.comparingInt(Order::getId));
+        return orders.toArray(new Order[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Order[] getOrders() {
+        List<Order> orders = new ArrayList<>(months.size());
+        for (Partition partition : partitions.values()) {
+            orders.addAll(partition.orderMap.values());
+        }
+        return byId(orders);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Only the partitions of the months the range overlaps are scanned
+     */
+    @Override
+    public synchronized Order[] getOrders(LocalDateTime from, LocalDateTime to) {
+        List<Order> orders = new ArrayList<>();
+        for (Partition partition : partitionsWithin(from, to)) {
+            for (Order order : partition.orderMap.values()) {
+                if (order.placedWithin(from, to)) {
+                    orders.add(order);
+                }
+            }
+        }
+        return byId(orders);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Order getOrder(int id) {
+        YearMonth month = months.get(id);
+        return month == null ? null : partitions.get(month).orderMap.get(id);
+    }
+
+    /**
+     * Put an order into the partition of its month, taking it out of the one it was in before
+     *
+     * @param order {@link Order} as it is now
+     * @param stage True to stage the change for the next flush rather than write it now
+     * @throws IOException If a partition file cannot be written
+     */
+    private void place(Order order, boolean stage) throws IOException {
+        YearMonth month = monthOf(order);
+        YearMonth previous = months.put(order.getId(), month);
+        if (previous != null && !previous.equals(month)) {
+            // An order whose time changed moves, the old partition is written even when staging
+            Partition old = partitions.get(previous);
+            old.orderMap.remove(order.getId());
+            old.fileStore.delete(order.getId());
+        }
+
+        Partition partition = partitionFor(month);
+        partition.orderMap.put(order.getId(), order);
+        if (stage) {
+            partition.fileStore.stage(order);
+            staged.add(month);
+        }
+        else {
+            partition.fileStore.put(order);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Order createOrder(Order order) throws IOException {
+        awaitLoad();
+        synchronized (this) {
+            Order tmpOrd = new Order(ids.next(), order.getTotalPrice(), order.getProducts(),
+                            order.isComplete(), order.getDateTime());
+
+            place(tmpOrd, false);
+            return tmpOrd;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean deleteOrder(int id) throws IOException {
+        awaitLoad();
+        synchronized (this) {
+            YearMonth month = months.remove(id);
+            if (month == null) {
+                return false;
+            }
+
+            Partition partition = partitions.get(month);
+            partition.orderMap.remove(id);
+            partition.fileStore.delete(id);
+            return true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Order updateOrder(Order order) throws IOException {
+        awaitLoad();
+        synchronized (this) {
+            if (!months.containsKey(order.getId())) {
+                return null;
+            }
+
+            place(order, false);
+            return order;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int reserveId() {
+        return ids.next();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stage(Order order) throws IOException {
+        awaitLoad();
+        synchronized (this) {
+            place(order, true);
+            ids.skipPast(order.getId());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object lockFor(int id) {
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Only the partitions with staged changes are written
+     */
+    @Override
+    public void flush() throws IOException {
+        awaitLoad();
+        List<Partition> dirty = new ArrayList<>();
+        synchronized (this) {
+            for (YearMonth month : staged) {
+                dirty.add(partitions.get(month));
+            }
+            staged.clear();
+        }
+        for (Partition partition : dirty) {
+            partition.fileStore.flush();
+        }
+    }
+
+    /**
+     * Get the months that have a partition
+     *
+     * @return Months in order
+     */
+    public synchronized List<YearMonth> getMonths() {
+        return new ArrayList<>(partitions.keySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSnapshotName() {
+        return "orders";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecordSnapshot snapshot() {
+        try {
+            awaitLoad();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new RecordSnapshot(getOrders());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized StoreStatus getStatus() {
+        long unflushed = 0;
+        long lag = 0;
+        int logged = 0;
+        for (Partition partition : partitions.values()) {
+            StoreStatus status = partition.fileStore.getStatus();
+            unflushed += status.getUnflushedChanges();
+            lag = Math.max(lag, status.getFlushLagMillis());
+            logged += status.getLoggedChanges();
+        }
+        return new StoreStatus(directory.toString(), "partitioned", unflushed, lag, logged);
+    }
+
+    /**
+     * Flush any outstanding changes to the partition files on shutdown
+     *
+     * @throws IOException If there is an error writing to a file
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        List<Partition> open;
+        synchronized (this) {
+            open = new ArrayList<>(partitions.values());
+        }
+        for (Partition partition : open) {
+            partition.fileStore.close();
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        ids.close();
+    }
+}
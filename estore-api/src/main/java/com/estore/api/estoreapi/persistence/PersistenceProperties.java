@@ -0,0 +1,923 @@
+package com.estore.api.estoreapi.persistence;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tuning settings shared by the FileDAO persistence layer
+ *
+ * Bound from the persistence.* keys in application.properties, the defaults
+ * match the original behavior of rewriting the whole data file on every change
+ */
+@Component
+@ConfigurationProperties(prefix = "persistence")
+public class PersistenceProperties {
+    /** Whether mutations are appended to a log instead of rewriting the data file */
+    private boolean logEnabled = false;
+
+    /** Number of logged mutations after which the log is folded into the data file */
+    private int checkpointInterval = 1000;
+
+    /**
+     * Whether every log append is forced to the storage device before returning
+     *
+     * On by default, a change is only acknowledged once its entry is on the
+     * device. Turned off an acknowledged change can be lost on power failure
+     * until the next checkpoint rewrites the data file
+     */
+    private boolean logSync = true;
+
+    /** Whether concurrent cart item changes share one flush */
+    private boolean cartGroupCommit = false;
+
+    /** How long a group commit batch stays open for more changes */
+    private long groupCommitWindowMillis = 5;
+
+    /** Number of changes that closes a group commit batch early */
+    private int groupCommitMaxBatch = 64;
+
+    /** Whether changes are flushed by a background thread instead of the request */
+    private boolean writeBehind = false;
+
+    /** How often the write-behind thread flushes changes */
+    private long writeBehindIntervalMillis = 1000;
+
+    /** Number of segment files the carts are split across */
+    private int cartShards = 1;
+
+    /** Which OrderDAO implementation is used: file, mapped, lazy, partitioned or offheap */
+    private String orderStore = "file";
+
+    /** Size of a data file above which it is streamed record by record on load */
+    private long streamThresholdBytes = 16777216;
+
+    /** How often progress is logged while a data file is streamed */
+    private long loadProgressIntervalMillis = 5000;
+
+    /** Most orders the lazy order store keeps decoded in memory */
+    private int orderCacheSize = 1000;
+
+    /** Which storage backend the DAOs use: file or jdbc */
+    private String backend = "file";
+
+    /** Most connections the JDBC backend keeps open */
+    private int jdbcPoolSize = 8;
+
+    /** Which CartDAO implementation the file backend uses: file or lsm */
+    private String cartStore = "file";
+
+    /** Number of changes the LSM memtable holds before it is written out as a segment */
+    private int lsmMemtableSize = 1000;
+
+    /** Number of LSM segments that triggers a background compaction */
+    private int lsmCompactionThreshold = 4;
+
+    /** Format the data files are written in, json or smile */
+    private String format = "json";
+
+    /** Whether old completed orders are moved to the compressed archive */
+    private boolean archiveEnabled = false;
+
+    /** Age in days after which a completed order is archived */
+    private int archiveAfterDays = 90;
+
+    /** How often the archiver looks for orders to archive */
+    private long archiveIntervalMillis = 3600000;
+
+    /** Number of decompressed archive segments kept in memory */
+    private int archiveCacheSegments = 4;
+
+    /** Number of journaled checkouts after which the stores are flushed and the journal emptied */
+    private int checkoutCheckpointInterval = 100;
+
+    /** Ids a store reserves from its sequence file at a time */
+    private int idBlockSize = 100;
+
+    /** Locks cart changes are spread over, keyed by cart id */
+    private int cartLockStripes = 64;
+
+    /** Reload data files changed by another program */
+    private boolean hotReload = false;
+
+    /** Quiet time after a change to a data file before it is reloaded */
+    private long hotReloadSettleMillis = 200;
+
+    /** Replication role of this instance: none, leader or follower */
+    private String replicationRole = "none";
+
+    /** Host the leader listens on and followers connect to */
+    private String replicationHost = "localhost";
+
+    /** Port the leader listens on and followers connect to */
+    private int replicationPort = 7070;
+
+    /** Changes the leader keeps so a reconnecting follower can catch up without a snapshot */
+    private int replicationBacklog = 10000;
+
+    /** How often the leader tells an idle follower its latest change */
+    private long replicationHeartbeatMillis = 1000;
+
+    /** Wait before a follower reconnects to the leader */
+    private long replicationRetryMillis = 1000;
+
+    /** Directory the backups taken through the REST API are written under */
+    private String backupDir = "data/backups";
+
+    /** Threads loading the data files at startup, 0 for one per processor up to one per store */
+    private int loadThreads = 0;
+
+    /** Whether the application starts serving before the orders are loaded */
+    private boolean backgroundOrderLoad = false;
+
+    /** True to write a warm-start image of each store on shutdown and load it on the next start */
+    private boolean warmStart = false;
+
+    /** Idle time after which a cart expires, 0 to keep carts forever */
+    private long cartTtlMillis = 0;
+
+    /** What happens to an expired cart, empty or drop */
+    private String cartTtlAction = "empty";
+
+    /** How often expired carts are looked for */
+    private long cartTtlTickMillis = 1000;
+
+    /** Slots of the timer wheel holding the cart deadlines */
+    private int cartTtlWheelSlots = 512;
+
+    /** Size of each direct buffer the off-heap order store allocates */
+    private int offHeapArenaBytes = 67108864;
+
+    /**
+     * Check if the mutation log is enabled
+     *
+     * @return True if mutations are appended to the log
+     */
+    public boolean isLogEnabled() {
+        return logEnabled;
+    }
+
+    /**
+     * Enable or disable the mutation log
+     *
+     * @param logEnabled True to append mutations to the log
+     */
+    public void setLogEnabled(boolean logEnabled) {
+        this.logEnabled = logEnabled;
+    }
+
+    /**
+     * Get the number of logged mutations between checkpoints
+     *
+     * @return Mutations between checkpoints
+     */
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Set the number of logged mutations between checkpoints
+     *
+     * @param checkpointInterval Mutations between checkpoints
+     */
+    public void setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Check if log appends are forced to disk
+     *
+     * @return True if every append is synced
+     */
+    public boolean isLogSync() {
+        return logSync;
+    }
+
+    /**
+     * Set whether log appends are forced to disk
+     *
+     * @param logSync True to sync every append
+     */
+    public void setLogSync(boolean logSync) {
+        this.logSync = logSync;
+    }
+
+    /**
+     * Check if cart item changes are group committed
+     *
+     * @return True if concurrent cart item changes share one flush
+     */
+    public boolean isCartGroupCommit() {
+        return cartGroupCommit;
+    }
+
+    /**
+     * Enable or disable group commit for cart item changes
+     *
+     * @param cartGroupCommit True to share one flush between concurrent changes
+     */
+    public void setCartGroupCommit(boolean cartGroupCommit) {
+        this.cartGroupCommit = cartGroupCommit;
+    }
+
+    /**
+     * Get how long a group commit batch stays open
+     *
+     * @return Window in milliseconds
+     */
+    public long getGroupCommitWindowMillis() {
+        return groupCommitWindowMillis;
+    }
+
+    /**
+     * Set how long a group commit batch stays open
+     *
+     * @param groupCommitWindowMillis Window in milliseconds
+     */
+    public void setGroupCommitWindowMillis(long groupCommitWindowMillis) {
+        this.groupCommitWindowMillis = groupCommitWindowMillis;
+    }
+
+    /**
+     * Get the number of changes that closes a group commit batch
+     *
+     * @return Maximum changes per batch
+     */
+    public int getGroupCommitMaxBatch() {
+        return groupCommitMaxBatch;
+    }
+
+    /**
+     * Set the number of changes that closes a group commit batch
+     *
+     * @param groupCommitMaxBatch Maximum changes per batch
+     */
+    public void setGroupCommitMaxBatch(int groupCommitMaxBatch) {
+        this.groupCommitMaxBatch = groupCommitMaxBatch;
+    }
+
+    /**
+     * Check if write-behind mode is enabled
+     *
+     * @return True if a background thread flushes changes
+     */
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Enable or disable write-behind mode
+     *
+     * @param writeBehind True to flush changes from a background thread
+     */
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * Get how often the write-behind thread flushes
+     *
+     * @return Interval in milliseconds
+     */
+    public long getWriteBehindIntervalMillis() {
+        return writeBehindIntervalMillis;
+    }
+
+    /**
+     * Set how often the write-behind thread flushes
+     *
+     * @param writeBehindIntervalMillis Interval in milliseconds
+     */
+    public void setWriteBehindIntervalMillis(long writeBehindIntervalMillis) {
+        this.writeBehindIntervalMillis = writeBehindIntervalMillis;
+    }
+
+    /**
+     * Get the number of cart segment files
+     *
+     * @return Number of shards, 1 keeps a single file
+     */
+    public int getCartShards() {
+        return cartShards;
+    }
+
+    /**
+     * Set the number of cart segment files
+     *
+     * @param cartShards Number of shards, 1 keeps a single file
+     */
+    public void setCartShards(int cartShards) {
+        this.cartShards = cartShards;
+    }
+
+    /**
+     * Get which OrderDAO implementation is used
+     *
+     * @return Name of the order store
+     */
+    public String getOrderStore() {
+        return orderStore;
+    }
+
+    /**
+     * Set which OrderDAO implementation is used
+     *
+     * @param orderStore Name of the order store
+     */
+    public void setOrderStore(String orderStore) {
+        this.orderStore = orderStore;
+    }
+
+    /**
+     * Get the size above which data files are streamed on load
+     *
+     * @return Threshold in bytes
+     */
+    public long getStreamThresholdBytes() {
+        return streamThresholdBytes;
+    }
+
+    /**
+     * Set the size above which data files are streamed on load
+     *
+     * @param streamThresholdBytes Threshold in bytes
+     */
+    public void setStreamThresholdBytes(long streamThresholdBytes) {
+        this.streamThresholdBytes = streamThresholdBytes;
+    }
+
+    /**
+     * Get how often load progress is logged
+     *
+     * @return Interval in milliseconds
+     */
+    public long getLoadProgressIntervalMillis() {
+        return loadProgressIntervalMillis;
+    }
+
+    /**
+     * Set how often load progress is logged
+     *
+     * @param loadProgressIntervalMillis Interval in milliseconds
+     */
+    public void setLoadProgressIntervalMillis(long loadProgressIntervalMillis) {
+        this.loadProgressIntervalMillis = loadProgressIntervalMillis;
+    }
+
+    /**
+     * Get the most orders the lazy order store keeps decoded
+     *
+     * @return Order cache capacity
+     */
+    public int getOrderCacheSize() {
+        return orderCacheSize;
+    }
+
+    /**
+     * Set the most orders the lazy order store keeps decoded
+     *
+     * @param orderCacheSize Order cache capacity
+     */
+    public void setOrderCacheSize(int orderCacheSize) {
+        this.orderCacheSize = orderCacheSize;
+    }
+
+    /**
+     * Get which storage backend the DAOs use
+     *
+     * @return Name of the backend
+     */
+    public String getBackend() {
+        return backend;
+    }
+
+    /**
+     * Set which storage backend the DAOs use
+     *
+     * @param backend Name of the backend
+     */
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Get the most connections the JDBC backend keeps open
+     *
+     * @return Connection pool size
+     */
+    public int getJdbcPoolSize() {
+        return jdbcPoolSize;
+    }
+
+    /**
+     * Set the most connections the JDBC backend keeps open
+     *
+     * @param jdbcPoolSize Connection pool size
+     */
+    public void setJdbcPoolSize(int jdbcPoolSize) {
+        this.jdbcPoolSize = jdbcPoolSize;
+    }
+
+    /**
+     * Get which CartDAO implementation the file backend uses
+     *
+     * @return Name of the cart store
+     */
+    public String getCartStore() {
+        return cartStore;
+    }
+
+    /**
+     * Set which CartDAO implementation the file backend uses
+     *
+     * @param cartStore Name of the cart store
+     */
+    public void setCartStore(String cartStore) {
+        this.cartStore = cartStore;
+    }
+
+    /**
+     * Get the number of changes the LSM memtable holds
+     *
+     * @return Memtable size
+     */
+    public int getLsmMemtableSize() {
+        return lsmMemtableSize;
+    }
+
+    /**
+     * Set the number of changes the LSM memtable holds
+     *
+     * @param lsmMemtableSize Memtable size
+     */
+    public void setLsmMemtableSize(int lsmMemtableSize) {
+        this.lsmMemtableSize = lsmMemtableSize;
+    }
+
+    /**
+     * Get the number of LSM segments that triggers a compaction
+     *
+     * @return Compaction threshold
+     */
+    public int getLsmCompactionThreshold() {
+        return lsmCompactionThreshold;
+    }
+
+    /**
+     * Set the number of LSM segments that triggers a compaction
+     *
+     * @param lsmCompactionThreshold Compaction threshold
+     */
+    public void setLsmCompactionThreshold(int lsmCompactionThreshold) {
+        this.lsmCompactionThreshold = lsmCompactionThreshold;
+    }
+
+    /**
+     * Gets the format the data files are written in
+     *
+     * @return json or smile
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets the format the data files are written in
+     *
+     * @param format json or smile
+     */
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    /**
+     * Gets whether old completed orders are moved to the compressed archive
+     *
+     * @return True if the archiver runs
+     */
+    public boolean isArchiveEnabled() {
+        return archiveEnabled;
+    }
+
+    /**
+     * Sets whether old completed orders are moved to the compressed archive
+     *
+     * @param archiveEnabled True to run the archiver
+     */
+    public void setArchiveEnabled(boolean archiveEnabled) {
+        this.archiveEnabled = archiveEnabled;
+    }
+
+    /**
+     * Gets the age in days after which a completed order is archived
+     *
+     * @return Age in days
+     */
+    public int getArchiveAfterDays() {
+        return archiveAfterDays;
+    }
+
+    /**
+     * Sets the age in days after which a completed order is archived
+     *
+     * @param archiveAfterDays Age in days
+     */
+    public void setArchiveAfterDays(int archiveAfterDays) {
+        this.archiveAfterDays = archiveAfterDays;
+    }
+
+    /**
+     * Gets how often the archiver looks for orders to archive
+     *
+     * @return Interval in milliseconds
+     */
+    public long getArchiveIntervalMillis() {
+        return archiveIntervalMillis;
+    }
+
+    /**
+     * Sets how often the archiver looks for orders to archive
+     *
+     * @param archiveIntervalMillis Interval in milliseconds
+     */
+    public void setArchiveIntervalMillis(long archiveIntervalMillis) {
+        this.archiveIntervalMillis = archiveIntervalMillis;
+    }
+
+    /**
+     * Gets the number of decompressed archive segments kept in memory
+     *
+     * @return Segment count
+     */
+    public int getArchiveCacheSegments() {
+        return archiveCacheSegments;
+    }
+
+    /**
+     * Sets the number of decompressed archive segments kept in memory
+     *
+     * @param archiveCacheSegments Segment count
+     */
+    public void setArchiveCacheSegments(int archiveCacheSegments) {
+        this.archiveCacheSegments = archiveCacheSegments;
+    }
+
+    /**
+     * Gets the number of journaled checkouts after which the stores are flushed
+     *
+     * @return Checkout count
+     */
+    public int getCheckoutCheckpointInterval() {
+        return checkoutCheckpointInterval;
+    }
+
+    /**
+     * Sets the number of journaled checkouts after which the stores are flushed
+     *
+     * @param checkoutCheckpointInterval Checkout count
+     */
+    public void setCheckoutCheckpointInterval(int checkoutCheckpointInterval) {
+        this.checkoutCheckpointInterval = checkoutCheckpointInterval;
+    }
+
+    /**
+     * Get the number of ids a store reserves from its sequence file at a time
+     *
+     * @return Ids per block
+     */
+    public int getIdBlockSize() {
+        return idBlockSize;
+    }
+
+    /**
+     * Set the number of ids a store reserves from its sequence file at a time
+     *
+     * @param idBlockSize Ids per block
+     */
+    public void setIdBlockSize(int idBlockSize) {
+        this.idBlockSize = idBlockSize;
+    }
+
+    /**
+     * Get the number of locks cart changes are spread over
+     *
+     * @return Lock count
+     */
+    public int getCartLockStripes() {
+        return cartLockStripes;
+    }
+
+    /**
+     * Set the number of locks cart changes are spread over, 1 serializes every cart change
+     *
+     * @param cartLockStripes Lock count
+     */
+    public void setCartLockStripes(int cartLockStripes) {
+        this.cartLockStripes = cartLockStripes;
+    }
+
+    /**
+     * Check if data files changed by another program are reloaded
+     *
+     * @return True if the stores watch their data files
+     */
+    public boolean isHotReload() {
+        return hotReload;
+    }
+
+    /**
+     * Set if data files changed by another program are reloaded
+     *
+     * @param hotReload True to watch the data files
+     */
+    public void setHotReload(boolean hotReload) {
+        this.hotReload = hotReload;
+    }
+
+    /**
+     * Get how long a changed data file must stay unchanged before it is reloaded
+     *
+     * @return Settle time in milliseconds
+     */
+    public long getHotReloadSettleMillis() {
+        return hotReloadSettleMillis;
+    }
+
+    /**
+     * Set how long a changed data file must stay unchanged before it is reloaded
+     *
+     * @param hotReloadSettleMillis Settle time in milliseconds
+     */
+    public void setHotReloadSettleMillis(long hotReloadSettleMillis) {
+        this.hotReloadSettleMillis = hotReloadSettleMillis;
+    }
+
+    /**
+     * Get the replication role of this instance
+     *
+     * @return none, leader or follower
+     */
+    public String getReplicationRole() {
+        return replicationRole;
+    }
+
+    /**
+     * Set the replication role of this instance
+     *
+     * @param replicationRole none, leader or follower
+     */
+    public void setReplicationRole(String replicationRole) {
+        this.replicationRole = replicationRole;
+    }
+
+    /**
+     * Get the host the leader listens on and followers connect to
+     *
+     * @return Host name or address
+     */
+    public String getReplicationHost() {
+        return replicationHost;
+    }
+
+    /**
+     * Set the host the leader listens on and followers connect to
+     *
+     * @param replicationHost Host name or address
+     */
+    public void setReplicationHost(String replicationHost) {
+        this.replicationHost = replicationHost;
+    }
+
+    /**
+     * Get the port the leader listens on and followers connect to
+     *
+     * @return Port, 0 lets the leader pick a free one
+     */
+    public int getReplicationPort() {
+        return replicationPort;
+    }
+
+    /**
+     * Set the port the leader listens on and followers connect to
+     *
+     * @param replicationPort Port, 0 lets the leader pick a free one
+     */
+    public void setReplicationPort(int replicationPort) {
+        this.replicationPort = replicationPort;
+    }
+
+    /**
+     * Get the number of changes the leader keeps for reconnecting followers
+     *
+     * @return Changes kept
+     */
+    public int getReplicationBacklog() {
+        return replicationBacklog;
+    }
+
+    /**
+     * Set the number of changes the leader keeps for reconnecting followers
+     *
+     * @param replicationBacklog Changes kept
+     */
+    public void setReplicationBacklog(int replicationBacklog) {
+        this.replicationBacklog = replicationBacklog;
+    }
+
+    /**
+     * Get how often the leader tells an idle follower its latest change
+     *
+     * @return Heartbeat interval in milliseconds
+     */
+    public long getReplicationHeartbeatMillis() {
+        return replicationHeartbeatMillis;
+    }
+
+    /**
+     * Set how often the leader tells an idle follower its latest change
+     *
+     * @param replicationHeartbeatMillis Heartbeat interval in milliseconds
+     */
+    public void setReplicationHeartbeatMillis(long replicationHeartbeatMillis) {
+        this.replicationHeartbeatMillis = replicationHeartbeatMillis;
+    }
+
+    /**
+     * Get how long a follower waits before reconnecting to the leader
+     *
+     * @return Retry delay in milliseconds
+     */
+    public long getReplicationRetryMillis() {
+        return replicationRetryMillis;
+    }
+
+    /**
+     * Set how long a follower waits before reconnecting to the leader
+     *
+     * @param replicationRetryMillis Retry delay in milliseconds
+     */
+    public void setReplicationRetryMillis(long replicationRetryMillis) {
+        this.replicationRetryMillis = replicationRetryMillis;
+    }
+
+    /**
+     * Get the directory backups taken through the REST API are written under
+     *
+     * @return Backup directory
+     */
+    public String getBackupDir() {
+        return backupDir;
+    }
+
+    /**
+     * Set the directory backups taken through the REST API are written under
+     *
+     * @param backupDir Backup directory
+     */
+    public void setBackupDir(String backupDir) {
+        this.backupDir = backupDir;
+    }
+
+    /**
+     * Get the number of threads loading the data files at startup
+     *
+     * @return Threads, 0 for one per processor up to one per store
+     */
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    /**
+     * Set the number of threads loading the data files at startup
+     *
+     * @param loadThreads Threads, 0 for one per processor up to one per store
+     */
+    public void setLoadThreads(int loadThreads) {
+        this.loadThreads = loadThreads;
+    }
+
+    /**
+     * Check if the application starts serving before the orders are loaded
+     *
+     * @return True if the orders load in the background
+     */
+    public boolean isBackgroundOrderLoad() {
+        return backgroundOrderLoad;
+    }
+
+    /**
+     * Set whether the application starts serving before the orders are loaded
+     *
+     * @param backgroundOrderLoad True to load the orders in the background
+     */
+    public void setBackgroundOrderLoad(boolean backgroundOrderLoad) {
+        this.backgroundOrderLoad = backgroundOrderLoad;
+    }
+
+    /**
+     * Check if the stores keep a warm-start image
+     *
+     * @return True if an image is written on shutdown and loaded when it matches the data file
+     */
+    public boolean isWarmStart() {
+        return warmStart;
+    }
+
+    /**
+     * Set whether the stores keep a warm-start image
+     *
+     * @param warmStart True to write and load warm-start images
+     */
+    public void setWarmStart(boolean warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    /**
+     * Get the idle time after which a cart expires
+     *
+     * @return Milliseconds since the items of a cart last changed, 0 if carts never expire
+     */
+    public long getCartTtlMillis() {
+        return cartTtlMillis;
+    }
+
+    /**
+     * Set the idle time after which a cart expires
+     *
+     * @param cartTtlMillis Milliseconds, 0 to keep carts forever
+     */
+    public void setCartTtlMillis(long cartTtlMillis) {
+        this.cartTtlMillis = cartTtlMillis;
+    }
+
+    /**
+     * Get what happens to an expired cart
+     *
+     * @return empty to remove its items, drop to delete the cart
+     */
+    public String getCartTtlAction() {
+        return cartTtlAction;
+    }
+
+    /**
+     * Set what happens to an expired cart
+     *
+     * @param cartTtlAction empty to remove its items, drop to delete the cart
+     */
+    public void setCartTtlAction(String cartTtlAction) {
+        this.cartTtlAction = cartTtlAction;
+    }
+
+    /**
+     * Get how often expired carts are looked for
+     *
+     * @return Tick of the expiry timer wheel in milliseconds
+     */
+    public long getCartTtlTickMillis() {
+        return cartTtlTickMillis;
+    }
+
+    /**
+     * Set how often expired carts are looked for
+     *
+     * @param cartTtlTickMillis Tick of the expiry timer wheel in milliseconds
+     */
+    public void setCartTtlTickMillis(long cartTtlTickMillis) {
+        this.cartTtlTickMillis = cartTtlTickMillis;
+    }
+
+    /**
+     * Get the number of slots of the cart expiry timer wheel
+     *
+     * @return Slots, one turn of the wheel is this many ticks
+     */
+    public int getCartTtlWheelSlots() {
+        return cartTtlWheelSlots;
+    }
+
+    /**
+     * Set the number of slots of the cart expiry timer wheel
+     *
+     * @param cartTtlWheelSlots Slots, one turn of the wheel is this many ticks
+     */
+    public void setCartTtlWheelSlots(int cartTtlWheelSlots) {
+        this.cartTtlWheelSlots = cartTtlWheelSlots;
+    }
+
+    /**
+     * Get the size of each direct buffer the off-heap order store allocates
+     *
+     * @return Arena size in bytes
+     */
+    public int getOffHeapArenaBytes() {
+        return offHeapArenaBytes;
+    }
+
+    /**
+     * Set the size of each direct buffer the off-heap order store allocates
+     *
+     * @param offHeapArenaBytes Arena size in bytes
+     */
+    public void setOffHeapArenaBytes(int offHeapArenaBytes) {
+        this.offHeapArenaBytes = offHeapArenaBytes;
+    }
+}
@@ -0,0 +1,260 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable map from non-negative int ids to values, backed by a 32-way trie
+ * with path copying
+ *
+ * The id itself picks the path, five bits per level, so keys are never boxed
+ * or compared and a lookup reads one array per level: two for the first
+ * thousand ids, three for the first 32 thousand. A put or remove returns a
+ * new map that copies only the nodes on the path to the changed id and
+ * shares every other node with the map it came from. A map never changes
+ * once built, so it can be read from any number of threads without locking
+ * while a writer builds the next version
+ *
+ * @param <V> Type of the values
+ */
+public final class PersistentIntMap<V> implements Iterable<V> {
+    /** Bits of the id consumed per level */
+    private static final int BITS = 5;
+
+    /** Children per node */
+    private static final int WIDTH = 1 << BITS;
+
+    /** Map with no entries, shared by every value type */
+    @SuppressWarnings("rawtypes")
+    private static final PersistentIntMap EMPTY = new PersistentIntMap<>(null, 0, 0);
+
+    /** Root node, null when empty. Leaves hold values, every other node holds nodes */
+    private final Object[] root;
+
+    /** Bits below the level of the root, zero when the root is a leaf */
+    private final int shift;
+
+    /** Number of entries */
+    private final int size;
+
+    private PersistentIntMap(Object[] root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    /**
+     * Get the empty map
+     *
+     * @param <V> Type of the values
+     * @return Map with no entries
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Build a map holding the entries of another map
+     *
+     * @param <V> Type of the values
+     * @param entries Entries to copy
+     * @return New map
+     */
+    public static <V> PersistentIntMap<V> of(Map<Integer, V> entries) {
+        PersistentIntMap<V> map = empty();
+        for (Map.Entry<Integer, V> entry : entries.entrySet()) {
+            map = map.put(entry.getKey(), entry.getValue());
+        }
+        return map;
+    }
+
+    /**
+     * Get the value of an id
+     *
+     * @param id Id to look up
+     * @return Value, or null if the id is not in the map
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int id) {
+        if (id < 0 || root == null || (id >>> shift) >= WIDTH) {
+            return null;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(id >>> level) & (WIDTH - 1)];
+            if (node == null) {
+                return null;
+            }
+        }
+        return (V) node[id & (WIDTH - 1)];
+    }
+
+    /**
+     * Check if an id is in the map
+     *
+     * @param id Id to look up
+     * @return True if the map holds the id
+     */
+    public boolean containsKey(int id) {
+        return get(id) != null;
+    }
+
+    /**
+     * Get the number of entries
+     *
+     * @return Entry count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if the map has no entries
+     *
+     * @return True if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get a map with an id set to a value
+     *
+     * @param id Id to set, not negative
+     * @param value Value of the id, not null
+     * @return New map, this one is unchanged
+     */
+    public PersistentIntMap<V> put(int id, V value) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative id " + id);
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+
+        // Add levels above the root until the id fits under it
+        Object[] top = root;
+        int level = shift;
+        while ((id >>> level) >= WIDTH) {
+            if (top != null) {
+                Object[] parent = new Object[WIDTH];
+                parent[0] = top;
+                top = parent;
+            }
+            level += BITS;
+        }
+
+        boolean added = !containsKey(id);
+        return new PersistentIntMap<>(put(top, level, id, value), level, added ? size + 1 : size);
+    }
+
+    /**
+     * Get a map without an id
+     *
+     * @param id Id to remove
+     * @return New map, or this one if the id is not in it
+     */
+    public PersistentIntMap<V> remove(int id) {
+        if (!containsKey(id)) {
+            return this;
+        }
+        if (size == 1) {
+            return empty();
+        }
+        return new PersistentIntMap<>(remove(root, shift, id), shift, size - 1);
+    }
+
+    /**
+     * Iterate over the values in id order
+     *
+     * @return Iterator over the values
+     */
+    @Override
+    public Iterator<V> iterator() {
+        int depth = shift / BITS + 1;
+        Object[][] path = new Object[depth][];
+        int[] position = new int[depth];
+        path[0] = root;
+
+        return new Iterator<V>() {
+            /** Level of the node being walked, -1 once done */
+            private int top = root == null ? -1 : 0;
+
+            /** Value returned next, null once done */
+            private Object next = advance();
+
+            /**
+             * Walk to the next value in id order
+             *
+             * @return Next value, or null past the end
+             */
+            private Object advance() {
+                while (top >= 0) {
+                    if (position[top] == WIDTH) {
+                        top--;
+                        if (top >= 0) {
+                            position[top]++;
+                        }
+                        continue;
+                    }
+                    Object child = path[top][position[top]];
+                    if (child == null) {
+                        position[top]++;
+                    }
+                    else if (top == depth - 1) {
+                        position[top]++;
+                        return child;
+                    }
+                    else {
+                        top++;
+                        path[top] = (Object[]) child;
+                        position[top] = 0;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Object value = next;
+                next = advance();
+                return (V) value;
+            }
+        };
+    }
+
+    private static Object[] put(Object[] node, int level, int id, Object value) {
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        int index = (id >>> level) & (WIDTH - 1);
+        copy[index] = level == 0 ? value : put((Object[]) copy[index], level - BITS, id, value);
+        return copy;
+    }
+
+    /**
+     * Copy the path to an id without it, dropping nodes left empty
+     *
+     * @return New node, or null if nothing is left under it
+     */
+    private static Object[] remove(Object[] node, int level, int id) {
+        Object[] copy = node.clone();
+        int index = (id >>> level) & (WIDTH - 1);
+        copy[index] = level == 0 ? null : remove((Object[]) copy[index], level - BITS, id);
+        for (Object child : copy) {
+            if (child != null) {
+                return copy;
+            }
+        }
+        return null;
+    }
+}
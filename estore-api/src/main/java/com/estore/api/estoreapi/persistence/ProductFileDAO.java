@@ -3,59 +3,133 @@ package com.estore.api.estoreapi.persistence;
 import java.util.Map;
 import java.util.logging.Logger;
 import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.io.IOException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import java.io.File;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import java.util.TreeMap;
 
+import javax.annotation.PreDestroy;
+
 import com.estore.api.estoreapi.model.Product;
 
 /**
  * Implementation of ProductDAO which will save to a file as a data store
  * 
+ * Reads never lock, each one works on the {@link PersistentIntMap} version
+ * current when it started. Writers take the write lock and publish a new
+ * version that shares all but the few nodes on the path to the changed id
+ * with the previous one
+ * 
  * @author Matt London
  */
 @Component
-public class ProductFileDAO  implements ProductDAO {
+@ConditionalOnProperty(name = "persistence.backend", havingValue = "file", matchIfMissing = true)
+public class ProductFileDAO  implements ProductDAO, Stageable<Product>, Replicable, Snapshottable {
     private static final Logger LOG = Logger.getLogger(ProductFileDAO.class.getName());
     
-    /** Maps ids to their corresponding {@link Product} */
-    Map<Integer, Product> productMap;
+    /** Maps ids to their corresponding {@link Product}, replaced by every write */
+    volatile PersistentIntMap<Product> productMap;
 
-    /** JSON serializer/deserializer */
-    private ObjectMapper objectMapper;
+    /** Held by writers while they build the next version of productMap */
+    private final Object writeLock = new Object();
 
-    /** Next id to assign */
-    private static int nextId;
+    /** Hands out the ids of new products */
+    private IdAllocator ids;
 
-    private String filename;
+    /** Keeps the data file in sync with productMap */
+    private FileStore<Product> fileStore;
+
+    /**
+     * Build the {@link ProductFileDAO} and the default persistence settings,
+     * ids are kept in memory
+     * 
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public ProductFileDAO(String filename, ObjectMapper objectMapper) throws IOException {
+        this(filename, objectMapper, new PersistenceProperties(), new IdAllocator());
+    }
 
     /**
      * Build the {@link ProductFileDAO}
      * 
      * @param filename Filename to store the data in
      * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
      * 
      * @throws IOException If there is an error reading the file
      */
-    public ProductFileDAO(@Value("${products.file}") String filename, ObjectMapper objectMapper) throws IOException {
-        this.filename = filename;
-        this.objectMapper = objectMapper;
-        load();
+    public ProductFileDAO(@Value("${products.file}") String filename, ObjectMapper objectMapper,
+                          PersistenceProperties properties) throws IOException {
+        this(filename, objectMapper, properties, IdAllocator.forFile(filename, properties));
     }
 
     /**
-     * Gets next id and increments it
+     * Build the {@link ProductFileDAO} loaded on the {@link StoreLoader} alongside the other stores
      * 
-     * Syncronized to prevent multiple threads from accessing nextId concurrently
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param loader Loads the data file alongside the other stores
      * 
-     * @return The next id to assign
+     * @throws IOException If there is an error reading the file
      */
-    private synchronized static int getNextId() {
-        return nextId++;
+    @Autowired
+    public ProductFileDAO(@Value("${products.file}") String filename, ObjectMapper objectMapper,
+                          PersistenceProperties properties, StoreLoader loader) throws IOException {
+        this(filename, objectMapper, properties, IdAllocator.forFile(filename, properties), loader);
+    }
+
+    /**
+     * Build the {@link ProductFileDAO} with its own id allocator
+     * 
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param ids Hands out the ids of new products
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public ProductFileDAO(String filename, ObjectMapper objectMapper, PersistenceProperties properties,
+                          IdAllocator ids) throws IOException {
+        this(filename, objectMapper, properties, ids, null);
+    }
+
+    /**
+     * Build the {@link ProductFileDAO} with its own id allocator, loaded on a {@link StoreLoader}
+     * 
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param ids Hands out the ids of new products
+     * @param loader Loads the data file alongside the other stores, null to load it now
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public ProductFileDAO(String filename, ObjectMapper objectMapper, PersistenceProperties properties,
+                          IdAllocator ids, StoreLoader loader) throws IOException {
+        this.ids = ids;
+        this.productMap = PersistentIntMap.empty();
+        this.fileStore = new FileStore<>(filename, objectMapper, Product[].class, Product::getId,
+                                         this::getProductsArray, writeLock, properties);
+        if (loader == null) {
+            load();
+            fileStore.watch(this::reloaded);
+        }
+        else {
+            fileStore.awaitBeforeUse(loader.submit("products", false, () -> {
+                load();
+                fileStore.watch(this::reloaded);
+            }));
+        }
     }
 
     /**
@@ -64,19 +138,20 @@ public class ProductFileDAO  implements ProductDAO {
      * @return Array of stored {@link Product products}, or empty array if none
      */
     private Product[] getProductsArray() {
-        return searchProducts(null);
+        return searchProducts(productMap, null);
     }
 
     /**
      * Searches through the array of {@link Product} for those matching some text
      * 
+     * @param products Version of the products to search
      * @param matching Text to match
      * @return Matching {@link Product products}, or empty array if none
      */
-    private Product[] searchProducts(String matching) {
+    private static Product[] searchProducts(PersistentIntMap<Product> products, String matching) {
         List<Product> matchingProducts = new ArrayList<>();
 
-        for (Product product : productMap.values()) {
+        for (Product product : products) {
             // If no text, matching name, or matching description then add it
             if (matching == null || (product.getName() != null
                     && product.getName().toLowerCase().contains(matching.toLowerCase()))
@@ -93,38 +168,40 @@ public class ProductFileDAO  implements ProductDAO {
     }
 
     /**
-     * Saves {@link Product} to the DAO file
+     * Load all {@link Product} from the DAO file and store in the map
      * 
-     * @throws IOException If there is an error writing to the file
+     * @throws IOException If there is an error reading the file
      */
-    private void save() throws IOException{
-        Product[] allProducts = getProductsArray();
+    private void load() throws IOException {
+        Map<Integer, Product> loaded = new TreeMap<>();
+        fileStore.load(loaded);
+        productMap = PersistentIntMap.of(loaded);
 
-        // Uses object mapper to convert to json and write to file
-        objectMapper.writeValue(new File(filename), allProducts);
+        // Never hand out an id already stored
+        for (int id : loaded.keySet()) {
+            ids.skipPast(id);
+        }
     }
 
     /**
-     * Load all {@link Product} from the DAO file and store in the map
+     * Apply the {@link Product products} another program changed in the data file,
+     * readers see all of the changes at once
      * 
-     * @throws IOException If there is an error reading the file
+     * @param changed {@link Product Products} added or changed
+     * @param removed Ids of the {@link Product products} removed
      */
-    private void load() throws IOException {
-        productMap = new TreeMap<>();
-        nextId = 0;
-
-        Product[] serializedProducts = objectMapper.readValue(new File(filename), Product[].class);
-
-        // Add all products and keep track of the greatest id
-        for (Product product: serializedProducts) {
-            productMap.put(product.getId(), product);
-            if (product.getId() > nextId) {
-                nextId = product.getId();
+    private void reloaded(List<Product> changed, List<Integer> removed) {
+        synchronized (writeLock) {
+            PersistentIntMap<Product> products = productMap;
+            for (Product product : changed) {
+                products = products.put(product.getId(), product);
+                ids.skipPast(product.getId());
+            }
+            for (int id : removed) {
+                products = products.remove(id);
             }
+            productMap = products;
         }
-
-        // Incremement id again so it is ready to return the next id
-        getNextId();
     }
 
     /**
@@ -132,10 +209,7 @@ public class ProductFileDAO  implements ProductDAO {
      */
     @Override
     public Product[] getProducts() {
-        // Synchronize on productMap so that it can't be modified while being read
-        synchronized(productMap) {
-            return getProductsArray();
-        }
+        return getProductsArray();
     }
 
     /**
@@ -143,9 +217,7 @@ public class ProductFileDAO  implements ProductDAO {
      */
     @Override
     public Product[] findProducts(String matching) {
-        synchronized(productMap) {
-            return searchProducts(matching);
-        }
+        return searchProducts(productMap, matching);
     }
 
     /**
@@ -153,9 +225,7 @@ public class ProductFileDAO  implements ProductDAO {
      */
     @Override
     public Product getProduct(int id) {
-        synchronized(productMap) {
-            return productMap.get(id);
-        }
+        return productMap.get(id);
     }
 
     /**
@@ -163,14 +233,14 @@ public class ProductFileDAO  implements ProductDAO {
      */
     @Override
     public Product createProduct(Product product) throws IOException {
-        synchronized(productMap) {
-            Product tmpProd = new Product(getNextId(), product.getName(), product.getPrice(),
+        synchronized(writeLock) {
+            Product tmpProd = new Product(ids.next(), product.getName(), product.getPrice(),
                                             product.getQuantity(), product.getDescription(), product.getCategory(),
                                             product.isOwnerRecommended());
             
             // Add to map and save to DAO
-            productMap.put(tmpProd.getId(), tmpProd);
-            save();
+            productMap = productMap.put(tmpProd.getId(), tmpProd);
+            fileStore.put(tmpProd);
 
             return tmpProd;
         }
@@ -181,13 +251,13 @@ public class ProductFileDAO  implements ProductDAO {
      */
     @Override
     public Product updateProduct(Product product) throws IOException {
-        synchronized(productMap) {
+        synchronized(writeLock) {
             if (!productMap.containsKey(product.getId())) {
                 return null;
             }
 
-            productMap.put(product.getId(), product);
-            save();
+            productMap = productMap.put(product.getId(), product);
+            fileStore.put(product);
 
             return product;
         }
@@ -198,15 +268,118 @@ public class ProductFileDAO  implements ProductDAO {
      */
     @Override
     public boolean deleteProduct(int id) throws IOException {
-        synchronized (productMap) {
+        synchronized (writeLock) {
             if (!productMap.containsKey(id)) {
                 return false;
             }
             else {
-                productMap.remove(id);
-                save();
+                productMap = productMap.remove(id);
+                fileStore.delete(id);
                 return true;
             }
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int reserveId() {
+        return ids.next();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stage(Product product) throws IOException {
+        synchronized(writeLock) {
+            productMap = productMap.put(product.getId(), product);
+            fileStore.stage(product);
+            ids.skipPast(product.getId());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object lockFor(int id) {
+        return writeLock;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getReplicaName() {
+        return "products";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void replicateTo(Consumer<MutationLog.Entry> feed) {
+        fileStore.feed(feed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<JsonNode> getReplicaSnapshot() {
+        return fileStore.serializedRecords();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void applyReplica(List<MutationLog.Entry> entries, boolean replaceAll) throws IOException {
+        fileStore.applyReplicated(entries, replaceAll);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSnapshotName() {
+        return "products";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecordSnapshot snapshot() {
+        return fileStore.snapshot();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StoreStatus getStatus() {
+        return fileStore.getStatus();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        fileStore.flush();
+    }
+
+    /**
+     * Flush any outstanding changes to the data file on shutdown
+     * 
+     * @throws IOException If there is an error writing to the file
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        fileStore.close();
+        ids.close();
+    }
 }
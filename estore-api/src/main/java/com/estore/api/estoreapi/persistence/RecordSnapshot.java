@@ -0,0 +1,51 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+/**
+ * Records of a store captured at a point in time
+ *
+ * The DAOs replace a record instead of changing it, so holding the records
+ * captured is enough to keep them as they were while writers carry on
+ */
+public class RecordSnapshot {
+    /** Records captured */
+    private Object[] records;
+
+    /**
+     * Create a snapshot of captured records
+     *
+     * @param records Records captured, no longer changed by the DAO
+     */
+    public RecordSnapshot(Object[] records) {
+        this.records = records;
+    }
+
+    /**
+     * Get the number of records captured
+     *
+     * @return Records
+     */
+    public int size() {
+        return records.length;
+    }
+
+    /**
+     * Stream the records as a JSON array, one record at a time
+     *
+     * @param out Stream to write to, closed when done
+     * @param objectMapper JSON serializer
+     * @throws IOException If the records cannot be written
+     */
+    public void writeTo(OutputStream out, ObjectMapper objectMapper) throws IOException {
+        try (SequenceWriter writer = objectMapper.writer().writeValuesAsArray(out)) {
+            for (Object record : records) {
+                writer.write(record);
+            }
+        }
+    }
+}
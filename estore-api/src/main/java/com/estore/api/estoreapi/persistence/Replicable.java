@@ -0,0 +1,44 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Implemented by DAOs whose records can be copied from a {@link ReplicationLeader leader}
+ * instance to {@link ReplicationFollower follower} instances
+ */
+public interface Replicable {
+    /**
+     * Get the name identifying the store on every instance
+     *
+     * @return Name of the store, such as products
+     */
+    String getReplicaName();
+
+    /**
+     * Pass every later change of the store to a feed, on the leader
+     *
+     * @param feed Receives the changes in the order they are made
+     */
+    void replicateTo(Consumer<MutationLog.Entry> feed);
+
+    /**
+     * Get every record of the store as it is now, on the leader
+     *
+     * @return Serialized records
+     */
+    List<JsonNode> getReplicaSnapshot();
+
+    /**
+     * Apply changes received from the leader, on a follower
+     *
+     * @param entries Changes in the order the leader made them
+     * @param replaceAll True if the entries put every record of the leader,
+     *                   the records missing from them are removed
+     * @throws IOException If a record cannot be read
+     */
+    void applyReplica(List<MutationLog.Entry> entries, boolean replaceAll) throws IOException;
+}
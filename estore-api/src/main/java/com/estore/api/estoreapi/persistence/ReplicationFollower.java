@@ -0,0 +1,260 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Keeps the {@link Replicable replicated stores} of a read-only instance in
+ * step with a {@link ReplicationLeader leader}
+ *
+ * A background thread connects to the leader, asks for the changes after the
+ * last one it applied and applies every change it receives to the in-memory
+ * records of the DAOs. Nothing is written to the data files of this instance.
+ * When the connection drops the thread reconnects, and the leader sends only
+ * the missed changes, or a fresh snapshot if it no longer has them
+ */
+@Component
+@ConditionalOnProperty(name = "persistence.replication-role", havingValue = "follower")
+public class ReplicationFollower implements ReplicationNode {
+    private static final Logger LOG = Logger.getLogger(ReplicationFollower.class.getName());
+
+    /** Replicated stores by name */
+    private Map<String, Replicable> stores = new LinkedHashMap<>();
+
+    /** Stores of the leader this instance does not have, warned about once */
+    private Set<String> unknownStores = new HashSet<>();
+
+    /** JSON serializer/deserializer */
+    private ObjectMapper objectMapper;
+
+    /** Host of the leader */
+    private String host;
+
+    /** Port of the leader */
+    private int port;
+
+    /** Wait before reconnecting */
+    private long retryMillis;
+
+    /** Connects to the leader and applies its changes */
+    private Thread thread;
+
+    /** Current connection to the leader, null between connections */
+    private volatile Socket socket;
+
+    /** True once closed */
+    private volatile boolean closed;
+
+    /** Run of the leader the applied sequence number belongs to */
+    private volatile String epoch = "";
+
+    /** Sequence number of the last change applied, -1 before the first snapshot */
+    private volatile long appliedSequence = -1;
+
+    /** Sequence number of the last change the leader is known to have made */
+    private volatile long leaderSequence = -1;
+
+    /** Last time every known change of the leader was applied */
+    private volatile long caughtUpAt = System.currentTimeMillis();
+
+    /** True while connected to the leader */
+    private volatile boolean connected;
+
+    /** Number of snapshots received */
+    private final AtomicLong snapshots = new AtomicLong();
+
+    /**
+     * Start following the leader
+     *
+     * @param stores Stores to apply the changes of the leader to
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     */
+    public ReplicationFollower(List<Replicable> stores, ObjectMapper objectMapper, PersistenceProperties properties) {
+        for (Replicable store : stores) {
+            this.stores.put(store.getReplicaName(), store);
+        }
+        this.objectMapper = objectMapper;
+        this.host = properties.getReplicationHost();
+        this.port = properties.getReplicationPort();
+        this.retryMillis = Math.max(1, properties.getReplicationRetryMillis());
+
+        this.thread = new Thread(this::run, "replication from " + host + ":" + port);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Follow the leader until closed, reconnecting whenever the connection drops
+     */
+    private void run() {
+        while (!closed) {
+            try {
+                follow();
+            }
+            catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    LOG.log(connected ? Level.WARNING : Level.FINE,
+                            "Lost the replication leader at " + host + ":" + port + ": " + e.getMessage());
+                }
+            }
+            connected = false;
+
+            try {
+                TimeUnit.MILLISECONDS.sleep(retryMillis);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Connect to the leader and apply its changes until the connection drops
+     *
+     * @throws IOException If the connection fails or a change cannot be applied
+     */
+    private void follow() throws IOException {
+        try (Socket connection = new Socket(host, port)) {
+            socket = connection;
+            if (closed) {
+                return;
+            }
+            connection.setTcpNoDelay(true);
+            Writer out = new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8);
+            out.write(objectMapper.createObjectNode().put("from", appliedSequence).put("epoch", epoch) + "\n");
+            out.flush();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(),
+                                                                         StandardCharsets.UTF_8));
+            String leaderEpoch = epoch;
+            boolean snapshot = false;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                JsonNode message = objectMapper.readTree(line);
+                long sequence = message.path("seq").asLong();
+                switch (message.path("type").asText()) {
+                    case "hello":
+                        leaderEpoch = message.path("epoch").asText();
+                        if (!leaderEpoch.equals(epoch)) {
+                            // Sequence numbers of an earlier run of the leader mean nothing now
+                            appliedSequence = -1;
+                        }
+                        leaderSequence = sequence;
+                        connected = true;
+                        LOG.info("Following the replication leader at " + host + ":" + port);
+                        break;
+                    case "snapshot":
+                        List<MutationLog.Entry> records = new ArrayList<>();
+                        for (JsonNode record : message.path("records")) {
+                            records.add(new MutationLog.Entry(MutationLog.Operation.PUT, record.path("id").asInt(),
+                                                              record));
+                        }
+                        apply(message.path("store").asText(), records, true);
+                        snapshot = true;
+                        break;
+                    case "ready":
+                        // A snapshot restarts the sequence, the leader may have restarted too
+                        appliedSequence = snapshot ? sequence : Math.max(appliedSequence, sequence);
+                        epoch = leaderEpoch;
+                        if (snapshot) {
+                            snapshots.incrementAndGet();
+                            LOG.info("Applied a snapshot of the replication leader at change " + sequence);
+                        }
+                        break;
+                    case "entry":
+                        MutationLog.Operation operation = MutationLog.Operation.valueOf(message.path("op").asText());
+                        JsonNode value = operation == MutationLog.Operation.PUT ? message.path("value") : null;
+                        apply(message.path("store").asText(),
+                              List.of(new MutationLog.Entry(operation, message.path("id").asInt(), value)), false);
+                        appliedSequence = sequence;
+                        break;
+                    default:
+                        // Heartbeat
+                        break;
+                }
+
+                leaderSequence = Math.max(leaderSequence, sequence);
+                if (appliedSequence >= leaderSequence && epoch.equals(leaderEpoch)) {
+                    caughtUpAt = System.currentTimeMillis();
+                }
+            }
+        }
+        finally {
+            socket = null;
+        }
+    }
+
+    /**
+     * Apply changes to one store
+     *
+     * @param name Name of the store
+     * @param entries Changes in the order the leader made them
+     * @param replaceAll True if the entries hold every record of the store
+     * @throws IOException If a record cannot be read
+     */
+    private void apply(String name, List<MutationLog.Entry> entries, boolean replaceAll) throws IOException {
+        Replicable store = stores.get(name);
+        if (store == null) {
+            if (unknownStores.add(name)) {
+                LOG.warning("Ignoring the changes of " + name + ", this instance does not hold it");
+            }
+            return;
+        }
+        store.applyReplica(entries, replaceAll);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ReplicationStatus getReplicationStatus() {
+        boolean caughtUp = connected && appliedSequence >= leaderSequence;
+        long lagMillis = caughtUp ? 0 : System.currentTimeMillis() - caughtUpAt;
+        return new ReplicationStatus("follower", connected, 0, appliedSequence, leaderSequence, lagMillis,
+                                     snapshots.get());
+    }
+
+    /**
+     * Stop following the leader on shutdown
+     *
+     * @throws IOException If the connection cannot be closed
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        closed = true;
+        Socket current = socket;
+        if (current != null) {
+            current.close();
+        }
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
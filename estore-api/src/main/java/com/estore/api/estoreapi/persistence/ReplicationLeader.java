@@ -0,0 +1,370 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Streams every change of the {@link Replicable replicated stores} to
+ * {@link ReplicationFollower follower} instances over a socket
+ *
+ * Each change gets the next sequence number of the leader and is sent as one
+ * line of JSON. The last changes are kept in a backlog, so a follower that
+ * reconnects only receives the changes it missed. A new follower, or one too
+ * far behind, first receives a snapshot of every store and then the changes
+ * made since the snapshot was taken
+ *
+ * Messages sent to a follower, after it sent {"from":sequence,"epoch":epoch}:
+ * hello, then snapshot messages or the missed entry messages, then ready,
+ * then an entry message per change and a heartbeat message when idle
+ */
+@Component
+@ConditionalOnProperty(name = "persistence.replication-role", havingValue = "leader")
+public class ReplicationLeader implements ReplicationNode {
+    private static final Logger LOG = Logger.getLogger(ReplicationLeader.class.getName());
+
+    /**
+     * A change as sent to the followers
+     */
+    private static class Change {
+        /** Sequence number of the change */
+        final long sequence;
+
+        /** Message sent for the change */
+        final String line;
+
+        Change(long sequence, String line) {
+            this.sequence = sequence;
+            this.line = line;
+        }
+    }
+
+    /**
+     * A connected follower and the changes not sent to it yet
+     */
+    private static class Follower {
+        /** Connection to the follower */
+        final Socket socket;
+
+        /** Changes made since the follower connected and not sent yet */
+        final BlockingQueue<Change> queue;
+
+        /** True once a change did not fit the queue, the follower has to resync */
+        volatile boolean overflowed;
+
+        Follower(Socket socket, int capacity) {
+            this.socket = socket;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /**
+         * Queue a change to be sent
+         *
+         * @param change Change to send
+         */
+        void offer(Change change) {
+            if (!queue.offer(change)) {
+                overflowed = true;
+            }
+        }
+    }
+
+    /** Replicated stores by name */
+    private Map<String, Replicable> stores = new LinkedHashMap<>();
+
+    /** JSON serializer/deserializer */
+    private ObjectMapper objectMapper;
+
+    /** Identifies this run of the leader, sequence numbers restart with it */
+    private String epoch = UUID.randomUUID().toString();
+
+    /** Sequence number of the last change, guarded by this */
+    private long sequence;
+
+    /** Last changes, for followers that reconnect, guarded by this */
+    private ArrayDeque<Change> backlog = new ArrayDeque<>();
+
+    /** Number of changes kept in the backlog */
+    private int backlogSize;
+
+    /** How often an idle follower is sent a heartbeat */
+    private long heartbeatMillis;
+
+    /** Connected followers */
+    private final List<Follower> followers = new CopyOnWriteArrayList<>();
+
+    /** Number of snapshots sent */
+    private final AtomicLong snapshots = new AtomicLong();
+
+    /** Accepts the followers */
+    private ServerSocket serverSocket;
+
+    /**
+     * Start listening for followers and feeding them the changes of the stores
+     *
+     * @param stores Stores to replicate
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @throws IOException If the replication port cannot be opened
+     */
+    public ReplicationLeader(List<Replicable> stores, ObjectMapper objectMapper, PersistenceProperties properties)
+            throws IOException {
+        this.objectMapper = objectMapper;
+        this.backlogSize = Math.max(1, properties.getReplicationBacklog());
+        this.heartbeatMillis = Math.max(1, properties.getReplicationHeartbeatMillis());
+        for (Replicable store : stores) {
+            String name = store.getReplicaName();
+            this.stores.put(name, store);
+            store.replicateTo(entry -> publish(name, entry));
+        }
+
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(properties.getReplicationHost(), properties.getReplicationPort()));
+        Thread acceptor = new Thread(this::accept, "replication leader on port " + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LOG.info("Replicating " + this.stores.keySet() + " to followers on " + serverSocket.getLocalSocketAddress());
+    }
+
+    /**
+     * Get the port followers connect to
+     *
+     * @return Local port of the leader
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Number a change and queue it for every follower
+     *
+     * @param store Name of the store the change was made in
+     * @param entry The change
+     */
+    private synchronized void publish(String store, MutationLog.Entry entry) {
+        ObjectNode message = message("entry", ++sequence);
+        message.put("store", store);
+        message.put("op", entry.getOperation().name());
+        message.put("id", entry.getId());
+        if (entry.getValue() != null) {
+            message.set("value", entry.getValue());
+        }
+
+        Change change = new Change(sequence, message.toString());
+        backlog.addLast(change);
+        if (backlog.size() > backlogSize) {
+            backlog.removeFirst();
+        }
+        for (Follower follower : followers) {
+            follower.offer(change);
+        }
+    }
+
+    /**
+     * Make a message
+     *
+     * @param type Type of message
+     * @param sequence Sequence number the message refers to
+     * @return Message to fill in
+     */
+    private ObjectNode message(String type, long sequence) {
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("type", type);
+        message.put("seq", sequence);
+        message.put("time", System.currentTimeMillis());
+        return message;
+    }
+
+    /**
+     * Send a message without flushing
+     *
+     * @param out Connection to the follower
+     * @param message Message to send
+     * @throws IOException If the follower is gone
+     */
+    private void send(Writer out, JsonNode message) throws IOException {
+        out.write(message.toString());
+        out.write('\n');
+    }
+
+    /**
+     * Accept followers until closed
+     */
+    private void accept() {
+        while (true) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            }
+            catch (IOException e) {
+                // Closed
+                return;
+            }
+
+            Thread sender = new Thread(() -> serve(socket), "replication to " + socket.getRemoteSocketAddress());
+            sender.setDaemon(true);
+            sender.start();
+        }
+    }
+
+    /**
+     * Bring a follower up to date and send it every change until it disconnects
+     *
+     * @param socket Connection to the follower
+     */
+    private void serve(Socket socket) {
+        Follower follower = new Follower(socket, backlogSize);
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                                                         StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            String hello = in.readLine();
+            if (hello == null) {
+                return;
+            }
+            JsonNode request = objectMapper.readTree(hello);
+            long from = request.path("from").asLong(-1);
+            boolean sameRun = epoch.equals(request.path("epoch").asText());
+
+            // Every change after start reaches the queue, the ones before it come from the backlog or a snapshot
+            long start;
+            List<Change> missed = null;
+            synchronized (this) {
+                followers.add(follower);
+                start = sequence;
+                long oldest = backlog.isEmpty() ? sequence + 1 : backlog.getFirst().sequence;
+                if (sameRun && from >= oldest - 1 && from <= sequence) {
+                    missed = new ArrayList<>();
+                    for (Change change : backlog) {
+                        if (change.sequence > from) {
+                            missed.add(change);
+                        }
+                    }
+                }
+            }
+
+            send(out, message("hello", start).put("epoch", epoch));
+            if (missed != null) {
+                for (Change change : missed) {
+                    out.write(change.line);
+                    out.write('\n');
+                }
+                LOG.info("Follower " + socket.getRemoteSocketAddress() + " caught up with " + missed.size()
+                         + " missed changes");
+            }
+            else {
+                // Changes made while the snapshot is taken are sent again after it, applying one twice is harmless
+                for (Map.Entry<String, Replicable> store : stores.entrySet()) {
+                    ObjectNode snapshot = message("snapshot", start);
+                    snapshot.put("store", store.getKey());
+                    snapshot.putArray("records").addAll(store.getValue().getReplicaSnapshot());
+                    send(out, snapshot);
+                }
+                snapshots.incrementAndGet();
+                LOG.info("Follower " + socket.getRemoteSocketAddress() + " sent a snapshot at change " + start);
+            }
+            send(out, message("ready", start));
+            out.flush();
+
+            while (!follower.overflowed) {
+                Change change = follower.queue.poll(heartbeatMillis, TimeUnit.MILLISECONDS);
+                if (change == null) {
+                    send(out, message("heartbeat", getSequence()));
+                    out.flush();
+                    continue;
+                }
+                out.write(change.line);
+                out.write('\n');
+                if (follower.queue.isEmpty()) {
+                    out.flush();
+                }
+            }
+            LOG.warning("Follower " + socket.getRemoteSocketAddress() + " fell more than " + backlogSize
+                        + " changes behind, disconnecting it to resync");
+        }
+        catch (IOException e) {
+            LOG.info("Follower " + socket.getRemoteSocketAddress() + " disconnected: " + e.getMessage());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            followers.remove(follower);
+        }
+    }
+
+    /**
+     * Get the sequence number of the last change
+     *
+     * @return Sequence number, 0 before the first change
+     */
+    private synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Drop the connection of every follower, they reconnect by themselves
+     */
+    void disconnectFollowers() {
+        for (Follower follower : followers) {
+            try {
+                follower.socket.close();
+            }
+            catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ReplicationStatus getReplicationStatus() {
+        long current = getSequence();
+        return new ReplicationStatus("leader", true, followers.size(), current, current, 0, snapshots.get());
+    }
+
+    /**
+     * Stop feeding changes and disconnect every follower on shutdown
+     *
+     * @throws IOException If the replication port cannot be closed
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        for (Replicable store : stores.values()) {
+            store.replicateTo(null);
+        }
+        serverSocket.close();
+        disconnectFollowers();
+    }
+}
@@ -0,0 +1,13 @@
+package com.estore.api.estoreapi.persistence;
+
+/**
+ * Implemented by the replication leader and follower of an instance
+ */
+public interface ReplicationNode {
+    /**
+     * Describe the replication state of this instance
+     *
+     * @return Current {@link ReplicationStatus status}
+     */
+    ReplicationStatus getReplicationStatus();
+}
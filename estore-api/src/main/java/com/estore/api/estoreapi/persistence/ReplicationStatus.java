@@ -0,0 +1,105 @@
+package com.estore.api.estoreapi.persistence;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Snapshot of the replication state of a leader or follower instance
+ */
+public class ReplicationStatus {
+    @JsonProperty("role") private String role;
+    @JsonProperty("connected") private boolean connected;
+    @JsonProperty("followers") private int followers;
+    @JsonProperty("appliedSequence") private long appliedSequence;
+    @JsonProperty("leaderSequence") private long leaderSequence;
+    @JsonProperty("lagMillis") private long lagMillis;
+    @JsonProperty("snapshots") private long snapshots;
+
+    /**
+     * Create a status
+     *
+     * @param role leader or follower
+     * @param connected True if a follower is connected to its leader, always true on the leader
+     * @param followers Followers connected to a leader, 0 on a follower
+     * @param appliedSequence Sequence number of the last change applied by this instance
+     * @param leaderSequence Sequence number of the last change the leader is known to have made
+     * @param lagMillis How long this instance has been behind its leader, 0 when caught up
+     * @param snapshots Full copies of the leader sent to followers, or received by a follower
+     */
+    public ReplicationStatus(@JsonProperty("role") String role, @JsonProperty("connected") boolean connected,
+                             @JsonProperty("followers") int followers,
+                             @JsonProperty("appliedSequence") long appliedSequence,
+                             @JsonProperty("leaderSequence") long leaderSequence,
+                             @JsonProperty("lagMillis") long lagMillis,
+                             @JsonProperty("snapshots") long snapshots) {
+        this.role = role;
+        this.connected = connected;
+        this.followers = followers;
+        this.appliedSequence = appliedSequence;
+        this.leaderSequence = leaderSequence;
+        this.lagMillis = lagMillis;
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * Get the replication role of the instance
+     *
+     * @return leader or follower
+     */
+    public String getRole() {
+        return role;
+    }
+
+    /**
+     * Check if a follower is connected to its leader
+     *
+     * @return True if connected, always true on the leader
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Get the number of followers connected to a leader
+     *
+     * @return Connected followers, 0 on a follower
+     */
+    public int getFollowers() {
+        return followers;
+    }
+
+    /**
+     * Get the sequence number of the last change applied by this instance
+     *
+     * @return Applied sequence number, -1 if a follower has not received a snapshot yet
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Get the sequence number of the last change the leader is known to have made
+     *
+     * @return Leader sequence number
+     */
+    public long getLeaderSequence() {
+        return leaderSequence;
+    }
+
+    /**
+     * Get how long this instance has been behind its leader
+     *
+     * @return Lag in milliseconds, 0 when caught up
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    /**
+     * Get the number of full copies of the leader sent to followers, or received by a follower
+     *
+     * @return Snapshots sent or received
+     */
+    public long getSnapshots() {
+        return snapshots;
+    }
+}
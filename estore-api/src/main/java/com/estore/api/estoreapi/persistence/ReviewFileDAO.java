@@ -1,56 +1,120 @@
 package com.estore.api.estoreapi.persistence;
 
-import java.util.Map;
 import java.util.logging.Logger;
 import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.io.IOException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import java.io.File;
-import java.util.TreeMap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+
+import javax.annotation.PreDestroy;
 
 import com.estore.api.estoreapi.model.Review;
 
 @Component
-public class ReviewFileDAO implements ReviewDAO {
+@ConditionalOnProperty(name = "persistence.backend", havingValue = "file", matchIfMissing = true)
+public class ReviewFileDAO implements ReviewDAO, ManagedStore, Replicable, Snapshottable {
     private static final Logger LOG = Logger.getLogger(ReviewFileDAO.class.getName());
 
     /** Maps ids to their corresponding {@link Review} */
-    Map<Integer, Review> reviewMap;
+    IntObjectMap<Review> reviewMap;
 
-    /** JSON serializer/deserializer */
-    private ObjectMapper objectMapper;
+    /** Hands out the ids of new reviews */
+    private IdAllocator ids;
 
-    /** Next id to assign */
-    private static int nextId;
+    /** Keeps the data file in sync with reviewMap */
+    private FileStore<Review> fileStore;
 
-    private String filename;
+    /**
+     * Build the {@link ReviewFileDAO} and the default persistence settings,
+     * ids are kept in memory
+     * 
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public ReviewFileDAO(String filename, ObjectMapper objectMapper) throws IOException {
+        this(filename, objectMapper, new PersistenceProperties(), new IdAllocator());
+    }
 
     /**
      * Build the {@link ReviewFileDAO}
      * 
      * @param filename Filename to store the data in
      * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public ReviewFileDAO(@Value("${review.file}") String filename, ObjectMapper objectMapper,
+                         PersistenceProperties properties) throws IOException {
+        this(filename, objectMapper, properties, IdAllocator.forFile(filename, properties));
+    }
+
+    /**
+     * Build the {@link ReviewFileDAO} loaded on the {@link StoreLoader} alongside the other stores
+     * 
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param loader Loads the data file alongside the other stores
      * 
      * @throws IOException If there is an error reading the file
      */
-    public ReviewFileDAO(@Value("${review.file}") String filename, ObjectMapper objectMapper) throws IOException {
-        this.filename = filename;
-        this.objectMapper = objectMapper;
-        load();
+    @Autowired
+    public ReviewFileDAO(@Value("${review.file}") String filename, ObjectMapper objectMapper,
+                         PersistenceProperties properties, StoreLoader loader) throws IOException {
+        this(filename, objectMapper, properties, IdAllocator.forFile(filename, properties), loader);
     }
 
     /**
-     * Gets next id and increments it
+     * Build the {@link ReviewFileDAO} with its own id allocator
      * 
-     * Syncronized to prevent multiple threads from accessing nextId concurrently
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param ids Hands out the ids of new reviews
      * 
-     * @return The next id to assign
+     * @throws IOException If there is an error reading the file
      */
-    private synchronized static int getNextId() {
-        return nextId++;
+    public ReviewFileDAO(String filename, ObjectMapper objectMapper, PersistenceProperties properties,
+                         IdAllocator ids) throws IOException {
+        this(filename, objectMapper, properties, ids, null);
+    }
+
+    /**
+     * Build the {@link ReviewFileDAO} with its own id allocator, loaded on a {@link StoreLoader}
+     * 
+     * @param filename Filename to store the data in
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     * @param ids Hands out the ids of new reviews
+     * @param loader Loads the data file alongside the other stores, null to load it now
+     * 
+     * @throws IOException If there is an error reading the file
+     */
+    public ReviewFileDAO(String filename, ObjectMapper objectMapper, PersistenceProperties properties,
+                         IdAllocator ids, StoreLoader loader) throws IOException {
+        this.ids = ids;
+        this.reviewMap = new IntObjectMap<>();
+        this.fileStore = new FileStore<>(filename, objectMapper, Review[].class, Review::getId,
+                                         this::getReviewsArray, reviewMap, properties);
+        if (loader == null) {
+            load();
+            fileStore.watch(this::reloaded);
+        }
+        else {
+            fileStore.awaitBeforeUse(loader.submit("reviews", false, () -> {
+                load();
+                fileStore.watch(this::reloaded);
+            }));
+        }
     }
 
     /**
@@ -69,38 +133,37 @@ public class ReviewFileDAO implements ReviewDAO {
     }
 
     /**
-     * Saves {@link Review} to the DAO file
+     * Load all {@link Review} from the DAO file and store in the map
      * 
-     * @throws IOException If there is an error writing to the file
+     * @throws IOException If there is an error reading the file
      */
-    private void save() throws IOException{
-        Review[] allReviews = getReviewsArray();
+    private void load() throws IOException {
+        reviewMap.clear();
 
-        // Uses object mapper to convert to json and write to file
-        objectMapper.writeValue(new File(filename), allReviews);
+        fileStore.load(reviewMap);
+
+        // Never hand out an id already stored
+        for (int id : reviewMap.keySet()) {
+            ids.skipPast(id);
+        }
     }
 
     /**
-     * Load all {@link Review} from the DAO file and store in the map
+     * Apply the {@link Review reviews} another program changed in the data file
      * 
-     * @throws IOException If there is an error reading the file
+     * @param changed {@link Review Reviews} added or changed
+     * @param removed Ids of the {@link Review reviews} removed
      */
-    private void load() throws IOException {
-        reviewMap = new TreeMap<>();
-        nextId = 0;
-
-        Review[] serializedReviews = objectMapper.readValue(new File(filename), Review[].class);
-
-        // Add all orders and keep track of the greatest id
-        for (Review review: serializedReviews) {
-            reviewMap.put(review.getId(), review);
-            if (review.getId() > nextId) {
-                nextId = review.getId();
+    private void reloaded(List<Review> changed, List<Integer> removed) {
+        synchronized(reviewMap) {
+            for (Review review : changed) {
+                reviewMap.put(review.getId(), review);
+                ids.skipPast(review.getId());
+            }
+            for (int id : removed) {
+                reviewMap.remove(id);
             }
         }
-
-        // Incremement id again so it is ready to return the next id
-        getNextId();
     }
 
     /**
@@ -130,12 +193,12 @@ public class ReviewFileDAO implements ReviewDAO {
     @Override
     public Review createReview(Review review) throws IOException {
         synchronized(reviewMap) {
-            Review tmpRev = new Review(getNextId(), review.getProductId(), review.getCustomerId(), 
+            Review tmpRev = new Review(ids.next(), review.getProductId(), review.getCustomerId(), 
                             review.getStars(), review.getReviewContent(), review.getOwnerResponse());
             
             // Add to map and save to DAO
             reviewMap.put(tmpRev.getId(), tmpRev);
-            save();
+            fileStore.put(tmpRev);
 
             return tmpRev;
         }
@@ -152,7 +215,7 @@ public class ReviewFileDAO implements ReviewDAO {
             }
             else {
                 reviewMap.remove(id);
-                save();
+                fileStore.delete(id);
                 return true;
             }
         }
@@ -169,10 +232,84 @@ public class ReviewFileDAO implements ReviewDAO {
             }
 
             reviewMap.put(review.getId(), review);
-            save();
+            fileStore.put(review);
 
             return review;
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getReplicaName() {
+        return "reviews";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void replicateTo(Consumer<MutationLog.Entry> feed) {
+        fileStore.feed(feed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<JsonNode> getReplicaSnapshot() {
+        return fileStore.serializedRecords();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void applyReplica(List<MutationLog.Entry> entries, boolean replaceAll) throws IOException {
+        fileStore.applyReplicated(entries, replaceAll);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSnapshotName() {
+        return "reviews";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecordSnapshot snapshot() {
+        return fileStore.snapshot();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StoreStatus getStatus() {
+        return fileStore.getStatus();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        fileStore.flush();
+    }
+
+    /**
+     * Flush any outstanding changes to the data file on shutdown
+     * 
+     * @throws IOException If there is an error writing to the file
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        fileStore.close();
+        ids.close();
+    }
+}
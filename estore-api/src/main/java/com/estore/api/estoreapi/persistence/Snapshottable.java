@@ -0,0 +1,20 @@
+package com.estore.api.estoreapi.persistence;
+
+/**
+ * Implemented by DAOs that can capture their records at a point in time for a {@link StoreBackup backup}
+ */
+public interface Snapshottable {
+    /**
+     * Get the name of the store in a backup
+     *
+     * @return Name of the store, such as products
+     */
+    String getSnapshotName();
+
+    /**
+     * Capture the records held now, writers are only held up while the references are copied
+     *
+     * @return Records as of now
+     */
+    RecordSnapshot snapshot();
+}
@@ -0,0 +1,39 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+
+/**
+ * Implemented by DAOs that can take a change in memory and write it on the next flush
+ *
+ * Used by the {@link CheckoutJournal} which makes a change durable in its own
+ * journal first, so the stores only need to catch up at its checkpoints
+ *
+ * @param <T> Type of record held in the store
+ */
+public interface Stageable<T> extends ManagedStore {
+    /**
+     * Reserve the id of a new record that will be staged later
+     *
+     * @return Id no other record will be given
+     */
+    int reserveId();
+
+    /**
+     * Create or replace a record, the change is only certain to be durable after {@link #flush()}
+     *
+     * @param record Record as it is now
+     * @throws IOException If the change cannot be applied
+     */
+    void stage(T record) throws IOException;
+
+    /**
+     * Get the monitor the store holds while it changes a record
+     *
+     * Holding it keeps the record from changing, so a caller can read it and
+     * stage a change based on what it read without losing a concurrent update
+     *
+     * @param id Id of the record
+     * @return Monitor guarding the record
+     */
+    Object lockFor(int id);
+}
@@ -0,0 +1,217 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes a point-in-time copy of every {@link Snapshottable store} into a directory while the application runs
+ *
+ * The records of all stores are captured first, between two checkouts so a
+ * checkout is either wholly in the backup or not at all. Capturing only
+ * copies references, the records are then streamed to disk without holding
+ * any lock, so writers carry on during the copy. Each store goes to
+ * name.json and a manifest.json listing the record count, size and SHA-256
+ * checksum of every file is written last, a directory without a manifest
+ * holds an unfinished backup. A configured store that cannot be captured,
+ * such as one kept in a database, is listed as skipped in the manifest
+ */
+@Component
+public class StoreBackup {
+    private static final Logger LOG = Logger.getLogger(StoreBackup.class.getName());
+
+    /** Name of the manifest in a backup directory */
+    public static final String MANIFEST = "manifest.json";
+
+    /** Names accepted for a backup under the backup directory */
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+
+    /** Stores to back up */
+    private List<Snapshottable> stores;
+
+    /** Names of the configured stores that cannot be backed up */
+    private List<String> skipped;
+
+    /** Pauses checkouts while the records are captured, null if there are none */
+    private CheckoutJournal checkouts;
+
+    /** JSON serializer/deserializer */
+    private ObjectMapper objectMapper;
+
+    /** Directory named backups are written under */
+    private Path backupDir;
+
+    /** Number of backups taken */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Create the backup of the stores
+     *
+     * @param stores Stores to back up
+     * @param checkouts Pauses checkouts while the records are captured, null if there are none
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     */
+    public StoreBackup(List<Snapshottable> stores, CheckoutJournal checkouts, ObjectMapper objectMapper,
+                       PersistenceProperties properties) {
+        this(stores, List.of(), checkouts, objectMapper, properties);
+    }
+
+    /**
+     * Create the backup of the stores, noting the configured stores it cannot capture
+     *
+     * @param stores Stores to back up
+     * @param configured Every store configured, those that are not {@link Snapshottable} are skipped
+     * @param checkouts Pauses checkouts while the records are captured, null if there are none
+     * @param objectMapper JSON serializer/deserializer
+     * @param properties Persistence settings
+     */
+    @Autowired
+    public StoreBackup(List<Snapshottable> stores, List<ManagedStore> configured, CheckoutJournal checkouts,
+                       ObjectMapper objectMapper, PersistenceProperties properties) {
+        this.stores = stores;
+        this.skipped = new ArrayList<>();
+        for (ManagedStore store : configured) {
+            if (!(store instanceof Snapshottable)) {
+                skipped.add(store.getClass().getSimpleName());
+            }
+        }
+        this.checkouts = checkouts;
+        this.objectMapper = objectMapper;
+        this.backupDir = Paths.get(properties.getBackupDir());
+    }
+
+    /**
+     * Back up every store into a directory under the backup directory
+     *
+     * @param name Name of the directory, letters, digits, '.', '_' and '-'
+     * @return Manifest of the backup
+     * @throws IOException If the backup cannot be written or one of that name exists
+     * @throws IllegalArgumentException If the name is not allowed
+     */
+    public BackupManifest backup(String name) throws IOException {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid backup name: " + name);
+        }
+        return backup(backupDir.resolve(name));
+    }
+
+    /**
+     * Back up every store into a directory
+     *
+     * @param target Directory to write to, created if missing
+     * @return Manifest of the backup
+     * @throws IOException If the backup cannot be written
+     * @throws FileAlreadyExistsException If the directory already holds a backup
+     */
+    public BackupManifest backup(Path target) throws IOException {
+        Files.createDirectories(target);
+        Path manifestFile = target.resolve(MANIFEST);
+        if (Files.exists(manifestFile)) {
+            throw new FileAlreadyExistsException(manifestFile.toString());
+        }
+
+        long start = System.currentTimeMillis();
+        Supplier<Map<String, RecordSnapshot>> capture = () -> {
+            Map<String, RecordSnapshot> snapshots = new LinkedHashMap<>();
+            for (Snapshottable store : stores) {
+                snapshots.put(store.getSnapshotName(), store.snapshot());
+            }
+            return snapshots;
+        };
+        Map<String, RecordSnapshot> snapshots = checkouts != null ? checkouts.betweenCheckouts(capture)
+                                                                  : capture.get();
+        String createdAt = LocalDateTime.now().toString();
+
+        List<BackupManifest.StoreFile> files = new ArrayList<>();
+        for (Map.Entry<String, RecordSnapshot> snapshot : snapshots.entrySet()) {
+            files.add(write(target, snapshot.getKey(), snapshot.getValue()));
+        }
+        BackupManifest manifest = new BackupManifest(generation.incrementAndGet(), createdAt, files, skipped);
+        Path part = target.resolve(MANIFEST + ".part");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(part.toFile(), manifest);
+        sync(part);
+        Files.move(part, manifestFile, StandardCopyOption.ATOMIC_MOVE);
+
+        LOG.info("Backed up " + files.size() + " stores to " + target + " in "
+                 + (System.currentTimeMillis() - start) + " ms");
+        if (!skipped.isEmpty()) {
+            LOG.warning("Backup " + target + " is partial, it cannot capture " + String.join(", ", skipped));
+        }
+        return manifest;
+    }
+
+    /**
+     * Stream the records of one store to its file
+     *
+     * @param target Backup directory
+     * @param name Name of the store
+     * @param snapshot Records captured
+     * @return Manifest entry of the file
+     * @throws IOException If the file cannot be written
+     */
+    private BackupManifest.StoreFile write(Path target, String name, RecordSnapshot snapshot) throws IOException {
+        String filename = name + ".json";
+        Path part = target.resolve(filename + ".part");
+        MessageDigest digest = Checksum.sha256();
+        snapshot.writeTo(new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(part)), digest),
+                         objectMapper);
+        sync(part);
+        Files.move(part, target.resolve(filename), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        return new BackupManifest.StoreFile(name, filename, snapshot.size(), Files.size(target.resolve(filename)),
+                                            Checksum.hex(digest.digest()));
+    }
+
+    /**
+     * Check that every file of a backup matches its manifest
+     *
+     * @param target Backup directory
+     * @param objectMapper JSON deserializer
+     * @return Manifest of the backup
+     * @throws IOException If the manifest is missing, or a file is missing or does not match it
+     */
+    public static BackupManifest verify(Path target, ObjectMapper objectMapper) throws IOException {
+        BackupManifest manifest = objectMapper.readValue(target.resolve(MANIFEST).toFile(), BackupManifest.class);
+        for (BackupManifest.StoreFile file : manifest.getStores()) {
+            if (!Checksum.sha256(target.resolve(file.getFile())).equals(file.getSha256())) {
+                throw new IOException(target.resolve(file.getFile()) + " does not match its checksum");
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Force a file to the storage device
+     *
+     * @param file File to force
+     * @throws IOException If the file cannot be forced
+     */
+    private static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+}
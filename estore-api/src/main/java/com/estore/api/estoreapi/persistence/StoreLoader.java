@@ -0,0 +1,238 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads the data files of the DAOs concurrently at startup
+ *
+ * Spring builds the DAOs one after another, so a DAO built with the loader
+ * only submits its load and returns. The loads run on a bounded pool and
+ * every store is loaded once all beans are built, before the web server
+ * starts accepting requests. A load submitted in the background is not
+ * waited for, requests it is needed for are answered with
+ * SERVICE_UNAVAILABLE until it is done
+ */
+@Component
+public class StoreLoader implements SmartInitializingSingleton {
+    private static final Logger LOG = Logger.getLogger(StoreLoader.class.getName());
+
+    /** Stores loaded with a FileDAO at most */
+    private static final int STORES = 5;
+
+    /**
+     * Loads one store
+     */
+    public interface Task {
+        void run() throws IOException;
+    }
+
+    /**
+     * The load of one store, which other threads wait for before changing the store
+     */
+    public static class Load {
+        /** Name of the store */
+        private final String name;
+
+        /** Completes once the store is loaded */
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        /** True if startup does not wait for the load */
+        private final boolean background;
+
+        /** Thread running the load, it never waits for itself */
+        private volatile Thread loader;
+
+        Load(String name, boolean background) {
+            this.name = name;
+            this.background = background;
+        }
+
+        /**
+         * Run the load on the current thread and log its time
+         *
+         * @param task Loads the store
+         */
+        void run(Task task) {
+            loader = Thread.currentThread();
+            long start = System.nanoTime();
+            try {
+                task.run();
+                LOG.info("Loaded " + name + " in " + (System.nanoTime() - start) / 1_000_000 + " ms"
+                         + (background ? " in the background" : ""));
+                done.complete(null);
+            }
+            catch (IOException | RuntimeException | Error e) {
+                done.completeExceptionally(e);
+            }
+            finally {
+                loader = null;
+            }
+        }
+
+        /**
+         * Check if the store is loaded
+         *
+         * @return True once the load finished, even if it failed
+         */
+        public boolean isDone() {
+            return done.isDone();
+        }
+
+        /**
+         * Wait until the store is loaded, returns at once on the loading thread
+         *
+         * @throws IOException If the store failed to load or the wait was interrupted
+         */
+        public void await() throws IOException {
+            if (done.isDone() && !done.isCompletedExceptionally() || loader == Thread.currentThread()) {
+                return;
+            }
+            try {
+                done.get();
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw new IOException("Loading " + name + " failed", e.getCause());
+                }
+                throw new IllegalStateException("Loading " + name + " failed", e.getCause());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for " + name + " to load");
+            }
+        }
+    }
+
+    /** Runs the loads */
+    private ExecutorService pool;
+
+    /** Loads submitted, by store name, guarded by this */
+    private Map<String, Load> loads = new LinkedHashMap<>();
+
+    /** Time the first load was submitted */
+    private long start;
+
+    /**
+     * Create the loader with its pool
+     *
+     * @param properties Persistence settings
+     */
+    public StoreLoader(PersistenceProperties properties) {
+        int threads = properties.getLoadThreads() > 0 ? properties.getLoadThreads()
+                                                       : Math.min(STORES, Runtime.getRuntime().availableProcessors());
+        AtomicInteger count = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "store loader " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start loading a store
+     *
+     * @param name Name of the store
+     * @param background True if startup should not wait for the store
+     * @param task Loads the store
+     * @return The load, to wait for before changing the store
+     */
+    public synchronized Load submit(String name, boolean background, Task task) {
+        if (loads.isEmpty()) {
+            start = System.nanoTime();
+        }
+        Load load = new Load(name, background);
+        loads.put(name, load);
+        pool.execute(() -> load.run(task));
+        return load;
+    }
+
+    /**
+     * Check if a store is loaded
+     *
+     * @param name Name of the store
+     * @return True if it is loaded or was never submitted
+     */
+    public synchronized boolean isLoaded(String name) {
+        Load load = loads.get(name);
+        return load == null || load.isDone();
+    }
+
+    /**
+     * Check if every store is loaded
+     *
+     * @return True if every load finished
+     */
+    public synchronized boolean isAllLoaded() {
+        return loads.values().stream().allMatch(Load::isDone);
+    }
+
+    /**
+     * Wait for the loads
+     *
+     * @param background True to also wait for the loads in the background
+     * @throws IOException If a store failed to load
+     */
+    public void await(boolean background) throws IOException {
+        List<Load> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(loads.values());
+        }
+        for (Load load : pending) {
+            if (background || !load.background) {
+                load.await();
+            }
+        }
+    }
+
+    /**
+     * Wait for every store startup needs, before the web server starts
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            await(false);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (this) {
+            List<String> names = new ArrayList<>();
+            for (Load load : loads.values()) {
+                if (!load.background) {
+                    names.add(load.name);
+                }
+            }
+            if (!names.isEmpty()) {
+                LOG.info("Loaded " + names + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+        }
+
+        // Nothing is submitted after startup, background loads still finish
+        pool.shutdown();
+    }
+
+    /**
+     * Stop the pool on shutdown
+     */
+    @PreDestroy
+    public void close() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,130 @@
+package com.estore.api.estoreapi.persistence;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Snapshot of the persistence state of one data store
+ */
+public class StoreStatus {
+    @JsonProperty("file") private String file;
+    @JsonProperty("mode") private String mode;
+    @JsonProperty("unflushedChanges") private long unflushedChanges;
+    @JsonProperty("flushLagMillis") private long flushLagMillis;
+    @JsonProperty("loggedChanges") private int loggedChanges;
+    @JsonInclude(JsonInclude.Include.NON_NULL) @JsonProperty("cache") private CacheStats cache;
+
+    /**
+     * Create a status for a store without a cache
+     *
+     * @param file Data file of the store
+     * @param mode How changes are persisted (snapshot, log or write-behind)
+     * @param unflushedChanges Changes held only in memory
+     * @param flushLagMillis Age of the oldest change held only in memory
+     * @param loggedChanges Changes in the mutation log waiting for a checkpoint
+     */
+    public StoreStatus(String file, String mode, long unflushedChanges, long flushLagMillis, int loggedChanges) {
+        this(file, mode, unflushedChanges, flushLagMillis, loggedChanges, null);
+    }
+
+    /**
+     * Create a status
+     *
+     * @param file Data file of the store
+     * @param mode How changes are persisted (snapshot, log or write-behind)
+     * @param unflushedChanges Changes held only in memory
+     * @param flushLagMillis Age of the oldest change held only in memory
+     * @param loggedChanges Changes in the mutation log waiting for a checkpoint
+     * @param cache Counters of the record cache, null if the store has none
+     */
+    public StoreStatus(@JsonProperty("file") String file, @JsonProperty("mode") String mode,
+                       @JsonProperty("unflushedChanges") long unflushedChanges,
+                       @JsonProperty("flushLagMillis") long flushLagMillis,
+                       @JsonProperty("loggedChanges") int loggedChanges,
+                       @JsonProperty("cache") CacheStats cache) {
+        this.file = file;
+        this.mode = mode;
+        this.unflushedChanges = unflushedChanges;
+        this.flushLagMillis = flushLagMillis;
+        this.loggedChanges = loggedChanges;
+        this.cache = cache;
+    }
+
+    /**
+     * Get the data file of the store
+     *
+     * @return Filename
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Get how changes are persisted
+     *
+     * @return snapshot, log or write-behind
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Get the number of changes held only in memory
+     *
+     * @return Unflushed changes
+     */
+    public long getUnflushedChanges() {
+        return unflushedChanges;
+    }
+
+    /**
+     * Get the age of the oldest change held only in memory
+     *
+     * @return Flush lag in milliseconds, 0 when clean
+     */
+    public long getFlushLagMillis() {
+        return flushLagMillis;
+    }
+
+    /**
+     * Get the number of changes in the mutation log
+     *
+     * @return Logged changes waiting for a checkpoint
+     */
+    public int getLoggedChanges() {
+        return loggedChanges;
+    }
+
+    /**
+     * Get the counters of the record cache
+     *
+     * @return {@link CacheStats Cache stats}, or null if the store has none
+     */
+    public CacheStats getCache() {
+        return cache;
+    }
+
+    /**
+     * Combine the statuses of the segments of one store
+     *
+     * @param file Data file of the whole store
+     * @param parts Status of each segment
+     * @return Status with the changes summed and the largest lag
+     */
+    public static StoreStatus combine(String file, StoreStatus... parts) {
+        if (parts.length == 1) {
+            return new StoreStatus(file, parts[0].mode, parts[0].unflushedChanges, parts[0].flushLagMillis,
+                                   parts[0].loggedChanges);
+        }
+
+        long unflushed = 0;
+        long lag = 0;
+        int logged = 0;
+        for (StoreStatus part : parts) {
+            unflushed += part.unflushedChanges;
+            lag = Math.max(lag, part.flushLagMillis);
+            logged += part.loggedChanges;
+        }
+        return new StoreStatus(file, parts[0].mode, unflushed, lag, logged);
+    }
+}
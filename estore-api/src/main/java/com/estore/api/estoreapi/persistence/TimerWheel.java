@@ -0,0 +1,127 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timer wheel keeping at most one deadline per int key
+ *
+ * A deadline goes into the slot of its tick, deadlines further out than one
+ * turn of the wheel share slots with nearer ones and are passed over until
+ * their turn comes. Scheduling and cancelling take constant time, and
+ * advancing the wheel only looks at the slots of the ticks that went by, so
+ * the cost does not grow with the number of keys waiting
+ */
+public class TimerWheel {
+    /**
+     * Deadline of one key
+     */
+    private static final class Timer {
+        final int key;
+        final long deadline;
+
+        Timer(int key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+
+    /** Timers by tick modulo the number of slots */
+    private List<List<Timer>> slots;
+
+    /** Length of a tick in milliseconds */
+    private long tickMillis;
+
+    /** Last tick the wheel was advanced to */
+    private long tick;
+
+    /** Pending timer of every key, a timer in a slot but not here was cancelled */
+    private IntObjectMap<Timer> pending = new IntObjectMap<>();
+
+    /**
+     * Create an empty wheel
+     *
+     * @param slots Number of slots, one turn of the wheel is slots ticks
+     * @param tickMillis Length of a tick in milliseconds
+     * @param now Current time in milliseconds
+     */
+    public TimerWheel(int slots, long tickMillis, long now) {
+        this.slots = new ArrayList<>(Math.max(1, slots));
+        for (int i = 0; i < Math.max(1, slots); i++) {
+            this.slots.add(new ArrayList<>());
+        }
+        this.tickMillis = Math.max(1, tickMillis);
+        this.tick = now / this.tickMillis;
+    }
+
+    /**
+     * Set the deadline of a key unless it already has one
+     *
+     * A key whose deadline moved later can keep its old timer, whoever handles
+     * the key when it fires schedules it again for the new deadline
+     *
+     * @param key Key to schedule
+     * @param deadline Time in milliseconds the key is due
+     * @return True if the key was scheduled, false if it already had a deadline
+     */
+    public synchronized boolean schedule(int key, long deadline) {
+        if (pending.containsKey(key)) {
+            return false;
+        }
+        // The first tick at or after the deadline, a deadline already past fires on the next tick
+        long due = Math.max((deadline + tickMillis - 1) / tickMillis, tick + 1);
+        Timer timer = new Timer(key, deadline);
+        slots.get((int) (due % slots.size())).add(timer);
+        pending.put(key, timer);
+        return true;
+    }
+
+    /**
+     * Drop the deadline of a key
+     *
+     * @param key Key to cancel
+     */
+    public synchronized void cancel(int key) {
+        // The timer stays in its slot until that slot comes round
+        pending.remove(key);
+    }
+
+    /**
+     * Advance the wheel and take every key that fell due
+     *
+     * @param now Current time in milliseconds
+     * @return Keys whose deadline passed, they no longer have a deadline
+     */
+    public synchronized List<Integer> advance(long now) {
+        List<Integer> due = new ArrayList<>();
+        long target = now / tickMillis;
+        // After a pause longer than a turn every slot is visited once
+        long from = Math.max(tick + 1, target - slots.size() + 1);
+        for (long t = from; t <= target; t++) {
+            Iterator<Timer> timers = slots.get((int) (t % slots.size())).iterator();
+            while (timers.hasNext()) {
+                Timer timer = timers.next();
+                if (pending.get(timer.key) != timer) {
+                    timers.remove();
+                }
+                else if (timer.deadline <= now) {
+                    timers.remove();
+                    pending.remove(timer.key);
+                    due.add(timer.key);
+                }
+            }
+        }
+        tick = Math.max(tick, target);
+        return due;
+    }
+
+    /**
+     * Get the number of keys with a deadline
+     *
+     * @return Keys waiting
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+}
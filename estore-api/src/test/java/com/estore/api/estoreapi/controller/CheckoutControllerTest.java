@@ -0,0 +1,86 @@
+package com.estore.api.estoreapi.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.model.Product;
+import com.estore.api.estoreapi.persistence.CheckoutJournal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Test the controller for checking out
+ */
+@Tag("Controller-tier")
+public class CheckoutControllerTest {
+    private CheckoutController checkoutController;
+    private CheckoutJournal mockCheckoutJournal;
+
+    /**
+     * Build the controller over a mock journal before each test
+     */
+    @BeforeEach
+    public void setupCheckoutController() {
+        mockCheckoutJournal = mock(CheckoutJournal.class);
+        checkoutController = new CheckoutController(mockCheckoutJournal);
+    }
+
+    @Test
+    public void testCheckout() throws IOException {
+        // Setup
+        Order order = new Order(3, 9.98, new Product[0], false, null);
+        when(mockCheckoutJournal.checkout(1)).thenReturn(order);
+
+        // Invoke
+        ResponseEntity<Order> response = checkoutController.checkout(1);
+
+        // Analyze
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(order, response.getBody());
+    }
+
+    @Test
+    public void testCheckoutNotFound() throws IOException {
+        // Setup
+        when(mockCheckoutJournal.checkout(1)).thenReturn(null);
+
+        // Invoke
+        ResponseEntity<Order> response = checkoutController.checkout(1);
+
+        // Analyze
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    public void testCheckoutConflict() throws IOException {
+        // Setup
+        doThrow(new IllegalStateException("Cart 1 is empty")).when(mockCheckoutJournal).checkout(1);
+
+        // Invoke
+        ResponseEntity<Order> response = checkoutController.checkout(1);
+
+        // Analyze
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+
+    @Test
+    public void testCheckoutHandleException() throws IOException {
+        // Setup
+        doThrow(new IOException()).when(mockCheckoutJournal).checkout(1);
+
+        // Invoke
+        ResponseEntity<Order> response = checkoutController.checkout(1);
+
+        // Analyze
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+    }
+}
@@ -0,0 +1,103 @@
+package com.estore.api.estoreapi.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.estore.api.estoreapi.persistence.PersistenceProperties;
+import com.estore.api.estoreapi.persistence.StoreLoader;
+
+/**
+ * Test the guard answering requests for stores still loading
+ */
+@Tag("Controller-tier")
+public class LoadingInterceptorTest {
+    private StoreLoader loader;
+    private LoadingInterceptor interceptor;
+    private CountDownLatch release = new CountDownLatch(1);
+    private StoreLoader.Load orders;
+
+    /**
+     * Load the products and keep the orders loading in the background
+     *
+     * @throws IOException If the products fail to load
+     */
+    @BeforeEach
+    public void setupLoader() throws IOException {
+        loader = new StoreLoader(new PersistenceProperties());
+        loader.submit("products", false, () -> {});
+        orders = loader.submit("orders", true, () -> {
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        loader.afterSingletonsInstantiated();
+        interceptor = new LoadingInterceptor(loader);
+    }
+
+    @AfterEach
+    public void closeLoader() {
+        release.countDown();
+        loader.close();
+    }
+
+    @Test
+    public void testLoadedStoresPass() throws Exception {
+        // Setup
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Invoke
+        boolean products = interceptor.preHandle(new MockHttpServletRequest("GET", "/products/1"), response, null);
+        boolean reviews = interceptor.preHandle(new MockHttpServletRequest("GET", "/reviews"), response, null);
+
+        // Analyze
+        assertTrue(products);
+        assertTrue(reviews);
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+    }
+
+    @Test
+    public void testLoadingStoresRejected() throws Exception {
+        for (String uri : new String[] {"/orders", "/checkout/3"}) {
+            // Setup
+            MockHttpServletResponse response = new MockHttpServletResponse();
+
+            // Invoke
+            boolean handled = interceptor.preHandle(new MockHttpServletRequest("GET", uri), response, null);
+
+            // Analyze
+            assertFalse(handled);
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus());
+            assertEquals("1", response.getHeader("Retry-After"));
+        }
+    }
+
+    @Test
+    public void testServedOnceLoaded() throws Exception {
+        // Setup
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Invoke
+        release.countDown();
+        orders.await();
+        boolean handled = interceptor.preHandle(new MockHttpServletRequest("POST", "/checkout/3"), response, null);
+
+        // Analyze
+        assertTrue(handled);
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+    }
+}
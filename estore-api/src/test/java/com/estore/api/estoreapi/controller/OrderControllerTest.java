@@ -1,11 +1,15 @@
 package com.estore.api.estoreapi.controller;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
 
 import com.estore.api.estoreapi.model.Order;
 import com.estore.api.estoreapi.model.Product;
@@ -152,7 +156,7 @@ public class OrderControllerTest {
         when(orderDAO.getOrders()).thenReturn(null);
 
         // Call the controller and check for an equivalent response
-        ResponseEntity<Order[]> response = orderController.getOrders();
+        ResponseEntity<Order[]> response = orderController.getOrders(null, null);
 
         assertEquals(HttpStatus.NOT_FOUND,response.getStatusCode());
     }
@@ -191,7 +195,7 @@ public class OrderControllerTest {
         when(orderDAO.getOrders()).thenReturn(orders);
 
         // Call the controller and check that we recieve okay and the passed in array
-        ResponseEntity<Order[]> response = orderController.getOrders();
+        ResponseEntity<Order[]> response = orderController.getOrders(null, null);
 
         assertEquals(HttpStatus.OK,response.getStatusCode());
 
@@ -209,11 +213,67 @@ public class OrderControllerTest {
         doThrow(new IOException()).when(orderDAO).getOrders();
 
         // Call the function and check its return
-        ResponseEntity<Order[]> response = orderController.getOrders();
+        ResponseEntity<Order[]> response = orderController.getOrders(null, null);
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
 
     }
 
+    /**
+     * Make sure a date range asks the DAO for the orders from the start of the first day to the end of the last
+     * 
+     * @throws IOException If the DAO cannot be accessed
+     */
+    @Test
+    public void testGetOrdersWithinRange() throws IOException {
+        // Setup
+        Order[] orders = new Order[] {new Order(1, 0, new Product[0], true, LocalDateTime.of(2024, 3, 15, 12, 0))};
+        when(orderDAO.getOrders(LocalDateTime.of(2024, 3, 1, 0, 0), LocalDateTime.of(2024, 4, 1, 0, 0)))
+                .thenReturn(orders);
+
+        // Invoke
+        ResponseEntity<Order[]> response = orderController.getOrders("2024-03-01", "2024-03-31");
+
+        // Analyze
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(orders, response.getBody());
+    }
+
+    /**
+     * Make sure a range can be open at one end and given to the second
+     * 
+     * @throws IOException If the DAO cannot be accessed
+     */
+    @Test
+    public void testGetOrdersSince() throws IOException {
+        // Setup
+        Order[] orders = new Order[0];
+        when(orderDAO.getOrders(LocalDateTime.of(2024, 3, 1, 9, 30), null)).thenReturn(orders);
+
+        // Invoke
+        ResponseEntity<Order[]> response = orderController.getOrders("2024-03-01T09:30", null);
+
+        // Analyze
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(orders, response.getBody());
+    }
+
+    /**
+     * Make sure a range that cannot be read is rejected
+     * 
+     * @throws IOException If the DAO cannot be accessed
+     */
+    @Test
+    public void testGetOrdersBadRange() throws IOException {
+        // Invoke
+        ResponseEntity<Order[]> unreadable = orderController.getOrders("March", null);
+        ResponseEntity<Order[]> backwards = orderController.getOrders("2024-04-01", "2024-03-01");
+
+        // Analyze
+        assertEquals(HttpStatus.BAD_REQUEST, unreadable.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, backwards.getStatusCode());
+        verify(orderDAO, never()).getOrders(any(), any());
+    }
+
     /**
      * Make sure we can delete an order by its ID
      * 
@@ -0,0 +1,141 @@
+package com.estore.api.estoreapi.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.util.List;
+
+import com.estore.api.estoreapi.persistence.BackupManifest;
+import com.estore.api.estoreapi.persistence.ManagedStore;
+import com.estore.api.estoreapi.persistence.ReplicationNode;
+import com.estore.api.estoreapi.persistence.ReplicationStatus;
+import com.estore.api.estoreapi.persistence.StoreBackup;
+import com.estore.api.estoreapi.persistence.StoreStatus;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Test the controller for the data stores
+ */
+@Tag("Controller-tier")
+public class PersistenceControllerTest {
+    private PersistenceController persistenceController;
+    private ManagedStore products;
+    private ManagedStore carts;
+
+    /**
+     * Build the controller over two mock stores before each test
+     */
+    @BeforeEach
+    public void setupPersistenceController() {
+        products = mock(ManagedStore.class);
+        carts = mock(ManagedStore.class);
+        persistenceController = new PersistenceController(List.of(products, carts));
+    }
+
+    @Test
+    public void testGetStatus() {
+        // Setup
+        StoreStatus productStatus = new StoreStatus("products.json", "write-behind", 3, 250, 0);
+        StoreStatus cartStatus = new StoreStatus("carts.json", "snapshot", 0, 0, 0);
+        when(products.getStatus()).thenReturn(productStatus);
+        when(carts.getStatus()).thenReturn(cartStatus);
+
+        // Invoke
+        ResponseEntity<StoreStatus[]> response = persistenceController.getStatus();
+
+        // Analyze
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(productStatus, response.getBody()[0]);
+        assertEquals(cartStatus, response.getBody()[1]);
+    }
+
+    @Test
+    public void testFlush() throws IOException {
+        // Invoke
+        ResponseEntity<Void> response = persistenceController.flush();
+
+        // Analyze
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(products).flush();
+        verify(carts).flush();
+    }
+
+    @Test
+    public void testFlushHandleException() throws IOException {
+        // Setup
+        doThrow(new IOException()).when(carts).flush();
+
+        // Invoke
+        ResponseEntity<Void> response = persistenceController.flush();
+
+        // Analyze
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+    }
+
+    @Test
+    public void testGetReplicationStatus() {
+        // Setup
+        ReplicationNode follower = mock(ReplicationNode.class);
+        ReplicationStatus status = new ReplicationStatus("follower", true, 0, 41, 42, 15, 1);
+        when(follower.getReplicationStatus()).thenReturn(status);
+        persistenceController = new PersistenceController(List.of(products, carts), List.of(follower), null);
+
+        // Invoke
+        ResponseEntity<ReplicationStatus> response = persistenceController.getReplicationStatus();
+
+        // Analyze
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(status, response.getBody());
+    }
+
+    @Test
+    public void testGetReplicationStatusNotReplicated() {
+        // Invoke
+        ResponseEntity<ReplicationStatus> response = persistenceController.getReplicationStatus();
+
+        // Analyze
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    public void testBackup() throws IOException {
+        // Setup
+        StoreBackup backup = mock(StoreBackup.class);
+        BackupManifest manifest = new BackupManifest(1, "2022-03-01T10:00", List.of(), List.of("JdbcOrderDAO"));
+        when(backup.backup("nightly")).thenReturn(manifest);
+        persistenceController = new PersistenceController(List.of(products, carts), List.of(), backup);
+
+        // Invoke
+        ResponseEntity<BackupManifest> response = persistenceController.backup("nightly");
+
+        // Analyze
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(manifest, response.getBody());
+    }
+
+    @Test
+    public void testBackupHandleErrors() throws IOException {
+        // Setup
+        StoreBackup backup = mock(StoreBackup.class);
+        when(backup.backup("../x")).thenThrow(new IllegalArgumentException());
+        when(backup.backup("taken")).thenThrow(new FileAlreadyExistsException("taken"));
+        when(backup.backup("full")).thenThrow(new IOException());
+        persistenceController = new PersistenceController(List.of(products, carts), List.of(), backup);
+
+        // Invoke and Analyze
+        assertEquals(HttpStatus.BAD_REQUEST, persistenceController.backup("../x").getStatusCode());
+        assertEquals(HttpStatus.CONFLICT, persistenceController.backup("taken").getStatusCode());
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, persistenceController.backup("full").getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, new PersistenceController(List.of()).backup(null).getStatusCode());
+    }
+}
@@ -0,0 +1,50 @@
+package com.estore.api.estoreapi.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Test the guard keeping follower instances read-only
+ */
+@Tag("Controller-tier")
+public class ReadOnlyInterceptorTest {
+    private ReadOnlyInterceptor interceptor = new ReadOnlyInterceptor();
+
+    @Test
+    public void testReadsPass() throws Exception {
+        // Setup
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Invoke
+        boolean get = interceptor.preHandle(new MockHttpServletRequest("GET", "/products"), response, null);
+        boolean head = interceptor.preHandle(new MockHttpServletRequest("HEAD", "/products"), response, null);
+
+        // Analyze
+        assertTrue(get);
+        assertTrue(head);
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+    }
+
+    @Test
+    public void testChangesRejected() throws Exception {
+        for (String method : new String[] {"POST", "PUT", "DELETE", "PATCH"}) {
+            // Setup
+            MockHttpServletResponse response = new MockHttpServletResponse();
+
+            // Invoke
+            boolean handled = interceptor.preHandle(new MockHttpServletRequest(method, "/products"), response, null);
+
+            // Analyze
+            assertFalse(handled);
+            assertEquals(HttpStatus.METHOD_NOT_ALLOWED.value(), response.getStatus());
+            assertEquals("GET, HEAD, OPTIONS", response.getHeader("Allow"));
+        }
+    }
+}
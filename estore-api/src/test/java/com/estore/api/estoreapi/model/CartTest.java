@@ -1,11 +1,14 @@
 package com.estore.api.estoreapi.model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 import java.util.HashMap;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 /**
  * The unit test suite for the Cart class
  * 
@@ -86,4 +89,21 @@ public class CartTest {
         assertEquals(inventory,cart.getInventory());
     }
 
+    @Test
+    public void testTouch() throws Exception {
+        // Setup
+        Cart cart = new Cart(99);
+        ObjectMapper objectMapper = new ObjectMapper();
+        String unstamped = objectMapper.writeValueAsString(cart);
+
+        // Invoke
+        cart.touch(1_700_000_000_000L);
+        Cart copy = cart.copy();
+        Cart read = objectMapper.readValue(objectMapper.writeValueAsString(cart), Cart.class);
+
+        // Analyze
+        assertFalse(unstamped.contains("lastTouched"));
+        assertEquals(1_700_000_000_000L, copy.getLastTouched());
+        assertEquals(1_700_000_000_000L, read.getLastTouched());
+    }
 }
@@ -0,0 +1,143 @@
+package com.estore.api.estoreapi.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+
+/**
+ * The unit test suite for the Inventory class
+ */
+@Tag("Model-tier")
+public class InventoryTest {
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testItemsStaySortedByProduct() {
+        // Setup
+        Cart cart = new Cart(1);
+
+        // Invoke
+        cart.addItem(30, 1);
+        cart.addItem(10, 2);
+        cart.addItem(20, 3);
+        cart.addItem(10, 4);
+        cart.editQuantity(30, 7);
+        cart.editQuantity(99, 5);
+        cart.removeItem(20);
+
+        // Analyze
+        Inventory inventory = cart.getInventory();
+        assertEquals(2, inventory.size());
+        assertEquals(List.of(10, 30), new ArrayList<>(inventory.keySet()));
+        assertEquals(6, inventory.getQuantity(10));
+        assertEquals(7, inventory.get(30).getQuantity());
+        assertEquals(0, inventory.getQuantity(20));
+        assertNull(inventory.get(20));
+        assertFalse(inventory.containsKey(99));
+        assertEquals(Map.of(10, new ProductReference(10, 6), 30, new ProductReference(30, 7)), inventory);
+    }
+
+    @Test
+    public void testMapChangesWriteThrough() {
+        // Setup
+        Cart cart = new Cart(1);
+        cart.addItem(5, 1);
+        HashMap<Integer, ProductReference> inventory = cart.getInventory();
+
+        // Invoke
+        inventory.get(5).setQuantity(4);
+        ProductReference previous = inventory.put(8, new ProductReference(8, 2));
+        inventory.put(3, new ProductReference(3, 1));
+        inventory.remove(3);
+        ProductReference held = inventory.get(8);
+        cart.addItem(8, 1);
+
+        // Analyze
+        assertNull(previous);
+        assertEquals(4, cart.getInventory().getQuantity(5));
+        assertEquals(3, held.getQuantity());
+        assertEquals(List.of(5, 8), new ArrayList<>(cart.getInventory().keySet()));
+        assertEquals(new ProductReference(8, 3), inventory.put(8, new ProductReference(8, 6)));
+        assertEquals(6, cart.getInventory().getQuantity(8));
+    }
+
+    @Test
+    public void testIteratorRemoves() {
+        // Setup
+        Cart cart = new Cart(1);
+        cart.addItem(1, 1);
+        cart.addItem(2, 2);
+        cart.addItem(3, 3);
+
+        // Invoke
+        cart.getInventory().values().removeIf(item -> item.getQuantity() == 2);
+        cart.getInventory().entrySet().iterator().next().setValue(new ProductReference(1, 9));
+
+        // Analyze
+        assertEquals(Map.of(1, new ProductReference(1, 9), 3, new ProductReference(3, 3)), cart.getInventory());
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        // Setup
+        Cart cart = new Cart(1);
+        cart.addItem(5, 1);
+
+        // Invoke
+        Cart copy = cart.copy();
+        copy.addItem(5, 1);
+        copy.addItem(6, 1);
+        cart.clear();
+
+        // Analyze
+        assertTrue(cart.getInventory().isEmpty());
+        assertEquals(2, copy.getInventory().getQuantity(5));
+        assertEquals(1, copy.getInventory().getQuantity(6));
+    }
+
+    @Test
+    public void testWireFormat() throws Exception {
+        // Setup
+        Cart cart = new Cart(4);
+        cart.addItem(2, 3);
+        cart.addItem(1, 1);
+
+        // Invoke
+        String json = objectMapper.writeValueAsString(cart);
+        Cart read = objectMapper.readValue(json, Cart.class);
+
+        // Analyze
+        assertEquals("{\"id\":4,\"inventory\":{\"1\":{\"id\":1,\"quantity\":1},\"2\":{\"id\":2,\"quantity\":3}}}", json);
+        assertEquals(4, read.getId());
+        assertEquals(cart.getInventory(), read.getInventory());
+    }
+
+    @Test
+    public void testReadsOlderFiles() throws Exception {
+        // Invoke, keys out of order, an unknown field and a null inventory
+        Cart cart = objectMapper.readValue("{\"id\":1,\"inventory\":{\"9\":{\"id\":9,\"quantity\":2,\"note\":[1]},"
+                                           + "\"3\":{\"quantity\":1}}}", Cart.class);
+        Cart empty = objectMapper.readValue("{\"id\":2,\"inventory\":null}", Cart.class);
+
+        // Analyze
+        assertEquals(List.of(3, 9), new ArrayList<>(cart.getInventory().keySet()));
+        assertEquals(2, cart.getInventory().getQuantity(9));
+        assertEquals(1, cart.getInventory().getQuantity(3));
+        assertTrue(empty.getInventory().isEmpty());
+        assertThrows(InvalidFormatException.class,
+                     () -> objectMapper.readValue("{\"id\":1,\"inventory\":{\"x\":{\"id\":1}}}", Cart.class));
+    }
+}
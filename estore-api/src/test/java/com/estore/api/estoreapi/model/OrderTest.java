@@ -2,6 +2,7 @@ package com.estore.api.estoreapi.model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDateTime;
 import org.junit.jupiter.api.Tag;
@@ -92,4 +93,21 @@ public class OrderTest {
         assertFalse(subject.equals(differentProduct));
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Test that an order is placed within a range from its start up to but not including its end
+     */
+    @Test
+    public void testPlacedWithin() {
+        // Setup
+        LocalDateTime time = LocalDateTime.of(2024, 3, 15, 12, 0);
+        Order order = new Order(1, 0, new Product[0], false, time);
+
+        // Invoke and analyze
+        assertTrue(order.placedWithin(null, null));
+        assertTrue(order.placedWithin(time, null));
+        assertTrue(order.placedWithin(null, time.plusSeconds(1)));
+        assertFalse(order.placedWithin(null, time));
+        assertFalse(order.placedWithin(time.plusSeconds(1), null));
+    }
+}
@@ -5,13 +5,18 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.estore.api.estoreapi.model.Cart;
@@ -21,6 +26,7 @@ import com.estore.api.estoreapi.model.ProductReference;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 @Tag("Persistence-tier")
 public class CartDAOFileTest {
@@ -127,6 +133,96 @@ public class CartDAOFileTest {
         assertEquals(result, editQuan);
     }
 
+    @Test
+    public void testAddItemGroupCommit() throws IOException {
+        // Setup
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setCartGroupCommit(true);
+        properties.setGroupCommitWindowMillis(1);
+        cartFileDAO = new CartFileDAO("doesnt_matter.txt", mockObjectMapper, properties);
+
+        // Invoke
+        boolean added = cartFileDAO.addItem(99, 80, 2);
+        boolean missing = cartFileDAO.addItem(98, 80, 2);
+
+        // Analyze
+        assertEquals(true, added);
+        assertEquals(false, missing);
+        assertEquals(2, cartFileDAO.getCart(99).getInventory().get(80).getQuantity());
+        verify(mockObjectMapper).writeValue(any(File.class), any(Cart[].class));
+    }
+
+    @Test
+    public void testShardedSegments(@TempDir Path tempDir) throws IOException {
+        // Setup
+        ObjectMapper objectMapper = new ObjectMapper();
+        File unsharded = tempDir.resolve("carts.json").toFile();
+        objectMapper.writeValue(unsharded, testCarts);
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setCartShards(2);
+
+        // Invoke
+        cartFileDAO = new CartFileDAO(unsharded.getPath(), objectMapper, properties);
+        cartFileDAO.addItem(100, 80, 1);
+
+        // Analyze
+        Cart[] even = objectMapper.readValue(tempDir.resolve("carts-0.json").toFile(), Cart[].class);
+        Cart[] odd = objectMapper.readValue(tempDir.resolve("carts-1.json").toFile(), Cart[].class);
+        assertEquals(1, even.length);
+        assertEquals(100, even[0].getId());
+        assertEquals(1, even[0].getInventory().get(80).getQuantity());
+        assertEquals(2, odd.length);
+        Cart[] carts = cartFileDAO.getCarts();
+        assertEquals(testCarts.length, carts.length);
+        for (int i = 0; i < testCarts.length; ++i)
+            assertEquals(testCarts[i].getId(), carts[i].getId());
+
+        // The segments are read back without the unsharded file
+        unsharded.delete();
+        cartFileDAO = new CartFileDAO(unsharded.getPath(), objectMapper, properties);
+        assertNotNull(cartFileDAO.getCart(101));
+    }
+
+    @Test
+    public void testConcurrentItemChanges(@TempDir Path tempDir) throws Exception {
+        // Setup
+        ObjectMapper objectMapper = new ObjectMapper();
+        File dataFile = tempDir.resolve("carts.json").toFile();
+        objectMapper.writeValue(dataFile, testCarts);
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setLogEnabled(true);
+        properties.setLogSync(false);
+        properties.setCheckpointInterval(7);
+        cartFileDAO = new CartFileDAO(dataFile.getPath(), objectMapper, properties);
+
+        // Invoke, every thread adds its own product to every cart
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int productId = t + 1;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    for (Cart cart : testCarts) {
+                        assertDoesNotThrow(() -> cartFileDAO.addItem(cart.getId(), productId, 1));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        cartFileDAO.flush();
+
+        // Analyze, nothing is lost in memory or across checkpoints
+        CartFileDAO reopened = new CartFileDAO(dataFile.getPath(), objectMapper, properties);
+        for (Cart cart : testCarts) {
+            for (int productId = 1; productId <= threads.length; productId++) {
+                assertEquals(50, cartFileDAO.getCart(cart.getId()).getInventory().get(productId).getQuantity());
+                assertEquals(50, reopened.getCart(cart.getId()).getInventory().get(productId).getQuantity());
+            }
+        }
+    }
+
     @Test
     public void testDeleteCart() {
         // Invoke
@@ -237,4 +333,94 @@ public class CartDAOFileTest {
                         () -> new CartFileDAO("doesnt_matter.txt",mockObjectMapper),
                         "IOException not thrown");
     }
+
+    /**
+     * Build the cart store over the mock mapper with carts expiring after an idle time
+     *
+     * @param action What happens to an expired cart
+     * @return The cart store, nothing expires before the idle time passes in real time
+     * @throws IOException If the carts cannot be loaded
+     */
+    private CartFileDAO expiringCarts(String action) throws IOException {
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setCartTtlMillis(1000);
+        properties.setCartTtlAction(action);
+        properties.setCartTtlTickMillis(10);
+        return new CartFileDAO("doesnt_matter.txt", mockObjectMapper, properties, new IdAllocator());
+    }
+
+    @Test
+    public void testIdleCartsEmptiedWithOneWrite() throws IOException {
+        // Setup
+        cartFileDAO = expiringCarts("empty");
+        cartFileDAO.addItem(99, 80, 2);
+        cartFileDAO.addItem(100, 81, 1);
+        long touched = cartFileDAO.getCart(100).getLastTouched();
+        clearInvocations(mockObjectMapper);
+
+        // Invoke
+        int early = cartFileDAO.expireIdleCarts(touched + 500);
+        int expired = cartFileDAO.expireIdleCarts(touched + 1010);
+
+        // Analyze
+        assertEquals(0, early);
+        assertEquals(2, expired);
+        assertTrue(cartFileDAO.getCart(99).getInventory().isEmpty());
+        assertTrue(cartFileDAO.getCart(100).getInventory().isEmpty());
+        assertEquals(3, cartFileDAO.getCarts().length);
+        assertEquals(0, cartFileDAO.getExpiringCarts());
+        verify(mockObjectMapper, times(1)).writeValue(any(File.class), any(Cart[].class));
+        cartFileDAO.close();
+    }
+
+    @Test
+    public void testTouchedCartRescheduled() throws Exception {
+        // Setup
+        cartFileDAO = expiringCarts("empty");
+        cartFileDAO.addItem(99, 80, 2);
+        long first = cartFileDAO.getCart(99).getLastTouched();
+        Thread.sleep(5);
+        cartFileDAO.editQuantity(99, 80, 3);
+        long second = cartFileDAO.getCart(99).getLastTouched();
+
+        // Invoke
+        int atFirstDeadline = cartFileDAO.expireIdleCarts(first + 1000);
+        int atSecondDeadline = cartFileDAO.expireIdleCarts(second + 1010);
+
+        // Analyze
+        assertTrue(second > first);
+        assertEquals(0, atFirstDeadline);
+        assertEquals(1, atSecondDeadline);
+        assertTrue(cartFileDAO.getCart(99).getInventory().isEmpty());
+        cartFileDAO.close();
+    }
+
+    @Test
+    public void testIdleCartsDropped() throws IOException {
+        // Setup, carts stored without a timestamp get a full idle time from the load
+        long loaded = System.currentTimeMillis();
+        cartFileDAO = expiringCarts("drop");
+        Cart created = cartFileDAO.createCart(new Cart(0));
+        clearInvocations(mockObjectMapper);
+
+        // Invoke
+        int expired = cartFileDAO.expireIdleCarts(Math.max(loaded, created.getLastTouched()) + 2000);
+
+        // Analyze
+        assertEquals(4, expired);
+        assertEquals(0, cartFileDAO.getCarts().length);
+        verify(mockObjectMapper, times(1)).writeValue(any(File.class), any(Cart[].class));
+        cartFileDAO.close();
+    }
+
+    @Test
+    public void testCartsKeptWithoutIdleTime() throws IOException {
+        // Invoke
+        cartFileDAO.addItem(99, 80, 2);
+
+        // Analyze
+        assertEquals(0, cartFileDAO.expireIdleCarts(Long.MAX_VALUE / 2));
+        assertEquals(0, cartFileDAO.getExpiringCarts());
+        assertEquals(false, cartFileDAO.getCart(99).getInventory().isEmpty());
+    }
 }
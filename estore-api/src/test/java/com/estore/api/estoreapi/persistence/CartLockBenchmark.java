@@ -0,0 +1,111 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.estore.api.estoreapi.model.Cart;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Measures cart item changes per second as threads editing their own carts are added,
+ * with every change serialized by one lock and with the changes striped by cart id
+ *
+ * The carts are written behind, so the curve shows lock contention rather than disk writes.
+ * Not run with the tests, start it from the test classpath:
+ * java -cp target/classes:target/test-classes:... com.estore.api.estoreapi.persistence.CartLockBenchmark [millis]
+ */
+public class CartLockBenchmark {
+    /** Kept so the level set on it stays in effect */
+    private static final Logger QUIET = Logger.getLogger("com.estore.api.estoreapi.persistence");
+
+    /** Thread counts measured */
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64, 128};
+
+    /** Lock counts compared, one lock behaves like a single cart map monitor */
+    private static final int[] STRIPES = {1, 64};
+
+    public static void main(String[] args) throws Exception {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        QUIET.setLevel(Level.WARNING);
+        ObjectMapper objectMapper = new ObjectMapper();
+        Path directory = Files.createTempDirectory("cart-lock-benchmark");
+
+        System.out.printf("%-8s", "threads");
+        for (int stripes : STRIPES) {
+            System.out.printf(" %14s", stripes + (stripes == 1 ? " lock" : " locks"));
+        }
+        System.out.printf("%n");
+
+        for (int threads : THREADS) {
+            System.out.printf("%-8d", threads);
+            for (int stripes : STRIPES) {
+                PersistenceProperties properties = new PersistenceProperties();
+                properties.setWriteBehind(true);
+                properties.setWriteBehindIntervalMillis(60_000);
+                properties.setCartLockStripes(stripes);
+                Path file = directory.resolve("carts-" + threads + "-" + stripes + ".json");
+                Cart[] carts = new Cart[threads];
+                for (int i = 0; i < threads; i++) {
+                    carts[i] = new Cart(i + 1);
+                }
+                objectMapper.writeValue(file.toFile(), carts);
+
+                CartFileDAO dao = new CartFileDAO(file.toString(), objectMapper, properties);
+                dao.addItem(1, 1, 1);
+                System.out.printf(" %14d", run(dao, threads, millis));
+                dao.close();
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(Path.of(file + ".seq"));
+            }
+            System.out.printf("%n");
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Change items from several threads, each in its own cart, for a while
+     *
+     * @param dao Store of the carts
+     * @param threads Number of threads
+     * @param millis How long to run
+     * @return Item changes per second
+     */
+    private static long run(CartFileDAO dao, int threads, long millis) throws InterruptedException {
+        LongAdder changes = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int cartId = t + 1;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    int productId = 0;
+                    while (System.nanoTime() < deadline[0]) {
+                        productId = productId % 20 + 1;
+                        dao.addItem(cartId, productId, 1);
+                        dao.editQuantity(cartId, productId, 1);
+                        changes.add(2);
+                    }
+                }
+                catch (InterruptedException | IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            workers[t].start();
+        }
+
+        deadline[0] = System.nanoTime() + millis * 1_000_000;
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return changes.sum() * 1_000_000_000L / (System.nanoTime() - begin);
+    }
+}
@@ -0,0 +1,238 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.estore.api.estoreapi.model.Cart;
+import com.estore.api.estoreapi.model.Customer;
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.model.Product;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the checkout journal over the file daos
+ */
+@Tag("Persistence-tier")
+public class CheckoutJournalTest {
+    @TempDir
+    Path tempDir;
+
+    ObjectMapper objectMapper;
+    PersistenceProperties properties;
+    ProductFileDAO productDAO;
+    OrderFileDAO orderDAO;
+    CartFileDAO cartDAO;
+    CustomerFileDAO customerDAO;
+
+    /**
+     * Write a customer with a filled cart and two products, then open the daos over them
+     */
+    @BeforeEach
+    public void setupCheckoutJournal() throws IOException {
+        // Configured like the mapper Spring Boot provides
+        objectMapper = new ObjectMapper().findAndRegisterModules()
+                                         .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        properties = new PersistenceProperties();
+
+        Cart cart = new Cart(1);
+        cart.addItem(1, 2);
+        cart.addItem(2, 1);
+        objectMapper.writeValue(file("products.json"), new Product[] {
+            new Product(1, "Coffee filter", 4.99, 10, "Filters for coffee", null, false),
+            new Product(2, "Coffee mug", 9.99, 1, "Mug for coffee", null, false)});
+        objectMapper.writeValue(file("carts.json"), new Cart[] {cart});
+        objectMapper.writeValue(file("customers.json"), new Customer[] {
+            new Customer(1, "matt", "Matt", 1, false, "password")});
+        objectMapper.writeValue(file("orders.json"), new Order[0]);
+        openDAOs();
+    }
+
+    private File file(String name) {
+        return tempDir.resolve(name).toFile();
+    }
+
+    private void openDAOs() throws IOException {
+        productDAO = new ProductFileDAO(file("products.json").getPath(), objectMapper, properties);
+        orderDAO = new OrderFileDAO(file("orders.json").getPath(), null, objectMapper, properties);
+        cartDAO = new CartFileDAO(file("carts.json").getPath(), objectMapper, properties);
+        customerDAO = new CustomerFileDAO(file("customers.json").getPath(), objectMapper, properties);
+    }
+
+    private CheckoutJournal openJournal() throws IOException {
+        return new CheckoutJournal(file("checkout.journal").getPath(), productDAO, orderDAO, cartDAO, customerDAO,
+                                   objectMapper, properties);
+    }
+
+    @Test
+    public void testCheckout() throws IOException {
+        CheckoutJournal journal = openJournal();
+
+        // Invoke
+        Order order = journal.checkout(1);
+
+        // Analyze
+        assertNotNull(order);
+        assertEquals(4.99 * 2 + 9.99, order.getTotalPrice(), 0.001);
+        assertEquals(2, order.getProducts().length);
+        assertEquals(8, productDAO.getProduct(1).getQuantity());
+        assertEquals(0, productDAO.getProduct(2).getQuantity());
+        assertEquals(order.getTotalPrice(), orderDAO.getOrder(order.getId()).getTotalPrice());
+        assertTrue(cartDAO.getCart(1).getInventory().isEmpty());
+        assertEquals(List.of(order.getId()), customerDAO.getCustomer(1).getOrders());
+        assertEquals(List.of(1, 2), customerDAO.getCustomer(1).getPurchasedProducts());
+        assertEquals(1, journal.size());
+    }
+
+    @Test
+    public void testReplayAfterCrash() throws IOException {
+        // Snapshot stores only write at the checkpoint, so nothing but the journal reaches disk
+        Order order = openJournal().checkout(1);
+
+        // Invoke
+        openDAOs();
+        assertEquals(10, productDAO.getProduct(1).getQuantity());
+        CheckoutJournal journal = openJournal();
+
+        // Analyze
+        assertEquals(0, journal.size());
+        assertEquals(8, productDAO.getProduct(1).getQuantity());
+        assertNotNull(orderDAO.getOrder(order.getId()));
+        assertTrue(cartDAO.getCart(1).getInventory().isEmpty());
+        assertEquals(List.of(order.getId()), customerDAO.getCustomer(1).getOrders());
+
+        // The replayed changes were checkpointed to the data files
+        openDAOs();
+        assertEquals(8, productDAO.getProduct(1).getQuantity());
+        assertNotNull(orderDAO.getOrder(order.getId()));
+    }
+
+    @Test
+    public void testReplaySkipsAppliedChanges() throws IOException {
+        CheckoutJournal journal = openJournal();
+        journal.checkout(1);
+
+        // Only the products were flushed before the crash, and were changed again since
+        productDAO.flush();
+        productDAO.updateProduct(new Product(1, "Coffee filter", 4.99, 20, "Filters for coffee", null, false));
+        productDAO.flush();
+
+        // Invoke
+        openDAOs();
+        openJournal();
+
+        // Analyze
+        assertEquals(20, productDAO.getProduct(1).getQuantity());
+        assertEquals(0, productDAO.getProduct(2).getQuantity());
+        assertTrue(cartDAO.getCart(1).getInventory().isEmpty());
+        assertEquals(1, orderDAO.getOrders().length);
+    }
+
+    @Test
+    public void testCheckoutShortOfStock() throws IOException {
+        productDAO.updateProduct(new Product(2, "Coffee mug", 9.99, 0, "Mug for coffee", null, false));
+        CheckoutJournal journal = openJournal();
+
+        // Invoke
+        assertThrows(IllegalStateException.class, () -> journal.checkout(1));
+
+        // Analyze
+        assertEquals(10, productDAO.getProduct(1).getQuantity());
+        assertEquals(2, cartDAO.getCart(1).getInventory().size());
+        assertEquals(0, orderDAO.getOrders().length);
+        assertEquals(0, journal.size());
+    }
+
+    @Test
+    public void testCheckoutMissingCustomer() throws IOException {
+        assertNull(openJournal().checkout(5));
+    }
+
+    @Test
+    public void testCheckpointEmptiesJournal() throws IOException {
+        properties.setCheckoutCheckpointInterval(1);
+        CheckoutJournal journal = openJournal();
+
+        // Invoke
+        Order order = journal.checkout(1);
+
+        // Analyze
+        assertEquals(0, journal.size());
+        openDAOs();
+        assertNotNull(orderDAO.getOrder(order.getId()));
+        assertTrue(cartDAO.getCart(1).getInventory().isEmpty());
+    }
+
+    @Test
+    public void testIdleCloseLeavesDataFiles() throws IOException {
+        // Setup
+        byte[][] before = new byte[4][];
+        String[] names = {"products.json", "orders.json", "carts.json", "customers.json"};
+        for (int i = 0; i < names.length; i++) {
+            before[i] = Files.readAllBytes(file(names[i]).toPath());
+        }
+        CheckoutJournal journal = openJournal();
+
+        // Invoke
+        journal.close();
+
+        // Analyze, nothing was journaled so no store was flushed
+        for (int i = 0; i < names.length; i++) {
+            assertArrayEquals(before[i], Files.readAllBytes(file(names[i]).toPath()), names[i]);
+        }
+    }
+
+    @Test
+    public void testItemAddedDuringCheckoutKept() throws Exception {
+        // Setup, another request adds to the cart while the checkout reads the products
+        Thread[] adder = new Thread[1];
+        productDAO = new ProductFileDAO(file("products.json").getPath(), objectMapper, properties) {
+            @Override
+            public Product getProduct(int id) {
+                if (adder[0] == null) {
+                    adder[0] = new Thread(() -> {
+                        try {
+                            cartDAO.addItem(1, 3, 1);
+                        }
+                        catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    adder[0].start();
+                    try {
+                        adder[0].join(200);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.getProduct(id);
+            }
+        };
+        CheckoutJournal journal = openJournal();
+
+        // Invoke
+        Order order = journal.checkout(1);
+        adder[0].join();
+
+        // Analyze, the item waited for the checkout instead of being emptied with the cart
+        assertEquals(2, order.getProducts().length);
+        assertEquals(1, cartDAO.getCart(1).getInventory().size());
+        assertEquals(1, cartDAO.getCart(1).getInventory().getQuantity(3));
+    }
+}
@@ -0,0 +1,84 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares the size, save time and load time of an order data file in each {@link DataFormat}
+ *
+ * Not run with the tests, start it from the test classpath:
+ * java -cp target/classes:target/test-classes:... com.estore.api.estoreapi.persistence.FileFormatBenchmark [orders]
+ */
+public class FileFormatBenchmark {
+    /** Times each measurement is repeated, the best run is reported */
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        Map<Integer, Order> orders = generate(count);
+        Path directory = Files.createTempDirectory("format-benchmark");
+
+        System.out.printf("%d orders%n%-6s %12s %10s %10s%n", count, "format", "bytes", "save ms", "load ms");
+        for (DataFormat format : DataFormat.values()) {
+            PersistenceProperties properties = new PersistenceProperties();
+            properties.setFormat(format.name().toLowerCase());
+            Path file = directory.resolve("orders." + format.name().toLowerCase());
+            FileStore<Order> store = new FileStore<>(file.toString(), objectMapper, Order[].class, Order::getId,
+                                                     () -> orders.values().toArray(new Order[0]), orders,
+                                                     properties);
+
+            long save = Long.MAX_VALUE;
+            long load = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                store.save();
+                save = Math.min(save, System.nanoTime() - start);
+
+                Map<Integer, Order> loaded = new TreeMap<>();
+                start = System.nanoTime();
+                store.load(loaded);
+                load = Math.min(load, System.nanoTime() - start);
+            }
+            System.out.printf("%-6s %12d %10d %10d%n", format, Files.size(file), save / 1_000_000,
+                              load / 1_000_000);
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Generate orders of one to three products each
+     *
+     * @param count Number of orders
+     * @return Orders keyed by id
+     */
+    private static Map<Integer, Order> generate(int count) {
+        Product[] catalog = new Product[50];
+        for (int i = 0; i < catalog.length; i++) {
+            catalog[i] = new Product(i + 1, "Product " + (i + 1), 2.5 + i, 10 + i,
+                                     "Description of product " + (i + 1), i % 2 == 0 ? "coffee" : "tea", i % 7 == 0);
+        }
+
+        Map<Integer, Order> orders = new TreeMap<>();
+        LocalDateTime time = LocalDateTime.of(2022, 1, 1, 9, 0);
+        for (int id = 1; id <= count; id++) {
+            Product[] products = new Product[1 + id % 3];
+            double total = 0;
+            for (int i = 0; i < products.length; i++) {
+                products[i] = catalog[(id * 7 + i) % catalog.length];
+                total += products[i].getPrice();
+            }
+            orders.put(id, new Order(id, total, products, id % 4 != 0, time.plusMinutes(id)));
+        }
+        return orders;
+    }
+}
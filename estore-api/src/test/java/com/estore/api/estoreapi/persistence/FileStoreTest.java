@@ -0,0 +1,591 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import com.estore.api.estoreapi.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test the persistence modes of the File Store class
+ */
+@Tag("Persistence-tier")
+public class FileStoreTest {
+    @TempDir
+    Path tempDir;
+
+    Path dataFile;
+    ObjectMapper objectMapper;
+    PersistenceProperties properties;
+    Map<Integer, Product> productMap;
+
+    /**
+     * Write a small data file and enable the mutation log before each test
+     *
+     * @throws IOException If the data file cannot be written
+     */
+    @BeforeEach
+    public void setupFileStore() throws IOException {
+        objectMapper = new ObjectMapper();
+        dataFile = tempDir.resolve("products.json");
+        Product[] products = new Product[2];
+        products[0] = new Product(1, "coffee mug", 3.50, 5, "keeps drink warm", null, false);
+        products[1] = new Product(2, "coffee beans", 3.00, 4, "make coffee", null, false);
+        objectMapper.writeValue(dataFile.toFile(), products);
+
+        properties = new PersistenceProperties();
+        properties.setLogEnabled(true);
+        properties.setCheckpointInterval(3);
+        productMap = new TreeMap<>();
+    }
+
+    /**
+     * Build a store over productMap
+     *
+     * @return New store for the data file
+     */
+    private FileStore<Product> buildStore() {
+        return new FileStore<>(dataFile.toString(), objectMapper, Product[].class, Product::getId,
+                               () -> productMap.values().toArray(new Product[0]), productMap, properties);
+    }
+
+    @Test
+    public void testChangesAreLoggedNotSaved() throws IOException {
+        FileStore<Product> store = buildStore();
+        store.load(productMap);
+        String original = Files.readString(dataFile);
+
+        // Invoke
+        Product product = new Product(3, "coffee cup", 5.00, 1, "drink out of", null, false);
+        productMap.put(3, product);
+        store.put(product);
+        productMap.remove(1);
+        store.delete(1);
+
+        // Analyze
+        assertEquals(original, Files.readString(dataFile));
+        assertEquals(2, Files.readAllLines(tempDir.resolve("products.json.log")).size());
+    }
+
+    @Test
+    public void testReplayOnLoad() throws IOException {
+        FileStore<Product> store = buildStore();
+        store.load(productMap);
+        Product product = new Product(2, "dark roast", 3.00, 4, "make coffee", null, false);
+        productMap.put(2, product);
+        store.put(product);
+        productMap.remove(1);
+        store.delete(1);
+
+        // Invoke
+        Map<Integer, Product> reloaded = new TreeMap<>();
+        buildStore().load(reloaded);
+
+        // Analyze
+        assertEquals(1, reloaded.size());
+        assertNull(reloaded.get(1));
+        assertEquals(product, reloaded.get(2));
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        FileStore<Product> store = buildStore();
+        store.load(productMap);
+
+        // Invoke
+        for (int id = 3; id <= 5; id++) {
+            Product product = new Product(id, "filter", 1.00, 1, "paper", null, false);
+            productMap.put(id, product);
+            store.put(product);
+        }
+
+        // Analyze
+        assertEquals(0, Files.size(tempDir.resolve("products.json.log")));
+        assertEquals(5, objectMapper.readValue(dataFile.toFile(), Product[].class).length);
+        assertFalse(Files.exists(tempDir.resolve("products.json.tmp")));
+    }
+
+    @Test
+    public void testCheckpointKeepsEntriesLoggedDuringCapture() throws IOException {
+        Product late = new Product(9, "kettle", 20.00, 1, "boils water", null, false);
+        List<FileStore<Product>> store = new ArrayList<>();
+        // A writer that does not hold the map lock logs a change while the records are captured
+        store.add(new FileStore<>(dataFile.toString(), objectMapper, Product[].class, Product::getId, () -> {
+            Product[] captured = productMap.values().toArray(new Product[0]);
+            try {
+                store.get(0).stage(late);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return captured;
+        }, productMap, properties));
+        store.get(0).load(productMap);
+
+        // Invoke
+        store.get(0).checkpoint();
+
+        // Analyze
+        assertEquals(1, Files.readAllLines(tempDir.resolve("products.json.log")).size());
+        Map<Integer, Product> reloaded = new TreeMap<>();
+        buildStore().load(reloaded);
+        assertEquals(3, reloaded.size());
+        assertEquals("kettle", reloaded.get(9).getName());
+    }
+
+    @Test
+    public void testTornTailDropped() throws IOException {
+        FileStore<Product> store = buildStore();
+        store.load(productMap);
+        productMap.remove(2);
+        store.delete(2);
+        Files.write(tempDir.resolve("products.json.log"), "{\"op\":\"DELETE\",\"id\":1".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+
+        // Invoke
+        Map<Integer, Product> reloaded = new TreeMap<>();
+        buildStore().load(reloaded);
+
+        // Analyze
+        assertEquals(1, reloaded.size());
+        assertEquals(1, Files.readAllLines(tempDir.resolve("products.json.log")).size());
+    }
+
+    @Test
+    public void testWriteBehind() throws Exception {
+        // Setup
+        properties.setLogEnabled(false);
+        properties.setWriteBehind(true);
+        properties.setWriteBehindIntervalMillis(60000);
+        FileStore<Product> store = buildStore();
+        store.load(productMap);
+        String original = Files.readString(dataFile);
+
+        // Invoke
+        synchronized (productMap) {
+            productMap.remove(1);
+            store.delete(1);
+            productMap.remove(2);
+            store.delete(2);
+        }
+        Thread.sleep(5);
+
+        // Analyze
+        assertEquals(original, Files.readString(dataFile));
+        StoreStatus status = store.getStatus();
+        assertEquals("write-behind", status.getMode());
+        assertEquals(2, status.getUnflushedChanges());
+        assertTrue(status.getFlushLagMillis() > 0);
+
+        // The final flush on close writes everything
+        store.close();
+        assertEquals(0, objectMapper.readValue(dataFile.toFile(), Product[].class).length);
+        assertEquals(0, store.getStatus().getUnflushedChanges());
+    }
+
+    @Test
+    public void testWriteBehindBackgroundFlush() throws Exception {
+        // Setup
+        properties.setLogEnabled(false);
+        properties.setWriteBehind(true);
+        properties.setWriteBehindIntervalMillis(10);
+        FileStore<Product> store = buildStore();
+        store.load(productMap);
+
+        // Invoke
+        synchronized (productMap) {
+            productMap.remove(1);
+            store.delete(1);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (store.getStatus().getUnflushedChanges() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Analyze
+        assertEquals(0, store.getStatus().getUnflushedChanges());
+        assertEquals(1, objectMapper.readValue(dataFile.toFile(), Product[].class).length);
+        store.close();
+    }
+
+    @Test
+    public void testCloseCheckpoints() throws IOException {
+        FileStore<Product> store = buildStore();
+        store.load(productMap);
+        productMap.remove(1);
+        store.delete(1);
+
+        // Invoke
+        store.close();
+
+        // Analyze
+        assertEquals(1, objectMapper.readValue(dataFile.toFile(), Product[].class).length);
+        assertEquals(0, Files.size(tempDir.resolve("products.json.log")));
+    }
+
+    @Test
+    public void testStreamedLoad() throws IOException {
+        // Setup
+        properties.setLogEnabled(false);
+        properties.setStreamThresholdBytes(0);
+        properties.setLoadProgressIntervalMillis(0);
+
+        // Invoke
+        buildStore().load(productMap);
+
+        // Analyze
+        assertEquals(2, productMap.size());
+        assertEquals("coffee mug", productMap.get(1).getName());
+        assertEquals("coffee beans", productMap.get(2).getName());
+    }
+
+    @Test
+    public void testStreamedLoadReplaysLog() throws IOException {
+        FileStore<Product> store = buildStore();
+        store.load(productMap);
+        productMap.remove(1);
+        store.delete(1);
+        properties.setStreamThresholdBytes(0);
+
+        // Invoke
+        Map<Integer, Product> reloaded = new TreeMap<>();
+        buildStore().load(reloaded);
+
+        // Analyze
+        assertEquals(1, reloaded.size());
+        assertNull(reloaded.get(1));
+    }
+
+    @Test
+    public void testUpgradeToSmile() throws IOException {
+        String original = Files.readString(dataFile);
+        properties.setLogEnabled(false);
+        properties.setFormat("smile");
+
+        // Invoke
+        buildStore().load(productMap);
+
+        // Analyze
+        assertEquals(DataFormat.SMILE, DataFormat.detect(dataFile.toFile()));
+        assertEquals(original, Files.readString(tempDir.resolve("products.json.bak")));
+        assertEquals(2, productMap.size());
+        Map<Integer, Product> reloaded = new TreeMap<>();
+        buildStore().load(reloaded);
+        assertEquals("coffee beans", reloaded.get(2).getName());
+    }
+
+    @Test
+    public void testSmileSaveAndStream() throws IOException {
+        properties.setFormat("smile");
+        FileStore<Product> store = buildStore();
+        store.load(productMap);
+        productMap.remove(1);
+        store.delete(1);
+        store.checkpoint();
+        properties.setStreamThresholdBytes(0);
+
+        // Invoke
+        Map<Integer, Product> reloaded = new TreeMap<>();
+        buildStore().load(reloaded);
+
+        // Analyze
+        assertEquals(DataFormat.SMILE, DataFormat.detect(dataFile.toFile()));
+        assertEquals(1, reloaded.size());
+        assertEquals("coffee beans", reloaded.get(2).getName());
+    }
+
+    @Test
+    public void testDowngradeToJson() throws IOException {
+        properties.setFormat("smile");
+        buildStore().load(productMap);
+        properties.setFormat("json");
+
+        // Invoke
+        Map<Integer, Product> reloaded = new TreeMap<>();
+        buildStore().load(reloaded);
+
+        // Analyze
+        assertEquals(DataFormat.JSON, DataFormat.detect(dataFile.toFile()));
+        assertEquals(2, objectMapper.readValue(dataFile.toFile(), Product[].class).length);
+    }
+
+    @Test
+    public void testFormatFromExtension() {
+        assertEquals(DataFormat.SMILE, DataFormat.of("data/products.smile", properties));
+        assertEquals(DataFormat.JSON, DataFormat.of("data/products.json", properties));
+        properties.setFormat("smile");
+        assertEquals(DataFormat.SMILE, DataFormat.of("data/products.json", properties));
+    }
+
+    /**
+     * Build a store over productMap that reloads the data file, the changes
+     * it hands over are applied to productMap and recorded
+     *
+     * @param changed Receives the records changed by another program
+     * @param removed Receives the ids removed by another program
+     * @return New loaded store for the data file
+     * @throws IOException If the data file cannot be read
+     */
+    private FileStore<Product> buildWatchedStore(List<Product> changed, List<Integer> removed) throws IOException {
+        properties.setHotReload(true);
+        properties.setHotReloadSettleMillis(50);
+        FileStore<Product> store = buildStore();
+        store.load(productMap);
+        store.watch((changedRecords, removedIds) -> {
+            for (Product product : changedRecords) {
+                productMap.put(product.getId(), product);
+            }
+            productMap.keySet().removeAll(removedIds);
+            changed.addAll(changedRecords);
+            removed.addAll(removedIds);
+        });
+        return store;
+    }
+
+    @Test
+    public void testReloadAppliesOnlyChangedRecords() throws IOException {
+        List<Product> changed = new ArrayList<>();
+        List<Integer> removed = new ArrayList<>();
+        FileStore<Product> store = buildWatchedStore(changed, removed);
+        Product beans = productMap.get(2);
+
+        // Invoke, another program raises the price of the mug and adds a cup
+        Product[] edited = {new Product(1, "coffee mug", 4.00, 5, "keeps drink warm", null, false), beans,
+                            new Product(3, "coffee cup", 5.00, 1, "drink out of", null, false)};
+        objectMapper.writeValue(dataFile.toFile(), edited);
+        store.reload();
+
+        // Analyze, the unchanged record is not replaced
+        assertEquals(List.of(1, 3), List.of(changed.get(0).getId(), changed.get(1).getId()));
+        assertTrue(removed.isEmpty());
+        assertEquals(4.00, productMap.get(1).getPrice());
+        assertSame(beans, productMap.get(2));
+
+        // Invoke, then it removes the beans
+        objectMapper.writeValue(dataFile.toFile(), new Product[] {edited[0], edited[2]});
+        changed.clear();
+        store.reload();
+
+        // Analyze
+        assertTrue(changed.isEmpty());
+        assertEquals(List.of(2), removed);
+        assertFalse(productMap.containsKey(2));
+        store.close();
+    }
+
+    @Test
+    public void testOwnWritesAreNotReloaded() throws IOException {
+        List<Product> changed = new ArrayList<>();
+        List<Integer> removed = new ArrayList<>();
+        FileStore<Product> store = buildWatchedStore(changed, removed);
+
+        // Invoke
+        productMap.remove(1);
+        store.delete(1);
+        store.checkpoint();
+        store.reload();
+        store.save();
+        store.reload();
+
+        // Analyze
+        assertTrue(changed.isEmpty());
+        assertTrue(removed.isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void testReloadKeepsLoggedChanges() throws IOException {
+        List<Product> changed = new ArrayList<>();
+        List<Integer> removed = new ArrayList<>();
+        FileStore<Product> store = buildWatchedStore(changed, removed);
+        Product cup = new Product(3, "coffee cup", 5.00, 1, "drink out of", null, false);
+        productMap.put(3, cup);
+        store.put(cup);
+
+        // Invoke, the data file does not hold the logged cup yet
+        Product[] edited = {new Product(1, "coffee mug", 4.00, 5, "keeps drink warm", null, false), productMap.get(2)};
+        objectMapper.writeValue(dataFile.toFile(), edited);
+        store.reload();
+
+        // Analyze, both changes are folded into the data file
+        assertTrue(removed.isEmpty());
+        assertEquals(1, changed.size());
+        Product[] saved = objectMapper.readValue(dataFile.toFile(), Product[].class);
+        assertEquals(3, saved.length);
+        assertEquals(4.00, saved[0].getPrice());
+        assertEquals(0, Files.size(tempDir.resolve("products.json.log")));
+        store.close();
+    }
+
+    @Test
+    public void testWatcherReloadsExternalEdit() throws Exception {
+        List<Product> changed = new CopyOnWriteArrayList<>();
+        List<Integer> removed = new CopyOnWriteArrayList<>();
+        FileStore<Product> store = buildWatchedStore(changed, removed);
+
+        // Invoke
+        Path edit = tempDir.resolve("edit.json");
+        objectMapper.writeValue(edit.toFile(), new Product[] {productMap.get(1)});
+        Files.move(edit, dataFile, StandardCopyOption.REPLACE_EXISTING);
+
+        // Analyze
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (removed.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(List.of(2), removed);
+        assertTrue(changed.isEmpty());
+        store.close();
+    }
+
+    /**
+     * Collect what the store logs while an action runs
+     *
+     * @param action Action to run
+     * @return Messages logged
+     * @throws IOException If the action fails
+     */
+    private List<String> logged(StoreAction action) throws IOException {
+        List<String> messages = new CopyOnWriteArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                messages.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger(FileStore.class.getName());
+        logger.addHandler(handler);
+        try {
+            action.run();
+        }
+        finally {
+            logger.removeHandler(handler);
+        }
+        return messages;
+    }
+
+    /**
+     * Action on a store that may fail with an IOException
+     */
+    private interface StoreAction {
+        void run() throws IOException;
+    }
+
+    @Test
+    public void testWarmStartFromImage() throws IOException {
+        // Setup
+        properties.setWarmStart(true);
+        FileStore<Product> store = buildStore();
+        store.load(productMap);
+        Product product = new Product(3, "coffee cup", 5.00, 1, "drink out of", null, false);
+        productMap.put(3, product);
+        store.put(product);
+        store.close();
+
+        // Invoke
+        Map<Integer, Product> reloaded = new TreeMap<>();
+        List<String> messages = logged(() -> buildStore().load(reloaded));
+
+        // Analyze
+        assertTrue(Files.exists(tempDir.resolve("products.json.image")));
+        assertTrue(messages.stream().anyMatch(message -> message.startsWith("Loaded the image of")),
+                   messages.toString());
+        assertEquals(3, reloaded.size());
+        assertEquals(product, reloaded.get(3));
+        assertEquals("coffee mug", reloaded.get(1).getName());
+    }
+
+    @Test
+    public void testStaleImageIgnored() throws IOException {
+        // Setup
+        properties.setWarmStart(true);
+        FileStore<Product> store = buildStore();
+        store.load(productMap);
+        store.close();
+
+        // Invoke, another program rewrites the data file while the application is down
+        objectMapper.writeValue(dataFile.toFile(), new Product[] {
+            new Product(1, "coffee mug", 3.75, 5, "keeps drink warm", null, false)
+        });
+        Map<Integer, Product> reloaded = new TreeMap<>();
+        List<String> messages = logged(() -> buildStore().load(reloaded));
+
+        // Analyze
+        assertTrue(messages.stream().anyMatch(message -> message.startsWith("Ignoring the image")),
+                   messages.toString());
+        assertEquals(1, reloaded.size());
+        assertEquals(3.75, reloaded.get(1).getPrice());
+    }
+
+    @Test
+    public void testNoImageOfExternallyChangedFile() throws IOException {
+        // Setup
+        properties.setWarmStart(true);
+        FileStore<Product> store = buildStore();
+        store.load(productMap);
+        store.close();
+        assertTrue(Files.exists(tempDir.resolve("products.json.image")));
+        store = buildStore();
+        store.load(productMap);
+
+        // Invoke
+        Files.writeString(dataFile, "[]");
+        store.close();
+
+        // Analyze
+        assertFalse(Files.exists(tempDir.resolve("products.json.image")));
+    }
+
+    @Test
+    public void testNegativeIdRejectedOnLoad() throws IOException {
+        // Setup
+        objectMapper.writeValue(dataFile.toFile(), new Product[] {
+            new Product(-4, "coffee mug", 3.50, 5, "keeps drink warm", null, false)});
+        properties.setStreamThresholdBytes(0);
+        FileStore<Product> streamed = buildStore();
+        properties.setStreamThresholdBytes(Long.MAX_VALUE);
+        FileStore<Product> whole = buildStore();
+
+        // Invoke
+        IOException streamedError = assertThrows(IOException.class, () -> streamed.load(new IntObjectMap<>()));
+        IOException wholeError = assertThrows(IOException.class, () -> whole.load(new IntObjectMap<>()));
+
+        // Analyze, the error names the file and the record
+        assertTrue(streamedError.getMessage().contains(dataFile.toString()));
+        assertTrue(streamedError.getMessage().contains("-4"));
+        assertEquals(streamedError.getMessage(), wholeError.getMessage());
+    }
+}
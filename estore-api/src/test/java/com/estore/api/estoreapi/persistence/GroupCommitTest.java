@@ -0,0 +1,116 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the Group Commit class
+ */
+@Tag("Persistence-tier")
+public class GroupCommitTest {
+    @Test
+    public void testConcurrentChangesShareFlushes() throws Exception {
+        // Setup
+        int callers = 16;
+        AtomicInteger flushes = new AtomicInteger();
+        AtomicInteger applied = new AtomicInteger();
+        AtomicInteger flushedThrough = new AtomicInteger();
+        GroupCommit groupCommit = new GroupCommit(() -> {
+            flushes.incrementAndGet();
+            flushedThrough.set(applied.get());
+        }, 50, callers);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // Invoke
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                long ticket;
+                int mine;
+                synchronized (applied) {
+                    mine = applied.incrementAndGet();
+                    ticket = groupCommit.submit();
+                }
+                groupCommit.awaitDurable(ticket);
+                // Must never be acknowledged before a flush covered the change
+                return flushedThrough.get() >= mine;
+            }));
+        }
+        start.countDown();
+
+        // Analyze
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+        pool.shutdown();
+        assertTrue(flushes.get() < callers);
+    }
+
+    @Test
+    public void testSingleChangeFlushesAfterWindow() throws IOException {
+        AtomicInteger flushes = new AtomicInteger();
+        GroupCommit groupCommit = new GroupCommit(flushes::incrementAndGet, 1, 64);
+
+        // Invoke
+        groupCommit.awaitDurable(groupCommit.submit());
+        groupCommit.awaitDurable(groupCommit.submit());
+
+        // Analyze
+        assertEquals(2, flushes.get());
+    }
+
+    @Test
+    public void testFailedFlush() throws IOException {
+        AtomicInteger attempts = new AtomicInteger();
+        GroupCommit groupCommit = new GroupCommit(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IOException();
+            }
+        }, 0, 64);
+
+        // Invoke & Analyze
+        long first = groupCommit.submit();
+        assertThrows(IOException.class, () -> groupCommit.awaitDurable(first));
+
+        // The next batch succeeds and covers later changes
+        groupCommit.awaitDurable(groupCommit.submit());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void testUncheckedFailureReleasesWaiters() throws IOException {
+        AtomicInteger attempts = new AtomicInteger();
+        GroupCommit groupCommit = new GroupCommit(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException();
+            }
+        }, 0, 64);
+
+        // Invoke & Analyze
+        long first = groupCommit.submit();
+        long second = groupCommit.submit();
+        assertThrows(IllegalStateException.class, () -> groupCommit.awaitDurable(first));
+
+        // The other change of the failed batch is told it failed instead of waiting on it
+        assertThrows(IOException.class, () -> groupCommit.awaitDurable(second));
+
+        // The next batch gets a leader and succeeds
+        groupCommit.awaitDurable(groupCommit.submit());
+        assertEquals(2, attempts.get());
+    }
+}
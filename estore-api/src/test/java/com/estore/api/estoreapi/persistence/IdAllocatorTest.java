@@ -0,0 +1,137 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the block id allocator
+ */
+@Tag("Persistence-tier")
+public class IdAllocatorTest {
+    @TempDir
+    Path tempDir;
+
+    private long readSequence() throws IOException {
+        return Long.parseLong(Files.readString(tempDir.resolve("ids.seq")).trim());
+    }
+
+    @Test
+    public void testBlocksAreDisjoint() throws IOException {
+        IdAllocator first = new IdAllocator(tempDir.resolve("ids.seq"), 10);
+        IdAllocator second = new IdAllocator(tempDir.resolve("ids.seq"), 10);
+
+        // Invoke
+        int a = first.next();
+        int b = second.next();
+        int c = first.next();
+
+        // Analyze
+        assertEquals(1, a);
+        assertEquals(11, b);
+        assertEquals(2, c);
+        assertEquals(21, readSequence());
+    }
+
+    @Test
+    public void testSkipPast() throws IOException {
+        IdAllocator ids = new IdAllocator(tempDir.resolve("ids.seq"), 10);
+
+        // Invoke
+        ids.skipPast(41);
+        int first = ids.next();
+        ids.skipPast(45);
+        int second = ids.next();
+        ids.skipPast(3);
+        int third = ids.next();
+
+        // Analyze
+        assertEquals(42, first);
+        assertEquals(46, second);
+        assertEquals(47, third);
+        assertEquals(52, readSequence());
+    }
+
+    @Test
+    public void testCloseReturnsUnusedIds() throws IOException {
+        IdAllocator ids = new IdAllocator(tempDir.resolve("ids.seq"), 10);
+        ids.next();
+        ids.next();
+
+        // Invoke
+        ids.close();
+
+        // Analyze
+        assertEquals(3, readSequence());
+        assertEquals(3, new IdAllocator(tempDir.resolve("ids.seq"), 10).next());
+    }
+
+    @Test
+    public void testCloseKeepsLaterBlocks() throws IOException {
+        IdAllocator first = new IdAllocator(tempDir.resolve("ids.seq"), 10);
+        IdAllocator second = new IdAllocator(tempDir.resolve("ids.seq"), 10);
+        first.next();
+        second.next();
+
+        // Invoke
+        first.close();
+
+        // Analyze
+        assertEquals(21, readSequence());
+        assertEquals(12, second.next());
+    }
+
+    @Test
+    public void testInMemory() throws IOException {
+        IdAllocator ids = new IdAllocator();
+        ids.skipPast(7);
+
+        // Invoke
+        int first = ids.next();
+        int second = ids.next();
+        ids.close();
+
+        // Analyze
+        assertEquals(8, first);
+        assertEquals(9, second);
+        assertEquals(10, ids.next());
+    }
+
+    @Test
+    public void testConcurrentAllocatorsNeverRepeat() throws InterruptedException {
+        IdAllocator first = new IdAllocator(tempDir.resolve("ids.seq"), 7);
+        IdAllocator second = new IdAllocator(tempDir.resolve("ids.seq"), 7);
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            IdAllocator ids = i % 2 == 0 ? first : second;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    assertTrue(seen.add(ids.next()));
+                }
+            }));
+        }
+
+        // Invoke
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Analyze
+        assertEquals(8000, seen.size());
+    }
+}
@@ -0,0 +1,118 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Compares lookups by id and the heap held per entry in a {@link TreeMap}, the
+ * {@link IntObjectMap} and the {@link PersistentIntMap}
+ *
+ * Each map holds the same records under dense ids and is probed with the same
+ * random ids. Every measurement is taken after a warm-up round and the best of
+ * several rounds is printed. Not run with the tests, start it from the test classpath:
+ * java -cp target/classes:target/test-classes:... com.estore.api.estoreapi.persistence.IntMapBenchmark [entries]
+ */
+public class IntMapBenchmark {
+    /** Lookups per round */
+    private static final int LOOKUPS = 10_000_000;
+
+    /** Rounds measured after the warm-up */
+    private static final int ROUNDS = 5;
+
+    /** Defeats dead code elimination of the lookups */
+    private static long sink;
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Object[] records = new Object[entries];
+        for (int i = 0; i < entries; i++) {
+            records[i] = new Object();
+        }
+        int[] probes = new Random(42).ints(LOOKUPS, 1, entries + 1).toArray();
+
+        System.out.printf("%-18s %14s %14s%n", "map", "lookups/s", "bytes/entry");
+
+        report("TreeMap", () -> {
+            Map<Integer, Object> map = new TreeMap<>();
+            for (int id = 1; id <= entries; id++) {
+                map.put(id, records[id - 1]);
+            }
+            return map::get;
+        }, probes, entries);
+
+        report("IntObjectMap", () -> {
+            IntObjectMap<Object> map = new IntObjectMap<>();
+            for (int id = 1; id <= entries; id++) {
+                map.put(id, records[id - 1]);
+            }
+            return map::get;
+        }, probes, entries);
+
+        report("PersistentIntMap", () -> {
+            PersistentIntMap<Object> map = PersistentIntMap.empty();
+            for (int id = 1; id <= entries; id++) {
+                map = map.put(id, records[id - 1]);
+            }
+            return map::get;
+        }, probes, entries);
+    }
+
+    /**
+     * Measure the lookups of one map and print them with its heap use
+     *
+     * @param name Name of the map
+     * @param build Fills the map and returns its lookup by id
+     * @param probes Ids to look up
+     * @param entries Number of entries
+     */
+    private static void report(String name, Supplier<IntFunction<Object>> build, int[] probes, int entries) {
+        IntFunction<Object> lookup = build.get();
+        run(lookup, probes);
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            best = Math.min(best, run(lookup, probes));
+        }
+        long lookups = probes.length * 1_000_000_000L / best;
+
+        // The heap held by the map is what is freed once the last reference to it is dropped
+        long withMap = usedHeap();
+        lookup = null;
+        long bytes = withMap - usedHeap();
+        System.out.printf("%-18s %14d %14d%n", name, lookups, bytes / entries);
+    }
+
+    /**
+     * Look up every probe once
+     *
+     * @param lookup Looks up an id
+     * @param probes Ids to look up
+     * @return Nanoseconds taken
+     */
+    private static long run(IntFunction<Object> lookup, int[] probes) {
+        long start = System.nanoTime();
+        long found = 0;
+        for (int id : probes) {
+            if (lookup.apply(id) != null) {
+                found++;
+            }
+        }
+        sink += found;
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Get the heap in use after collecting garbage
+     *
+     * @return Bytes in use
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
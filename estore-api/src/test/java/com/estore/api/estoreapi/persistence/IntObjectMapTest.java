@@ -0,0 +1,138 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the id-indexed map
+ */
+@Tag("Persistence-tier")
+public class IntObjectMapTest {
+    @Test
+    public void testPutGetRemove() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+
+        // Invoke
+        map.put(2, "two");
+        map.put(1, "one");
+        map.put(5000, "far");
+        String replaced = map.put(2, "TWO");
+        String removed = map.remove(1);
+
+        // Analyze
+        assertEquals("two", replaced);
+        assertEquals("one", removed);
+        assertEquals(2, map.size());
+        assertEquals("TWO", map.get(2));
+        assertEquals("far", map.get(Integer.valueOf(5000)));
+        assertNull(map.get(1));
+        assertNull(map.get(-1));
+        assertNull(map.get(1 << 30));
+        assertNull(map.remove(3));
+        assertFalse(map.containsKey(1));
+        assertTrue(map.containsKey(5000));
+        assertEquals(List.of(2, 5000), new ArrayList<>(map.keySet()));
+        assertThrows(IllegalArgumentException.class, () -> map.put(-1, "negative"));
+        assertThrows(IllegalArgumentException.class, () -> map.put(3, null));
+    }
+
+    @Test
+    public void testMatchesTreeMap() {
+        Random random = new Random(42);
+        Map<Integer, Integer> expected = new TreeMap<>();
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+
+        // Invoke
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map.remove(key);
+            }
+            else {
+                expected.put(key, i);
+                map.put(key, Integer.valueOf(i));
+            }
+        }
+
+        // Analyze
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(map.keySet()));
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(map.values()));
+    }
+
+    @Test
+    public void testIteratorRemoveAndClear() {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        for (int i = 0; i < 3000; i++) {
+            map.put(i, Integer.valueOf(i));
+        }
+
+        // Invoke
+        for (Iterator<Integer> values = map.values().iterator(); values.hasNext();) {
+            if (values.next() % 2 == 1) {
+                values.remove();
+            }
+        }
+
+        // Analyze
+        assertEquals(1500, map.size());
+        assertNull(map.get(2999));
+        assertEquals(2998, map.get(2998));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.values().iterator().hasNext());
+    }
+
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        int threads = 4;
+        int perThread = 20000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+
+        // Invoke, each thread fills every fourth id so pages are allocated concurrently
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    map.put(i * threads + offset, Integer.valueOf(offset));
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Analyze
+        assertEquals(threads * perThread, map.size());
+        for (int id = 0; id < threads * perThread; id++) {
+            assertEquals(id % threads, map.get(id));
+        }
+    }
+}
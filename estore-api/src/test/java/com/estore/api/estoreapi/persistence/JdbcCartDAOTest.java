@@ -0,0 +1,105 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import com.estore.api.estoreapi.model.Cart;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the Jdbc Cart DAO class
+ */
+@Tag("Persistence-tier")
+public class JdbcCartDAOTest {
+    JdbcStore store;
+    JdbcCartDAO cartDAO;
+
+    /**
+     * Open an empty database with two carts before each test
+     *
+     * @throws IOException If the database cannot be opened
+     */
+    @BeforeEach
+    public void setupJdbcCartDAO() throws IOException {
+        store = JdbcStoreTest.buildStore(null);
+        cartDAO = new JdbcCartDAO(store);
+        cartDAO.createCart(new Cart(0));
+        cartDAO.createCart(new Cart(0));
+    }
+
+    /**
+     * Close the pool after each test
+     */
+    @AfterEach
+    public void closeJdbcCartDAO() {
+        store.close();
+    }
+
+    @Test
+    public void testAddItem() throws IOException {
+        assertTrue(cartDAO.addItem(1, 5, 2));
+        assertTrue(cartDAO.addItem(1, 5, 3));
+        assertTrue(cartDAO.addItem(1, 6, 1));
+        assertFalse(cartDAO.addItem(9, 5, 1));
+
+        Cart cart = cartDAO.getCart(1);
+        assertEquals(5, cart.getInventory().get(5).getQuantity());
+        assertEquals(1, cart.getInventory().get(6).getQuantity());
+        assertTrue(cartDAO.getCart(2).getInventory().isEmpty());
+    }
+
+    @Test
+    public void testEditQuantity() throws IOException {
+        cartDAO.addItem(1, 5, 2);
+        cartDAO.addItem(1, 6, 2);
+
+        assertTrue(cartDAO.editQuantity(1, 5, 7));
+        assertTrue(cartDAO.removeItem(1, 6));
+        assertFalse(cartDAO.editQuantity(9, 5, 1));
+
+        Cart cart = cartDAO.getCart(1);
+        assertEquals(1, cart.getInventory().size());
+        assertEquals(7, cart.getInventory().get(5).getQuantity());
+    }
+
+    @Test
+    public void testUpdateCart() throws IOException {
+        cartDAO.addItem(2, 5, 2);
+        Cart cart = new Cart(2);
+        cart.addItem(8, 4);
+
+        assertEquals(cart, cartDAO.updateCart(cart));
+        assertNull(cartDAO.updateCart(new Cart(9)));
+        assertEquals(1, cartDAO.getCart(2).getInventory().size());
+        assertEquals(4, cartDAO.getCart(2).getInventory().get(8).getQuantity());
+    }
+
+    @Test
+    public void testGetCarts() throws IOException {
+        cartDAO.addItem(2, 5, 2);
+
+        Cart[] carts = cartDAO.getCarts();
+
+        assertEquals(2, carts.length);
+        assertEquals(1, carts[0].getId());
+        assertEquals(2, carts[1].getInventory().get(5).getQuantity());
+    }
+
+    @Test
+    public void testDeleteCart() throws IOException {
+        cartDAO.addItem(1, 5, 2);
+
+        assertTrue(cartDAO.deleteCart(1));
+        assertFalse(cartDAO.deleteCart(1));
+        assertNull(cartDAO.getCart(1));
+        assertEquals(3, cartDAO.createCart(new Cart(0)).getId());
+    }
+}
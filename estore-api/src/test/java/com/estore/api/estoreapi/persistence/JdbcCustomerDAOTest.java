@@ -0,0 +1,77 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import com.estore.api.estoreapi.model.Customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the Jdbc Customer DAO class
+ */
+@Tag("Persistence-tier")
+public class JdbcCustomerDAOTest {
+    JdbcStore store;
+    JdbcCustomerDAO customerDAO;
+
+    /**
+     * Open an empty database with two customers before each test
+     *
+     * @throws IOException If the database cannot be opened
+     */
+    @BeforeEach
+    public void setupJdbcCustomerDAO() throws IOException {
+        store = JdbcStoreTest.buildStore(null);
+        customerDAO = new JdbcCustomerDAO(store, JdbcStoreTest.buildObjectMapper());
+        customerDAO.createCustomer(new Customer(0, "admin", "Admin", 0, true, "admin"));
+        customerDAO.createCustomer(new Customer(0, "mlondon", "Matt London", 2, false, "secret"));
+    }
+
+    /**
+     * Close the pool after each test
+     */
+    @AfterEach
+    public void closeJdbcCustomerDAO() {
+        store.close();
+    }
+
+    @Test
+    public void testFindCustomers() throws IOException {
+        assertEquals(1, customerDAO.findCustomers("london").length);
+        assertEquals(1, customerDAO.findCustomers("MLON").length);
+        assertEquals(0, customerDAO.findCustomers("x").length);
+        assertEquals(2, customerDAO.findCustomers(null).length);
+    }
+
+    @Test
+    public void testUpdateCustomer() throws IOException {
+        Customer customer = customerDAO.getCustomer(2);
+        customer.setName("Matthew");
+        customer.addOrder(5);
+        customer.addPurchasedProduct(3);
+
+        assertEquals(customer, customerDAO.updateCustomer(customer));
+        assertNull(customerDAO.updateCustomer(new Customer(9, "x", "x", 0, false, "x")));
+
+        Customer stored = customerDAO.getCustomer(2);
+        assertEquals("Matthew", stored.getName());
+        assertEquals(5, stored.getOrders().get(0));
+        assertEquals(1, customerDAO.findCustomers("matthew").length);
+    }
+
+    @Test
+    public void testDeleteCustomer() throws IOException {
+        assertTrue(customerDAO.deleteCustomer(1));
+        assertFalse(customerDAO.deleteCustomer(1));
+        assertNull(customerDAO.getCustomer(1));
+        assertEquals(1, customerDAO.getCustomers().length);
+    }
+}
@@ -0,0 +1,89 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.model.Product;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the Jdbc Order DAO class
+ */
+@Tag("Persistence-tier")
+public class JdbcOrderDAOTest {
+    JdbcStore store;
+    JdbcOrderDAO orderDAO;
+
+    /**
+     * Open an empty database with two orders before each test
+     *
+     * @throws IOException If the database cannot be opened
+     */
+    @BeforeEach
+    public void setupJdbcOrderDAO() throws IOException {
+        store = JdbcStoreTest.buildStore(null);
+        orderDAO = new JdbcOrderDAO(store, JdbcStoreTest.buildObjectMapper());
+        Product[] products = new Product[] {new Product(1, "coffee mug", 3.50, 5, "keeps drink warm", null, false)};
+        orderDAO.createOrder(new Order(0, 3.50, products, false, null));
+        orderDAO.createOrder(new Order(0, 0, new Product[0], true, null));
+    }
+
+    /**
+     * Close the pool after each test
+     */
+    @AfterEach
+    public void closeJdbcOrderDAO() {
+        store.close();
+    }
+
+    @Test
+    public void testGetOrders() throws IOException {
+        Order[] orders = orderDAO.getOrders();
+
+        assertEquals(2, orders.length);
+        assertEquals("coffee mug", orders[0].getProducts()[0].getName());
+        assertTrue(orders[1].isComplete());
+    }
+
+    @Test
+    public void testUpdateOrder() throws IOException {
+        Order order = orderDAO.getOrder(1);
+        order.setComplete(true);
+
+        assertEquals(order, orderDAO.updateOrder(order));
+        assertNull(orderDAO.updateOrder(new Order(9, 0, new Product[0], false, null)));
+        assertTrue(orderDAO.getOrder(1).isComplete());
+    }
+
+    @Test
+    public void testDeleteOrder() throws IOException {
+        assertTrue(orderDAO.deleteOrder(2));
+        assertFalse(orderDAO.deleteOrder(2));
+        assertNull(orderDAO.getOrder(2));
+        assertEquals(3, orderDAO.createOrder(new Order(0, 1, new Product[0], false, null)).getId());
+    }
+
+    @Test
+    public void testGetOrdersWithinRange() throws IOException {
+        LocalDateTime march = LocalDateTime.of(2024, 3, 15, 12, 0);
+        orderDAO.createOrder(new Order(0, 1, new Product[0], true, march));
+        orderDAO.createOrder(new Order(0, 2, new Product[0], true, march.plusMonths(1)));
+
+        Order[] orders = orderDAO.getOrders(LocalDateTime.of(2024, 3, 1, 0, 0), LocalDateTime.of(2024, 4, 1, 0, 0));
+
+        assertEquals(1, orders.length);
+        assertEquals(3, orders[0].getId());
+        assertEquals(2, orderDAO.getOrders(march, march.plusMonths(2)).length);
+        assertEquals(4, orderDAO.getOrders(null, null).length);
+    }
+}
@@ -0,0 +1,89 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import com.estore.api.estoreapi.model.Product;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the Jdbc Product DAO class
+ */
+@Tag("Persistence-tier")
+public class JdbcProductDAOTest {
+    JdbcStore store;
+    JdbcProductDAO productDAO;
+
+    /**
+     * Open an empty database with three products before each test
+     *
+     * @throws IOException If the database cannot be opened
+     */
+    @BeforeEach
+    public void setupJdbcProductDAO() throws IOException {
+        store = JdbcStoreTest.buildStore(null);
+        productDAO = new JdbcProductDAO(store);
+        productDAO.createProduct(new Product(0, "coffee mug", 3.50, 5, "keeps drink warm", null, false));
+        productDAO.createProduct(new Product(0, "coffee beans", 3.00, 4, "make coffee", "beans", true));
+        productDAO.createProduct(new Product(0, "filter", 1.00, 10, "100% paper", null, false));
+    }
+
+    /**
+     * Close the pool after each test
+     */
+    @AfterEach
+    public void closeJdbcProductDAO() {
+        store.close();
+    }
+
+    @Test
+    public void testGetProducts() throws IOException {
+        Product[] products = productDAO.getProducts();
+
+        assertEquals(3, products.length);
+        assertEquals(1, products[0].getId());
+        assertEquals("beans", products[1].getCategory());
+        assertTrue(products[1].isOwnerRecommended());
+    }
+
+    @Test
+    public void testFindProducts() throws IOException {
+        assertEquals(2, productDAO.findProducts("COFFEE").length);
+        assertEquals(1, productDAO.findProducts("warm").length);
+        assertEquals(1, productDAO.findProducts("100%").length);
+        assertEquals(0, productDAO.findProducts("tea").length);
+        assertEquals(3, productDAO.findProducts(null).length);
+    }
+
+    @Test
+    public void testUpdateProduct() throws IOException {
+        Product product = new Product(2, "dark roast", 4.00, 3, "make coffee", null, false);
+
+        assertEquals(product, productDAO.updateProduct(product));
+        assertNull(productDAO.updateProduct(new Product(9, "tea", 1.00, 1, "leaves", null, false)));
+        assertEquals("dark roast", productDAO.getProduct(2).getName());
+        assertEquals(3, productDAO.getProduct(2).getQuantity());
+    }
+
+    @Test
+    public void testDeleteProduct() throws IOException {
+        assertTrue(productDAO.deleteProduct(1));
+        assertFalse(productDAO.deleteProduct(1));
+        assertNull(productDAO.getProduct(1));
+    }
+
+    @Test
+    public void testCreateProductAfterRestart() throws IOException {
+        JdbcProductDAO restarted = new JdbcProductDAO(store);
+
+        assertEquals(4, restarted.createProduct(new Product(0, "tea", 1.00, 1, "leaves", null, false)).getId());
+    }
+}
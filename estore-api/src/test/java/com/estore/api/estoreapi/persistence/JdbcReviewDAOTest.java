@@ -0,0 +1,71 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import com.estore.api.estoreapi.model.Review;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the Jdbc Review DAO class
+ */
+@Tag("Persistence-tier")
+public class JdbcReviewDAOTest {
+    JdbcStore store;
+    JdbcReviewDAO reviewDAO;
+
+    /**
+     * Open an empty database with two reviews before each test
+     *
+     * @throws IOException If the database cannot be opened
+     */
+    @BeforeEach
+    public void setupJdbcReviewDAO() throws IOException {
+        store = JdbcStoreTest.buildStore(null);
+        reviewDAO = new JdbcReviewDAO(store);
+        reviewDAO.createReview(new Review(0, 1, 2, 4.5f, "great mug", null));
+        reviewDAO.createReview(new Review(0, 1, 3, 2f, "too small", "sorry"));
+    }
+
+    /**
+     * Close the pool after each test
+     */
+    @AfterEach
+    public void closeJdbcReviewDAO() {
+        store.close();
+    }
+
+    @Test
+    public void testGetReviews() throws IOException {
+        Review[] reviews = reviewDAO.getReviews();
+
+        assertEquals(2, reviews.length);
+        assertEquals("great mug", reviews[0].getReviewContent());
+        assertEquals("sorry", reviews[1].getOwnerResponse());
+    }
+
+    @Test
+    public void testUpdateReview() throws IOException {
+        Review review = reviewDAO.getReview(2);
+        review.setOwnerResponse("we have a bigger one");
+
+        assertEquals(review, reviewDAO.updateReview(review));
+        assertNull(reviewDAO.updateReview(new Review(9, 1, 1, 1f, "", null)));
+        assertEquals("we have a bigger one", reviewDAO.getReview(2).getOwnerResponse());
+    }
+
+    @Test
+    public void testDeleteReview() throws IOException {
+        assertTrue(reviewDAO.deleteReview(1));
+        assertFalse(reviewDAO.deleteReview(1));
+        assertNull(reviewDAO.getReview(1));
+    }
+}
@@ -0,0 +1,127 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import com.estore.api.estoreapi.model.Cart;
+import com.estore.api.estoreapi.model.Customer;
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.model.Product;
+import com.estore.api.estoreapi.model.Review;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test the schema and JSON import of the Jdbc Store class
+ */
+@Tag("Persistence-tier")
+public class JdbcStoreTest {
+    @TempDir
+    Path tempDir;
+
+    ObjectMapper objectMapper;
+    JsonImporter importer;
+    String url;
+    JdbcStore store;
+
+    /**
+     * Build an object mapper configured like the application's
+     *
+     * @return New {@link ObjectMapper}
+     */
+    static ObjectMapper buildObjectMapper() {
+        return new ObjectMapper().findAndRegisterModules()
+                                 .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    /**
+     * Open an empty in-memory database
+     *
+     * @param importer Importer run on open, or null for none
+     * @return New {@link JdbcStore}
+     * @throws IOException If the database cannot be opened
+     */
+    static JdbcStore buildStore(JsonImporter importer) throws IOException {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        return new JdbcStore(url, "sa", "", importer, new PersistenceProperties());
+    }
+
+    /**
+     * Write one record of every type to JSON data files before each test
+     *
+     * @throws IOException If the files cannot be written
+     */
+    @BeforeEach
+    public void setupJdbcStore() throws IOException {
+        objectMapper = buildObjectMapper();
+        Cart cart = new Cart(4);
+        cart.addItem(1, 2);
+        Customer customer = new Customer(3, "matt", "Matt", 4, false, "secret");
+        customer.addOrder(7);
+
+        objectMapper.writeValue(tempDir.resolve("products.json").toFile(),
+                                new Product[] {new Product(1, "coffee mug", 3.50, 5, "keeps drink warm", null, false)});
+        objectMapper.writeValue(tempDir.resolve("carts.json").toFile(), new Cart[] {cart});
+        objectMapper.writeValue(tempDir.resolve("customers.json").toFile(), new Customer[] {customer});
+        objectMapper.writeValue(tempDir.resolve("orders.json").toFile(),
+                                new Order[] {new Order(7, 3.50, new Product[0], true, null)});
+        objectMapper.writeValue(tempDir.resolve("review.json").toFile(),
+                                new Review[] {new Review(2, 1, 3, 4.5f, "great", null)});
+
+        importer = new JsonImporter(tempDir.resolve("products.json").toString(),
+                                    tempDir.resolve("carts.json").toString(),
+                                    tempDir.resolve("customers.json").toString(),
+                                    tempDir.resolve("orders.json").toString(),
+                                    tempDir.resolve("review.json").toString(), objectMapper);
+        store = buildStore(importer);
+    }
+
+    /**
+     * Close the pool after each test
+     */
+    @AfterEach
+    public void closeJdbcStore() {
+        store.close();
+    }
+
+    @Test
+    public void testImport() throws IOException {
+        assertEquals("coffee mug", new JdbcProductDAO(store).getProduct(1).getName());
+        assertEquals(2, new JdbcCartDAO(store).getCart(4).getInventory().get(1).getQuantity());
+        assertEquals(7, new JdbcCustomerDAO(store, objectMapper).getCustomer(3).getOrders().get(0));
+        assertEquals(true, new JdbcOrderDAO(store, objectMapper).getOrder(7).isComplete());
+        assertEquals(4.5f, new JdbcReviewDAO(store).getReview(2).getStars());
+    }
+
+    @Test
+    public void testImportRunsOnce() throws IOException {
+        JdbcProductDAO productDAO = new JdbcProductDAO(store);
+        productDAO.deleteProduct(1);
+
+        // Invoke
+        importer.importOnce(store);
+
+        // Analyze
+        assertEquals(0, productDAO.getProducts().length);
+    }
+
+    @Test
+    public void testNextId() throws IOException {
+        assertEquals(2, store.nextId("product"));
+        assertEquals(8, store.nextId("orders"));
+    }
+
+    @Test
+    public void testContainsPattern() {
+        assertEquals("%50\\%\\_off%", JdbcStore.containsPattern("50%_OFF"));
+    }
+}
@@ -0,0 +1,150 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the lazily loading dao of order
+ */
+@Tag("Persistence-tier")
+public class LazyOrderFileDAOTest {
+    @TempDir
+    Path tempDir;
+
+    LazyOrderFileDAO lazyOrderFileDAO;
+    ObjectMapper objectMapper;
+    PersistenceProperties properties;
+    Path dataFile;
+
+    /**
+     * Write three orders to a data file before each test
+     *
+     * @throws IOException If the file cannot be written
+     */
+    @BeforeEach
+    public void setupLazyOrderFileDAO() throws IOException {
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        dataFile = tempDir.resolve("orders.json");
+        Product[] products = new Product[1];
+        products[0] = new Product(1, "Coffee filter", 4.99, 10, "Filters for coffee, {paper}", null, false);
+        Order[] orders = new Order[3];
+        orders[0] = new Order(1, 4.99, products, false, null);
+        orders[1] = new Order(2, 0, new Product[0], true, null);
+        orders[2] = new Order(5, 9.98, products, false, null);
+        objectMapper.writeValue(dataFile.toFile(), orders);
+
+        properties = new PersistenceProperties();
+        properties.setOrderCacheSize(2);
+        lazyOrderFileDAO = new LazyOrderFileDAO(dataFile.toString(), objectMapper, properties);
+    }
+
+    /**
+     * Release the data file after each test
+     *
+     * @throws IOException If the file cannot be closed
+     */
+    @AfterEach
+    public void closeLazyOrderFileDAO() throws IOException {
+        lazyOrderFileDAO.close();
+    }
+
+    @Test
+    public void testGetOrder() throws IOException {
+        Order order = lazyOrderFileDAO.getOrder(5);
+
+        assertEquals(9.98, order.getTotalPrice());
+        assertEquals("Filters for coffee, {paper}", order.getProducts()[0].getDescription());
+        assertNull(lazyOrderFileDAO.getOrder(3));
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        Order first = lazyOrderFileDAO.getOrder(1);
+        assertSame(first, lazyOrderFileDAO.getOrder(1));
+        lazyOrderFileDAO.getOrder(2);
+        lazyOrderFileDAO.getOrder(5);
+
+        // Analyze
+        CacheStats stats = lazyOrderFileDAO.getCacheStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(3, stats.getMisses());
+        assertEquals(1, stats.getEvictions());
+        assertEquals(2, stats.getSize());
+        assertEquals(stats.getHits(), lazyOrderFileDAO.getStatus().getCache().getHits());
+    }
+
+    @Test
+    public void testGetOrders() throws IOException {
+        Order[] orders = lazyOrderFileDAO.getOrders();
+
+        assertEquals(3, orders.length);
+        assertEquals(5, orders[2].getId());
+        assertEquals(0, lazyOrderFileDAO.getCacheStats().getSize());
+    }
+
+    @Test
+    public void testCreateOrder() throws IOException {
+        Order result = lazyOrderFileDAO.createOrder(new Order(0, 1.50, new Product[0], false, null));
+
+        assertEquals(6, result.getId());
+        assertEquals(4, objectMapper.readValue(dataFile.toFile(), Order[].class).length);
+        assertEquals(9.98, lazyOrderFileDAO.getOrder(5).getTotalPrice());
+    }
+
+    @Test
+    public void testUpdateOrder() throws IOException {
+        Order order = lazyOrderFileDAO.getOrder(2);
+        order.setComplete(false);
+        order.setTotalPrice(123.45);
+
+        assertNotNull(lazyOrderFileDAO.updateOrder(order));
+        assertNull(lazyOrderFileDAO.updateOrder(new Order(10, 0, new Product[0], false, null)));
+
+        // Re-open so the order is read back from the file
+        lazyOrderFileDAO.close();
+        lazyOrderFileDAO = new LazyOrderFileDAO(dataFile.toString(), objectMapper, properties);
+        assertEquals(123.45, lazyOrderFileDAO.getOrder(2).getTotalPrice());
+        assertEquals(4.99, lazyOrderFileDAO.getOrder(1).getTotalPrice());
+        assertEquals(9.98, lazyOrderFileDAO.getOrder(5).getTotalPrice());
+    }
+
+    @Test
+    public void testDeleteOrder() throws IOException {
+        lazyOrderFileDAO.getOrder(1);
+
+        assertTrue(lazyOrderFileDAO.deleteOrder(1));
+        assertFalse(lazyOrderFileDAO.deleteOrder(1));
+
+        assertNull(lazyOrderFileDAO.getOrder(1));
+        assertEquals(2, lazyOrderFileDAO.getOrders().length);
+        assertFalse(Files.exists(tempDir.resolve("orders.json.tmp")));
+    }
+
+    @Test
+    public void testNotAnArray() throws IOException {
+        Files.writeString(tempDir.resolve("bad.json"), "{\"id\":1}");
+
+        assertThrows(IOException.class,
+                        () -> new LazyOrderFileDAO(tempDir.resolve("bad.json").toString(), objectMapper, properties),
+                        "IOException not thrown");
+    }
+}
@@ -0,0 +1,119 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.estore.api.estoreapi.model.Cart;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the log-structured dao of carts
+ */
+@Tag("Persistence-tier")
+public class LsmCartDAOTest {
+    @TempDir
+    Path tempDir;
+
+    ObjectMapper objectMapper;
+    PersistenceProperties properties;
+    LsmCartDAO lsmCartDAO;
+
+    /**
+     * Write two carts to a JSON file and import them before each test
+     *
+     * @throws IOException If the store cannot be opened
+     */
+    @BeforeEach
+    public void setupLsmCartDAO() throws IOException {
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        Cart[] carts = new Cart[2];
+        carts[0] = new Cart(1);
+        carts[0].addItem(7, 2);
+        carts[1] = new Cart(4);
+        objectMapper.writeValue(tempDir.resolve("carts.json").toFile(), carts);
+
+        properties = new PersistenceProperties();
+        properties.setLsmMemtableSize(3);
+        lsmCartDAO = open();
+    }
+
+    @AfterEach
+    public void closeLsmCartDAO() throws IOException {
+        lsmCartDAO.close();
+    }
+
+    private LsmCartDAO open() throws IOException {
+        return new LsmCartDAO(tempDir.resolve("carts-lsm").toString(), tempDir.resolve("carts.json").toString(),
+                              objectMapper, properties);
+    }
+
+    @Test
+    public void testImport() throws IOException {
+        Cart[] carts = lsmCartDAO.getCarts();
+
+        assertEquals(2, carts.length);
+        assertEquals(1, carts[0].getId());
+        assertEquals(2, carts[0].getInventory().get(7).getQuantity());
+        assertEquals(4, carts[1].getId());
+        assertEquals(1, lsmCartDAO.getSegmentCount());
+    }
+
+    @Test
+    public void testCreateCart() throws IOException {
+        Cart cart = lsmCartDAO.createCart(new Cart(0));
+
+        assertEquals(5, cart.getId());
+        assertEquals(5, lsmCartDAO.getCart(5).getId());
+    }
+
+    @Test
+    public void testItemChanges() throws IOException {
+        assertTrue(lsmCartDAO.addItem(4, 9, 1));
+        assertTrue(lsmCartDAO.addItem(4, 9, 2));
+        assertTrue(lsmCartDAO.editQuantity(1, 7, 5));
+        assertTrue(lsmCartDAO.removeItem(1, 7));
+        assertFalse(lsmCartDAO.addItem(2, 9, 1));
+
+        assertEquals(3, lsmCartDAO.getCart(4).getInventory().get(9).getQuantity());
+        assertTrue(lsmCartDAO.getCart(1).getInventory().isEmpty());
+    }
+
+    @Test
+    public void testUpdateAndDeleteCart() throws IOException {
+        Cart cart = new Cart(4);
+        cart.addItem(3, 1);
+
+        assertEquals(cart, lsmCartDAO.updateCart(cart));
+        assertNull(lsmCartDAO.updateCart(new Cart(8)));
+        assertTrue(lsmCartDAO.deleteCart(1));
+        assertFalse(lsmCartDAO.deleteCart(1));
+
+        assertNull(lsmCartDAO.getCart(1));
+        assertEquals(1, lsmCartDAO.getCart(4).getInventory().get(3).getQuantity());
+    }
+
+    @Test
+    public void testReopenKeepsChanges() throws IOException {
+        lsmCartDAO.addItem(4, 9, 1);
+        lsmCartDAO.deleteCart(1);
+        lsmCartDAO.close();
+
+        // The JSON file is only imported the first time
+        lsmCartDAO = open();
+        assertNull(lsmCartDAO.getCart(1));
+        assertEquals(1, lsmCartDAO.getCart(4).getInventory().get(9).getQuantity());
+        assertEquals(5, lsmCartDAO.createCart(null).getId());
+        assertEquals("lsm", lsmCartDAO.getStatus().getMode());
+    }
+}
@@ -0,0 +1,210 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.estore.api.estoreapi.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the log-structured store
+ */
+@Tag("Persistence-tier")
+public class LsmStoreTest {
+    @TempDir
+    Path tempDir;
+
+    ObjectMapper objectMapper;
+    PersistenceProperties properties;
+    LsmStore<Product> store;
+
+    /**
+     * Open an empty store with a small memtable before each test
+     *
+     * @throws IOException If the store cannot be opened
+     */
+    @BeforeEach
+    public void setupLsmStore() throws IOException {
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        properties = new PersistenceProperties();
+        properties.setLsmMemtableSize(4);
+        properties.setLsmCompactionThreshold(100);
+        store = open();
+    }
+
+    @AfterEach
+    public void closeLsmStore() throws IOException {
+        store.close();
+    }
+
+    private LsmStore<Product> open() throws IOException {
+        return new LsmStore<>(tempDir.resolve("store"), objectMapper, Product.class, properties);
+    }
+
+    private static Product product(int id, String name) {
+        return new Product(id, name, 1.5, 3, "", null, false);
+    }
+
+    private List<Integer> ids() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        store.forEach(product -> ids.add(product.getId()));
+        return ids;
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir.resolve("store"))) {
+            return files.filter(file -> file.toString().endsWith(".seg")).count();
+        }
+    }
+
+    @Test
+    public void testPutGetDelete() throws IOException {
+        store.put(1, product(1, "Beans"));
+        store.put(2, product(2, "Filter"));
+        store.delete(1);
+
+        assertNull(store.get(1));
+        assertFalse(store.contains(1));
+        assertEquals("Filter", store.get(2).getName());
+        assertNull(store.get(3));
+        assertEquals(List.of(2), ids());
+    }
+
+    @Test
+    public void testFlushWritesSegments() throws IOException {
+        for (int i = 1; i <= 10; i++) {
+            store.put(i, product(i, "Product " + i));
+        }
+
+        // Every fourth change fills the memtable
+        assertEquals(2, store.getSegmentCount());
+        assertEquals(2, store.getStatus().getUnflushedChanges());
+        for (int i = 1; i <= 10; i++) {
+            assertEquals("Product " + i, store.get(i).getName());
+        }
+    }
+
+    @Test
+    public void testNewerVersionWins() throws IOException {
+        store.put(1, product(1, "Old"));
+        store.flushMemtable();
+        store.put(1, product(1, "New"));
+        store.put(2, product(2, "Other"));
+        store.flushMemtable();
+        store.delete(2);
+
+        assertEquals("New", store.get(1).getName());
+        assertNull(store.get(2));
+        assertEquals(List.of(1), ids());
+    }
+
+    @Test
+    public void testReopenReplaysLog() throws IOException {
+        store.put(1, product(1, "Flushed"));
+        store.flushMemtable();
+        store.put(2, product(2, "Logged"));
+        store.delete(1);
+
+        // Reopen from the same files without closing, as after a crash
+        LsmStore<Product> reopened = open();
+        try {
+            assertNull(reopened.get(1));
+            assertEquals("Logged", reopened.get(2).getName());
+            assertEquals(1, reopened.getSegmentCount());
+        }
+        finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testCompactionDropsOldVersions() throws IOException {
+        for (int round = 0; round < 3; round++) {
+            store.put(1, product(1, "Round " + round));
+            store.put(2, product(2, "Round " + round));
+            store.put(3 + round, product(3 + round, "Extra"));
+            store.flushMemtable();
+        }
+        store.delete(4);
+        store.flushMemtable();
+        assertEquals(4, store.getSegmentCount());
+
+        store.compact();
+
+        assertEquals(1, store.getSegmentCount());
+        assertEquals(1, segmentFiles());
+        assertEquals(1, store.getCompactions());
+        assertEquals("Round 2", store.get(1).getName());
+        assertNull(store.get(4));
+        assertEquals(List.of(1, 2, 3, 5), ids());
+
+        store.close();
+        store = open();
+        assertEquals(List.of(1, 2, 3, 5), ids());
+    }
+
+    @Test
+    public void testBackgroundCompaction() throws IOException, InterruptedException {
+        store.close();
+        properties.setLsmCompactionThreshold(2);
+        store = open();
+
+        store.put(1, product(1, "First"));
+        store.flushMemtable();
+        store.put(1, product(1, "Second"));
+        store.flushMemtable();
+
+        for (int i = 0; i < 100 && store.getCompactions() == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, store.getSegmentCount());
+        assertEquals("Second", store.get(1).getName());
+    }
+
+    @Test
+    public void testUnlistedSegmentDeleted() throws IOException {
+        store.put(1, product(1, "Beans"));
+        store.close();
+        Files.write(tempDir.resolve("store").resolve("99.seg"), new byte[] {1, 2, 3});
+
+        store = open();
+        assertEquals(1, segmentFiles());
+        assertEquals("Beans", store.get(1).getName());
+    }
+
+    @Test
+    public void testBloomFilter() {
+        BloomFilter filter = new BloomFilter(1000);
+        for (int i = 0; i < 1000; i++) {
+            filter.add(i * 2);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain(i * 2));
+            if (filter.mightContain(i * 2 + 1)) {
+                falsePositives++;
+            }
+        }
+        // Sized for about 1%
+        assertTrue(falsePositives < 50, "false positives: " + falsePositives);
+
+        BloomFilter copy = new BloomFilter(filter.getBits(), filter.getHashes());
+        assertTrue(copy.mightContain(0));
+    }
+}
@@ -0,0 +1,187 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the memory-mapped dao of order
+ */
+@Tag("Persistence-tier")
+public class MappedOrderDAOTest {
+    @TempDir
+    Path tempDir;
+
+    MappedOrderDAO mappedOrderDAO;
+    ObjectMapper objectMapper;
+    Order[] exampleOrders;
+
+    /**
+     * Write a JSON order file for the DAO to import before each test
+     *
+     * @throws IOException If the file cannot be written
+     */
+    @BeforeEach
+    public void setupMappedOrderDAO() throws IOException {
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        exampleOrders = new Order[2];
+        Product[] products = new Product[1];
+        products[0] = new Product(1, "Coffee filter", 4.99, 10, "Filters for coffee", null, false);
+        exampleOrders[0] = new Order(1, 4.99, products, false, null);
+        exampleOrders[1] = new Order(2, 0, new Product[0], true, null);
+        objectMapper.writeValue(tempDir.resolve("orders.json").toFile(), exampleOrders);
+
+        mappedOrderDAO = buildDAO();
+    }
+
+    /**
+     * Release the mapping after each test
+     *
+     * @throws IOException If the file cannot be closed
+     */
+    @AfterEach
+    public void closeMappedOrderDAO() throws IOException {
+        mappedOrderDAO.close();
+    }
+
+    /**
+     * Open a DAO over the record file in the temp directory
+     *
+     * @return New {@link MappedOrderDAO}
+     * @throws IOException If the file cannot be opened
+     */
+    private MappedOrderDAO buildDAO() throws IOException {
+        return new MappedOrderDAO(tempDir.resolve("orders.dat").toString(), tempDir.resolve("orders.json").toString(),
+                                  objectMapper, new PersistenceProperties());
+    }
+
+    @Test
+    public void testImport() throws IOException {
+        Order[] orders = mappedOrderDAO.getOrders();
+
+        assertEquals(exampleOrders.length, orders.length);
+        assertEquals(exampleOrders[0].getId(), orders[0].getId());
+        assertEquals(exampleOrders[0].getProducts()[0], orders[0].getProducts()[0]);
+        assertTrue(orders[1].isComplete());
+    }
+
+    @Test
+    public void testCreateOrder() throws IOException {
+        long before = Files.size(tempDir.resolve("orders.dat"));
+
+        // Invoke
+        Order result = mappedOrderDAO.createOrder(new Order(0, 10, new Product[0], false, null));
+
+        // Analyze
+        assertEquals(3, result.getId());
+        assertEquals(10, mappedOrderDAO.getOrder(3).getTotalPrice());
+        assertEquals(before, Files.size(tempDir.resolve("orders.dat")));
+    }
+
+    @Test
+    public void testDeleteOrder() throws IOException {
+        assertTrue(mappedOrderDAO.deleteOrder(1));
+        assertFalse(mappedOrderDAO.deleteOrder(100));
+
+        assertNull(mappedOrderDAO.getOrder(1));
+        assertEquals(1, mappedOrderDAO.getOrders().length);
+    }
+
+    @Test
+    public void testUpdateOrder() throws IOException {
+        Order order = mappedOrderDAO.getOrder(1);
+        order.setComplete(true);
+
+        assertNotNull(mappedOrderDAO.updateOrder(order));
+        assertNull(mappedOrderDAO.updateOrder(new Order(100, 0, new Product[0], false, null)));
+
+        assertTrue(mappedOrderDAO.getOrder(1).isComplete());
+        assertEquals(2, mappedOrderDAO.getOrders().length);
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        mappedOrderDAO.createOrder(new Order(0, 7, new Product[0], false, null));
+        Order order = mappedOrderDAO.getOrder(2);
+        order.setTotalPrice(5);
+        mappedOrderDAO.updateOrder(order);
+        mappedOrderDAO.deleteOrder(1);
+        mappedOrderDAO.close();
+
+        // Invoke
+        mappedOrderDAO = buildDAO();
+
+        // Analyze
+        Order[] orders = mappedOrderDAO.getOrders();
+        assertEquals(2, orders.length);
+        assertEquals(5, orders[0].getTotalPrice());
+        assertEquals(7, orders[1].getTotalPrice());
+        assertEquals(4, mappedOrderDAO.createOrder(new Order(0, 1, new Product[0], false, null)).getId());
+    }
+
+    @Test
+    public void testGrowth() throws IOException {
+        Product[] products = new Product[100];
+        for (int i = 0; i < products.length; i++) {
+            products[i] = new Product(i, "Coffee mug " + i, 9.99, 10, "Mug for coffee", null, false);
+        }
+
+        // Invoke
+        for (int i = 0; i < 200; i++) {
+            mappedOrderDAO.createOrder(new Order(0, i, products, false, null));
+        }
+
+        // Analyze
+        assertTrue(Files.size(tempDir.resolve("orders.dat")) > (1 << 20));
+        assertEquals(199, mappedOrderDAO.getOrder(202).getTotalPrice());
+    }
+
+    @Test
+    public void testNotARecordFile() throws IOException {
+        Files.write(tempDir.resolve("bad.dat"), new byte[128]);
+
+        assertThrows(IOException.class,
+                        () -> new MappedOrderDAO(tempDir.resolve("bad.dat").toString(), "missing.json",
+                                                 objectMapper, new PersistenceProperties()),
+                        "IOException not thrown");
+    }
+
+    @Test
+    public void testUncommittedHeaderRejected() throws IOException {
+        // A header with the magic and version but no end offset, as a crashed import left it
+        ByteBuffer header = ByteBuffer.allocate(128);
+        header.putInt(0, 0x4F524453);
+        header.putInt(4, 1);
+        Files.write(tempDir.resolve("crashed.dat"), header.array());
+
+        assertThrows(IOException.class,
+                        () -> new MappedOrderDAO(tempDir.resolve("crashed.dat").toString(), "missing.json",
+                                                 objectMapper, new PersistenceProperties()),
+                        "IOException not thrown");
+    }
+
+    @Test
+    public void testImportMovedIntoPlace() throws IOException {
+        // Analyze
+        assertTrue(Files.exists(tempDir.resolve("orders.dat")));
+        assertFalse(Files.exists(tempDir.resolve("orders.dat.tmp")));
+    }
+}
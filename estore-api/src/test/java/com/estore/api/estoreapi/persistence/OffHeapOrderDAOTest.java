@@ -0,0 +1,183 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Tests for the order store keeping its orders in direct buffers
+ */
+@Tag("Persistence-tier")
+public class OffHeapOrderDAOTest {
+    private static final LocalDateTime PLACED = LocalDateTime.of(2024, 3, 20, 18, 30);
+
+    @TempDir
+    Path tempDir;
+
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private PersistenceProperties properties = new PersistenceProperties();
+    private Path file;
+    private OffHeapOrderDAO orderDAO;
+
+    /**
+     * Write a data file with three orders and open the store on it with small arenas
+     *
+     * @throws IOException If the file cannot be written
+     */
+    @BeforeEach
+    public void setupOffHeapOrderDAO() throws IOException {
+        properties.setOffHeapArenaBytes(65536);
+        file = tempDir.resolve("orders.json");
+        Product[] products = new Product[] {new Product(1, "Coffee mug", 9.99, 10, "Mug for coffee", null, false)};
+        objectMapper.writeValue(file.toFile(), new Order[] {
+            new Order(1, 9.99, products, true, PLACED),
+            new Order(2, 0, new Product[0], false, PLACED.plusDays(1)),
+            new Order(5, 19.98, products, false, PLACED.plusMonths(1))
+        });
+        orderDAO = open();
+    }
+
+    @AfterEach
+    public void closeOffHeapOrderDAO() throws IOException {
+        orderDAO.close();
+    }
+
+    /**
+     * Open the store on the data file of the test
+     *
+     * @return Store with ids kept in memory
+     * @throws IOException If the file cannot be read
+     */
+    private OffHeapOrderDAO open() throws IOException {
+        return new OffHeapOrderDAO(file.toString(), objectMapper, properties, new IdAllocator(), null);
+    }
+
+    @Test
+    public void testOrdersDecodedFromArenas() throws IOException {
+        // Invoke
+        Order[] orders = orderDAO.getOrders();
+        Order order = orderDAO.getOrder(1);
+
+        // Analyze
+        assertEquals(3, orders.length);
+        assertEquals(5, orders[2].getId());
+        assertEquals("Coffee mug", order.getProducts()[0].getName());
+        assertEquals(PLACED, order.getDateTime());
+        assertNull(orderDAO.getOrder(3));
+        assertNull(orderDAO.getOrder(100000));
+        assertTrue(orderDAO.getLiveBytes() > 0);
+        assertEquals(properties.getOffHeapArenaBytes(), orderDAO.getOffHeapBytes());
+        assertEquals(2, orderDAO.getOrders(PLACED, PLACED.plusDays(2)).length);
+    }
+
+    @Test
+    public void testChangesWrittenToDataFile() throws IOException {
+        // Invoke
+        Order created = orderDAO.createOrder(new Order(0, 4.50, new Product[0], false, PLACED));
+        Order updated = orderDAO.updateOrder(new Order(2, 3.00, new Product[0], true, PLACED.plusDays(1)));
+        boolean deleted = orderDAO.deleteOrder(1);
+        Order missing = orderDAO.updateOrder(new Order(9, 0, new Product[0], false, PLACED));
+        orderDAO.close();
+        orderDAO = open();
+
+        // Analyze
+        assertEquals(6, created.getId());
+        assertEquals(2, updated.getId());
+        assertTrue(deleted);
+        assertFalse(orderDAO.deleteOrder(1));
+        assertNull(missing);
+        assertEquals(3, objectMapper.readValue(file.toFile(), Order[].class).length);
+        assertTrue(orderDAO.getOrder(2).isComplete());
+        assertEquals(4.50, orderDAO.getOrder(6).getTotalPrice());
+    }
+
+    @Test
+    public void testWriteOrdersCopiesBytes() throws IOException {
+        // Setup
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Invoke
+        orderDAO.writeOrders(out);
+
+        // Analyze
+        Order[] written = objectMapper.readValue(out.toByteArray(), Order[].class);
+        assertEquals(3, written.length);
+        assertArrayEquals(objectMapper.writeValueAsBytes(orderDAO.getOrders()),
+                          objectMapper.writeValueAsBytes(written));
+    }
+
+    @Test
+    public void testDeadSlotsCompacted() throws IOException {
+        // Setup, arenas hold only a couple of orders each
+        orderDAO.close();
+        properties.setOffHeapArenaBytes(512);
+        orderDAO = open();
+
+        // Invoke
+        for (int i = 0; i < 200; i++) {
+            orderDAO.updateOrder(new Order(2, i, new Product[0], false, PLACED));
+        }
+
+        // Analyze, the superseded copies of order 2 did not pile up
+        assertTrue(orderDAO.getOffHeapBytes() <= 4 * 512, "Arenas hold " + orderDAO.getOffHeapBytes() + " bytes");
+        assertEquals(199, orderDAO.getOrder(2).getTotalPrice());
+        assertEquals(3, orderDAO.getOrders().length);
+    }
+
+    @Test
+    public void testLoggedChangesReplayed() throws IOException {
+        // Setup
+        orderDAO.close();
+        properties.setLogEnabled(true);
+        properties.setCheckpointInterval(100);
+        orderDAO = open();
+        byte[] before = Files.readAllBytes(file);
+
+        // Invoke
+        Order created = orderDAO.createOrder(new Order(0, 1.25, new Product[0], false, PLACED));
+        orderDAO.deleteOrder(5);
+        byte[] after = Files.readAllBytes(file);
+        OffHeapOrderDAO reopened = open();
+
+        // Analyze
+        assertArrayEquals(before, after);
+        assertEquals(1.25, reopened.getOrder(created.getId()).getTotalPrice());
+        assertNull(reopened.getOrder(5));
+        assertEquals(3, reopened.getOrders().length);
+        reopened.close();
+    }
+
+    @Test
+    public void testStagedOrderWrittenOnFlush() throws IOException {
+        // Setup
+        Order order = new Order(orderDAO.reserveId(), 2.00, new Product[0], false, PLACED);
+
+        // Invoke
+        orderDAO.stage(order);
+        int beforeFlush = objectMapper.readValue(file.toFile(), Order[].class).length;
+        orderDAO.flush();
+
+        // Analyze
+        assertEquals(3, beforeFlush);
+        assertEquals(4, objectMapper.readValue(file.toFile(), Order[].class).length);
+        assertEquals(6, order.getId());
+    }
+}
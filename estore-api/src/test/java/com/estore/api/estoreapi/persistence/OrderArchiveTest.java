@@ -0,0 +1,193 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.model.Product;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the archive of old orders and its use by the order file dao
+ */
+@Tag("Persistence-tier")
+public class OrderArchiveTest {
+    @TempDir
+    Path tempDir;
+
+    ObjectMapper objectMapper;
+    PersistenceProperties properties;
+    Product[] products;
+
+    /**
+     * Set up the mapper and settings before each test
+     */
+    @BeforeEach
+    public void setupOrderArchive() {
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        properties = new PersistenceProperties();
+        properties.setArchiveAfterDays(30);
+        // Archive runs are started by the tests
+        properties.setArchiveIntervalMillis(Long.MAX_VALUE);
+        products = new Product[] {new Product(1, "Coffee filter", 4.99, 10, "Filters for coffee", null, false)};
+    }
+
+    private Order order(int id, boolean complete, LocalDateTime time) {
+        return new Order(id, 4.99, products, complete, time);
+    }
+
+    private OrderArchive openArchive() throws IOException {
+        return new OrderArchive(tempDir.resolve("archive"), objectMapper, 2);
+    }
+
+    /**
+     * Write orders to a data file and open the dao over it with the archive enabled
+     */
+    private OrderFileDAO openDAO(Order... orders) throws IOException {
+        Path dataFile = tempDir.resolve("orders.json");
+        if (orders.length > 0) {
+            objectMapper.writeValue(dataFile.toFile(), orders);
+        }
+        properties.setArchiveEnabled(true);
+        return new OrderFileDAO(dataFile.toString(), tempDir.resolve("archive").toString(), objectMapper,
+                                properties);
+    }
+
+    @Test
+    public void testMonthBuckets() throws IOException {
+        OrderArchive archive = openArchive();
+
+        // Invoke
+        archive.add(List.of(order(1, true, LocalDateTime.of(2021, 1, 5, 10, 0)),
+                            order(2, true, LocalDateTime.of(2021, 2, 5, 10, 0)),
+                            order(3, true, LocalDateTime.of(2021, 1, 20, 10, 0))));
+
+        // Analyze
+        assertEquals(2, archive.getSegmentCount());
+        assertEquals(3, archive.size());
+        assertEquals(3, archive.getMaxId());
+        assertEquals(LocalDateTime.of(2021, 1, 20, 10, 0), archive.get(3).getDateTime());
+        assertNull(archive.get(4));
+    }
+
+    @Test
+    public void testReopenReadsIds() throws IOException {
+        openArchive().add(List.of(order(7, true, LocalDateTime.of(2021, 3, 1, 9, 0))));
+
+        // Invoke
+        OrderArchive reopened = openArchive();
+
+        // Analyze
+        assertTrue(reopened.contains(7));
+        assertEquals(7, reopened.get(7).getId());
+    }
+
+    @Test
+    public void testRemove() throws IOException {
+        OrderArchive archive = openArchive();
+        archive.add(List.of(order(1, true, LocalDateTime.of(2021, 1, 5, 10, 0)),
+                            order(2, true, LocalDateTime.of(2021, 1, 6, 10, 0))));
+
+        // Invoke
+        assertTrue(archive.remove(1));
+        assertFalse(archive.remove(1));
+
+        // Analyze
+        OrderArchive reopened = openArchive();
+        assertFalse(reopened.contains(1));
+        assertEquals(2, reopened.get(2).getId());
+        assertEquals(1, reopened.getSegmentCount());
+        assertTrue(archive.remove(2));
+        assertEquals(0, archive.getSegmentCount());
+    }
+
+    @Test
+    public void testArchiveAgainReplacesCopy() throws IOException {
+        OrderArchive archive = openArchive();
+        archive.add(List.of(order(1, true, LocalDateTime.of(2021, 1, 5, 10, 0)),
+                            order(2, true, LocalDateTime.of(2021, 1, 6, 10, 0))));
+
+        // Invoke
+        Order newer = new Order(1, 1.00, products, true, LocalDateTime.of(2021, 1, 5, 10, 0));
+        archive.add(List.of(newer));
+
+        // Analyze
+        OrderArchive reopened = openArchive();
+        assertEquals(1.00, reopened.get(1).getTotalPrice());
+        assertEquals(2, reopened.size());
+        int[] count = {0};
+        reopened.forEach(order -> count[0]++);
+        assertEquals(2, count[0]);
+    }
+
+    @Test
+    public void testDAOArchivesOldCompletedOrders() throws IOException {
+        LocalDateTime old = LocalDateTime.now().minusDays(60);
+        OrderFileDAO dao = openDAO(order(1, true, old), order(2, false, old),
+                                   order(3, true, LocalDateTime.now()));
+
+        // Invoke
+        int moved = dao.archiveOldOrders();
+
+        // Analyze
+        assertEquals(1, moved);
+        assertEquals(3, dao.getOrders().length);
+        assertEquals(1, dao.getOrder(1).getId());
+        assertEquals(1, dao.getArchive().size());
+        dao.close();
+
+        Order[] hot = objectMapper.readValue(tempDir.resolve("orders.json").toFile(), Order[].class);
+        assertEquals(2, hot.length);
+        assertEquals(4, openDAO().createOrder(order(0, false, null)).getId());
+    }
+
+    @Test
+    public void testDAOUpdateAndDeleteArchived() throws IOException {
+        LocalDateTime old = LocalDateTime.now().minusDays(60);
+        OrderFileDAO dao = openDAO(order(1, true, old), order(2, true, old));
+        dao.archiveOldOrders();
+
+        // Invoke
+        Order updated = new Order(1, 2.50, products, true, old);
+        assertEquals(updated, dao.updateOrder(updated));
+        assertTrue(dao.deleteOrder(2));
+        assertFalse(dao.deleteOrder(2));
+
+        // Analyze
+        assertEquals(2.50, dao.getOrder(1).getTotalPrice());
+        assertNull(dao.getOrder(2));
+        assertEquals(0, dao.getArchive().size());
+        assertEquals(1, dao.getOrders().length);
+    }
+
+    @Test
+    public void testDAOSnapshotIncludesArchived() throws IOException {
+        LocalDateTime old = LocalDateTime.now().minusDays(60);
+        OrderFileDAO dao = openDAO(order(1, true, old), order(2, false, old),
+                                   order(3, true, LocalDateTime.now()));
+        dao.archiveOldOrders();
+
+        // Invoke
+        RecordSnapshot snapshot = dao.snapshot();
+        List<JsonNode> replica = dao.getReplicaSnapshot();
+
+        // Analyze
+        assertEquals(3, snapshot.size());
+        assertEquals(3, replica.size());
+        assertEquals(1, replica.get(0).get("id").asInt());
+        dao.close();
+    }
+}
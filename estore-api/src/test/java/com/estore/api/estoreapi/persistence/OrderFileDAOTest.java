@@ -14,6 +14,7 @@ import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.LocalDateTime;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.estore.api.estoreapi.model.Order;
@@ -73,7 +74,7 @@ public class OrderFileDAOTest {
      * Make sure that all orders are returned properly
      */
     @Test
-    public void testGetAllOrders() {
+    public void testGetAllOrders() throws IOException {
         Order[] orders = orderFileDAO.getOrders();
 
         // Check if they are equivalent
@@ -87,7 +88,7 @@ public class OrderFileDAOTest {
      * Test getting a specific order
      */
     @Test
-    public void testGetOrder() {
+    public void testGetOrder() throws IOException {
         Order retrieved0 = orderFileDAO.getOrder(exampleOrders[0].getId());
         Order retrieved1 = orderFileDAO.getOrder(exampleOrders[1].getId());
         Order retrieved2 = orderFileDAO.getOrder(100); // Should not exist
@@ -98,6 +99,23 @@ public class OrderFileDAOTest {
         assertNull(retrieved2);
     }
 
+    /**
+     * Make sure only the orders placed within a range are returned
+     */
+    @Test
+    public void testGetOrdersWithinRange() throws IOException {
+        // Setup, both example orders were placed just now
+        LocalDateTime now = LocalDateTime.now();
+
+        // Invoke
+        Order[] today = orderFileDAO.getOrders(now.minusDays(1), now.plusDays(1));
+        Order[] lastYear = orderFileDAO.getOrders(now.minusYears(1), now.minusYears(1).plusDays(1));
+
+        // Analyze
+        assertEquals(exampleOrders.length, today.length);
+        assertEquals(0, lastYear.length);
+    }
+
     /**
      * Try deleting an order that does exist and then one that does not exist
      */
@@ -121,7 +139,7 @@ public class OrderFileDAOTest {
      * Create an order and make sure it can be retrieved within the DAO
      */
     @Test
-    public void testCreateOrder() {
+    public void testCreateOrder() throws IOException {
         // Create the order
         Product[] newProducts = new Product[1];
         newProducts[0] = new Product(3, "Coffee maker", 10, 1, "Makes coffee", null, false);
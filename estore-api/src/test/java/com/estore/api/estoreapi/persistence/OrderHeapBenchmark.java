@@ -0,0 +1,149 @@
+package com.estore.api.estoreapi.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+/**
+ * Compares the heap held and the garbage collection pauses with a large order
+ * history in the {@link OrderFileDAO} and in the {@link OffHeapOrderDAO}
+ *
+ * A synthetic history of orders with three product snapshots each is written
+ * once and loaded by each store in turn. With the store loaded the heap in use
+ * after a collection is taken, then a full collection is timed and short-lived
+ * garbage is churned to time the young collections it causes. Not run with the
+ * tests, start it from the test classpath with a fixed heap:
+ * java -Xms3g -Xmx3g -XX:MaxDirectMemorySize=2g -cp target/classes:target/test-classes:...
+ * com.estore.api.estoreapi.persistence.OrderHeapBenchmark [orders]
+ */
+public class OrderHeapBenchmark {
+    /** Short-lived bytes allocated to provoke young collections */
+    private static final long CHURN_BYTES = 8L << 30;
+
+    /** Defeats dead code elimination of the churn */
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        Path directory = Files.createTempDirectory("order-heap");
+        Path file = directory.resolve("orders.json");
+        writeHistory(file.toFile(), objectMapper, orders);
+        System.out.printf("%d orders, data file %d MB%n", orders, Files.size(file) >> 20);
+        System.out.printf("%-10s %10s %10s %12s %12s %12s%n",
+                          "store", "load ms", "heap MB", "direct MB", "full gc ms", "young gc ms");
+
+        long baseline = usedHeap();
+        long start = System.nanoTime();
+        OrderFileDAO onHeap = new OrderFileDAO(file.toString(), null, objectMapper, new PersistenceProperties(),
+                                               new IdAllocator());
+        report("file", onHeap.getOrders().length, start, baseline, 0);
+        onHeap = null;
+
+        baseline = usedHeap();
+        start = System.nanoTime();
+        OffHeapOrderDAO offHeap = new OffHeapOrderDAO(file.toString(), objectMapper, new PersistenceProperties(),
+                                                      new IdAllocator(), null);
+        report("offheap", offHeap.getOrder(orders) != null ? orders : 0, start, baseline,
+               offHeap.getOffHeapBytes());
+        offHeap = null;
+
+        Files.delete(file);
+        Files.delete(directory);
+    }
+
+    /**
+     * Stream a synthetic history of orders into a data file
+     *
+     * @param file Data file to write
+     * @param objectMapper JSON serializer
+     * @param orders Number of orders
+     * @throws IOException If the file cannot be written
+     */
+    private static void writeHistory(File file, ObjectMapper objectMapper, int orders) throws IOException {
+        Random random = new Random(42);
+        LocalDateTime first = LocalDateTime.of(2020, 1, 1, 0, 0);
+        try (SequenceWriter writer = objectMapper.writer().writeValuesAsArray(file)) {
+            for (int id = 1; id <= orders; id++) {
+                Product[] products = new Product[3];
+                double total = 0;
+                for (int i = 0; i < products.length; i++) {
+                    int product = random.nextInt(500);
+                    double price = 1 + product % 50;
+                    products[i] = new Product(product, "Product " + product, price, 1,
+                                              "Description of product " + product, null, false);
+                    total += price;
+                }
+                writer.write(new Order(id, total, products, random.nextBoolean(),
+                                       first.plusMinutes(random.nextInt(2_000_000))));
+            }
+        }
+    }
+
+    /**
+     * Print the heap held by a loaded store and the collection pauses with it loaded
+     *
+     * @param name Name of the store
+     * @param loaded Orders the store holds, read so it stays reachable until measured
+     * @param start Time the load started
+     * @param baseline Heap in use before the load
+     * @param direct Bytes of direct memory held by the store
+     */
+    private static void report(String name, int loaded, long start, long baseline, long direct) {
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+        long heap = usedHeap() - baseline;
+
+        long fullStart = System.nanoTime();
+        System.gc();
+        long fullMillis = (System.nanoTime() - fullStart) / 1_000_000;
+
+        // Kept in a ring so the allocations escape and survive a little while, like request garbage
+        byte[][] ring = new byte[4096][];
+        long youngBefore = collectionMillis();
+        for (long allocated = 0; allocated < CHURN_BYTES; allocated += 1024) {
+            ring[(int) (allocated >> 10) & (ring.length - 1)] = new byte[1024];
+        }
+        long youngMillis = collectionMillis() - youngBefore;
+        sink += ring[0].length;
+
+        System.out.printf("%-10s %10d %10d %12d %12d %12d%n", name, loadMillis, heap >> 20, direct >> 20,
+                          fullMillis, youngMillis);
+        sink += loaded;
+    }
+
+    /**
+     * Get the time spent in every garbage collection so far
+     *
+     * @return Milliseconds of collections
+     */
+    private static long collectionMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Get the heap in use after collecting garbage
+     *
+     * @return Bytes in use
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,272 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Tests for the order store partitioned by month
+ */
+@Tag("Persistence-tier")
+public class PartitionedOrderDAOTest {
+    private static final LocalDateTime JANUARY = LocalDateTime.of(2024, 1, 10, 9, 0);
+    private static final LocalDateTime MARCH = LocalDateTime.of(2024, 3, 20, 18, 30);
+
+    @TempDir
+    Path tempDir;
+
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private PartitionedOrderDAO orderDAO;
+
+    /**
+     * Write an unpartitioned order file with two orders in January and one in March, then open the store
+     *
+     * @throws IOException If the files cannot be written
+     */
+    @BeforeEach
+    public void setupPartitionedOrderDAO() throws IOException {
+        objectMapper.writeValue(tempDir.resolve("orders.json").toFile(), new Order[] {
+            new Order(1, 10.99, new Product[0], true, JANUARY),
+            new Order(2, 4.50, new Product[0], false, JANUARY.plusDays(5)),
+            new Order(3, 7.25, new Product[0], false, MARCH)
+        });
+        orderDAO = open();
+    }
+
+    @AfterEach
+    public void closePartitionedOrderDAO() throws IOException {
+        orderDAO.close();
+    }
+
+    /**
+     * Open the store on the files of the test
+     *
+     * @return Store with ids kept in memory
+     * @throws IOException If the files cannot be read
+     */
+    private PartitionedOrderDAO open() throws IOException {
+        return open(new PersistenceProperties());
+    }
+
+    /**
+     * Open the store on the files of the test
+     *
+     * @param properties Persistence settings of the store
+     * @return Store with ids kept in memory
+     * @throws IOException If the files cannot be read
+     */
+    private PartitionedOrderDAO open(PersistenceProperties properties) throws IOException {
+        return new PartitionedOrderDAO(tempDir.resolve("by-month").toString(), tempDir.resolve("orders.json").toString(),
+                                       objectMapper, properties, new IdAllocator(), null);
+    }
+
+    /**
+     * Remove every partition so the next open splits the unpartitioned file again
+     *
+     * @throws IOException If a partition cannot be deleted
+     */
+    private void deletePartitions() throws IOException {
+        Files.delete(partitionFile(YearMonth.of(2024, 1)));
+        Files.delete(partitionFile(YearMonth.of(2024, 3)));
+    }
+
+    /**
+     * Get the file of a partition
+     *
+     * @param month Month of the partition
+     * @return Path of the partition file
+     */
+    private Path partitionFile(YearMonth month) {
+        return tempDir.resolve("by-month").resolve("orders-" + month + ".json");
+    }
+
+    @Test
+    public void testSplitIntoMonths() throws IOException {
+        // Analyze
+        assertEquals(List.of(YearMonth.of(2024, 1), YearMonth.of(2024, 3)), orderDAO.getMonths());
+        assertEquals(2, objectMapper.readValue(partitionFile(YearMonth.of(2024, 1)).toFile(), Order[].class).length);
+        assertEquals(1, objectMapper.readValue(partitionFile(YearMonth.of(2024, 3)).toFile(), Order[].class).length);
+        Order[] orders = orderDAO.getOrders();
+        assertEquals(3, orders.length);
+        assertEquals(1, orders[0].getId());
+        assertEquals(3, orders[2].getId());
+        assertEquals(MARCH, orderDAO.getOrder(3).getDateTime());
+    }
+
+    @Test
+    public void testGetOrdersWithinRange() {
+        // Invoke
+        Order[] march = orderDAO.getOrders(LocalDateTime.of(2024, 2, 1, 0, 0), LocalDateTime.of(2024, 4, 1, 0, 0));
+        Order[] firstWeek = orderDAO.getOrders(null, JANUARY.plusDays(1));
+        Order[] sinceFebruary = orderDAO.getOrders(LocalDateTime.of(2024, 2, 1, 0, 0), null);
+        Order[] endingOnMarch = orderDAO.getOrders(JANUARY, LocalDateTime.of(2024, 3, 1, 0, 0));
+
+        // Analyze
+        assertEquals(1, march.length);
+        assertEquals(3, march[0].getId());
+        assertEquals(1, firstWeek.length);
+        assertEquals(1, firstWeek[0].getId());
+        assertEquals(1, sinceFebruary.length);
+        assertEquals(2, endingOnMarch.length);
+    }
+
+    @Test
+    public void testCreateOnlyWritesItsMonth() throws IOException {
+        // Setup
+        byte[] january = Files.readAllBytes(partitionFile(YearMonth.of(2024, 1)));
+        byte[] march = Files.readAllBytes(partitionFile(YearMonth.of(2024, 3)));
+
+        // Invoke
+        Order created = orderDAO.createOrder(new Order(0, 2.00, new Product[0], false, null));
+        orderDAO.close();
+        orderDAO = open();
+
+        // Analyze
+        assertEquals(4, created.getId());
+        assertArrayEquals(january, Files.readAllBytes(partitionFile(YearMonth.of(2024, 1))));
+        assertArrayEquals(march, Files.readAllBytes(partitionFile(YearMonth.of(2024, 3))));
+        assertTrue(Files.exists(partitionFile(YearMonth.from(created.getDateTime()))));
+        assertEquals(4, orderDAO.getOrders().length);
+        assertEquals(5, orderDAO.createOrder(new Order(0, 1.00, new Product[0], false, null)).getId());
+    }
+
+    @Test
+    public void testUpdateMovesToItsMonth() throws IOException {
+        // Invoke
+        Order moved = orderDAO.updateOrder(new Order(2, 4.50, new Product[0], true, MARCH.plusDays(1)));
+        orderDAO.close();
+        orderDAO = open();
+
+        // Analyze
+        assertEquals(2, moved.getId());
+        assertEquals(1, objectMapper.readValue(partitionFile(YearMonth.of(2024, 1)).toFile(), Order[].class).length);
+        assertEquals(2, objectMapper.readValue(partitionFile(YearMonth.of(2024, 3)).toFile(), Order[].class).length);
+        assertTrue(orderDAO.getOrder(2).isComplete());
+        assertNull(orderDAO.updateOrder(new Order(9, 0, new Product[0], false, MARCH)));
+    }
+
+    @Test
+    public void testDeleteOrder() throws IOException {
+        // Invoke
+        boolean deleted = orderDAO.deleteOrder(1);
+        boolean missing = orderDAO.deleteOrder(1);
+        orderDAO.close();
+        orderDAO = open();
+
+        // Analyze
+        assertTrue(deleted);
+        assertFalse(missing);
+        assertNull(orderDAO.getOrder(1));
+        assertEquals(2, orderDAO.getOrders().length);
+    }
+
+    @Test
+    public void testStagedOrderWrittenOnFlush() throws IOException {
+        // Setup
+        Order order = new Order(orderDAO.reserveId(), 3.00, new Product[0], false, MARCH.plusDays(2));
+
+        // Invoke
+        orderDAO.stage(order);
+        int beforeFlush = objectMapper.readValue(partitionFile(YearMonth.of(2024, 3)).toFile(), Order[].class).length;
+        orderDAO.flush();
+
+        // Analyze
+        assertEquals(1, beforeFlush);
+        assertEquals(2, objectMapper.readValue(partitionFile(YearMonth.of(2024, 3)).toFile(), Order[].class).length);
+        assertEquals(order, orderDAO.getOrder(4));
+    }
+
+    @Test
+    public void testUnfinishedSplitStartedOver() throws IOException {
+        // Setup
+        orderDAO.close();
+        deletePartitions();
+        Path split = Files.createDirectories(tempDir.resolve("by-month").resolve("split.tmp"));
+        Files.write(split.resolve("orders-2024-01.json"), "[{\"id\":1,".getBytes());
+
+        // Invoke
+        orderDAO = open();
+
+        // Analyze
+        assertEquals(List.of(YearMonth.of(2024, 1), YearMonth.of(2024, 3)), orderDAO.getMonths());
+        assertEquals(3, orderDAO.getOrders().length);
+        assertFalse(Files.exists(split));
+    }
+
+    @Test
+    public void testFinishedSplitMovesRemainingPartitions() throws IOException {
+        // Setup
+        orderDAO.close();
+        Path split = Files.createDirectories(tempDir.resolve("by-month").resolve("split.tmp"));
+        Files.move(partitionFile(YearMonth.of(2024, 3)), split.resolve("orders-2024-03.json"));
+        Files.createFile(split.resolve("complete"));
+        Files.delete(tempDir.resolve("orders.json"));
+
+        // Invoke
+        orderDAO = open();
+
+        // Analyze
+        assertEquals(List.of(YearMonth.of(2024, 1), YearMonth.of(2024, 3)), orderDAO.getMonths());
+        assertEquals(MARCH, orderDAO.getOrder(3).getDateTime());
+        assertFalse(Files.exists(split));
+    }
+
+    @Test
+    public void testPartitionsWrittenInConfiguredFormat() throws IOException {
+        // Setup
+        orderDAO.close();
+        deletePartitions();
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setFormat("smile");
+
+        // Invoke
+        orderDAO = open(properties);
+        Order created = orderDAO.createOrder(new Order(0, 2.00, new Product[0], false, null));
+
+        // Analyze
+        assertEquals(DataFormat.SMILE, DataFormat.detect(partitionFile(YearMonth.of(2024, 1)).toFile()));
+        assertEquals(DataFormat.SMILE, DataFormat.detect(partitionFile(YearMonth.from(created.getDateTime())).toFile()));
+        assertEquals(3, orderDAO.getOrders(JANUARY.minusDays(1), MARCH.plusDays(1)).length);
+    }
+
+    @Test
+    public void testPartitionsShareOneFlusher() throws IOException {
+        // Setup
+        orderDAO.close();
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setWriteBehind(true);
+
+        // Invoke
+        orderDAO = open(properties);
+        orderDAO.updateOrder(new Order(1, 10.99, new Product[0], false, JANUARY));
+        orderDAO.updateOrder(new Order(3, 7.25, new Product[0], true, MARCH));
+        long flushers = Thread.getAllStackTraces().keySet().stream()
+                              .filter(thread -> thread.getName().startsWith("write-behind " + tempDir)).count();
+        orderDAO.close();
+        orderDAO = open();
+
+        // Analyze
+        assertEquals(1, flushers);
+        assertFalse(orderDAO.getOrder(1).isComplete());
+        assertTrue(orderDAO.getOrder(3).isComplete());
+    }
+}
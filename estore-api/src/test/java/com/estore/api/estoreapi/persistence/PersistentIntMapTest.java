@@ -0,0 +1,108 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the persistent int map
+ */
+@Tag("Persistence-tier")
+public class PersistentIntMapTest {
+    private static <V> List<V> values(PersistentIntMap<V> map) {
+        List<V> values = new ArrayList<>();
+        map.forEach(values::add);
+        return values;
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        PersistentIntMap<String> map = PersistentIntMap.empty();
+
+        // Invoke
+        map = map.put(2, "two").put(1, "one").put(3, "three").put(2, "TWO");
+        PersistentIntMap<String> removed = map.remove(1);
+
+        // Analyze
+        assertEquals(3, map.size());
+        assertEquals("TWO", map.get(2));
+        assertEquals(List.of("one", "TWO", "three"), values(map));
+        assertEquals(2, removed.size());
+        assertNull(removed.get(1));
+        assertSame(removed, removed.remove(1));
+    }
+
+    @Test
+    public void testOldVersionsAreUnchanged() {
+        PersistentIntMap<String> before = PersistentIntMap.<String>empty().put(1, "one");
+
+        // Invoke
+        PersistentIntMap<String> after = before.put(2, "two").remove(1);
+
+        // Analyze
+        assertEquals(List.of("one"), values(before));
+        assertEquals(List.of("two"), values(after));
+        assertTrue(before.containsKey(1));
+        assertFalse(after.containsKey(1));
+    }
+
+    @Test
+    public void testMatchesTreeMap() {
+        Random random = new Random(42);
+        Map<Integer, Integer> expected = new TreeMap<>();
+        PersistentIntMap<Integer> map = PersistentIntMap.empty();
+
+        // Invoke
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            }
+            else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+        }
+
+        // Analyze
+        assertEquals(expected.size(), map.size());
+        assertEquals(new ArrayList<>(expected.values()), values(map));
+        assertEquals(values(map), values(PersistentIntMap.of(expected)));
+    }
+
+    @Test
+    public void testSparseAndLargeIds() {
+        PersistentIntMap<Integer> map = PersistentIntMap.empty();
+
+        // Invoke, the trie grows levels above the root as the ids get larger
+        for (int i = 0; i < 200000; i++) {
+            map = map.put(i, i);
+        }
+        map = map.put(Integer.MAX_VALUE, -1).put(1 << 20, -2);
+
+        // Analyze
+        assertEquals(200002, map.size());
+        assertEquals(123456, map.get(123456));
+        assertEquals(-1, map.get(Integer.MAX_VALUE));
+        assertNull(map.get(-1));
+        assertEquals(Integer.valueOf(-1), values(map).get(values(map).size() - 1));
+        PersistentIntMap<Integer> removed = map.remove(Integer.MAX_VALUE).remove(1 << 20).remove(0);
+        assertEquals(199999, removed.size());
+        assertEquals(1, removed.get(1));
+        assertNull(removed.get(Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> PersistentIntMap.empty().put(-1, "negative"));
+    }
+}
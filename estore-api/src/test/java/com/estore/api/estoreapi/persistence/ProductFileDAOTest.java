@@ -12,6 +12,7 @@ import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.estore.api.estoreapi.model.Product;
@@ -19,6 +20,7 @@ import com.estore.api.estoreapi.model.Product;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 /**
  * Test the Product File DAO class
@@ -194,4 +196,30 @@ public class ProductFileDAOTest {
                         () -> new ProductFileDAO("doesnt_matter.txt",mockObjectMapper),
                         "IOException not thrown");
     }
+
+    @Test
+    public void testExternalEditReloaded(@TempDir Path tempDir) throws Exception {
+        // Setup
+        ObjectMapper objectMapper = new ObjectMapper();
+        File file = tempDir.resolve("products.json").toFile();
+        objectMapper.writeValue(file, testProducts);
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setHotReload(true);
+        properties.setHotReloadSettleMillis(50);
+        ProductFileDAO dao = new ProductFileDAO(file.toString(), objectMapper, properties, new IdAllocator());
+
+        // Invoke, another program restocks the creamer and drops the beans
+        Product restocked = new Product(101, "coffee creamer", 2.00, 20, "enhance flavor", null, false);
+        objectMapper.writeValue(file, new Product[] {testProducts[0], restocked});
+
+        // Analyze
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (dao.getProduct(100) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertNull(dao.getProduct(100));
+        assertEquals(20, dao.getProduct(101).getQuantity());
+        assertEquals(2, dao.getProducts().length);
+        dao.close();
+    }
 }
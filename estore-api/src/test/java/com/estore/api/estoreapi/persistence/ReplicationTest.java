@@ -0,0 +1,252 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.estore.api.estoreapi.model.Cart;
+import com.estore.api.estoreapi.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Tests for log-shipping replication from a leader to followers over a local socket
+ */
+@Tag("Persistence-tier")
+public class ReplicationTest {
+    private ObjectMapper objectMapper = new ObjectMapper();
+    private ProductFileDAO leaderProducts;
+    private CartFileDAO leaderCarts;
+    private ReplicationLeader leader;
+    private Path tempDir;
+
+    /**
+     * Build a leader over a product and a cart store before each test
+     *
+     * @param tempDir Directory holding the data files
+     * @throws IOException If the leader cannot be started
+     */
+    @BeforeEach
+    public void setupLeader(@TempDir Path tempDir) throws IOException {
+        this.tempDir = tempDir;
+        File products = tempDir.resolve("leader-products.json").toFile();
+        objectMapper.writeValue(products, new Product[] {
+            new Product(1, "coffee beans", 9.99, 5, "dark roast", null, false)
+        });
+        leaderProducts = new ProductFileDAO(products.toString(), objectMapper, new PersistenceProperties(),
+                                            new IdAllocator());
+        PersistenceProperties cartProperties = new PersistenceProperties();
+        cartProperties.setCartShards(3);
+        leaderCarts = new CartFileDAO(tempDir.resolve("leader-carts.json").toString(), objectMapper, cartProperties,
+                                      new IdAllocator());
+
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setReplicationHost("localhost");
+        properties.setReplicationPort(0);
+        leader = new ReplicationLeader(List.of(leaderProducts, leaderCarts), objectMapper, properties);
+    }
+
+    @AfterEach
+    public void closeLeader() throws IOException {
+        leader.close();
+        leaderProducts.close();
+        leaderCarts.close();
+    }
+
+    /**
+     * Get the settings of a follower of the leader
+     *
+     * @param port Port of the leader
+     * @return Settings reconnecting quickly
+     */
+    private static PersistenceProperties followerProperties(int port) {
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setReplicationRole("follower");
+        properties.setReplicationHost("localhost");
+        properties.setReplicationPort(port);
+        properties.setReplicationRetryMillis(20);
+        return properties;
+    }
+
+    /**
+     * Wait for a condition
+     *
+     * @param condition Condition to wait for
+     * @return True if it held before the timeout
+     * @throws InterruptedException If interrupted while waiting
+     */
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    @Test
+    public void testFollowerReceivesSnapshotAndChanges() throws Exception {
+        // Setup, the follower holds the carts in a single shard and never writes its files
+        PersistenceProperties storeProperties = followerProperties(leader.getPort());
+        storeProperties.setHotReload(true);
+        storeProperties.setWarmStart(true);
+        Path productsFile = tempDir.resolve("follower-products.json");
+        Files.writeString(productsFile, "[]");
+        ProductFileDAO products = new ProductFileDAO(productsFile.toString(), objectMapper,
+                                                     storeProperties, new IdAllocator());
+        Path cartsFile = tempDir.resolve("follower-carts.json");
+        Files.writeString(cartsFile, "[]");
+        CartFileDAO carts = new CartFileDAO(cartsFile.toString(), objectMapper,
+                                            storeProperties, new IdAllocator());
+        Cart before = leaderCarts.createCart(new Cart(0));
+        leaderCarts.addItem(before.getId(), 1, 2);
+
+        // Invoke
+        ReplicationFollower follower = new ReplicationFollower(List.of(products, carts), objectMapper,
+                                                               followerProperties(leader.getPort()));
+        assertTrue(await(() -> follower.getReplicationStatus().getAppliedSequence() >= 0));
+        Product added = leaderProducts.createProduct(new Product(0, "creamer", 1.50, 3, "sweet", null, false));
+        leaderProducts.updateProduct(new Product(1, "coffee beans", 8.99, 4, "dark roast", null, true));
+        Cart after = leaderCarts.createCart(new Cart(0));
+        leaderCarts.addItem(after.getId(), 2, 1);
+        leaderCarts.deleteCart(before.getId());
+
+        // Analyze
+        assertTrue(await(() -> follower.getReplicationStatus().getAppliedSequence()
+                               == leader.getReplicationStatus().getAppliedSequence()));
+        assertEquals("creamer", products.getProduct(added.getId()).getName());
+        assertEquals(8.99, products.getProduct(1).getPrice());
+        assertEquals(2, products.getProducts().length);
+        assertNull(carts.getCart(before.getId()));
+        assertEquals(1, carts.getCart(after.getId()).getInventory().getQuantity(2));
+        assertEquals("[]", Files.readString(productsFile));
+
+        ReplicationStatus status = follower.getReplicationStatus();
+        assertEquals("follower", status.getRole());
+        assertTrue(status.isConnected());
+        assertEquals(0, status.getLagMillis());
+        assertEquals(1, status.getSnapshots());
+        assertEquals(1, leader.getReplicationStatus().getFollowers());
+        follower.close();
+        products.flush();
+        products.close();
+        carts.close();
+        assertEquals("[]", Files.readString(productsFile));
+        assertEquals("[]", Files.readString(cartsFile));
+        assertFalse(Files.exists(tempDir.resolve("follower-products.json.image")));
+    }
+
+    @Test
+    public void testReconnectCatchesUpFromBacklog() throws Exception {
+        // Setup
+        Path productsFile = tempDir.resolve("follower-products.json");
+        Files.writeString(productsFile, "[]");
+        ProductFileDAO products = new ProductFileDAO(productsFile.toString(), objectMapper,
+                                                     new PersistenceProperties(), new IdAllocator());
+        ReplicationFollower follower = new ReplicationFollower(List.of(products), objectMapper,
+                                                               followerProperties(leader.getPort()));
+        assertTrue(await(() -> follower.getReplicationStatus().getAppliedSequence() >= 0));
+        assertEquals("coffee beans", products.getProduct(1).getName());
+
+        // Invoke, changes made while the follower is away are sent when it reconnects
+        leader.disconnectFollowers();
+        leaderProducts.deleteProduct(1);
+        Product added = leaderProducts.createProduct(new Product(0, "mug", 12.00, 7, "ceramic", null, false));
+
+        // Analyze
+        assertTrue(await(() -> products.getProduct(added.getId()) != null && products.getProduct(1) == null));
+        assertEquals(1, follower.getReplicationStatus().getSnapshots());
+        assertEquals(1, leader.getReplicationStatus().getSnapshots());
+        follower.close();
+        products.close();
+    }
+
+    @Test
+    public void testLagGrowsWhileLeaderIsGone() throws Exception {
+        // Setup
+        Path productsFile = tempDir.resolve("follower-products.json");
+        Files.writeString(productsFile, "[]");
+        ProductFileDAO products = new ProductFileDAO(productsFile.toString(), objectMapper,
+                                                     new PersistenceProperties(), new IdAllocator());
+        ReplicationFollower follower = new ReplicationFollower(List.of(products), objectMapper,
+                                                               followerProperties(leader.getPort()));
+        assertTrue(await(() -> follower.getReplicationStatus().getAppliedSequence() >= 0));
+
+        // Invoke
+        leader.close();
+        assertTrue(await(() -> !follower.getReplicationStatus().isConnected()));
+        Thread.sleep(50);
+
+        // Analyze, the follower keeps serving what it has
+        assertTrue(follower.getReplicationStatus().getLagMillis() >= 50);
+        assertEquals("coffee beans", products.getProduct(1).getName());
+        follower.close();
+        products.close();
+    }
+
+    @Test
+    public void testFollowerInAnotherJvm() throws Exception {
+        // Setup
+        Path productsFile = tempDir.resolve("follower-products.json");
+        Files.writeString(productsFile, "[]");
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                                             ReplicationTest.class.getName(), Integer.toString(leader.getPort()),
+                                             productsFile.toString(), "espresso cups")
+            .redirectErrorStream(true)
+            .start();
+
+        // Invoke
+        leaderProducts.createProduct(new Product(0, "espresso cups", 15.00, 2, "set of two", null, false));
+
+        // Analyze
+        boolean exited = process.waitFor(60, TimeUnit.SECONDS);
+        if (!exited) {
+            process.destroyForcibly();
+        }
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(exited, output);
+        assertEquals(0, process.exitValue(), output);
+        assertTrue(output.contains("replicated espresso cups"), output);
+    }
+
+    /**
+     * Run a follower instance in its own JVM until a product reaches it
+     *
+     * @param args Port of the leader, data file of the follower and name of the product to wait for
+     * @throws Exception If the follower cannot be started
+     */
+    public static void main(String[] args) throws Exception {
+        Logger.getLogger("com.estore.api.estoreapi").setLevel(Level.WARNING);
+        ObjectMapper objectMapper = new ObjectMapper();
+        ProductFileDAO products = new ProductFileDAO(args[1], objectMapper, new PersistenceProperties(),
+                                                     new IdAllocator());
+        ReplicationFollower follower = new ReplicationFollower(List.of(products), objectMapper,
+                                                               followerProperties(Integer.parseInt(args[0])));
+        boolean found = await(() -> products.findProducts(args[2]).length > 0);
+        System.out.println((found ? "replicated " : "missing ") + args[2] + " at change "
+                           + follower.getReplicationStatus().getAppliedSequence());
+        follower.close();
+        System.exit(found ? 0 : 1);
+    }
+}
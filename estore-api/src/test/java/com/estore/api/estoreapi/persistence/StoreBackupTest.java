@@ -0,0 +1,176 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.estore.api.estoreapi.model.Cart;
+import com.estore.api.estoreapi.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Tests for the online backup of the stores
+ */
+@Tag("Persistence-tier")
+public class StoreBackupTest {
+    private ObjectMapper objectMapper = new ObjectMapper();
+    private ProductFileDAO products;
+    private CartFileDAO carts;
+    private PersistenceProperties properties;
+    private Path tempDir;
+
+    /**
+     * Build a product and a cart store before each test
+     *
+     * @param tempDir Directory holding the data files and backups
+     * @throws IOException If the stores cannot be loaded
+     */
+    @BeforeEach
+    public void setupStores(@TempDir Path tempDir) throws IOException {
+        this.tempDir = tempDir;
+        File productsFile = tempDir.resolve("products.json").toFile();
+        objectMapper.writeValue(productsFile, new Product[] {
+            new Product(1, "coffee beans", 9.99, 5, "dark roast", null, false),
+            new Product(2, "creamer", 1.50, 3, "sweet", null, false)
+        });
+        properties = new PersistenceProperties();
+        properties.setCartShards(2);
+        properties.setBackupDir(tempDir.resolve("backups").toString());
+        products = new ProductFileDAO(productsFile.toString(), objectMapper, properties, new IdAllocator());
+        carts = new CartFileDAO(tempDir.resolve("carts.json").toString(), objectMapper, properties,
+                                new IdAllocator());
+        Cart cart = carts.createCart(new Cart(0));
+        carts.addItem(cart.getId(), 1, 2);
+        carts.createCart(new Cart(0));
+    }
+
+    @AfterEach
+    public void closeStores() throws IOException {
+        products.close();
+        carts.close();
+    }
+
+    @Test
+    public void testBackupWritesEveryStoreWithManifest() throws IOException {
+        // Setup
+        StoreBackup backup = new StoreBackup(List.of(products, carts), null, objectMapper, properties);
+
+        // Invoke
+        BackupManifest manifest = backup.backup("nightly");
+
+        // Analyze
+        Path target = tempDir.resolve("backups").resolve("nightly");
+        assertEquals(1, manifest.getGeneration());
+        assertEquals(2, manifest.getStores().size());
+        assertEquals("products", manifest.getStores().get(0).getName());
+        assertEquals(2, manifest.getStores().get(0).getRecords());
+        assertEquals(2, manifest.getStores().get(1).getRecords());
+        assertEquals(Files.size(target.resolve("carts.json")), manifest.getStores().get(1).getBytes());
+        assertEquals(64, manifest.getStores().get(1).getSha256().length());
+
+        Product[] backedUp = objectMapper.readValue(target.resolve("products.json").toFile(), Product[].class);
+        assertEquals("creamer", backedUp[1].getName());
+        Cart[] cartsBackedUp = objectMapper.readValue(target.resolve("carts.json").toFile(), Cart[].class);
+        assertEquals(2, cartsBackedUp[0].getInventory().getQuantity(1));
+        assertEquals(2, StoreBackup.verify(target, objectMapper).getStores().size());
+        assertTrue(manifest.getSkipped().isEmpty());
+        assertFalse(Files.exists(target.resolve("manifest.json.part")));
+    }
+
+    @Test
+    public void testBackupIsPointInTime() throws IOException {
+        // Setup, a writer changes a product after the records were captured and while they are written
+        Snapshottable writer = new Snapshottable() {
+            @Override
+            public String getSnapshotName() {
+                return "writer";
+            }
+
+            @Override
+            public RecordSnapshot snapshot() {
+                try {
+                    products.updateProduct(new Product(1, "coffee beans", 12.99, 5, "dark roast", null, false));
+                    products.deleteProduct(2);
+                }
+                catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                return new RecordSnapshot(new Object[0]);
+            }
+        };
+        StoreBackup backup = new StoreBackup(List.of(products, writer), null, objectMapper, properties);
+
+        // Invoke
+        backup.backup(tempDir.resolve("now"));
+
+        // Analyze
+        Product[] backedUp = objectMapper.readValue(tempDir.resolve("now").resolve("products.json").toFile(),
+                                                    Product[].class);
+        assertEquals(2, backedUp.length);
+        assertEquals(9.99, backedUp[0].getPrice());
+        assertEquals(12.99, products.getProduct(1).getPrice());
+        assertEquals(1, products.getProducts().length);
+    }
+
+    @Test
+    public void testVerifyDetectsDamage() throws IOException {
+        // Setup
+        StoreBackup backup = new StoreBackup(List.of(products, carts), null, objectMapper, properties);
+        Path target = tempDir.resolve("damaged");
+        backup.backup(target);
+
+        // Invoke
+        Files.writeString(target.resolve("products.json"), "[]");
+
+        // Analyze
+        IOException error = assertThrows(IOException.class, () -> StoreBackup.verify(target, objectMapper));
+        assertTrue(error.getMessage().contains("products.json"));
+    }
+
+    @Test
+    public void testBackupNamesChecked() throws IOException {
+        // Setup
+        StoreBackup backup = new StoreBackup(List.of(products), null, objectMapper, properties);
+        backup.backup("first");
+
+        // Invoke and Analyze
+        assertThrows(FileAlreadyExistsException.class, () -> backup.backup("first"));
+        assertThrows(IllegalArgumentException.class, () -> backup.backup("../outside"));
+        assertThrows(IllegalArgumentException.class, () -> backup.backup(""));
+        assertEquals(2, backup.backup("second").getGeneration());
+    }
+
+    @Test
+    public void testBackupListsSkippedStores() throws IOException {
+        // Setup, the mapped order store cannot be captured
+        MappedOrderDAO orders = new MappedOrderDAO(tempDir.resolve("orders.dat").toString(),
+                                                   tempDir.resolve("orders.json").toString(), objectMapper,
+                                                   properties);
+        StoreBackup backup = new StoreBackup(List.of(products, carts), List.of(products, carts, orders), null,
+                                             objectMapper, properties);
+
+        // Invoke
+        BackupManifest manifest = backup.backup("partial");
+
+        // Analyze
+        assertEquals(2, manifest.getStores().size());
+        assertEquals(List.of("MappedOrderDAO"), manifest.getSkipped());
+        Path target = tempDir.resolve("backups").resolve("partial");
+        assertEquals(List.of("MappedOrderDAO"), StoreBackup.verify(target, objectMapper).getSkipped());
+        orders.close();
+    }
+}
@@ -0,0 +1,162 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.estore.api.estoreapi.model.Order;
+import com.estore.api.estoreapi.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Tests for loading the stores concurrently at startup
+ */
+@Tag("Persistence-tier")
+public class StoreLoaderTest {
+    private CountDownLatch release = new CountDownLatch(1);
+    private StoreLoader loader;
+
+    @AfterEach
+    public void closeLoader() {
+        release.countDown();
+        if (loader != null) {
+            loader.close();
+        }
+    }
+
+    /**
+     * Build a loader on a number of threads
+     *
+     * @param threads Threads loading the stores
+     * @return The loader
+     */
+    private StoreLoader loader(int threads) {
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setLoadThreads(threads);
+        loader = new StoreLoader(properties);
+        return loader;
+    }
+
+    /**
+     * Wait until the test releases the load
+     */
+    private void blockUntilReleased() {
+        try {
+            release.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testStoresLoadConcurrently() {
+        // Setup, each load only finishes once the other one runs
+        StoreLoader loader = loader(2);
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        StoreLoader.Task task = () -> {
+            try {
+                barrier.await(10, TimeUnit.SECONDS);
+            }
+            catch (Exception e) {
+                throw new IOException("Loads did not overlap", e);
+            }
+        };
+        loader.submit("products", false, task);
+        loader.submit("customers", false, task);
+
+        // Invoke
+        loader.afterSingletonsInstantiated();
+
+        // Analyze
+        assertTrue(loader.isLoaded("products"));
+        assertTrue(loader.isLoaded("customers"));
+        assertTrue(loader.isAllLoaded());
+    }
+
+    @Test
+    public void testBackgroundLoadNotAwaited() throws IOException {
+        // Setup
+        StoreLoader loader = loader(2);
+        loader.submit("products", false, () -> {});
+        StoreLoader.Load orders = loader.submit("orders", true, this::blockUntilReleased);
+
+        // Invoke
+        loader.afterSingletonsInstantiated();
+
+        // Analyze
+        assertTrue(loader.isLoaded("products"));
+        assertFalse(loader.isLoaded("orders"));
+        assertFalse(loader.isAllLoaded());
+        release.countDown();
+        orders.await();
+        assertTrue(loader.isAllLoaded());
+    }
+
+    @Test
+    public void testFailedLoadStopsStartup() {
+        // Setup
+        StoreLoader loader = loader(1);
+        loader.submit("reviews", false, () -> {
+            throw new FileNotFoundException("reviews.json");
+        });
+
+        // Invoke
+        UncheckedIOException error = assertThrows(UncheckedIOException.class, loader::afterSingletonsInstantiated);
+
+        // Analyze
+        assertTrue(error.getCause().getMessage().contains("reviews"));
+        assertTrue(error.getCause().getCause() instanceof FileNotFoundException);
+    }
+
+    @Test
+    public void testChangesWaitForBackgroundLoad(@TempDir Path tempDir) throws Exception {
+        // Setup, the only loader thread is busy so the orders stay unloaded
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        Path file = tempDir.resolve("orders.json");
+        objectMapper.writeValue(file.toFile(), new Order[] {
+            new Order(7, 9.99, new Product[0], false, null)
+        });
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setBackgroundOrderLoad(true);
+        StoreLoader loader = loader(1);
+        loader.submit("first", false, this::blockUntilReleased);
+        OrderFileDAO orders = new OrderFileDAO(file.toString(), null, objectMapper, properties, new IdAllocator(),
+                                               loader);
+
+        // Invoke
+        CompletableFuture<Order> created = CompletableFuture.supplyAsync(() -> {
+            try {
+                return orders.createOrder(new Order(0, 1.50, new Product[0], false, null));
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(created.isDone());
+        release.countDown();
+
+        // Analyze, the new order neither lost the loaded one nor reused its id
+        Order order = created.get(10, TimeUnit.SECONDS);
+        assertEquals(8, order.getId());
+        assertEquals(2, orders.getOrders().length);
+        assertEquals(2, objectMapper.readValue(file.toFile(), Order[].class).length);
+        orders.close();
+    }
+}
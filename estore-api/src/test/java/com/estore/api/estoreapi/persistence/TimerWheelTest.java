@@ -0,0 +1,100 @@
+package com.estore.api.estoreapi.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the hashed timer wheel
+ */
+@Tag("Persistence-tier")
+public class TimerWheelTest {
+    @Test
+    public void testKeysFireAtTheirDeadline() {
+        // Setup
+        TimerWheel wheel = new TimerWheel(8, 10, 1000);
+        wheel.schedule(1, 1025);
+        wheel.schedule(2, 1050);
+
+        // Invoke
+        List<Integer> early = wheel.advance(1020);
+        List<Integer> first = wheel.advance(1030);
+        List<Integer> second = wheel.advance(1050);
+
+        // Analyze
+        assertTrue(early.isEmpty());
+        assertEquals(List.of(1), first);
+        assertEquals(List.of(2), second);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testDeadlinesBeyondOneTurn() {
+        // Setup, one turn of the wheel is 40 ms
+        TimerWheel wheel = new TimerWheel(4, 10, 0);
+        wheel.schedule(1, 15);
+        wheel.schedule(2, 95);
+
+        // Invoke
+        List<Integer> near = wheel.advance(60);
+        List<Integer> far = wheel.advance(100);
+
+        // Analyze
+        assertEquals(List.of(1), near);
+        assertEquals(List.of(2), far);
+    }
+
+    @Test
+    public void testLongPauseFiresEverythingDue() {
+        // Setup
+        TimerWheel wheel = new TimerWheel(4, 10, 0);
+        for (int key = 0; key < 10; key++) {
+            wheel.schedule(key, 10 + key * 7);
+        }
+
+        // Invoke
+        List<Integer> due = wheel.advance(10_000);
+
+        // Analyze
+        assertEquals(10, due.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testOneDeadlinePerKey() {
+        // Setup
+        TimerWheel wheel = new TimerWheel(8, 10, 0);
+
+        // Invoke
+        boolean scheduled = wheel.schedule(1, 20);
+        boolean again = wheel.schedule(1, 70);
+        wheel.cancel(1);
+        boolean afterCancel = wheel.schedule(1, 50);
+
+        // Analyze, the cancelled timer never fires
+        assertTrue(scheduled);
+        assertFalse(again);
+        assertTrue(afterCancel);
+        assertTrue(wheel.advance(40).isEmpty());
+        assertEquals(List.of(1), wheel.advance(50));
+    }
+
+    @Test
+    public void testPastDeadlineFiresOnNextTick() {
+        // Setup
+        TimerWheel wheel = new TimerWheel(8, 10, 100);
+        wheel.advance(200);
+
+        // Invoke
+        wheel.schedule(1, 50);
+
+        // Analyze
+        assertTrue(wheel.advance(205).isEmpty());
+        assertEquals(List.of(1), wheel.advance(210));
+    }
+}
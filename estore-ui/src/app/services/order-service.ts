@@ -13,6 +13,7 @@ import { ErrorService } from './error.service';
 export class OrderService {
 
   private ordersUrl = 'http://localhost:8080/orders';  // URL to web api
+  private checkoutUrl = 'http://localhost:8080/checkout';  // URL to web api
 
   httpOptions = {
     headers: new HttpHeaders({ 'Content-Type': 'application/json' })
@@ -69,6 +70,16 @@ export class OrderService {
     );
   }
 
+  /** POST: check out the cart of a customer, placing the order and taking the stock in one step */
+  checkout(customerId: number): Observable<Order> {
+    this.errorService.clearErrorCode();
+    const url = `${this.checkoutUrl}/${customerId}`;
+    return this.http.post<Order>(url, null, this.httpOptions).pipe(
+      tap((newOrder: Order) => this.log(`checked out customer id=${customerId} as order id=${newOrder.id}`)),
+      catchError(this.errorService.handleError<Order>('checkout'))
+    );
+  }
+
   /** DELETE: delete the order from the server */
   deleteOrder(id: number): Observable<Order> {
     this.errorService.clearErrorCode();
@@ -1,15 +1,12 @@
 import { Component } from '@angular/core';
-import { ActivatedRoute } from '@angular/router';
 import { Cart } from '../cart';
 import { CartService } from '../services/cart.service';
-import { Order } from '../order';
 import { OrderService } from '../services/order-service';
 import { Product } from '../product';
-import { ProductReference } from '../product-reference';
 import { ProductService } from '../services/product.service';
 import { UserService } from '../services/user.service';
+import { ErrorService } from '../services/error.service';
 import { firstValueFrom } from 'rxjs';
-import { Customer } from '../customer';
 import { MatSnackBar } from '@angular/material/snack-bar';
 
 @Component({
@@ -27,6 +24,7 @@ export class ShoppingCartComponent {
     private cartService:CartService, 
     private productService: ProductService,
     private userService: UserService,
+    private errorService: ErrorService,
     private snackBar: MatSnackBar
     ) {
       this.cartContents = [];
@@ -112,64 +110,33 @@ export class ShoppingCartComponent {
   } 
 
   async checkout(): Promise<void> {
-    // loop through the current number of products in the cart
-    var totalPrice = 0;
-    var products: Product[] = [];
-    if(this.cart){
-      for (const prodId in this.cart.inventory){
-        // get the current number of products in the cart
-        var inStock = 0;
-        var orderQuantity = 0;
-        var productPrice = 0;
-        var productId: number =+prodId;
-        const prod = await firstValueFrom(this.productService.getProduct(productId));
-        inStock = prod.quantity
-        productPrice = prod.price
-
-        // check if limited items are in inventory
-        if(inStock >= 1){
-          orderQuantity = this.cart.inventory[prodId].quantity;
-          if (inStock < orderQuantity){
-            orderQuantity = inStock;
-            window.alert("Only " + inStock + " " + prod.name + "(s) are available");
-            return;
-            prod.quantity = 0;
-          } else{
-            prod.quantity -= orderQuantity;
-          }
-          totalPrice += orderQuantity * productPrice;
-
-          // create snapshop of each product and quantity in cart
-          products.push({id: prod.id, name: prod.name, price: prod.price, quantity: orderQuantity, description: prod.description, category: prod.category, ownerRecommended: prod.ownerRecommended} as Product); 
-
-          // This means we could buy it, so now we need to update purchased IDs of customer
-          this.userService.getCurrentUser()?.purchasedIds.push(prod.id);
-
-          this.userService.updateCustomer(this.userService.getCurrentUser() as Customer).subscribe(_ =>{
-            let success = this.snackBar.open("Checkout Successful", "Close");
-            });
-
-        }
-        this.productService.updateProduct(prod).subscribe();
-      }
+    var user = this.userService.getCurrentUser();
+    if (user === null || Object.keys(this.cart.inventory).length === 0) {
+      return;
+    }
 
-    // clear shopping cart
-    this.cart.inventory = {};
-    this.cartContents = [];
-    this.cartService.updateCart(this.cart).subscribe();
+    // The server takes the stock, places the order, empties the cart and records it on the customer at once
+    const order = await firstValueFrom(this.orderService.checkout(user.id));
+    if (order === undefined) {
+      // Only a conflict means the stock ran out, anything else left the cart as it was
+      if (this.errorService.errorCode === 409) {
+        window.alert("Some items in your cart are no longer available");
+        this.getCart();
+      } else {
+        window.alert("Checkout failed, please try again");
+      }
+      return;
+    }
 
-    // create an order
-    if(products.length >= 1){
-      var order: Order = { id: 0, totalPrice: totalPrice, products: products} as Order;
-      const observableOrder = this.orderService.addOrder(order);
-      // observableOrder.subscribe(order => this.orderService.updateOrder(order).subscribe());
-      var user = this.userService.getCurrentUser();
-      if(user !== null) {
-        user.orders.push((await firstValueFrom(observableOrder)).id);
-        console.log(user);
-        this.userService.updateCustomer(user).subscribe();
+    // Mirror the change on the local copies
+    user.orders.push(order.id);
+    for (const prod of order.products) {
+      if (!user.purchasedIds.includes(prod.id)) {
+        user.purchasedIds.push(prod.id);
       }
     }
+    this.cart.inventory = {};
+    this.cartContents = [];
+    this.snackBar.open("Checkout Successful", "Close");
   }
 }
-}